@@ -0,0 +1,130 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor Benchmarks
+ * %%
+ * Copyright (C) 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Realistic rich text documents of different sizes for the benchmarks, both
+ * as the HTML produced by the editor and as the value in Delta format. The
+ * documents are generated with a fixed seed, so runs are comparable.
+ */
+enum Corpus {
+
+    /**
+     * A short comment of a few formatted lines.
+     */
+    SMALL(3, 0),
+
+    /**
+     * A document of a few pages with headers, lists and links.
+     */
+    MEDIUM(300, 0),
+
+    /**
+     * A large document of about a megabyte of text.
+     */
+    HUGE(6000, 0),
+
+    /**
+     * A medium document with pasted screenshots as inline {@code data:}
+     * images of 200 kilobytes each.
+     */
+    IMAGES(300, 5);
+
+    private static final Map<String, Object> BOLD = Collections
+            .singletonMap("bold", true);
+    private static final Map<String, Object> LINK = Collections
+            .singletonMap("link", "https://vaadin.com/components");
+    private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit",
+            "amet", "consectetur", "adipiscing", "elit", "sed", "do",
+            "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore",
+            "magna", "aliqua", "äöü", "€" };
+    private static final int IMAGE_SIZE = 200 * 1024;
+
+    private final int paragraphs;
+    private final int images;
+
+    Corpus(int paragraphs, int images) {
+        this.paragraphs = paragraphs;
+        this.images = images;
+    }
+
+    /**
+     * Creates the document in Delta format.
+     *
+     * @return the document
+     */
+    Delta createDelta() {
+        Random random = new Random(paragraphs);
+        Delta.Builder builder = Delta.builder();
+        int imageInterval = images == 0 ? 0 : paragraphs / images;
+        for (int i = 0; i < paragraphs; i++) {
+            switch (i % 10) {
+            case 0:
+                builder.insert(words(random, 4)).insert("\n",
+                        Collections.singletonMap("header", 2));
+                break;
+            case 4:
+            case 5:
+                builder.insert(words(random, 12)).insert("\n",
+                        Collections.singletonMap("list", "bullet"));
+                break;
+            default:
+                builder.insert(words(random, 20)).insert(words(random, 3), BOLD)
+                        .insert(words(random, 15))
+                        .insert(words(random, 2), LINK).insert(".\n");
+            }
+            if (imageInterval > 0 && i % imageInterval == imageInterval - 1) {
+                builder.insertEmbed("image", createImage(random), null)
+                        .insert("\n");
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates the document as HTML, like the {@code htmlValue} property of
+     * the editor with an additional script the sanitizer has to remove.
+     *
+     * @return the HTML
+     */
+    String createHtml() {
+        return new DeltaHtmlRenderer().render(createDelta().toValue())
+                + "<script>alert('x')</script>"
+                + "<p onclick=\"alert('x')\">Unsafe</p>";
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            words.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return words.toString();
+    }
+
+    private static String createImage(Random random) {
+        byte[] data = new byte[IMAGE_SIZE];
+        random.nextBytes(data);
+        return "data:image/png;base64,"
+                + Base64.getEncoder().encodeToString(data);
+    }
+}
@@ -0,0 +1,81 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor Benchmarks
+ * %%
+ * Copyright (C) 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import elemental.json.Json;
+import elemental.json.JsonValue;
+
+/**
+ * Measures reading the editor value: walking it with {@link DeltaReader},
+ * parsing it into a {@link Delta}, and parsing it into a JSON tree as a
+ * baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaParseBenchmark {
+
+    @Param({ "SMALL", "MEDIUM", "HUGE", "IMAGES" })
+    private Corpus corpus;
+
+    private String value;
+
+    @Setup
+    public void setup() {
+        value = corpus.createDelta().toValue();
+    }
+
+    @Benchmark
+    public int deltaReader() {
+        DeltaReader reader = new DeltaReader(value);
+        int links = 0;
+        while (reader.next()) {
+            if (reader.hasAttribute("link")) {
+                links++;
+            }
+        }
+        return links;
+    }
+
+    @Benchmark
+    public Delta deltaParse() {
+        return Delta.parse(value);
+    }
+
+    @Benchmark
+    public JsonValue jsonTree() {
+        return Json.instance().parse(value);
+    }
+}
@@ -0,0 +1,87 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor Benchmarks
+ * %%
+ * Copyright (C) 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RichTextEditor#getHtmlValue()} when called repeatedly for
+ * an unchanged value, e.g. by several listeners and a binder, and right
+ * after the value has changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlValueBenchmark {
+
+    @Param({ "SMALL", "MEDIUM", "HUGE", "IMAGES" })
+    private Corpus corpus;
+
+    @Param({ "SYNCHRONIZED", "SERVER_RENDERED" })
+    private HtmlValueMode mode;
+
+    private RichTextEditor rte;
+    // Two versions of the document to alternate between, as only changes
+    // invalidate the cached HTML
+    private final String[] values = new String[2];
+    private final String[] htmls = new String[2];
+    private int version;
+
+    @Setup
+    public void setup() {
+        Delta document = corpus.createDelta();
+        values[0] = document.toValue();
+        values[1] = document
+                .compose(Delta.builder().insert("Edited\n").build())
+                .toValue();
+        htmls[0] = corpus.createHtml();
+        htmls[1] = "<p>Edited</p>" + htmls[0];
+        rte = new RichTextEditor();
+        rte.setHtmlValueMode(mode);
+        rte.setValue(values[0]);
+        rte.getElement().setProperty("htmlValue", htmls[0]);
+    }
+
+    @Benchmark
+    public String repeatedCall() {
+        return rte.getHtmlValue();
+    }
+
+    @Benchmark
+    public String afterChange() {
+        version = 1 - version;
+        rte.getElement().setProperty("htmlValue", htmls[version]);
+        rte.setModelValue(values[version], true);
+        return rte.getHtmlValue();
+    }
+}
@@ -0,0 +1,83 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor Benchmarks
+ * %%
+ * Copyright (C) 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vaadin.flow.component.richtexteditor.RichTextEditor.RichTextEditorI18n;
+import com.vaadin.flow.internal.JsonSerializer;
+
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * Measures serializing {@link RichTextEditorI18n} to the JSON sent to the
+ * client, both with the generic bean serializer of Flow and with the cached
+ * serialization of the editor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class I18nSerializationBenchmark {
+
+    private RichTextEditorI18n i18n;
+
+    @Setup
+    public void setup() {
+        i18n = new RichTextEditorI18n().setUndo("Rückgängig")
+                .setRedo("Wiederholen").setBold("Fett").setItalic("Kursiv")
+                .setUnderline("Unterstrichen").setStrike("Durchgestrichen")
+                .setH1("Überschrift 1").setH2("Überschrift 2")
+                .setH3("Überschrift 3").setSubscript("Tiefgestellt")
+                .setSuperscript("Hochgestellt").setListOrdered("Nummerierung")
+                .setListBullet("Aufzählung").setAlignLeft("Links")
+                .setAlignCenter("Zentriert").setAlignRight("Rechts")
+                .setImage("Bild").setLink("Link").setBlockquote("Zitat")
+                .setCodeBlock("Code").setClean("Formatierung entfernen");
+    }
+
+    @Benchmark
+    public JsonValue jsonSerializer() {
+        return JsonSerializer.toJson(i18n);
+    }
+
+    @Benchmark
+    public JsonObject toJsonCached() {
+        return i18n.toJson();
+    }
+
+    @Benchmark
+    public JsonObject toJsonAfterChange() {
+        i18n.setUndo("Rückgängig");
+        return i18n.toJson();
+    }
+}
@@ -0,0 +1,128 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor Benchmarks
+ * %%
+ * Copyright (C) 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Whitelist;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sanitizing the HTML value of the editor with the default policy,
+ * both with jsoup and with the streaming sanitizer. The
+ * {@link #sanitizeRebuildingWhitelist()} baseline builds the jsoup
+ * {@link Whitelist} on every call, as the editor did before the policy was
+ * shared; run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizeBenchmark {
+
+    @Param({ "SMALL", "MEDIUM", "HUGE", "IMAGES" })
+    private Corpus corpus;
+
+    private String html;
+    private SanitizerPolicy domPolicy;
+    private SanitizerPolicy streamingPolicy;
+    private RichTextEditor rte;
+
+    @Setup
+    public void setup() {
+        html = corpus.createHtml();
+        domPolicy = SanitizerPolicy.defaultPolicy()
+                .withStreamingThreshold(Integer.MAX_VALUE);
+        streamingPolicy = SanitizerPolicy.defaultPolicy()
+                .withStreamingThreshold(0);
+        rte = new RichTextEditor();
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return rte.sanitize(html);
+    }
+
+    @Benchmark
+    public String sanitizeRebuildingWhitelist() {
+        return Jsoup.clean(html,
+                Whitelist.basic().addTags("img", "h1", "h2", "h3", "s")
+                        .addAttributes("img", "align", "alt", "height", "src",
+                                "title", "width")
+                        .addAttributes(":all", "style")
+                        .addProtocols("img", "src", "data"));
+    }
+
+    @Benchmark
+    public String sanitizeDom() {
+        return domPolicy.sanitize(html);
+    }
+
+    @Benchmark
+    public String sanitizeStreaming() {
+        return streamingPolicy.sanitize(html);
+    }
+
+    @Benchmark
+    public int sanitizeStreamingFromReader() throws IOException {
+        CountingAppendable sanitized = new CountingAppendable();
+        streamingPolicy.sanitize(new StringReader(html), sanitized);
+        return sanitized.length;
+    }
+
+    /*
+     * Discards the output like a stream to a client would, so only the
+     * sanitizer itself is measured.
+     */
+    private static class CountingAppendable implements Appendable {
+        private int length;
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            length += csq.length();
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            length += end - start;
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            length++;
+            return this;
+        }
+    }
+}
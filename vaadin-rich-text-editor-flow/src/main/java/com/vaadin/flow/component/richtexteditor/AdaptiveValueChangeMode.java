@@ -0,0 +1,253 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import com.vaadin.flow.data.value.HasValueChangeMode;
+import com.vaadin.flow.data.value.ValueChangeMode;
+
+/**
+ * A strategy choosing the value change mode of a {@link RichTextEditor} from
+ * the size of its value and the measured cost of handling value updates from
+ * the client.
+ * <p>
+ * Short documents that are cheap to handle are synchronized with
+ * {@link ValueChangeMode#EAGER}. When the value or the cost grow over the
+ * eager limits, the editor moves to {@link ValueChangeMode#TIMEOUT} with the
+ * configured interval, and over the timeout limits to
+ * {@link ValueChangeMode#ON_CHANGE}. To not switch back and forth around a
+ * limit, the editor only moves to a more eager mode when the size and the
+ * cost are a quarter below the limits.
+ * <p>
+ * The cost is a moving average of the time the server spends on an update
+ * from the client, including the value change listeners, {@code Binder}
+ * validation and sanitization for {@link RichTextEditor#asHtml()}.
+ * <p>
+ * Strategies are immutable and can be shared between editor instances.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setAdaptiveValueChangeMode(AdaptiveValueChangeMode)
+ */
+public final class AdaptiveValueChangeMode implements Serializable {
+
+    private static final AdaptiveValueChangeMode DEFAULTS = new AdaptiveValueChangeMode(
+            20000, 5, 500000, 50, 1000);
+
+    private final int eagerMaxSize;
+    private final int eagerMaxCost;
+    private final int timeoutMaxSize;
+    private final int timeoutMaxCost;
+    private final int timeout;
+
+    private AdaptiveValueChangeMode(int eagerMaxSize, int eagerMaxCost,
+            int timeoutMaxSize, int timeoutMaxCost, int timeout) {
+        this.eagerMaxSize = eagerMaxSize;
+        this.eagerMaxCost = eagerMaxCost;
+        this.timeoutMaxSize = timeoutMaxSize;
+        this.timeoutMaxCost = timeoutMaxCost;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Gets the default strategy: {@link ValueChangeMode#EAGER} up to 20 000
+     * characters and 5 milliseconds per update,
+     * {@link ValueChangeMode#TIMEOUT} with an interval of one second up to
+     * 500 000 characters and 50 milliseconds per update, and
+     * {@link ValueChangeMode#ON_CHANGE} beyond.
+     *
+     * @return the default strategy, not {@code null}
+     */
+    public static AdaptiveValueChangeMode defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Creates a copy of this strategy with the given limits for
+     * {@link ValueChangeMode#EAGER}.
+     *
+     * @param maxSize
+     *            the maximum length of the value in characters
+     * @param maxCost
+     *            the maximum cost of an update in milliseconds
+     * @return a new strategy, not {@code null}
+     */
+    public AdaptiveValueChangeMode withEagerLimits(int maxSize, int maxCost) {
+        checkLimits(maxSize, maxCost);
+        return new AdaptiveValueChangeMode(maxSize, maxCost, timeoutMaxSize,
+                timeoutMaxCost, timeout);
+    }
+
+    /**
+     * Creates a copy of this strategy with the given limits for
+     * {@link ValueChangeMode#TIMEOUT}.
+     *
+     * @param maxSize
+     *            the maximum length of the value in characters
+     * @param maxCost
+     *            the maximum cost of an update in milliseconds
+     * @return a new strategy, not {@code null}
+     */
+    public AdaptiveValueChangeMode withTimeoutLimits(int maxSize,
+            int maxCost) {
+        checkLimits(maxSize, maxCost);
+        return new AdaptiveValueChangeMode(eagerMaxSize, eagerMaxCost,
+                maxSize, maxCost, timeout);
+    }
+
+    /**
+     * Creates a copy of this strategy with the given interval for
+     * {@link ValueChangeMode#TIMEOUT}.
+     *
+     * @param milliseconds
+     *            the interval in milliseconds
+     * @return a new strategy, not {@code null}
+     * @see HasValueChangeMode#setValueChangeTimeout(int)
+     */
+    public AdaptiveValueChangeMode withTimeout(int milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException(
+                    "The timeout should not be negative");
+        }
+        return new AdaptiveValueChangeMode(eagerMaxSize, eagerMaxCost,
+                timeoutMaxSize, timeoutMaxCost, milliseconds);
+    }
+
+    private static void checkLimits(int maxSize, int maxCost) {
+        if (maxSize < 0 || maxCost < 0) {
+            throw new IllegalArgumentException(
+                    "The limits should not be negative");
+        }
+    }
+
+    /**
+     * Gets the maximum length of the value for {@link ValueChangeMode#EAGER}.
+     *
+     * @return the maximum length in characters
+     */
+    public int getEagerMaxSize() {
+        return eagerMaxSize;
+    }
+
+    /**
+     * Gets the maximum cost of an update for {@link ValueChangeMode#EAGER}.
+     *
+     * @return the maximum cost in milliseconds
+     */
+    public int getEagerMaxCost() {
+        return eagerMaxCost;
+    }
+
+    /**
+     * Gets the maximum length of the value for
+     * {@link ValueChangeMode#TIMEOUT}.
+     *
+     * @return the maximum length in characters
+     */
+    public int getTimeoutMaxSize() {
+        return timeoutMaxSize;
+    }
+
+    /**
+     * Gets the maximum cost of an update for {@link ValueChangeMode#TIMEOUT}.
+     *
+     * @return the maximum cost in milliseconds
+     */
+    public int getTimeoutMaxCost() {
+        return timeoutMaxCost;
+    }
+
+    /**
+     * Gets the interval for {@link ValueChangeMode#TIMEOUT}.
+     *
+     * @return the interval in milliseconds
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Selects the value change mode.
+     *
+     * @param current
+     *            the current mode, or {@code null} if there is none
+     * @param size
+     *            the length of the value in characters
+     * @param costNanos
+     *            the average cost of an update in nanoseconds
+     * @return {@link ValueChangeMode#EAGER}, {@link ValueChangeMode#TIMEOUT}
+     *         or {@link ValueChangeMode#ON_CHANGE}
+     */
+    ValueChangeMode select(ValueChangeMode current, long size,
+            long costNanos) {
+        ValueChangeMode mode = select(size, costNanos);
+        if (current != null && rank(mode) < rank(current)) {
+            // More eager only with a margin below the limits
+            mode = select(size * 4 / 3, costNanos * 4 / 3);
+            if (rank(mode) > rank(current)) {
+                mode = current;
+            }
+        }
+        return mode;
+    }
+
+    private ValueChangeMode select(long size, long costNanos) {
+        double costMillis = costNanos / 1e6;
+        if (size <= eagerMaxSize && costMillis <= eagerMaxCost) {
+            return ValueChangeMode.EAGER;
+        } else if (size <= timeoutMaxSize && costMillis <= timeoutMaxCost) {
+            return ValueChangeMode.TIMEOUT;
+        }
+        return ValueChangeMode.ON_CHANGE;
+    }
+
+    private static int rank(ValueChangeMode mode) {
+        switch (mode) {
+        case EAGER:
+            return 0;
+        case TIMEOUT:
+        case LAZY:
+            return 1;
+        default:
+            return 2;
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AdaptiveValueChangeMode)) {
+            return false;
+        }
+        AdaptiveValueChangeMode other = (AdaptiveValueChangeMode) obj;
+        return eagerMaxSize == other.eagerMaxSize
+                && eagerMaxCost == other.eagerMaxCost
+                && timeoutMaxSize == other.timeoutMaxSize
+                && timeoutMaxCost == other.timeoutMaxCost
+                && timeout == other.timeout;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eagerMaxSize, eagerMaxCost, timeoutMaxSize,
+                timeoutMaxCost, timeout);
+    }
+}
@@ -0,0 +1,209 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Lets multiple {@link RichTextEditor} instances, typically in the UIs of
+ * different users, edit the same document at the same time.
+ * <p>
+ * Editors join a topic, which identifies a shared document. Instead of the
+ * whole value, each editor sends the change Delta of each edit, which is
+ * transformed against the concurrent changes of the other editors and
+ * applied to the shared document. The other editors of the topic receive
+ * the change through {@link com.vaadin.flow.component.UI#access(
+ * com.vaadin.flow.component.internal.Command) UI.access}, composed with any
+ * other changes made since their last update, so the data sent to each
+ * client stays proportional to the changes, not to the document. Their
+ * server-side value and value change events follow the shared document.
+ * <p>
+ * The engine keeps a log of recent changes for each document. An editor
+ * that falls further behind, e.g. after a long disconnection, gets the
+ * whole document instead. A document is discarded when the last editor
+ * leaves its topic; the next editor joining the topic shares its own value.
+ * <p>
+ * A detached editor, e.g. in a closed session, leaves the shared document
+ * and joins it again when attached, getting the current document. The
+ * engine and the shared documents are not serialized with the session of an
+ * editor, so an editor restored from a serialized session has left its
+ * topic and should join it again.
+ *
+ * <pre>
+ * // Shared by all the sessions of the application
+ * static final CollaborationEngine ENGINE = new CollaborationEngine();
+ * ...
+ * RichTextEditor rte = new RichTextEditor();
+ * rte.setValueChangeMode(ValueChangeMode.EAGER);
+ * Registration registration = ENGINE.join("document-" + id, rte);
+ * ...
+ * // When the editor is no longer used for the document
+ * registration.remove();
+ * </pre>
+ *
+ * Changes made by other users are only shown without delay if
+ * {@link com.vaadin.flow.component.page.Push server push} is enabled.
+ * Joining sets the {@link ValueSyncMode#INCREMENTAL} value sync mode; the
+ * {@link RichTextEditor#setValueChangeMode(
+ * com.vaadin.flow.data.value.ValueChangeMode) value change mode} defines
+ * how often the changes are sent. Setting the value of a joined editor on
+ * the server replaces the shared document. The engine is thread-safe.
+ *
+ * @author Vaadin Ltd
+ */
+public class CollaborationEngine implements Serializable {
+
+    /**
+     * The default number of changes logged for each document.
+     */
+    public static final int DEFAULT_LOG_SIZE = 1000;
+
+    private final int maxLogSize;
+    private final Map<String, SharedDocument> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine logging {@value #DEFAULT_LOG_SIZE} changes for each
+     * document.
+     */
+    public CollaborationEngine() {
+        this(DEFAULT_LOG_SIZE);
+    }
+
+    /**
+     * Creates an engine logging the given number of changes for each
+     * document.
+     *
+     * @param maxLogSize
+     *            the number of recent changes kept for editors that are
+     *            behind, at least 1
+     */
+    public CollaborationEngine(int maxLogSize) {
+        if (maxLogSize < 1) {
+            throw new IllegalArgumentException(
+                    "The log size should be at least 1");
+        }
+        this.maxLogSize = maxLogSize;
+    }
+
+    /**
+     * Joins an editor to a topic. If other editors have joined the topic,
+     * the value of the editor is replaced with the shared document,
+     * otherwise the value is shared. Should be called with the session of
+     * the editor locked.
+     *
+     * @param topic
+     *            the topic, not {@code null}
+     * @param editor
+     *            the editor, not {@code null}
+     * @return a registration for leaving the topic
+     * @throws IllegalStateException
+     *             if the editor has already joined a topic
+     */
+    public Registration join(String topic, RichTextEditor editor) {
+        Objects.requireNonNull(topic, "The topic should not be null");
+        Objects.requireNonNull(editor, "The editor should not be null");
+        if (editor.getCollaboration() != null) {
+            throw new IllegalStateException(
+                    "The editor has already joined a topic");
+        }
+        editor.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        CollaborationParticipant participant = new CollaborationParticipant(
+                editor, this, topic);
+        participant.connect();
+        editor.setCollaboration(participant);
+        participant.resync();
+        return participant::leave;
+    }
+
+    /*
+     * Adds a participant to the document of a topic, creating the document
+     * with the given value if no other editor is in the topic.
+     */
+    SharedDocument connect(String topic, CollaborationParticipant participant,
+            Delta value) {
+        return documents.compute(topic, (key, existing) -> {
+            SharedDocument document = existing;
+            if (document == null) {
+                document = new SharedDocument(maxLogSize);
+                document.initialize(value);
+            }
+            document.getParticipants().add(participant);
+            return document;
+        });
+    }
+
+    /*
+     * Removes a participant from the document of a topic, discarding the
+     * document after the last participant.
+     */
+    void disconnect(String topic, SharedDocument document,
+            CollaborationParticipant participant) {
+        document.getParticipants().remove(participant);
+        documents.computeIfPresent(topic,
+                (key, current) -> current == document
+                        && current.getParticipants().isEmpty() ? null
+                                : current);
+    }
+
+    /**
+     * Gets the current content of a topic.
+     *
+     * @param topic
+     *            the topic, not {@code null}
+     * @return the shared document in Delta format, or {@code null} if no
+     *         editor has joined the topic
+     */
+    public String getValue(String topic) {
+        SharedDocument document = documents
+                .get(Objects.requireNonNull(topic, "The topic should not be null"));
+        return document == null ? null
+                : document.getSnapshot().getDelta().toValue();
+    }
+
+    /**
+     * Gets the number of changes made to the content of a topic.
+     *
+     * @param topic
+     *            the topic, not {@code null}
+     * @return the revision of the shared document, or -1 if no editor has
+     *         joined the topic
+     */
+    public int getRevision(String topic) {
+        SharedDocument document = documents
+                .get(Objects.requireNonNull(topic, "The topic should not be null"));
+        return document == null ? -1 : document.getSnapshot().getRevision();
+    }
+
+    /**
+     * Gets the number of editors that have joined a topic.
+     *
+     * @param topic
+     *            the topic, not {@code null}
+     * @return the number of editors
+     */
+    public int getParticipantCount(String topic) {
+        SharedDocument document = documents
+                .get(Objects.requireNonNull(topic, "The topic should not be null"));
+        return document == null ? 0 : document.getParticipants().size();
+    }
+}
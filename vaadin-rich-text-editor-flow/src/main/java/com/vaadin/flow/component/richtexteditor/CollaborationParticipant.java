@@ -0,0 +1,336 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Connects a {@link RichTextEditor} to a {@link SharedDocument}.
+ * <p>
+ * The server value of the editor is the shared document at a known
+ * revision. Between the editor and its client element, changes are
+ * exchanged with the two-party Jupiter protocol: both sides count the
+ * changes they have sent and received, and keep their own changes until the
+ * other side has acknowledged them, transforming incoming changes against
+ * them. The changes of the client are submitted to the shared document, and
+ * the changes of other participants are sent to the client as a single
+ * composed change when the UI is next accessed.
+ * <p>
+ * A detached editor leaves the shared document, so that the engine does not
+ * keep the editors and UIs of closed sessions, and joins it again when
+ * attached. The engine and the shared document are not serialized with the
+ * session of the editor, as the document refers to the editors of other
+ * sessions; a participant restored from a serialized session leaves the
+ * topic.
+ *
+ * @author Vaadin Ltd
+ */
+final class CollaborationParticipant implements Serializable {
+
+    // Installs the client end of the protocol on the delta sync of the
+    // editor, see richTextEditorDeltaSync.js. $0 is the epoch, which changes
+    // on every reset, so that the messages of an earlier epoch are ignored.
+    private static final String CLIENT_SCRIPT = "window.Vaadin.Flow"
+            + ".richTextEditorDeltaSync.collaborate(this, $0)";
+
+    private static final Delta EMPTY_DOCUMENT = Delta.builder().insert("\n")
+            .build();
+
+    private final RichTextEditor editor;
+    private final String topic;
+    // Null after deserialization
+    private transient CollaborationEngine engine;
+    // Null while the editor is detached
+    private transient SharedDocument document;
+    private final List<Outgoing> outgoing = new ArrayList<>();
+    private final AtomicBoolean catchUpScheduled = new AtomicBoolean();
+    private final Registration attachRegistration;
+    private final Registration detachRegistration;
+    private int epoch;
+    private int knownRevision;
+    private int sent;
+    private int received;
+    private volatile UI ui;
+
+    CollaborationParticipant(RichTextEditor editor, CollaborationEngine engine,
+            String topic) {
+        this.editor = editor;
+        this.engine = engine;
+        this.topic = topic;
+        ui = editor.getUI().orElse(null);
+        // A new client element starts over from the shared document
+        attachRegistration = editor.addAttachListener(event -> {
+            ui = event.getUI();
+            // Not the parameter, which would be serialized with the listener
+            if (document == null && this.engine != null) {
+                connect();
+            }
+            resync();
+        });
+        detachRegistration = editor.addDetachListener(event -> {
+            ui = null;
+            disconnect();
+        });
+    }
+
+    /**
+     * Adds this participant to the shared document of the topic, which is
+     * created with the value of the editor if no other editor is in the
+     * topic.
+     */
+    void connect() {
+        document = engine.connect(topic, this, editor.getDelta());
+    }
+
+    private void disconnect() {
+        if (document != null) {
+            engine.disconnect(topic, document, this);
+            document = null;
+        }
+    }
+
+    /*
+     * Checks whether this participant is in the shared document. A
+     * participant restored from a serialized session cannot join the
+     * document again, so it leaves the topic and resets the client to the
+     * value of the editor.
+     */
+    private boolean isConnected() {
+        if (document == null && engine == null
+                && editor.getCollaboration() == this) {
+            leave();
+            editor.resetCollaborativeValue(editor.getValue());
+        }
+        return document != null;
+    }
+
+    RichTextEditor getEditor() {
+        return editor;
+    }
+
+    /**
+     * Replaces the value of the editor and its client with the shared
+     * document and restarts the protocol. Does nothing while not in the
+     * shared document.
+     */
+    void resync() {
+        if (!isConnected()) {
+            return;
+        }
+        SharedDocument.Update snapshot = document.getSnapshot();
+        knownRevision = snapshot.getRevision();
+        epoch++;
+        sent = 0;
+        received = 0;
+        outgoing.clear();
+        editor.resetCollaborativeValue(snapshot.getDelta().toValue());
+        int currentEpoch = epoch;
+        editor.runBeforeClientResponse(ui -> {
+            if (currentEpoch == epoch) {
+                editor.getElement().executeJs(CLIENT_SCRIPT, currentEpoch);
+            }
+        });
+    }
+
+    /**
+     * Handles a change from the client.
+     *
+     * @param clientEpoch
+     *            the epoch of the client
+     * @param clientSent
+     *            the number of changes the client had sent before this one
+     * @param clientReceived
+     *            the number of changes the client had received
+     * @param change
+     *            the change
+     * @return {@code true} if the change was submitted to the shared
+     *         document, {@code false} if the client was reset instead, e.g.
+     *         because the changed document would exceed the value limits of
+     *         the editor
+     */
+    boolean receive(int clientEpoch, int clientSent, int clientReceived,
+            Delta change) {
+        if (!isConnected()) {
+            return false;
+        }
+        if (clientEpoch != epoch) {
+            // Made before the last reset, which replaced the client content
+            return false;
+        }
+        if (clientSent != received || clientReceived > sent) {
+            resync();
+            return false;
+        }
+        outgoing.removeIf(entry -> entry.number < clientReceived);
+        Delta transformed = change;
+        for (Outgoing entry : outgoing) {
+            // The changes of the server win ties
+            Delta next = entry.delta.transform(transformed, true);
+            entry.delta = transformed.transform(entry.delta, false);
+            transformed = next;
+        }
+        received++;
+        Delta changed = editor.getDelta().compose(transformed);
+        if (!changed.isDocument()) {
+            resync();
+            return false;
+        }
+        // Small changes can make the whole document exceed the limits
+        ValueLimits.Limit exceeded = editor.getValueLimits()
+                .checkValue(changed.toValue());
+        if (exceeded != null) {
+            resync();
+            editor.fireValueLimitExceeded(exceeded);
+            return false;
+        }
+        SharedDocument.Update update = document.submit(knownRevision,
+                transformed);
+        Delta value = update == null ? null
+                : changed.compose(update.getDelta());
+        if (value == null || !value.isDocument()) {
+            resync();
+            return false;
+        }
+        knownRevision = update.getRevision();
+        editor.setCollaborativeValue(value.toValue());
+        send(update.getDelta());
+        notifyOthers();
+        return true;
+    }
+
+    private void notifyOthers() {
+        for (CollaborationParticipant participant : document
+                .getParticipants()) {
+            if (participant != this) {
+                participant.changed();
+            }
+        }
+    }
+
+    /**
+     * Replaces the shared document with a value set on the server and resets
+     * the client of this editor. While not in the shared document, only the
+     * value of the editor is replaced.
+     *
+     * @param value
+     *            the new value in Delta format, empty for an empty document
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta document
+     */
+    void replace(String value) {
+        Delta delta = value.isEmpty() ? EMPTY_DOCUMENT : Delta.parse(value);
+        if (!delta.isDocument()) {
+            throw new IllegalArgumentException(
+                    "The value should be a Delta document");
+        }
+        if (!isConnected()) {
+            editor.resetCollaborativeValue(delta.toValue());
+            return;
+        }
+        document.replace(delta);
+        resync();
+        notifyOthers();
+    }
+
+    /**
+     * Schedules sending the changes of other participants to the client.
+     * Can be called from any thread.
+     */
+    void changed() {
+        UI currentUI = ui;
+        if (currentUI != null && catchUpScheduled.compareAndSet(false, true)) {
+            try {
+                currentUI.access(() -> {
+                    catchUpScheduled.set(false);
+                    catchUp();
+                });
+            } catch (UIDetachedException e) {
+                catchUpScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Applies the changes made by other participants after the known
+     * revision and sends them to the client as a single change.
+     */
+    void catchUp() {
+        if (editor.getCollaboration() != this || document == null) {
+            return;
+        }
+        SharedDocument.Update update = document.getChangesSince(knownRevision);
+        if (update == null) {
+            resync();
+            return;
+        }
+        if (update.getRevision() == knownRevision) {
+            return;
+        }
+        Delta value = editor.getDelta().compose(update.getDelta());
+        knownRevision = update.getRevision();
+        editor.setCollaborativeValue(value.toValue());
+        send(update.getDelta());
+    }
+
+    private void send(Delta change) {
+        if (change.getOps().isEmpty()) {
+            return;
+        }
+        outgoing.add(new Outgoing(sent, change));
+        editor.getElement().executeJs(
+                "this.__deltaSync && this.__deltaSync.remote"
+                        + " && this.__deltaSync.remote($0, $1, $2, $3)",
+                epoch, sent, received, change.toValue());
+        sent++;
+    }
+
+    /**
+     * Stops participating and removes the client end of the protocol.
+     */
+    void leave() {
+        if (editor.getCollaboration() != this) {
+            return;
+        }
+        editor.setCollaboration(null);
+        attachRegistration.remove();
+        detachRegistration.remove();
+        ui = null;
+        epoch++;
+        disconnect();
+        editor.getElement().executeJs(
+                "this.__deltaSync && this.__deltaSync.leave"
+                        + " && this.__deltaSync.leave()");
+    }
+
+    private static final class Outgoing implements Serializable {
+        private final int number;
+        private Delta delta;
+
+        private Outgoing(int number, Delta delta) {
+            this.number = number;
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,1152 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+
+/**
+ * An immutable rich text document or change in
+ * <a href="https://github.com/quilljs/delta">Delta</a> format, the format of
+ * the {@link RichTextEditor} value.
+ * <p>
+ * A Delta is a list of {@link Insert}, {@link Retain} and {@link Delete}
+ * operations. A document only contains inserts, while a change uses retains
+ * and deletes to refer to the content of the document it is applied to. The
+ * operations follow the semantics of Quill's {@code Delta} class, so that
+ * {@link #compose(Delta) compose}, {@link #transform(Delta, boolean)
+ * transform}, {@link #invert(Delta) invert} and {@link #slice(int, int)
+ * slice} give the same results on the server as in the browser.
+ * <p>
+ * The operations are stored together with their offsets, so finding the
+ * operation at a given offset takes logarithmic time. Slicing a large
+ * document only copies the operations within the slice, and composing a
+ * document with a small change copies the unchanged operations as they are.
+ * <p>
+ * Attribute and embed values are {@link String}, {@link Boolean},
+ * {@link Integer} or {@link Double}, or {@link Map} and {@link List} of those
+ * for nested JSON. A {@code null} attribute value in a change removes the
+ * attribute.
+ *
+ * @author Vaadin Ltd
+ * @see #parse(String)
+ * @see #toValue()
+ */
+public final class Delta implements Serializable {
+
+    private static final Delta EMPTY = new Delta(new Op[0]);
+
+    private final Op[] ops;
+    // The offset where each operation starts, with the total length last
+    private final int[] offsets;
+    private final boolean document;
+
+    private Delta(Op[] ops) {
+        this.ops = ops;
+        offsets = new int[ops.length + 1];
+        boolean onlyInserts = true;
+        for (int i = 0; i < ops.length; i++) {
+            offsets[i + 1] = addLengths(offsets[i], ops[i].length());
+            onlyInserts &= ops[i] instanceof Insert;
+        }
+        document = onlyInserts;
+    }
+
+    private static int addLengths(int length, int other) {
+        try {
+            return Math.addExact(length, other);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                    "The length of the operations should not exceed "
+                            + Integer.MAX_VALUE,
+                    e);
+        }
+    }
+
+    /**
+     * Gets an empty Delta without any operations.
+     *
+     * @return an empty Delta, not {@code null}
+     */
+    public static Delta empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a builder for a new Delta.
+     *
+     * @return a new builder, not {@code null}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses a Delta from the value format of {@link RichTextEditor}.
+     *
+     * @param value
+     *            the JSON array of operations, or a JSON object with an
+     *            {@code ops} array; an empty string gives an empty Delta
+     * @return the parsed Delta, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     * @see RichTextEditor#getValue()
+     */
+    public static Delta parse(String value) {
+        Objects.requireNonNull(value, "The value should not be null");
+        // Read without building an intermediate JSON tree
+        DeltaReader reader = new DeltaReader(value);
+        Builder builder = new Builder();
+        while (reader.next()) {
+            builder.push(readOp(reader));
+        }
+        return builder.build();
+    }
+
+    private static Op readOp(DeltaReader reader) {
+        Map<String, Object> attributes = null;
+        if (reader.getAttributeCount() > 0) {
+            attributes = new LinkedHashMap<>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.put(reader.getAttributeName(i).toString(),
+                        toJava(reader.getAttributeValue(i),
+                                reader.getAttributeType(i)));
+            }
+        }
+        switch (reader.getType()) {
+        case INSERT:
+            return new Insert(reader.getText().toString(), null, attributes);
+        case EMBED:
+            CharSequence type = reader.getEmbedType();
+            Map<String, Object> embed = type.length() == 0
+                    && reader.getEmbedValue() == null
+                            ? Collections.emptyMap()
+                            : Collections.singletonMap(type.toString(),
+                                    toJava(reader.getEmbedValue(),
+                                            reader.getEmbedValueType()));
+            return new Insert(null, embed, attributes);
+        case RETAIN:
+            return new Retain(reader.getLength(), attributes);
+        default:
+            return new Delete(reader.getLength());
+        }
+    }
+
+    private static Object toJava(CharSequence value, JsonType type) {
+        switch (type) {
+        case STRING:
+            return value.toString();
+        case BOOLEAN:
+            return "true".contentEquals(value);
+        case NULL:
+            return null;
+        default:
+            // Numbers and nested JSON are rare in attributes and embeds
+            try {
+                return toJava(Json.instance().parse(value.toString()));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(
+                        "The value is not a Delta", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the operations of this Delta.
+     *
+     * @return an unmodifiable list of the operations, not {@code null}
+     */
+    public List<Op> getOps() {
+        return Collections.unmodifiableList(Arrays.asList(ops));
+    }
+
+    /**
+     * Gets the total length of the operations of this Delta. For a document
+     * this is the number of characters, with each embed counting as one.
+     *
+     * @return the length
+     */
+    public int length() {
+        return offsets[ops.length];
+    }
+
+    /**
+     * Checks whether this Delta is a document, that is, it only contains
+     * inserts.
+     *
+     * @return {@code true} if this Delta only contains inserts
+     */
+    public boolean isDocument() {
+        return document;
+    }
+
+    /**
+     * Gets the index of the operation containing the given offset.
+     *
+     * @return the operation index, or the number of operations if the offset
+     *         is at or beyond the end
+     */
+    private int opIndexAt(int offset) {
+        if (offset >= length()) {
+            return ops.length;
+        }
+        int low = 0;
+        int high = ops.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Gets the character at the given offset, with embeds as the object
+     * replacement character U+FFFC.
+     */
+    char charAt(int offset) {
+        int index = opIndexAt(offset);
+        if (index == ops.length) {
+            throw new IndexOutOfBoundsException(
+                    "Offset " + offset + " out of bounds");
+        }
+        String text = ops[index] instanceof Insert
+                ? ((Insert) ops[index]).getText()
+                : null;
+        return text == null ? '\uFFFC' : text.charAt(offset - offsets[index]);
+    }
+
+    /**
+     * Gets the part of this Delta between the given offsets.
+     *
+     * @param start
+     *            the start offset, inclusive
+     * @param end
+     *            the end offset, exclusive
+     * @return the slice, not {@code null}
+     * @throws IllegalArgumentException
+     *             if start is negative or greater than end
+     */
+    public Delta slice(int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException(
+                    "Invalid slice " + start + " - " + end);
+        }
+        end = Math.min(end, length());
+        if (start >= end) {
+            return EMPTY;
+        }
+        if (start == 0 && end == length()) {
+            return this;
+        }
+        int first = opIndexAt(start);
+        int last = opIndexAt(end - 1);
+        Op[] slice = Arrays.copyOfRange(ops, first, last + 1);
+        slice[slice.length - 1] = slice[slice.length - 1]
+                .slice(0, end - offsets[last]);
+        slice[0] = slice[0].slice(start - offsets[first],
+                Math.min(end, offsets[first + 1]) - offsets[first]);
+        return new Delta(slice);
+    }
+
+    /**
+     * Gets the part of this Delta from the given offset to the end.
+     *
+     * @param start
+     *            the start offset, inclusive
+     * @return the slice, not {@code null}
+     */
+    public Delta slice(int start) {
+        return slice(start, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends the operations of another Delta to this one.
+     *
+     * @param other
+     *            the Delta to append, not {@code null}
+     * @return the concatenated Delta, not {@code null}
+     */
+    public Delta concat(Delta other) {
+        Objects.requireNonNull(other, "The other Delta should not be null");
+        if (other.ops.length == 0) {
+            return this;
+        }
+        Builder builder = new Builder(this, ops.length);
+        builder.push(other.ops[0]);
+        builder.addAll(other.ops, 1, other.ops.length);
+        return builder.build();
+    }
+
+    /**
+     * Returns a Delta that has the effect of applying this Delta and then the
+     * other one. Applying a change to a document is composing the document
+     * with the change.
+     *
+     * @param other
+     *            the Delta to apply after this one, not {@code null}
+     * @return the composed Delta, not {@code null}
+     */
+    public Delta compose(Delta other) {
+        Objects.requireNonNull(other, "The other Delta should not be null");
+        OpIterator thisIter = new OpIterator(this);
+        OpIterator otherIter = new OpIterator(other);
+        Builder delta = new Builder();
+        while (thisIter.hasNext() || otherIter.hasNext()) {
+            Op otherPeek = otherIter.peek();
+            if (otherPeek instanceof Insert) {
+                delta.push(otherIter.next());
+            } else if (thisIter.peek() instanceof Delete) {
+                delta.push(thisIter.next());
+            } else if (!otherIter.hasNext()) {
+                // The rest of this Delta is unchanged
+                thisIter.copyRest(delta);
+            } else if (document && thisIter.hasNext()
+                    && otherPeek instanceof Retain
+                    && otherPeek.attributes.isEmpty()) {
+                // Copies the retained part of the document as it is
+                otherIter.next(thisIter.copyTo(delta, otherIter.peekLength()));
+            } else {
+                int length = Math.min(thisIter.peekLength(),
+                        otherIter.peekLength());
+                Op thisOp = thisIter.next(length);
+                Op otherOp = otherIter.next(length);
+                if (otherOp instanceof Retain) {
+                    boolean retained = thisOp instanceof Retain;
+                    Map<String, Object> attributes = composeAttributes(
+                            thisOp.attributes, otherOp.attributes, retained);
+                    delta.push(retained ? new Retain(length, attributes)
+                            : thisOp.withAttributes(attributes));
+                } else if (otherOp instanceof Delete
+                        && thisOp instanceof Retain) {
+                    delta.push(otherOp);
+                }
+            }
+        }
+        return delta.chop().build();
+    }
+
+    /**
+     * Transforms the other Delta against this one, so that it can be applied
+     * after this Delta although both were made on the same document.
+     *
+     * @param other
+     *            the Delta to transform, not {@code null}
+     * @param priority
+     *            {@code true} if this Delta happened first, which decides
+     *            the order of inserts at the same position
+     * @return the transformed Delta, not {@code null}
+     */
+    public Delta transform(Delta other, boolean priority) {
+        Objects.requireNonNull(other, "The other Delta should not be null");
+        OpIterator thisIter = new OpIterator(this);
+        OpIterator otherIter = new OpIterator(other);
+        Builder delta = new Builder();
+        while (thisIter.hasNext() || otherIter.hasNext()) {
+            if (thisIter.peek() instanceof Insert
+                    && (priority || !(otherIter.peek() instanceof Insert))) {
+                delta.retain(thisIter.next().length());
+            } else if (otherIter.peek() instanceof Insert) {
+                delta.push(otherIter.next());
+            } else {
+                int length = Math.min(thisIter.peekLength(),
+                        otherIter.peekLength());
+                Op thisOp = thisIter.next(length);
+                Op otherOp = otherIter.next(length);
+                if (thisOp instanceof Delete) {
+                    // Our delete makes their delete redundant or removes
+                    // their retain
+                    continue;
+                } else if (otherOp instanceof Delete) {
+                    delta.push(otherOp);
+                } else {
+                    delta.retain(length, transformAttributes(
+                            thisOp.attributes, otherOp.attributes, priority));
+                }
+            }
+        }
+        return delta.chop().build();
+    }
+
+    /**
+     * Transforms a position, such as a cursor position, against this Delta.
+     *
+     * @param index
+     *            the position in the document before this Delta
+     * @param priority
+     *            {@code true} if this Delta should be considered to have
+     *            happened first, which keeps the position before inserts at
+     *            the same position
+     * @return the position in the document after this Delta
+     */
+    public int transformPosition(int index, boolean priority) {
+        int offset = 0;
+        for (int i = 0; i < ops.length && offset <= index; i++) {
+            Op op = ops[i];
+            int length = op.length();
+            if (op instanceof Delete) {
+                index -= Math.min(length, index - offset);
+                continue;
+            } else if (op instanceof Insert && (offset < index || !priority)) {
+                index += length;
+            }
+            offset += length;
+        }
+        return index;
+    }
+
+    /**
+     * Returns a Delta that undoes this change when applied to the document
+     * this change was applied to.
+     *
+     * @param base
+     *            the document before this change, not {@code null}
+     * @return the inverted Delta, not {@code null}
+     */
+    public Delta invert(Delta base) {
+        Objects.requireNonNull(base, "The base Delta should not be null");
+        Builder inverted = new Builder();
+        int baseIndex = 0;
+        for (Op op : ops) {
+            if (op instanceof Insert) {
+                inverted.delete(op.length());
+            } else if (op instanceof Retain && op.attributes.isEmpty()) {
+                inverted.retain(op.length());
+                baseIndex += op.length();
+            } else {
+                int length = op.length();
+                for (Op baseOp : base.slice(baseIndex, baseIndex + length).ops) {
+                    if (op instanceof Delete) {
+                        inverted.push(baseOp);
+                    } else {
+                        inverted.retain(baseOp.length(), invertAttributes(
+                                op.attributes, baseOp.attributes));
+                    }
+                }
+                baseIndex += length;
+            }
+        }
+        return inverted.chop().build();
+    }
+
+    /**
+     * Converts this Delta to the value format of {@link RichTextEditor}, a
+     * JSON array of operations.
+     *
+     * @return the value, not {@code null}
+     * @see RichTextEditor#setValue(String)
+     */
+    public String toValue() {
+        JsonArray array = Json.createArray();
+        for (Op op : ops) {
+            array.set(array.length(), op.toJson());
+        }
+        return array.toJson();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Delta && Arrays.equals(ops, ((Delta) obj).ops);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ops);
+    }
+
+    @Override
+    public String toString() {
+        return toValue();
+    }
+
+    private static Map<String, Object> composeAttributes(
+            Map<String, Object> a, Map<String, Object> b, boolean keepNull) {
+        Map<String, Object> attributes = new LinkedHashMap<>(b);
+        if (!keepNull) {
+            attributes.values().removeIf(Objects::isNull);
+        }
+        a.forEach((key, value) -> {
+            if (!b.containsKey(key)) {
+                attributes.put(key, value);
+            }
+        });
+        return attributes;
+    }
+
+    private static Map<String, Object> transformAttributes(
+            Map<String, Object> a, Map<String, Object> b, boolean priority) {
+        if (!priority) {
+            return b;
+        }
+        Map<String, Object> attributes = new LinkedHashMap<>(b);
+        attributes.keySet().removeAll(a.keySet());
+        return attributes;
+    }
+
+    private static Map<String, Object> invertAttributes(
+            Map<String, Object> attributes, Map<String, Object> base) {
+        Map<String, Object> inverted = new LinkedHashMap<>();
+        base.forEach((key, value) -> {
+            if (attributes.containsKey(key)
+                    && !Objects.equals(value, attributes.get(key))) {
+                inverted.put(key, value);
+            }
+        });
+        attributes.forEach((key, value) -> {
+            if (!base.containsKey(key)) {
+                inverted.put(key, null);
+            }
+        });
+        return inverted;
+    }
+
+    private static Map<String, Object> toMap(JsonObject json) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (String key : json.keys()) {
+            map.put(key, toJava(json.get(key)));
+        }
+        return map;
+    }
+
+    private static Object toJava(JsonValue json) {
+        switch (json.getType()) {
+        case STRING:
+            return json.asString();
+        case BOOLEAN:
+            return json.asBoolean();
+        case NUMBER:
+            return json.asNumber();
+        case OBJECT:
+            return toMap((JsonObject) json);
+        case ARRAY:
+            JsonArray array = (JsonArray) json;
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < array.length(); i++) {
+                list.add(toJava(array.get(i)));
+            }
+            return list;
+        default:
+            return null;
+        }
+    }
+
+    private static JsonValue toJson(Object value) {
+        if (value == null) {
+            return Json.createNull();
+        } else if (value instanceof String) {
+            return Json.create((String) value);
+        } else if (value instanceof Boolean) {
+            return Json.create((Boolean) value);
+        } else if (value instanceof Number) {
+            return Json.create(((Number) value).doubleValue());
+        } else if (value instanceof Map) {
+            JsonObject object = Json.createObject();
+            ((Map<?, ?>) value).forEach((key, item) -> object
+                    .put(String.valueOf(key), toJson(item)));
+            return object;
+        } else if (value instanceof List) {
+            JsonArray array = Json.createArray();
+            for (Object item : (List<?>) value) {
+                array.set(array.length(), toJson(item));
+            }
+            return array;
+        }
+        throw new IllegalArgumentException(
+                "Unsupported value type " + value.getClass().getName());
+    }
+
+    /*
+     * Copies maps and lists into unmodifiable ones, and represents integral
+     * numbers as Integer and other numbers as Double, so that equal values
+     * parsed from JSON and given in code are equal.
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number == Math.rint(number) && Math.abs(number) <= Integer.MAX_VALUE
+                    ? (Object) (int) number
+                    : (Object) number;
+        } else if (value instanceof Map) {
+            return normalizeMap((Map<?, ?>) value);
+        } else if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<?>) value) {
+                list.add(normalize(item));
+            }
+            return Collections.unmodifiableList(list);
+        } else if (value == null || value instanceof String
+                || value instanceof Boolean) {
+            return value;
+        }
+        throw new IllegalArgumentException(
+                "Unsupported value type " + value.getClass().getName());
+    }
+
+    private static Map<String, Object> normalizeMap(Map<?, ?> map) {
+        if (map == null || map.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Object> normalized = new LinkedHashMap<>();
+        map.forEach((key, value) -> normalized.put(
+                Objects.requireNonNull(key, "Keys should not be null")
+                        .toString(),
+                normalize(value)));
+        return Collections.unmodifiableMap(normalized);
+    }
+
+    /**
+     * An operation of a {@link Delta}.
+     */
+    public abstract static class Op implements Serializable {
+        private final Map<String, Object> attributes;
+
+        private Op(Map<String, ?> attributes) {
+            this.attributes = normalizeMap(attributes);
+        }
+
+        /**
+         * Gets the formatting attributes of this operation.
+         *
+         * @return an unmodifiable map of the attributes, empty if there are
+         *         none
+         */
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * Gets the length of this operation.
+         *
+         * @return the length
+         */
+        public abstract int length();
+
+        abstract Op slice(int start, int end);
+
+        abstract Op withAttributes(Map<String, Object> attributes);
+
+        abstract Op withLength(int length);
+
+        JsonObject toJson() {
+            JsonObject json = Json.createObject();
+            putContent(json);
+            if (!attributes.isEmpty()) {
+                json.put("attributes", Delta.toJson(attributes));
+            }
+            return json;
+        }
+
+        abstract void putContent(JsonObject json);
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj != null && obj.getClass() == getClass()
+                    && attributes.equals(((Op) obj).attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return attributes.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return toJson().toJson();
+        }
+    }
+
+    /**
+     * An operation inserting text or an embed, such as an image.
+     */
+    public static final class Insert extends Op {
+        private final String text;
+        private final Map<String, Object> embed;
+
+        private Insert(String text, Map<String, ?> embed,
+                Map<String, ?> attributes) {
+            super(attributes);
+            this.text = text;
+            this.embed = text == null ? normalizeMap(embed) : null;
+        }
+
+        /**
+         * Gets the inserted text.
+         *
+         * @return the text, or {@code null} if this is an embed
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Gets the inserted embed, for example {@code image} with the image
+         * URL as the value.
+         *
+         * @return an unmodifiable map with the embed type and value, or
+         *         {@code null} if this is a text insert
+         */
+        public Map<String, Object> getEmbed() {
+            return embed;
+        }
+
+        /**
+         * Checks whether this operation inserts an embed instead of text.
+         *
+         * @return {@code true} if this is an embed
+         */
+        public boolean isEmbed() {
+            return text == null;
+        }
+
+        @Override
+        public int length() {
+            return text == null ? 1 : text.length();
+        }
+
+        @Override
+        Op slice(int start, int end) {
+            if (text == null || (start == 0 && end >= text.length())) {
+                return this;
+            }
+            return new Insert(text.substring(start, end), null,
+                    getAttributes());
+        }
+
+        @Override
+        Op withAttributes(Map<String, Object> attributes) {
+            return attributes.equals(getAttributes()) ? this
+                    : new Insert(text, embed, attributes);
+        }
+
+        @Override
+        Op withLength(int length) {
+            return slice(0, length);
+        }
+
+        @Override
+        void putContent(JsonObject json) {
+            json.put("insert", text != null ? Json.create(text)
+                    : Delta.toJson(embed));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj)
+                    && Objects.equals(text, ((Insert) obj).text)
+                    && Objects.equals(embed, ((Insert) obj).embed);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), text, embed);
+        }
+    }
+
+    /**
+     * An operation keeping content of the document, optionally changing its
+     * formatting.
+     */
+    public static final class Retain extends Op {
+        private final int length;
+
+        private Retain(int length, Map<String, ?> attributes) {
+            super(attributes);
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        Op slice(int start, int end) {
+            return withLength(Math.min(end, length) - start);
+        }
+
+        @Override
+        Op withAttributes(Map<String, Object> attributes) {
+            return new Retain(length, attributes);
+        }
+
+        @Override
+        Op withLength(int length) {
+            return length == this.length ? this
+                    : new Retain(length, getAttributes());
+        }
+
+        @Override
+        void putContent(JsonObject json) {
+            json.put("retain", length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && length == ((Retain) obj).length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + length;
+        }
+    }
+
+    /**
+     * An operation removing content of the document.
+     */
+    public static final class Delete extends Op {
+        private final int length;
+
+        private Delete(int length) {
+            super(null);
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        Op slice(int start, int end) {
+            return withLength(Math.min(end, length) - start);
+        }
+
+        @Override
+        Op withAttributes(Map<String, Object> attributes) {
+            return this;
+        }
+
+        @Override
+        Op withLength(int length) {
+            return length == this.length ? this : new Delete(length);
+        }
+
+        @Override
+        void putContent(JsonObject json) {
+            json.put("delete", length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && length == ((Delete) obj).length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + length;
+        }
+    }
+
+    /**
+     * Builds a {@link Delta} operation by operation. Like in Quill, adjacent
+     * operations of the same kind and with the same attributes are merged,
+     * and inserts are placed before an adjacent delete.
+     */
+    public static final class Builder implements Serializable {
+        private final List<Op> ops;
+
+        private Builder() {
+            ops = new ArrayList<>();
+        }
+
+        private Builder(Delta delta, int count) {
+            ops = new ArrayList<>(Arrays.asList(delta.ops).subList(0, count));
+        }
+
+        /**
+         * Adds a text insert.
+         *
+         * @param text
+         *            the text to insert, not {@code null}
+         * @return this builder
+         */
+        public Builder insert(String text) {
+            return insert(text, null);
+        }
+
+        /**
+         * Adds a formatted text insert.
+         *
+         * @param text
+         *            the text to insert, not {@code null}
+         * @param attributes
+         *            the formatting attributes, or {@code null} for none
+         * @return this builder
+         */
+        public Builder insert(String text, Map<String, ?> attributes) {
+            Objects.requireNonNull(text, "The text should not be null");
+            if (!text.isEmpty()) {
+                push(new Insert(text, null, attributes));
+            }
+            return this;
+        }
+
+        /**
+         * Adds an embed insert, for example {@code insertEmbed("image", url)}.
+         *
+         * @param type
+         *            the embed type, not {@code null}
+         * @param value
+         *            the embed value
+         * @param attributes
+         *            the formatting attributes, or {@code null} for none
+         * @return this builder
+         */
+        public Builder insertEmbed(String type, Object value,
+                Map<String, ?> attributes) {
+            Objects.requireNonNull(type, "The embed type should not be null");
+            push(new Insert(null, Collections.singletonMap(type, value),
+                    attributes));
+            return this;
+        }
+
+        /**
+         * Adds a retain.
+         *
+         * @param length
+         *            the number of characters to keep
+         * @return this builder
+         */
+        public Builder retain(int length) {
+            return retain(length, null);
+        }
+
+        /**
+         * Adds a retain changing the formatting of the retained content.
+         *
+         * @param length
+         *            the number of characters to keep
+         * @param attributes
+         *            the attributes to set, with {@code null} values for
+         *            attributes to remove, or {@code null} for none
+         * @return this builder
+         */
+        public Builder retain(int length, Map<String, ?> attributes) {
+            checkLength(length);
+            if (length > 0) {
+                push(new Retain(length, attributes));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a delete.
+         *
+         * @param length
+         *            the number of characters to delete
+         * @return this builder
+         */
+        public Builder delete(int length) {
+            checkLength(length);
+            if (length > 0) {
+                push(new Delete(length));
+            }
+            return this;
+        }
+
+        private static void checkLength(int length) {
+            if (length < 0) {
+                throw new IllegalArgumentException(
+                        "The length should not be negative");
+            }
+        }
+
+        /**
+         * Adds an operation, merging it with the previous one if possible.
+         *
+         * @param op
+         *            the operation to add, not {@code null}
+         * @return this builder
+         * @throws IllegalArgumentException
+         *             if merging would make the length exceed
+         *             {@link Integer#MAX_VALUE}
+         */
+        public Builder push(Op op) {
+            Objects.requireNonNull(op, "The operation should not be null");
+            if (op.length() == 0) {
+                return this;
+            }
+            int index = ops.size();
+            Op last = index > 0 ? ops.get(index - 1) : null;
+            if (op instanceof Delete && last instanceof Delete) {
+                ops.set(index - 1, new Delete(
+                        addLengths(last.length(), op.length())));
+                return this;
+            }
+            if (op instanceof Insert && last instanceof Delete) {
+                index--;
+                last = index > 0 ? ops.get(index - 1) : null;
+            }
+            if (last != null && last.attributes.equals(op.attributes)) {
+                if (op instanceof Insert && last instanceof Insert
+                        && !((Insert) op).isEmbed()
+                        && !((Insert) last).isEmbed()) {
+                    ops.set(index - 1, new Insert(
+                            ((Insert) last).text + ((Insert) op).text, null,
+                            last.attributes));
+                    return this;
+                } else if (op instanceof Retain && last instanceof Retain) {
+                    ops.set(index - 1,
+                            new Retain(addLengths(last.length(), op.length()),
+                                    last.attributes));
+                    return this;
+                }
+            }
+            ops.add(index, op);
+            return this;
+        }
+
+        private void addAll(Op[] source, int from, int to) {
+            ops.addAll(Arrays.asList(source).subList(from, to));
+        }
+
+        /*
+         * Removes a trailing retain without attributes, as it has no effect.
+         */
+        private Builder chop() {
+            if (!ops.isEmpty()) {
+                Op last = ops.get(ops.size() - 1);
+                if (last instanceof Retain && last.attributes.isEmpty()) {
+                    ops.remove(ops.size() - 1);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Builds the Delta.
+         *
+         * @return the Delta, not {@code null}
+         */
+        public Delta build() {
+            return ops.isEmpty() ? EMPTY : new Delta(ops.toArray(new Op[0]));
+        }
+    }
+
+    /*
+     * Iterates over the operations of a Delta, splitting them when less than
+     * the whole operation is requested. Past the end it behaves as an
+     * infinite retain, like Quill's iterator.
+     */
+    private static final class OpIterator implements Serializable {
+        private final Delta delta;
+        private int index;
+        private int offset;
+
+        private OpIterator(Delta delta) {
+            this.delta = delta;
+        }
+
+        private boolean hasNext() {
+            return index < delta.ops.length;
+        }
+
+        private Op peek() {
+            return hasNext() ? delta.ops[index] : null;
+        }
+
+        private int peekLength() {
+            return hasNext() ? delta.ops[index].length() - offset
+                    : Integer.MAX_VALUE;
+        }
+
+        private Op next() {
+            return next(Integer.MAX_VALUE);
+        }
+
+        private Op next(int length) {
+            if (!hasNext()) {
+                return new Retain(length, null);
+            }
+            Op op = delta.ops[index];
+            int remaining = op.length() - offset;
+            Op result;
+            if (length >= remaining) {
+                result = offset == 0 ? op : op.slice(offset, op.length());
+                index++;
+                offset = 0;
+            } else {
+                result = op.slice(offset, offset + length);
+                offset += length;
+            }
+            return result;
+        }
+
+        private void copyRest(Builder builder) {
+            if (offset > 0) {
+                builder.push(next());
+            }
+            if (hasNext()) {
+                builder.push(delta.ops[index]);
+                builder.addAll(delta.ops, index + 1, delta.ops.length);
+                index = delta.ops.length;
+            }
+        }
+
+        /*
+         * Copies up to the given length of document operations to the
+         * builder, whole operations in bulk. Returns the copied length.
+         */
+        private int copyTo(Builder builder, int length) {
+            if (!hasNext()) {
+                return 0;
+            }
+            int consumed = 0;
+            if (offset > 0) {
+                Op first = next(length);
+                consumed += first.length();
+                builder.push(first);
+            }
+            if (consumed < length && hasNext()) {
+                int start = index;
+                int position = delta.offsets[index];
+                long endPosition = (long) position + length - consumed;
+                int end = endPosition >= delta.length() ? delta.ops.length
+                        : delta.opIndexAt((int) endPosition);
+                if (end > start) {
+                    builder.push(delta.ops[start]);
+                    builder.addAll(delta.ops, start + 1, end);
+                    consumed += delta.offsets[end] - position;
+                    index = end;
+                }
+            }
+            if (consumed < length && hasNext()) {
+                Op last = next(length - consumed);
+                consumed += last.length();
+                builder.push(last);
+            }
+            return consumed;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import elemental.json.JsonArray;
+import elemental.json.JsonType;
+
+/**
+ * Renders a rich text editor value in
+ * <a href="https://github.com/quilljs/delta">Delta</a> format as HTML on the
+ * server side.
+ * <p>
+ * The output matches the {@code htmlValue} property produced by the
+ * {@code <vaadin-rich-text-editor>} web component for the formats available
+ * in the editor: headers, lists, block quotes, code blocks, text alignment,
+ * bold, italic, underline, strike-through, sub- and superscript, inline code,
+ * links and images. Unknown formats are ignored.
+ * <p>
+ * The renderer is stateless and thread-safe.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setHtmlValueMode(HtmlValueMode)
+ */
+public final class DeltaHtmlRenderer implements Serializable {
+
+    // Inline formats from the outermost to the innermost element, as Quill
+    // nests them
+    private static final List<String> INLINE_FORMATS = Collections
+            .unmodifiableList(Arrays.asList("code", "link", "script", "bold",
+                    "italic", "strike", "underline"));
+    private static final List<String> HEADERS = Collections
+            .unmodifiableList(Arrays.asList("1", "2", "3", "4", "5", "6"));
+    private static final List<String> ALIGNMENTS = Collections
+            .unmodifiableList(Arrays.asList("right", "center", "justify"));
+    private static final List<String> LINK_PROTOCOLS = Collections
+            .unmodifiableList(Arrays.asList("http", "https", "mailto", "tel"));
+    private static final List<String> IMAGE_PROTOCOLS = Collections
+            .unmodifiableList(Arrays.asList("http", "https", "data"));
+    private static final Pattern PROTOCOL = Pattern
+            .compile("^\\s*([a-zA-Z][a-zA-Z0-9+.\\-]*):");
+
+    /**
+     * Renders the given Delta as HTML.
+     *
+     * @param delta
+     *            the Delta as a JSON array of operations or as a JSON object
+     *            with an {@code ops} array, an empty string or {@code null}
+     *            for an empty document
+     * @return the HTML, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     */
+    public String render(String delta) {
+        // Read with a DeltaReader, without building a JSON tree
+        return render(toLines(new DeltaReader(delta == null ? "" : delta)));
+    }
+
+    /**
+     * Renders the given Delta operations as HTML. Only insert operations are
+     * rendered, as a document does not contain other operations.
+     *
+     * @param ops
+     *            the Delta operations, not {@code null}
+     * @return the HTML, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the operations are not a Delta
+     */
+    public String render(JsonArray ops) {
+        Objects.requireNonNull(ops, "The operations should not be null");
+        return render(ops.toJson());
+    }
+
+    private static String render(List<Line> lines) {
+        StringBuilder html = new StringBuilder();
+        int index = 0;
+        while (index < lines.size()) {
+            Line line = lines.get(index);
+            if (line.is("code-block")) {
+                index = renderCodeBlock(lines, index, html);
+            } else if (line.is("list")) {
+                index = renderList(lines, index, html);
+            } else {
+                String tag = "p";
+                if (HEADERS.contains(line.getString("header"))) {
+                    tag = "h" + line.getString("header");
+                } else if (line.is("blockquote")) {
+                    tag = "blockquote";
+                }
+                renderLine(line, tag, html);
+                index++;
+            }
+        }
+        return html.toString();
+    }
+
+    private static List<Line> toLines(DeltaReader reader) {
+        List<Line> lines = new ArrayList<>();
+        Line line = new Line();
+        while (reader.next()) {
+            if (reader.getType() == DeltaReader.Type.EMBED) {
+                CharSequence value = reader.getEmbedValue();
+                line.runs.add(new Run(null,
+                        reader.getEmbedType().toString(),
+                        value == null ? null : value.toString(),
+                        toFormats(reader)));
+                continue;
+            } else if (reader.getType() != DeltaReader.Type.INSERT) {
+                continue;
+            }
+            Map<String, String> formats = toFormats(reader);
+            String text = reader.getText().toString();
+            int start = 0;
+            int newline;
+            while ((newline = text.indexOf('\n', start)) >= 0) {
+                if (newline > start) {
+                    line.runs.add(new Run(text.substring(start, newline),
+                            null, null, formats));
+                }
+                line.formats = formats;
+                lines.add(line);
+                line = new Line();
+                start = newline + 1;
+            }
+            if (start < text.length()) {
+                line.runs.add(
+                        new Run(text.substring(start), null, null, formats));
+            }
+        }
+        // Like in the editor, a document always ends with a line break
+        if (!line.runs.isEmpty() || lines.isEmpty()) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /*
+     * The attributes of the current operation as format values, without the
+     * attributes that are null or false, as they do not format the content.
+     */
+    private static Map<String, String> toFormats(DeltaReader reader) {
+        int count = reader.getAttributeCount();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> formats = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String value = asString(reader.getAttributeValue(i),
+                    reader.getAttributeType(i));
+            if (value != null) {
+                formats.put(reader.getAttributeName(i).toString(), value);
+            }
+        }
+        return formats;
+    }
+
+    private static int renderCodeBlock(List<Line> lines, int start,
+            StringBuilder html) {
+        // Consecutive code lines are merged and only contain plain text
+        html.append("<pre spellcheck=\"false\"");
+        renderAlignment(lines.get(start), html);
+        html.append('>');
+        int index = start;
+        while (index < lines.size() && lines.get(index).is("code-block")) {
+            for (Run run : lines.get(index).runs) {
+                if (run.text != null) {
+                    escape(run.text, false, html);
+                }
+            }
+            html.append('\n');
+            index++;
+        }
+        html.append("</pre>");
+        return index;
+    }
+
+    private static int renderList(List<Line> lines, int start,
+            StringBuilder html) {
+        String type = lines.get(start).getString("list");
+        html.append("ordered".equals(type) ? "<ol" : "<ul");
+        if ("checked".equals(type) || "unchecked".equals(type)) {
+            html.append(" data-checked=\"").append("checked".equals(type))
+                    .append('"');
+        }
+        html.append('>');
+        int index = start;
+        while (index < lines.size()
+                && type.equals(lines.get(index).getString("list"))) {
+            renderLine(lines.get(index), "li", html);
+            index++;
+        }
+        html.append("ordered".equals(type) ? "</ol>" : "</ul>");
+        return index;
+    }
+
+    private static void renderLine(Line line, String tag, StringBuilder html) {
+        html.append('<').append(tag);
+        renderAlignment(line, html);
+        html.append('>');
+        if (line.runs.isEmpty()) {
+            html.append("<br>");
+        } else {
+            renderInline(line.runs, 0, html);
+        }
+        html.append("</").append(tag).append('>');
+    }
+
+    private static void renderAlignment(Line line, StringBuilder html) {
+        String align = line.getString("align");
+        if (ALIGNMENTS.contains(align)) {
+            html.append(" style=\"text-align: ").append(align).append('"');
+        }
+    }
+
+    /*
+     * Adjacent runs sharing a format value are rendered inside a single
+     * element, like Quill merges adjacent inline elements with equal formats.
+     */
+    private static void renderInline(List<Run> runs, int level,
+            StringBuilder html) {
+        if (level == INLINE_FORMATS.size()) {
+            runs.forEach(run -> renderLeaf(run, html));
+            return;
+        }
+        String format = INLINE_FORMATS.get(level);
+        int start = 0;
+        while (start < runs.size()) {
+            String value = runs.get(start).getFormat(format);
+            int end = start + 1;
+            while (end < runs.size()
+                    && Objects.equals(value, runs.get(end).getFormat(format))) {
+                end++;
+            }
+            List<Run> group = runs.subList(start, end);
+            String tag = openInline(format, value, html);
+            renderInline(group, level + 1, html);
+            if (tag != null) {
+                html.append("</").append(tag).append('>');
+            }
+            start = end;
+        }
+    }
+
+    private static String openInline(String format, String value,
+            StringBuilder html) {
+        if (value == null) {
+            return null;
+        }
+        String tag;
+        switch (format) {
+        case "link":
+            html.append("<a href=\"");
+            escape(sanitizeUrl(value, LINK_PROTOCOLS, "about:blank"), true,
+                    html);
+            html.append("\" rel=\"noopener noreferrer\" target=\"_blank\">");
+            return "a";
+        case "script":
+            if ("sub".equals(value)) {
+                tag = "sub";
+            } else if ("super".equals(value)) {
+                tag = "sup";
+            } else {
+                return null;
+            }
+            break;
+        case "code":
+            tag = "code";
+            break;
+        case "bold":
+            tag = "strong";
+            break;
+        case "italic":
+            tag = "em";
+            break;
+        case "strike":
+            tag = "s";
+            break;
+        default:
+            tag = "u";
+            break;
+        }
+        html.append('<').append(tag).append('>');
+        return tag;
+    }
+
+    private static void renderLeaf(Run run, StringBuilder html) {
+        if (run.text != null) {
+            escape(run.text, false, html);
+        } else if ("image".equals(run.embedType) && run.embedValue != null) {
+            html.append("<img src=\"");
+            escape(sanitizeUrl(run.embedValue, IMAGE_PROTOCOLS, "//:0"), true,
+                    html);
+            html.append('"');
+            for (String attribute : Arrays.asList("alt", "height", "width")) {
+                String value = run.getFormat(attribute);
+                if (value != null) {
+                    html.append(' ').append(attribute).append("=\"");
+                    escape(value, true, html);
+                    html.append('"');
+                }
+            }
+            html.append('>');
+        }
+    }
+
+    private static String sanitizeUrl(String url, List<String> protocols,
+            String fallback) {
+        Matcher matcher = PROTOCOL.matcher(url);
+        if (matcher.find() && !protocols
+                .contains(matcher.group(1).toLowerCase(Locale.ENGLISH))) {
+            return fallback;
+        }
+        return url;
+    }
+
+    private static void escape(String text, boolean inAttribute,
+            StringBuilder html) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&':
+                html.append("&amp;");
+                break;
+            case '\u00A0':
+                html.append("&nbsp;");
+                break;
+            case '"':
+                html.append(inAttribute ? "&quot;" : "\"");
+                break;
+            case '<':
+                html.append(inAttribute ? "<" : "&lt;");
+                break;
+            case '>':
+                html.append(inAttribute ? ">" : "&gt;");
+                break;
+            default:
+                html.append(c);
+            }
+        }
+    }
+
+    private static String asString(CharSequence value, JsonType type) {
+        if (value == null || (type == JsonType.BOOLEAN
+                && !"true".contentEquals(value))) {
+            return null;
+        } else if (type == JsonType.NUMBER) {
+            double number = Double.parseDouble(value.toString());
+            return number == Math.rint(number) ? Long.toString((long) number)
+                    : Double.toString(number);
+        }
+        return value.toString();
+    }
+
+    private static final class Line implements Serializable {
+        private final List<Run> runs = new ArrayList<>();
+        private Map<String, String> formats = Collections.emptyMap();
+
+        private boolean is(String format) {
+            return getString(format) != null;
+        }
+
+        private String getString(String format) {
+            return formats.get(format);
+        }
+    }
+
+    private static final class Run implements Serializable {
+        private final String text;
+        private final String embedType;
+        private final String embedValue;
+        private final Map<String, String> formats;
+
+        private Run(String text, String embedType, String embedValue,
+                Map<String, String> formats) {
+            this.text = text;
+            this.embedType = embedType;
+            this.embedValue = embedValue;
+            this.formats = formats;
+        }
+
+        private String getFormat(String format) {
+            return formats.get(format);
+        }
+    }
+}
@@ -0,0 +1,923 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+import elemental.json.JsonType;
+
+/**
+ * A pull parser reading the operations of a
+ * <a href="https://github.com/quilljs/delta">Delta</a> in the value format of
+ * {@link RichTextEditor} one at a time, straight from the characters of the
+ * value.
+ * <p>
+ * Unlike {@link Delta#parse(String)}, the reader does not build a tree of
+ * JSON or Java objects. Texts, embeds and attributes of the current operation
+ * are exposed as {@link CharSequence} views of the value, which are reused
+ * and only valid until the next call of {@link #next()}. Views of JSON
+ * strings without escape sequences do not copy any characters at all, and
+ * can be compared without allocation with
+ * {@link String#contentEquals(CharSequence)}. Call {@code toString()} on a
+ * view to keep it.
+ * <p>
+ * <pre>
+ * DeltaReader reader = new DeltaReader(rte.getValue());
+ * while (reader.next()) {
+ *     if (reader.getType() == DeltaReader.Type.INSERT
+ *             &amp;&amp; reader.hasAttribute("link")) {
+ *         checkLink(reader.getAttribute("link"));
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * Alternatively, the operations can be handled by a {@link DeltaVisitor}
+ * with {@link #accept(DeltaVisitor)}. JSON values in attributes and embeds
+ * may be nested at most 64 levels deep. A reader is not thread-safe.
+ *
+ * @author Vaadin Ltd
+ * @see Delta
+ */
+public final class DeltaReader implements Serializable {
+
+    /**
+     * The type of a Delta operation.
+     */
+    public enum Type {
+        /**
+         * Inserts text.
+         */
+        INSERT,
+
+        /**
+         * Inserts an embed, such as an image.
+         */
+        EMBED,
+
+        /**
+         * Retains content, optionally changing its attributes.
+         */
+        RETAIN,
+
+        /**
+         * Deletes content.
+         */
+        DELETE
+    }
+
+    // The maximum nesting of the JSON values of attributes and embeds
+    static final int MAX_NESTING_DEPTH = 64;
+
+    private static final int START = 0;
+    private static final int OPS = 1;
+    private static final int END = 2;
+
+    private final CharSequence value;
+    private int position;
+    private int state = START;
+    // Whether the operations are in the ops array of an object
+    private boolean opsObject;
+    private int opIndex = -1;
+
+    private Type type;
+    private int length;
+    private final Slice text = new Slice();
+    private final Slice embedType = new Slice();
+    private final Slice embedValue = new Slice();
+    private final Slice key = new Slice();
+    private Slice[] attributeNames = new Slice[0];
+    private Slice[] attributeValues = new Slice[0];
+    private int attributeCount;
+
+    /**
+     * Creates a reader for the given value.
+     *
+     * @param value
+     *            the JSON array of operations, or a JSON object with an
+     *            {@code ops} array; an empty or blank value has no
+     *            operations
+     */
+    public DeltaReader(CharSequence value) {
+        this.value = Objects.requireNonNull(value,
+                "The value should not be null");
+    }
+
+    /**
+     * Reads the next operation.
+     *
+     * @return {@code true} if an operation was read, {@code false} if there
+     *         are no more operations
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     */
+    public boolean next() {
+        if (state == START) {
+            start();
+        }
+        if (state == END) {
+            type = null;
+            return false;
+        }
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            end();
+            type = null;
+            return false;
+        }
+        if (opIndex >= 0) {
+            expect(',');
+        }
+        opIndex++;
+        readOp();
+        return true;
+    }
+
+    /**
+     * Reads all remaining operations and passes them to the given visitor.
+     *
+     * @param visitor
+     *            the visitor, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     */
+    public void accept(DeltaVisitor visitor) {
+        Objects.requireNonNull(visitor, "The visitor should not be null");
+        while (next()) {
+            switch (type) {
+            case INSERT:
+                visitor.insert(text, this);
+                break;
+            case EMBED:
+                visitor.insertEmbed(embedType, getEmbedValue(), this);
+                break;
+            case RETAIN:
+                visitor.retain(length, this);
+                break;
+            default:
+                visitor.delete(length, this);
+            }
+        }
+    }
+
+    /**
+     * Gets the type of the current operation.
+     *
+     * @return the operation type, or {@code null} if there is no current
+     *         operation
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the index of the current operation.
+     *
+     * @return the index of the operation, {@code -1} before the first one
+     */
+    public int getIndex() {
+        return opIndex;
+    }
+
+    /**
+     * Gets the length of the current operation, as in {@link Delta.Op#length()}.
+     *
+     * @return the length of the operation
+     */
+    public int getLength() {
+        checkCurrent();
+        return type == Type.INSERT ? text.length() : length;
+    }
+
+    /**
+     * Gets the inserted text of the current operation.
+     *
+     * @return the text, or {@code null} if the operation is not a text insert
+     */
+    public CharSequence getText() {
+        return type == Type.INSERT ? text : null;
+    }
+
+    /**
+     * Gets the type of the embed inserted by the current operation, e.g.
+     * {@code image}.
+     *
+     * @return the embed type, or {@code null} if the operation is not an
+     *         embed insert
+     */
+    public CharSequence getEmbedType() {
+        return type == Type.EMBED ? embedType : null;
+    }
+
+    /**
+     * Gets the value of the embed inserted by the current operation, e.g.
+     * the URL of an image. A string value is unescaped, other values are
+     * given as JSON.
+     *
+     * @return the embed value, or {@code null} if the operation is not an
+     *         embed insert or the value is JSON {@code null}
+     * @see #getEmbedValueType()
+     */
+    public CharSequence getEmbedValue() {
+        return type == Type.EMBED ? embedValue.get() : null;
+    }
+
+    /**
+     * Gets the JSON type of the value of the embed inserted by the current
+     * operation.
+     *
+     * @return the type of the embed value, or {@code null} if the operation
+     *         is not an embed insert
+     */
+    public JsonType getEmbedValueType() {
+        return type == Type.EMBED ? embedValue.jsonType : null;
+    }
+
+    /**
+     * Gets the number of attributes of the current operation.
+     *
+     * @return the number of attributes
+     */
+    public int getAttributeCount() {
+        checkCurrent();
+        return attributeCount;
+    }
+
+    /**
+     * Gets the name of an attribute of the current operation.
+     *
+     * @param index
+     *            the index of the attribute, from {@code 0} to
+     *            {@link #getAttributeCount()} exclusive
+     * @return the name of the attribute, not {@code null}
+     */
+    public CharSequence getAttributeName(int index) {
+        checkAttributeIndex(index);
+        return attributeNames[index];
+    }
+
+    /**
+     * Gets the value of an attribute of the current operation. A string
+     * value is unescaped, other values are given as JSON, e.g. {@code true}
+     * for a boolean.
+     *
+     * @param index
+     *            the index of the attribute, from {@code 0} to
+     *            {@link #getAttributeCount()} exclusive
+     * @return the value of the attribute, or {@code null} if the value is
+     *         JSON {@code null}
+     * @see #getAttributeType(int)
+     */
+    public CharSequence getAttributeValue(int index) {
+        checkAttributeIndex(index);
+        return attributeValues[index].get();
+    }
+
+    /**
+     * Gets the JSON type of the value of an attribute of the current
+     * operation.
+     *
+     * @param index
+     *            the index of the attribute, from {@code 0} to
+     *            {@link #getAttributeCount()} exclusive
+     * @return the type of the attribute value, not {@code null}
+     */
+    public JsonType getAttributeType(int index) {
+        checkAttributeIndex(index);
+        return attributeValues[index].jsonType;
+    }
+
+    /**
+     * Checks whether the current operation has the given attribute. In a
+     * change, an attribute with a {@code null} value removes the attribute.
+     *
+     * @param name
+     *            the name of the attribute, not {@code null}
+     * @return {@code true} if the operation has the attribute
+     */
+    public boolean hasAttribute(String name) {
+        return indexOfAttribute(name) >= 0;
+    }
+
+    /**
+     * Gets the value of the given attribute of the current operation, see
+     * {@link #getAttributeValue(int)}.
+     *
+     * @param name
+     *            the name of the attribute, not {@code null}
+     * @return the value of the attribute, or {@code null} if the operation
+     *         does not have the attribute or its value is JSON {@code null}
+     */
+    public CharSequence getAttribute(String name) {
+        int attribute = indexOfAttribute(name);
+        return attribute < 0 ? null : attributeValues[attribute].get();
+    }
+
+    private int indexOfAttribute(String name) {
+        Objects.requireNonNull(name, "The name should not be null");
+        checkCurrent();
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributeNames[i].matches(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void checkCurrent() {
+        if (type == null) {
+            throw new IllegalStateException("There is no current operation");
+        }
+    }
+
+    private void checkAttributeIndex(int index) {
+        checkCurrent();
+        if (index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException(
+                    "Attribute index " + index + " out of bounds");
+        }
+    }
+
+    private void start() {
+        skipWhitespace();
+        if (position == value.length()) {
+            state = END;
+            return;
+        }
+        if (peek() == '{') {
+            position++;
+            opsObject = true;
+            skipWhitespace();
+            boolean found = false;
+            while (!found && peek() != '}') {
+                readKey();
+                found = key.matches("ops");
+                if (!found) {
+                    skipValue();
+                    skipWhitespace();
+                    if (peek() == ',') {
+                        position++;
+                        skipWhitespace();
+                    }
+                }
+            }
+            if (!found) {
+                throw notDelta();
+            }
+            skipWhitespace();
+        }
+        expect('[');
+        state = OPS;
+    }
+
+    private void end() {
+        if (opsObject) {
+            readMembersToEnd();
+        }
+        skipWhitespace();
+        if (position < value.length()) {
+            throw unexpected();
+        }
+        state = END;
+    }
+
+    private void readOp() {
+        skipWhitespace();
+        if (peek() != '{') {
+            throw new IllegalArgumentException("The value is not a Delta, "
+                    + "operation " + opIndex + " is not an object");
+        }
+        position++;
+        type = null;
+        attributeCount = 0;
+        Type insertType = null;
+        boolean insert = false;
+        int retainStart = -1;
+        int retainEnd = -1;
+        int deleteStart = -1;
+        int deleteEnd = -1;
+        boolean first = true;
+        while (true) {
+            skipWhitespace();
+            if (peek() == '}') {
+                if (!first) {
+                    throw unexpected();
+                }
+                position++;
+                break;
+            }
+            first = false;
+            readKey();
+            skipWhitespace();
+            char c = peek();
+            if (key.matches("insert")) {
+                insert = true;
+                if (c == '"') {
+                    readString(text);
+                    insertType = Type.INSERT;
+                } else if (c == '{') {
+                    readEmbed();
+                    insertType = Type.EMBED;
+                } else {
+                    skipValue();
+                    insertType = null;
+                }
+            } else if (key.matches("retain") && isNumberStart(c)) {
+                retainStart = position;
+                skipNumber();
+                retainEnd = position;
+            } else if (key.matches("delete") && isNumberStart(c)) {
+                deleteStart = position;
+                skipNumber();
+                deleteEnd = position;
+            } else if (key.matches("attributes") && c == '{') {
+                readAttributes();
+            } else {
+                skipValue();
+            }
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                break;
+            }
+        }
+        if (insert && insertType != null) {
+            type = insertType;
+            length = 1;
+        } else if (!insert && retainStart >= 0) {
+            type = Type.RETAIN;
+            length = toLength(retainStart, retainEnd);
+        } else if (!insert && deleteStart >= 0) {
+            type = Type.DELETE;
+            length = toLength(deleteStart, deleteEnd);
+        } else {
+            throw new IllegalArgumentException("The value is not a Delta, "
+                    + "operation " + opIndex
+                    + " is not an insert, retain or delete");
+        }
+    }
+
+    private void readEmbed() {
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            embedType.setString(value, position, position, false);
+            embedValue.setNull();
+            return;
+        }
+        readString(embedType);
+        skipWhitespace();
+        expect(':');
+        readValue(embedValue);
+        readMembersToEnd();
+    }
+
+    private void readAttributes() {
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return;
+        }
+        while (true) {
+            if (attributeCount == attributeNames.length) {
+                int size = Math.max(4, attributeCount * 2);
+                attributeNames = grow(attributeNames, size);
+                attributeValues = grow(attributeValues, size);
+            }
+            skipWhitespace();
+            readString(attributeNames[attributeCount]);
+            skipWhitespace();
+            expect(':');
+            readValue(attributeValues[attributeCount]);
+            attributeCount++;
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return;
+            }
+        }
+    }
+
+    private static Slice[] grow(Slice[] slices, int size) {
+        Slice[] grown = Arrays.copyOf(slices, size);
+        for (int i = slices.length; i < size; i++) {
+            grown[i] = new Slice();
+        }
+        return grown;
+    }
+
+    /*
+     * Skips the remaining members of an object, with the position after the
+     * value of a member.
+     */
+    private void readMembersToEnd() {
+        while (true) {
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return;
+            }
+            expect(',');
+            skipWhitespace();
+            readKey();
+            skipValue();
+        }
+    }
+
+    private void readKey() {
+        readString(key);
+        skipWhitespace();
+        expect(':');
+    }
+
+    private void readValue(Slice target) {
+        skipWhitespace();
+        char c = peek();
+        if (c == '"') {
+            readString(target);
+            return;
+        }
+        int start = position;
+        JsonType jsonType;
+        switch (c) {
+        case '{':
+            jsonType = JsonType.OBJECT;
+            break;
+        case '[':
+            jsonType = JsonType.ARRAY;
+            break;
+        case 't':
+        case 'f':
+            jsonType = JsonType.BOOLEAN;
+            break;
+        case 'n':
+            jsonType = JsonType.NULL;
+            break;
+        default:
+            jsonType = JsonType.NUMBER;
+        }
+        skipValue();
+        if (jsonType == JsonType.NULL) {
+            target.setNull();
+        } else {
+            target.setRaw(value, start, position, jsonType);
+        }
+    }
+
+    private void readString(Slice target) {
+        expect('"');
+        int start = position;
+        boolean escaped = false;
+        while (true) {
+            char c = next("a string");
+            if (c == '"') {
+                break;
+            } else if (c == '\\') {
+                escaped = true;
+                char escape = next("an escape sequence");
+                if (escape == 'u') {
+                    for (int i = 0; i < 4; i++) {
+                        if (Character.digit(next("an escape sequence"),
+                                16) < 0) {
+                            throw unexpected(position - 1);
+                        }
+                    }
+                } else if ("\"\\/bfnrt".indexOf(escape) < 0) {
+                    throw unexpected(position - 1);
+                }
+            } else if (c < ' ') {
+                throw unexpected(position - 1);
+            }
+        }
+        target.setString(value, start, position - 1, escaped);
+    }
+
+    /*
+     * Skips a value without recursion: the closing brackets of the open
+     * containers are kept in an array, so that nesting is limited by
+     * MAX_NESTING_DEPTH instead of the call stack.
+     */
+    private void skipValue() {
+        char[] open = null;
+        int depth = 0;
+        while (true) {
+            skipWhitespace();
+            char c = peek();
+            if (c == '{' || c == '[') {
+                if (open == null) {
+                    open = new char[MAX_NESTING_DEPTH];
+                } else if (depth == MAX_NESTING_DEPTH) {
+                    throw new IllegalArgumentException("The value is not a "
+                            + "Delta, values are nested deeper than "
+                            + MAX_NESTING_DEPTH + " levels at " + position);
+                }
+                char close = c == '{' ? '}' : ']';
+                position++;
+                skipWhitespace();
+                if (peek() != close) {
+                    open[depth++] = close;
+                    if (close == '}') {
+                        readKey();
+                    }
+                    continue;
+                }
+                position++;
+            } else {
+                skipScalar(c);
+            }
+            // Closes the containers ending after the value
+            while (depth > 0) {
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                    if (open[depth - 1] == '}') {
+                        skipWhitespace();
+                        readKey();
+                    }
+                    break;
+                }
+                expect(open[--depth]);
+            }
+            if (depth == 0) {
+                return;
+            }
+        }
+    }
+
+    private void skipScalar(char c) {
+        switch (c) {
+        case '"':
+            readString(key);
+            break;
+        case 't':
+            skipLiteral("true");
+            break;
+        case 'f':
+            skipLiteral("false");
+            break;
+        case 'n':
+            skipLiteral("null");
+            break;
+        default:
+            skipNumber();
+        }
+    }
+
+    private void skipLiteral(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (next("a literal") != literal.charAt(i)) {
+                throw unexpected(position - 1);
+            }
+        }
+    }
+
+    private static boolean isNumberStart(char c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    private void skipNumber() {
+        int start = position;
+        while (position < value.length()) {
+            char c = value.charAt(position);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+                    || c == 'e' || c == 'E') {
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (position == start) {
+            throw unexpected();
+        }
+    }
+
+    private int toLength(int start, int end) {
+        long number = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || number > Integer.MAX_VALUE) {
+                // Rare forms like 1.0 or 1e3
+                return toLength(parseNumber(start, end));
+            }
+            number = number * 10 + (c - '0');
+        }
+        return toLength(number);
+    }
+
+    private double parseNumber(int start, int end) {
+        try {
+            return Double.parseDouble(value.subSequence(start, end).toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "The value is not a Delta, invalid number at " + start, e);
+        }
+    }
+
+    private int toLength(double number) {
+        if (number != Math.rint(number) || number < 0
+                || number > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The value is not a Delta, "
+                    + "operation " + opIndex + " has an invalid length");
+        }
+        return (int) number;
+    }
+
+    private void skipWhitespace() {
+        while (position < value.length()) {
+            char c = value.charAt(position);
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private char peek() {
+        if (position == value.length()) {
+            throw new IllegalArgumentException(
+                    "The value is not a Delta, unexpected end");
+        }
+        return value.charAt(position);
+    }
+
+    private char next(String expected) {
+        if (position == value.length()) {
+            throw new IllegalArgumentException(
+                    "The value is not a Delta, unexpected end in " + expected);
+        }
+        return value.charAt(position++);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw unexpected();
+        }
+        position++;
+    }
+
+    private IllegalArgumentException unexpected() {
+        return unexpected(position);
+    }
+
+    private IllegalArgumentException unexpected(int at) {
+        return new IllegalArgumentException("The value is not a Delta, "
+                + "unexpected character '" + value.charAt(at) + "' at " + at);
+    }
+
+    private static IllegalArgumentException notDelta() {
+        return new IllegalArgumentException("The value is not a Delta");
+    }
+
+    /*
+     * A reusable view of a JSON value in the Delta. Strings with escape
+     * sequences are unescaped into a reused buffer when first accessed.
+     */
+    private static final class Slice implements CharSequence, Serializable {
+        private CharSequence source;
+        private int start;
+        private int end;
+        private boolean escaped;
+        private JsonType jsonType;
+        private StringBuilder unescaped;
+        private boolean unescapedValid;
+
+        private void setString(CharSequence source, int start, int end,
+                boolean escaped) {
+            set(source, start, end, escaped, JsonType.STRING);
+        }
+
+        private void setRaw(CharSequence source, int start, int end,
+                JsonType jsonType) {
+            set(source, start, end, false, jsonType);
+        }
+
+        private void setNull() {
+            set(null, 0, 0, false, JsonType.NULL);
+        }
+
+        private void set(CharSequence source, int start, int end,
+                boolean escaped, JsonType jsonType) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+            this.escaped = escaped;
+            this.jsonType = jsonType;
+            unescapedValid = false;
+        }
+
+        private CharSequence get() {
+            return jsonType == JsonType.NULL ? null : this;
+        }
+
+        private boolean matches(String string) {
+            if (escaped) {
+                return string.contentEquals(unescape());
+            }
+            if (string.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < string.length(); i++) {
+                if (string.charAt(i) != source.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private StringBuilder unescape() {
+            if (unescapedValid) {
+                return unescaped;
+            }
+            if (unescaped == null) {
+                unescaped = new StringBuilder(end - start);
+            }
+            unescaped.setLength(0);
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (c != '\\') {
+                    unescaped.append(c);
+                    continue;
+                }
+                c = source.charAt(++i);
+                switch (c) {
+                case 'b':
+                    unescaped.append('\b');
+                    break;
+                case 'f':
+                    unescaped.append('\f');
+                    break;
+                case 'n':
+                    unescaped.append('\n');
+                    break;
+                case 'r':
+                    unescaped.append('\r');
+                    break;
+                case 't':
+                    unescaped.append('\t');
+                    break;
+                case 'u':
+                    unescaped.append((char) Integer.parseInt(
+                            source.subSequence(i + 1, i + 5).toString(), 16));
+                    i += 4;
+                    break;
+                default:
+                    unescaped.append(c);
+                }
+            }
+            unescapedValid = true;
+            return unescaped;
+        }
+
+        @Override
+        public int length() {
+            return escaped ? unescape().length() : end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (escaped) {
+                return unescape().charAt(index);
+            }
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(
+                        "Index " + index + " out of bounds");
+            }
+            return source.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return escaped ? unescape().toString()
+                    : source.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Receives the operations of a
+ * <a href="https://github.com/quilljs/delta">Delta</a> read with
+ * {@link DeltaReader#accept(DeltaVisitor)}. All methods do nothing by
+ * default, so implementations only override the ones they are interested
+ * in.
+ * <p>
+ * The character sequences passed to the methods are views of the value that
+ * are only valid during the call, see {@link DeltaReader}. The attributes of
+ * the operation are available from the reader.
+ *
+ * @author Vaadin Ltd
+ */
+public interface DeltaVisitor extends Serializable {
+
+    /**
+     * Called for an operation inserting text.
+     *
+     * @param text
+     *            the inserted text, not {@code null}
+     * @param op
+     *            the reader positioned at the operation, for its attributes
+     */
+    default void insert(CharSequence text, DeltaReader op) {
+    }
+
+    /**
+     * Called for an operation inserting an embed, such as an image.
+     *
+     * @param type
+     *            the type of the embed, e.g. {@code image}
+     * @param value
+     *            the value of the embed, e.g. the URL of an image, or
+     *            {@code null}
+     * @param op
+     *            the reader positioned at the operation, for its attributes
+     */
+    default void insertEmbed(CharSequence type, CharSequence value,
+            DeltaReader op) {
+    }
+
+    /**
+     * Called for an operation retaining content.
+     *
+     * @param length
+     *            the number of retained characters
+     * @param op
+     *            the reader positioned at the operation, for its attributes
+     */
+    default void retain(int length, DeltaReader op) {
+    }
+
+    /**
+     * Called for an operation deleting content.
+     *
+     * @param length
+     *            the number of deleted characters
+     * @param op
+     *            the reader positioned at the operation
+     */
+    default void delete(int length, DeltaReader op) {
+    }
+}
@@ -0,0 +1,109 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * An {@link ImageStore} keeping the images as files in a directory.
+ * <p>
+ * Each image is written once to a file named after its id, so identical
+ * images share a file. The directory is created when the first image is
+ * stored. Files are never removed by the store.
+ *
+ * @author Vaadin Ltd
+ */
+public class FileSystemImageStore implements ImageStore {
+
+    // Path is not serializable
+    private final String directory;
+
+    /**
+     * Creates a store keeping the images in the given directory.
+     *
+     * @param directory
+     *            the directory to store the images in, not {@code null}
+     */
+    public FileSystemImageStore(Path directory) {
+        this.directory = Objects
+                .requireNonNull(directory, "The directory should not be null")
+                .toAbsolutePath().toString();
+    }
+
+    /**
+     * Gets the directory the images are stored in.
+     *
+     * @return the image directory, not {@code null}
+     */
+    public Path getDirectory() {
+        return Paths.get(directory);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException
+     *             if the MIME type is not a supported raster image type
+     */
+    @Override
+    public String store(String mimeType, byte[] data) throws IOException {
+        String id = ImageStoreUtil.createId(mimeType, data);
+        Path file = getDirectory().resolve(id);
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            // Concurrent writers of the same image must not expose partially
+            // written files
+            Path temp = Files.createTempFile(file.getParent(), id, ".tmp");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return id;
+    }
+
+    @Override
+    public String getMimeType(String id) {
+        Objects.requireNonNull(id, "The id should not be null");
+        String mimeType = ImageStoreUtil.getMimeType(id);
+        return mimeType != null && Files.isRegularFile(getDirectory().resolve(id))
+                ? mimeType
+                : null;
+    }
+
+    @Override
+    public InputStream open(String id) throws IOException {
+        Objects.requireNonNull(id, "The id should not be null");
+        // Only valid ids are resolved, so no files outside of the directory
+        // can be read
+        if (!ImageStoreUtil.isValidId(id)) {
+            throw new FileNotFoundException("No image with id " + id);
+        }
+        return Files.newInputStream(getDirectory().resolve(id));
+    }
+}
@@ -0,0 +1,51 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+/**
+ * Defines how {@link RichTextEditor#getHtmlValue()} gets the HTML
+ * representation of the editor value.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setHtmlValueMode(HtmlValueMode)
+ */
+public enum HtmlValueMode {
+
+    /**
+     * The {@code htmlValue} property of the web component is synchronized
+     * from the client together with the Delta value. This is the default.
+     */
+    SYNCHRONIZED,
+
+    /**
+     * The {@code htmlValue} property is not synchronized from the client.
+     * The HTML is rendered on the server from the Delta value with
+     * {@link DeltaHtmlRenderer} when it is requested, which roughly halves
+     * the data sent from the client on each value synchronization.
+     */
+    SERVER_RENDERED,
+
+    /**
+     * The {@code htmlValue} property is not synchronized from the client.
+     * The HTML produced by the web component is fetched only when requested
+     * with {@link RichTextEditor#fetchHtmlValue()}, e.g. once when a form is
+     * saved. {@link RichTextEditor#getHtmlValue()} renders the HTML on the
+     * server like in {@link #SERVER_RENDERED} mode.
+     */
+    ON_DEMAND
+}
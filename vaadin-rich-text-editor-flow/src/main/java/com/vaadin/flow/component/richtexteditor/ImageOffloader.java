@@ -0,0 +1,198 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.richtexteditor.Delta.Insert;
+import com.vaadin.flow.component.richtexteditor.Delta.Op;
+import com.vaadin.flow.server.InputStreamFactory;
+import com.vaadin.flow.server.StreamResource;
+
+/**
+ * Moves the inline {@code data:} images of a rich text editor value to an
+ * {@link ImageStore} and replaces them with URLs of stream resources
+ * registered in the session.
+ * <p>
+ * Resource URLs are only valid in the session that registered them. URLs of
+ * images already in the store, e.g. in a value saved from another session,
+ * are registered again in the current session.
+ */
+class ImageOffloader implements Serializable {
+
+    /**
+     * The path prefix of the URLs of the offloaded images, relative to the
+     * application.
+     */
+    static final String RESOURCE_PATH = "VAADIN/dynamic/resource/";
+
+    private static final String DATA_IMAGE = "data:image/";
+
+    private static final Pattern DATA_URL = Pattern.compile(
+            "data:(image/[\\w.+-]+);base64,([A-Za-z0-9+/=\\s]*)",
+            Pattern.CASE_INSENSITIVE);
+
+    // A year, the content of an image id never changes
+    private static final long CACHE_TIME = 365L * 24 * 60 * 60 * 1000;
+
+    // The store handles its own serialization, see ImageStore
+    private final ImageStore store;
+
+    // The resource URLs registered by this offloader by image id
+    private final Map<String, String> urls = new HashMap<>();
+
+    ImageOffloader(ImageStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    ImageStore getStore() {
+        return store;
+    }
+
+    /**
+     * Replaces the data URLs of the images in the given value with resource
+     * URLs. Values which are not in Delta format are returned as is.
+     *
+     * @param value
+     *            the value in Delta format
+     * @param ui
+     *            the UI to register the resources for
+     * @return the value with the images offloaded, or the same instance if
+     *         there were no images to offload
+     */
+    String offload(String value, UI ui) {
+        // Cheap check to avoid parsing values without images
+        if (value == null || (!value.contains(DATA_IMAGE)
+                && !value.contains(RESOURCE_PATH))) {
+            return value;
+        }
+        Delta delta;
+        try {
+            delta = Delta.parse(value);
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+        Delta.Builder builder = Delta.builder();
+        boolean changed = false;
+        for (Op op : delta.getOps()) {
+            String url = getImageUrl(op);
+            String offloaded = url == null ? null : offloadImage(url, ui);
+            if (offloaded == null || offloaded.equals(url)) {
+                builder.push(op);
+            } else {
+                builder.insertEmbed("image", offloaded, op.getAttributes());
+                changed = true;
+            }
+        }
+        return changed ? builder.build().toValue() : value;
+    }
+
+    private static String getImageUrl(Op op) {
+        if (op instanceof Insert && ((Insert) op).isEmbed()) {
+            Object image = ((Insert) op).getEmbed().get("image");
+            return image instanceof String ? (String) image : null;
+        }
+        return null;
+    }
+
+    private String offloadImage(String url, UI ui) {
+        if (url.regionMatches(true, 0, DATA_IMAGE, 0, DATA_IMAGE.length())) {
+            Matcher matcher = DATA_URL.matcher(url);
+            if (!matcher.matches()
+                    || !ImageStoreUtil.isSupported(matcher.group(1))) {
+                // Left inline, the sanitizer policy decides whether it is
+                // rendered
+                return null;
+            }
+            String id;
+            try {
+                byte[] data = Base64.getMimeDecoder()
+                        .decode(matcher.group(2));
+                id = store.store(matcher.group(1), data);
+            } catch (IllegalArgumentException | IOException e) {
+                return null;
+            }
+            return register(id, ui);
+        }
+        if (url.contains(RESOURCE_PATH)) {
+            String id = decode(url.substring(url.lastIndexOf('/') + 1));
+            if (store.getMimeType(id) != null) {
+                return register(id, ui);
+            }
+        }
+        return null;
+    }
+
+    private String register(String id, UI ui) {
+        return urls.computeIfAbsent(id, key -> {
+            StreamResource resource = new StreamResource(id,
+                    new ImageStreamFactory(store, id));
+            resource.setContentType(store.getMimeType(id));
+            resource.setCacheTime(CACHE_TIME);
+            return ui.getSession().getResourceRegistry()
+                    .registerResource(resource).getResourceUri().toString();
+        });
+    }
+
+    private static String decode(String segment) {
+        try {
+            return URLDecoder.decode(segment, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return segment;
+        }
+    }
+
+    private static class ImageStreamFactory implements InputStreamFactory {
+        private final ImageStore store;
+        private final String id;
+
+        private ImageStreamFactory(ImageStore store, String id) {
+            this.store = store;
+            this.id = id;
+        }
+
+        @Override
+        public InputStream createInputStream() {
+            try {
+                return store.open(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean requiresLock() {
+            // The store is thread-safe, so images are served without
+            // locking the session
+            return false;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+/**
+ * Stores the images embedded in a {@link RichTextEditor} value outside of the
+ * value itself.
+ * <p>
+ * When an image store is set with
+ * {@link RichTextEditor#setImageStore(ImageStore)}, images pasted or inserted
+ * as inline {@code data:} URLs are moved to the store, and the editor value
+ * and HTML value only contain URLs from which the images are served. This
+ * keeps large images out of the session and out of every value
+ * synchronization.
+ * <p>
+ * Implementations must be thread-safe, as a store is typically shared by all
+ * editors of the application. Images are identified by the ids returned from
+ * {@link #store(String, byte[])}, which must be usable as file names and URL
+ * path segments. Storing the same image data again should return the same id.
+ * <p>
+ * The store is referenced by the editors using it, so it is serialized along
+ * with their sessions. Implementations must handle this themselves, e.g. by
+ * only serializing a reference to the actual storage, like the directory of
+ * {@link FileSystemImageStore}, rather than the images, and by resolving to a
+ * shared instance when deserialized, like {@link InMemoryImageStore}.
+ *
+ * @author Vaadin Ltd
+ * @see InMemoryImageStore
+ * @see FileSystemImageStore
+ */
+public interface ImageStore extends Serializable {
+
+    /**
+     * Stores the given image.
+     *
+     * @param mimeType
+     *            the MIME type of the image, e.g. {@code image/png}, not
+     *            {@code null}
+     * @param data
+     *            the image data, not {@code null}
+     * @return the id of the stored image, not {@code null}
+     * @throws IOException
+     *             if storing the image fails
+     */
+    String store(String mimeType, byte[] data) throws IOException;
+
+    /**
+     * Gets the MIME type of the image with the given id.
+     *
+     * @param id
+     *            the id of the image, not {@code null}
+     * @return the MIME type of the image, or {@code null} if there is no image
+     *         with the given id in this store
+     */
+    String getMimeType(String id);
+
+    /**
+     * Opens a stream for reading the image with the given id. The caller is
+     * responsible for closing the stream.
+     *
+     * @param id
+     *            the id of the image, not {@code null}
+     * @return a stream of the image data, not {@code null}
+     * @throws IOException
+     *             if there is no image with the given id or reading it fails
+     */
+    InputStream open(String id) throws IOException;
+}
@@ -0,0 +1,125 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content addressed image ids shared by the built-in {@link ImageStore}
+ * implementations. An id is the SHA-256 hash of the image data followed by
+ * the image subtype as the extension, e.g. {@code 9f86...0f00.png}.
+ */
+final class ImageStoreUtil {
+
+    // Raster formats only: SVG images can contain scripts, so they are not
+    // served from the application's origin
+    private static final Set<String> SUBTYPES = Collections
+            .unmodifiableSet(new LinkedHashSet<>(Arrays.asList("png", "jpeg",
+                    "gif", "bmp", "webp", "x-icon")));
+
+    private static final Pattern ID = Pattern
+            .compile("[0-9a-f]{64}\\.([a-z-]+)");
+
+    private ImageStoreUtil() {
+        // Static utilities only
+    }
+
+    /**
+     * Checks whether images of the given MIME type can be stored.
+     *
+     * @param mimeType
+     *            the MIME type
+     * @return {@code true} if the type is supported
+     */
+    static boolean isSupported(String mimeType) {
+        String lowerCase = mimeType.toLowerCase(Locale.ENGLISH);
+        return lowerCase.startsWith("image/")
+                && SUBTYPES.contains(lowerCase.substring(6));
+    }
+
+    /**
+     * Creates the id of the given image.
+     *
+     * @param mimeType
+     *            the MIME type of the image, not {@code null}
+     * @param data
+     *            the image data, not {@code null}
+     * @return the id, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the MIME type is not supported
+     */
+    static String createId(String mimeType, byte[] data) {
+        Objects.requireNonNull(mimeType, "The MIME type should not be null");
+        Objects.requireNonNull(data, "The image data should not be null");
+        if (!isSupported(mimeType)) {
+            throw new IllegalArgumentException(
+                    "Unsupported image type: " + mimeType);
+        }
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        StringBuilder id = new StringBuilder(80);
+        for (byte b : hash) {
+            id.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return id.append('.')
+                .append(mimeType.substring(6).toLowerCase(Locale.ENGLISH))
+                .toString();
+    }
+
+    /**
+     * Gets the MIME type of the image with the given id.
+     *
+     * @param id
+     *            the image id
+     * @return the MIME type, or {@code null} if the id is not valid
+     */
+    static String getMimeType(String id) {
+        Matcher matcher = ID.matcher(id);
+        if (!matcher.matches() || !SUBTYPES.contains(matcher.group(1))) {
+            return null;
+        }
+        return "image/" + matcher.group(1);
+    }
+
+    /**
+     * Checks whether the given string is a valid image id. Valid ids can be
+     * safely used as file names.
+     *
+     * @param id
+     *            the string to check
+     * @return {@code true} if the id is valid
+     */
+    static boolean isValidId(String id) {
+        return getMimeType(id) != null;
+    }
+}
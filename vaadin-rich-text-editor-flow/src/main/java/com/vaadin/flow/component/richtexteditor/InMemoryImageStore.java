@@ -0,0 +1,135 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@link ImageStore} keeping the images in memory.
+ * <p>
+ * Images are never removed, so this store is mainly meant for development,
+ * tests and applications with a bounded set of images. Identical images are
+ * stored only once, regardless of how many editors or sessions use them.
+ * <p>
+ * Serializing the store, e.g. along with a session containing an editor
+ * using it, does not copy the images. A store deserialized in the same JVM
+ * resolves to the original instance. A store deserialized in another JVM,
+ * e.g. after a session has been moved to another node of a cluster,
+ * resolves to an empty store shared by all sessions deserialized there.
+ *
+ * @author Vaadin Ltd
+ */
+public class InMemoryImageStore implements ImageStore {
+
+    // The serialized stores of this JVM by their serialization id
+    private static final Map<String, WeakReference<InMemoryImageStore>> STORES =
+            new HashMap<>();
+
+    private final Map<String, byte[]> images = new ConcurrentHashMap<>();
+
+    // Guarded by STORES
+    private String serializationId;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException
+     *             if the MIME type is not a supported raster image type
+     */
+    @Override
+    public String store(String mimeType, byte[] data) {
+        String id = ImageStoreUtil.createId(mimeType, data);
+        images.computeIfAbsent(id, key -> data.clone());
+        return id;
+    }
+
+    @Override
+    public String getMimeType(String id) {
+        Objects.requireNonNull(id, "The id should not be null");
+        return images.containsKey(id) ? ImageStoreUtil.getMimeType(id) : null;
+    }
+
+    @Override
+    public InputStream open(String id) throws FileNotFoundException {
+        Objects.requireNonNull(id, "The id should not be null");
+        byte[] data = images.get(id);
+        if (data == null) {
+            throw new FileNotFoundException("No image with id " + id);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    /**
+     * Gets the number of images in this store.
+     *
+     * @return the number of stored images
+     */
+    public int size() {
+        return images.size();
+    }
+
+    private Object writeReplace() {
+        synchronized (STORES) {
+            if (serializationId == null) {
+                STORES.values().removeIf(store -> store.get() == null);
+                serializationId = UUID.randomUUID().toString();
+                STORES.put(serializationId, new WeakReference<>(this));
+            }
+            return new SerializedForm(serializationId);
+        }
+    }
+
+    private static InMemoryImageStore resolve(String id) {
+        synchronized (STORES) {
+            WeakReference<InMemoryImageStore> reference = STORES.get(id);
+            InMemoryImageStore store = reference == null ? null
+                    : reference.get();
+            if (store == null) {
+                store = new InMemoryImageStore();
+                store.serializationId = id;
+                STORES.put(id, new WeakReference<>(store));
+            }
+            return store;
+        }
+    }
+
+    /*
+     * Only the id of the store is serialized, the images stay in the memory
+     * of the JVM that stored them.
+     */
+    private static class SerializedForm implements Serializable {
+        private final String id;
+
+        private SerializedForm(String id) {
+            this.id = id;
+        }
+
+        private Object readResolve() {
+            return resolve(id);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A {@link RichTextEditorMetrics} implementation aggregating the
+ * measurements in memory. It keeps the count, sum, minimum and maximum of
+ * all measurements, and the most recent measurements for percentiles.
+ * <p>
+ * The aggregates can be read at any time, e.g. periodically for exporting
+ * them to a monitoring system. This class is thread-safe and meant to be
+ * shared by all editors.
+ *
+ * @author Vaadin Ltd
+ */
+public class InMemoryRichTextEditorMetrics implements RichTextEditorMetrics {
+
+    /**
+     * The default number of recent measurements kept for percentiles.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1024;
+
+    private final Distribution sanitizeNanos;
+    private final Distribution sanitizeInputLength;
+    private final Distribution sanitizeOutputLength;
+    private final Distribution valueSyncBytes;
+    private final Distribution htmlValueSyncBytes;
+    private final Distribution i18nExecuteJsCalls;
+    private final Distribution asHtmlListeners;
+
+    /**
+     * Creates metrics computing percentiles over the
+     * {@link #DEFAULT_WINDOW_SIZE default number} of recent measurements.
+     */
+    public InMemoryRichTextEditorMetrics() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates metrics computing percentiles over the given number of recent
+     * measurements.
+     *
+     * @param windowSize
+     *            the number of recent measurements kept per metric, at least
+     *            one
+     */
+    public InMemoryRichTextEditorMetrics(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException(
+                    "Window size should be at least one");
+        }
+        sanitizeNanos = new Distribution(windowSize);
+        sanitizeInputLength = new Distribution(windowSize);
+        sanitizeOutputLength = new Distribution(windowSize);
+        valueSyncBytes = new Distribution(windowSize);
+        htmlValueSyncBytes = new Distribution(windowSize);
+        i18nExecuteJsCalls = new Distribution(windowSize);
+        asHtmlListeners = new Distribution(windowSize);
+    }
+
+    @Override
+    public void sanitized(long nanos, int inputLength, int outputLength) {
+        sanitizeNanos.add(nanos);
+        sanitizeInputLength.add(inputLength);
+        sanitizeOutputLength.add(outputLength);
+    }
+
+    @Override
+    public void valueSynchronized(int bytes) {
+        valueSyncBytes.add(bytes);
+    }
+
+    @Override
+    public void htmlValueSynchronized(int bytes) {
+        htmlValueSyncBytes.add(bytes);
+    }
+
+    @Override
+    public void i18nUpdated(int executeJsCalls) {
+        i18nExecuteJsCalls.add(executeJsCalls);
+    }
+
+    @Override
+    public void asHtmlEventDispatched(int listeners) {
+        asHtmlListeners.add(listeners);
+    }
+
+    /**
+     * Gets the statistics of sanitization durations in nanoseconds.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getSanitizeNanos() {
+        return sanitizeNanos.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of HTML lengths before sanitization.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getSanitizeInputLength() {
+        return sanitizeInputLength.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of HTML lengths after sanitization.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getSanitizeOutputLength() {
+        return sanitizeOutputLength.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of value sync sizes in bytes.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getValueSyncBytes() {
+        return valueSyncBytes.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of {@code htmlValue} sync sizes in bytes.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getHtmlValueSyncBytes() {
+        return htmlValueSyncBytes.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of JavaScript calls per i18n update.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getI18nExecuteJsCalls() {
+        return i18nExecuteJsCalls.getStatistics();
+    }
+
+    /**
+     * Gets the statistics of listeners per {@code AsHtml} value change event.
+     *
+     * @return a snapshot of the statistics, not {@code null}
+     */
+    public Statistics getAsHtmlListeners() {
+        return asHtmlListeners.getStatistics();
+    }
+
+    /**
+     * An immutable snapshot of the statistics of a metric.
+     */
+    public static final class Statistics implements Serializable {
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+        // The sorted recent measurements
+        private final long[] window;
+
+        private Statistics(long count, long sum, long min, long max,
+                long[] window) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.window = window;
+        }
+
+        /**
+         * Gets the number of measurements.
+         *
+         * @return the count
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the sum of all measurements.
+         *
+         * @return the sum
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Gets the smallest measurement.
+         *
+         * @return the minimum, {@code 0} if there are no measurements
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * Gets the largest measurement.
+         *
+         * @return the maximum, {@code 0} if there are no measurements
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the mean of all measurements.
+         *
+         * @return the mean, {@code 0} if there are no measurements
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Gets the given percentile of the recent measurements with the
+         * nearest-rank method.
+         *
+         * @param percentile
+         *            the percentile between {@code 0} and {@code 100}, e.g.
+         *            {@code 99}
+         * @return the percentile, {@code 0} if there are no measurements
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(
+                        "Percentile should be between 0 and 100");
+            }
+            if (window.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * window.length);
+            return window[Math.max(rank, 1) - 1];
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + getMean() + ", min=" + min
+                    + ", p50=" + getPercentile(50) + ", p99="
+                    + getPercentile(99) + ", max=" + max;
+        }
+    }
+
+    private static final class Distribution implements Serializable {
+        private final long[] window;
+        private long count;
+        private long sum;
+        private long min;
+        private long max;
+
+        private Distribution(int windowSize) {
+            window = new long[windowSize];
+        }
+
+        private synchronized void add(long value) {
+            window[(int) (count % window.length)] = value;
+            min = count == 0 ? value : Math.min(min, value);
+            max = count == 0 ? value : Math.max(max, value);
+            count++;
+            sum += value;
+        }
+
+        private Statistics getStatistics() {
+            Statistics statistics;
+            synchronized (this) {
+                statistics = new Statistics(count, sum, min, max,
+                        Arrays.copyOf(window,
+                                (int) Math.min(count, window.length)));
+            }
+            // Sorted outside of the lock to not block measuring
+            Arrays.sort(statistics.window);
+            return statistics;
+        }
+    }
+}
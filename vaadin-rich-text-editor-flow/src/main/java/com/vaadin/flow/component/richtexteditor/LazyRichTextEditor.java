@@ -0,0 +1,265 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.vaadin.flow.component.AbstractCompositeField;
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.HasSize;
+import com.vaadin.flow.component.HasStyle;
+import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.dom.DomListenerRegistration;
+import com.vaadin.flow.function.SerializableSupplier;
+
+/**
+ * A field that shows its value as server-rendered HTML until it is first
+ * needed, and only then creates a {@link RichTextEditor} for editing it.
+ * <p>
+ * Until it is activated, the field is a plain {@code <div>} with the
+ * sanitized HTML of the value, rendered like with {@link RichTextViewer}.
+ * The editor is created on the first click on or focus of the placeholder,
+ * when the placeholder becomes visible if
+ * {@link #setActivateWhenVisible(boolean)} is set, or with
+ * {@link #activate()}. The editor takes over the value and the placeholder
+ * is removed in the same roundtrip, so the content does not change
+ * visually.
+ * <p>
+ * Pages with many potential editors, e.g. one per comment in a thread, thus
+ * only pay for the editors actually used: the web component, its toolbar
+ * and its property synchronization. In compatibility mode, where client
+ * dependencies are loaded when a component using them is first attached,
+ * the editor module itself is not loaded either until an editor is
+ * activated. With an npm bundle the module is part of the bundle.
+ *
+ * @author Vaadin Ltd
+ */
+public class LazyRichTextEditor
+        extends AbstractCompositeField<Div, LazyRichTextEditor, String>
+        implements HasSize, HasStyle {
+
+    // Dispatches an event when the placeholder first becomes visible
+    private static final String VISIBILITY_SCRIPT = "const placeholder = this;"
+            + "if (!window.IntersectionObserver) { return; }"
+            + "const observer = new IntersectionObserver(entries => {"
+            + "  if (entries.some(entry => entry.isIntersecting)) {"
+            + "    observer.disconnect();"
+            + "    placeholder.dispatchEvent(new CustomEvent("
+            + "'rich-text-editor-visible')); } });"
+            + "observer.observe(placeholder);";
+
+    // Focuses the editable area once the new editor has rendered
+    private static final String FOCUS_SCRIPT = "const rte = this;"
+            + "requestAnimationFrame(() => {"
+            + "  const editable = rte.shadowRoot"
+            + "      && rte.shadowRoot.querySelector('.ql-editor');"
+            + "  if (editable) { editable.focus(); } });";
+
+    private final Div placeholder = new Div();
+    private final List<DomListenerRegistration> activationListeners = new ArrayList<>();
+    private SerializableSupplier<RichTextEditor> editorFactory = RichTextEditor::new;
+    private SanitizerPolicy sanitizerPolicy = SanitizerPolicy.defaultPolicy();
+    private boolean activateWhenVisible;
+    private RichTextEditor editor;
+
+    /**
+     * Constructs an empty field.
+     */
+    public LazyRichTextEditor() {
+        super("");
+        placeholder.addClassName("rich-text-editor-placeholder");
+        // Focusable, so that the editor can be activated with the keyboard
+        placeholder.getElement().setAttribute("tabindex", "0");
+        getContent().add(placeholder);
+        activationListeners.add(placeholder.getElement()
+                .addEventListener("click", event -> activateFromClient()));
+        activationListeners.add(placeholder.getElement()
+                .addEventListener("focus", event -> activateFromClient()));
+        activationListeners.add(placeholder.getElement().addEventListener(
+                "rich-text-editor-visible", event -> activateFromClient()));
+    }
+
+    /**
+     * Constructs a field with the given value.
+     *
+     * @param value
+     *            the value in <a href="https://github.com/quilljs/delta">Delta</a>
+     *            format, not {@code null}
+     */
+    public LazyRichTextEditor(String value) {
+        this();
+        setValue(value);
+    }
+
+    private void activateFromClient() {
+        if (!isReadOnly() && getElement().isEnabled()) {
+            activate();
+            editor.getElement().executeJs(FOCUS_SCRIPT);
+        }
+    }
+
+    /**
+     * Creates the editor now, unless it has been created already.
+     *
+     * @return the editor, not {@code null}
+     */
+    public RichTextEditor activate() {
+        if (editor != null) {
+            return editor;
+        }
+        editor = Objects.requireNonNull(editorFactory.get(),
+                "The editor factory should not return null");
+        editor.setValue(getValue());
+        editor.setReadOnly(isReadOnly());
+        editor.addValueChangeListener(event -> {
+            if (event.isFromClient()) {
+                setModelValue(event.getValue(), true);
+            }
+        });
+        activationListeners.forEach(DomListenerRegistration::remove);
+        activationListeners.clear();
+        getContent().remove(placeholder);
+        getContent().add(editor);
+        return editor;
+    }
+
+    /**
+     * Gets the editor if the field has been activated.
+     *
+     * @return the editor, or an empty optional if the field still shows the
+     *         placeholder
+     */
+    public Optional<RichTextEditor> getEditor() {
+        return Optional.ofNullable(editor);
+    }
+
+    /**
+     * Checks whether the editor has been created.
+     *
+     * @return {@code true} if the field has been activated
+     */
+    public boolean isActivated() {
+        return editor != null;
+    }
+
+    /**
+     * Sets the factory creating the editor on activation, e.g. for
+     * configuring its toolbar translations or value change mode. The value
+     * and the read-only state are set by this field.
+     *
+     * @param editorFactory
+     *            the factory, not {@code null}
+     * @throws IllegalStateException
+     *             if the field has already been activated
+     */
+    public void setEditorFactory(
+            SerializableSupplier<RichTextEditor> editorFactory) {
+        if (editor != null) {
+            throw new IllegalStateException(
+                    "The editor has already been created");
+        }
+        this.editorFactory = Objects.requireNonNull(editorFactory,
+                "The editor factory should not be null");
+    }
+
+    /**
+     * Sets whether the editor is created as soon as the placeholder becomes
+     * visible in the browser, instead of on the first click or focus. The
+     * default is {@code false}.
+     *
+     * @param activateWhenVisible
+     *            {@code true} to activate the editor when it becomes visible
+     */
+    public void setActivateWhenVisible(boolean activateWhenVisible) {
+        this.activateWhenVisible = activateWhenVisible;
+        if (activateWhenVisible && editor == null) {
+            placeholder.getElement().getNode().runWhenAttached(
+                    ui -> observeVisibility());
+        }
+    }
+
+    /**
+     * Gets whether the editor is created when the placeholder becomes
+     * visible.
+     *
+     * @return {@code true} if the editor is activated when it becomes
+     *         visible
+     */
+    public boolean isActivateWhenVisible() {
+        return activateWhenVisible;
+    }
+
+    @Override
+    protected void onAttach(AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        // A new client element needs a new observer when reattached
+        if (activateWhenVisible && !attachEvent.isInitialAttach()) {
+            observeVisibility();
+        }
+    }
+
+    private void observeVisibility() {
+        if (editor == null) {
+            placeholder.getElement().executeJs(VISIBILITY_SCRIPT);
+        }
+    }
+
+    /**
+     * Sets the policy the placeholder HTML is sanitized with. The default is
+     * {@link SanitizerPolicy#defaultPolicy()}. Configure the editor with
+     * {@link #setEditorFactory(SerializableSupplier)}.
+     *
+     * @param sanitizerPolicy
+     *            the sanitizer policy, not {@code null}
+     */
+    public void setSanitizerPolicy(SanitizerPolicy sanitizerPolicy) {
+        this.sanitizerPolicy = Objects.requireNonNull(sanitizerPolicy,
+                "The sanitizer policy should not be null");
+        setPresentationValue(getValue());
+    }
+
+    /**
+     * Gets the policy the placeholder HTML is sanitized with.
+     *
+     * @return the sanitizer policy, not {@code null}
+     */
+    public SanitizerPolicy getSanitizerPolicy() {
+        return sanitizerPolicy;
+    }
+
+    @Override
+    protected void setPresentationValue(String value) {
+        if (editor != null) {
+            editor.setValue(value);
+        } else {
+            placeholder.getElement().setProperty("innerHTML", RichTextViewer
+                    .getRenderCache().get(sanitizerPolicy, value, false));
+        }
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        super.setReadOnly(readOnly);
+        if (editor != null) {
+            editor.setReadOnly(readOnly);
+        }
+    }
+}
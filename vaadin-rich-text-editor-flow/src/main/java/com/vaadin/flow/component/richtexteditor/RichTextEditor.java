@@ -18,17 +18,50 @@ package com.vaadin.flow.component.richtexteditor;
  */
 
 import com.vaadin.flow.component.*;
+import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.page.PendingJavaScriptResult;
 import com.vaadin.flow.data.binder.Binder;
+import com.vaadin.flow.dom.DomListenerRegistration;
 import com.vaadin.flow.data.value.HasValueChangeMode;
 import com.vaadin.flow.data.value.ValueChangeMode;
 import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.i18n.LocaleChangeEvent;
+import com.vaadin.flow.i18n.LocaleChangeObserver;
 import com.vaadin.flow.internal.JsonSerializer;
+import com.vaadin.flow.internal.JsonUtils;
+import com.vaadin.flow.internal.StateNode;
+import com.vaadin.flow.internal.nodefeature.SynchronizedPropertiesList;
+import com.vaadin.flow.internal.nodefeature.SynchronizedPropertyEventsList;
+import com.vaadin.flow.server.VaadinContext;
+import com.vaadin.flow.server.VaadinSession;
 import com.vaadin.flow.shared.Registration;
+import elemental.json.Json;
 import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Server-side component for the {@code <vaadin-rich-text-editor>} component.
@@ -46,12 +79,72 @@ import java.util.Objects;
  *
  */
 @Tag("vaadin-rich-text-editor")
+@JsModule("./richTextEditorDeltaSync.js")
 public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor, String>
-        implements HasSize, HasValueChangeMode, InputNotifier, KeyNotifier, CompositionNotifier {
+        implements HasSize, HasValueChangeMode, InputNotifier, KeyNotifier, CompositionNotifier,
+        LocaleChangeObserver {
 
     private ValueChangeMode currentMode;
+    private int valueChangeTimeout = DEFAULT_CHANGE_TIMEOUT;
+    private AdaptiveValueChangeMode adaptiveValueChangeMode;
+    // Moving average of the nanoseconds spent on an update from the client
+    private long updateCost;
     private RichTextEditorI18n i18n;
+    private RichTextEditorI18nCache i18nCache;
+    // The properties from the i18n cache to apply for the current locale
+    private JsonObject cachedI18n;
+    // The i18n properties known by the client element
+    private JsonObject sentI18n;
     private AsHtml asHtml;
+    private static final DeltaHtmlRenderer DELTA_HTML_RENDERER = new DeltaHtmlRenderer();
+    private static final Delta EMPTY_DOCUMENT = Delta.builder().insert("\n")
+            .build();
+
+    // Collects the Quill change Deltas on the client and sends them to the
+    // server as configured by the value change mode, see
+    // richTextEditorDeltaSync.js. $0 is the value change mode, or null when
+    // not syncing incrementally, $1 the timeout and $2 the initial revision.
+    private static final String DELTA_SYNC_SCRIPT = "window.Vaadin.Flow"
+            + ".richTextEditorDeltaSync.install(this, $0, $1, $2)";
+
+    private SanitizerPolicy sanitizerPolicy = SanitizerPolicy.defaultPolicy();
+    private SanitizerPolicy effectiveSanitizerPolicy = sanitizerPolicy;
+    private ImageOffloader imageOffloader;
+    private HtmlValueMode htmlValueMode = HtmlValueMode.SYNCHRONIZED;
+    private ValueSyncMode valueSyncMode = ValueSyncMode.FULL;
+    private int valueRevision;
+    private boolean valuePropertyStale;
+    private boolean resyncRequested;
+    // True while reset() clears the value, the listeners are not notified
+    private boolean resetting;
+    private ValueStorage valueStorage = ValueStorage.STRING;
+    private RichTextEditorMetrics metrics = RichTextEditorMetrics.NO_OP;
+    private ValueLimits valueLimits = ValueLimits.unlimited();
+    // Null when the value updates are not coalesced
+    private ValueUpdateCoalescer valueCoalescer;
+    private Registration coalescingChangeRegistration;
+    // Null when the htmlValue property is not sent from the client
+    private DomListenerRegistration htmlValueSynchronization;
+    private long revision;
+    // Incremented on reset, cancelling the client commands scheduled before
+    private int clientCommandGeneration;
+    // JavaScript executed while detached, sent on the next attach
+    private final List<PendingJavaScriptResult> detachedJavaScript = new ArrayList<>();
+    // Null when not joined to a CollaborationEngine topic
+    private CollaborationParticipant collaboration;
+    // The content hash of the value instance it was computed for
+    private String contentHashValue;
+    private long contentHash;
+    // The text statistics and plain text of the value instance they were
+    // computed for
+    private String textStatisticsValue;
+    private TextStatistics textStatistics;
+    private String plainTextValue;
+    private String plainText;
+    // The sanitized HTML value in the form of the value storage
+    private Object sanitizedHtmlValue;
+    private long htmlValueCacheHits;
+    private long htmlValueCacheMisses;
 
     /**
      * Gets the internationalization object previously set for this component.
@@ -61,7 +154,9 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      * {@link RichTextEditor#setI18n(RichTextEditorI18n)}
      *
      * @return the i18n object. It will be <code>null</code>, If the i18n
-     *         properties weren't set.
+     *         properties weren't set. Properties applied from the
+     *         {@link #setI18nCache(RichTextEditorI18nCache) i18n cache} are
+     *         not returned.
      */
     public RichTextEditorI18n getI18n() {
         return i18n;
@@ -69,6 +164,13 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
 
     /**
      * Sets the internationalization properties for this component.
+     * <p>
+     * The properties are sent to the client in a single update containing
+     * only the properties that differ from the ones sent before. Editors
+     * sharing the same instance also share its JSON representation.
+     * <p>
+     * Properties set with this method take precedence over the
+     * {@link #setI18nCache(RichTextEditorI18nCache) i18n cache}.
      *
      * @param i18n
      *            the internationalized properties, not <code>null</code>
@@ -79,20 +181,159 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
         this.i18n = i18n;
         runBeforeClientResponse(ui -> {
             if (i18n == this.i18n) {
-                JsonObject i18nObject = (JsonObject) JsonSerializer
-                        .toJson(this.i18n);
-                for (String key : i18nObject.keys()) {
-                    getElement().executeJs(
-                            "this.set('i18n." + key + "', $0)",
-                            i18nObject.get(key));
-                }
+                sendI18n(i18n.toJson());
             }
         });
     }
 
+    /*
+     * Sends the i18n properties that differ from the ones sent before as a
+     * single property update.
+     */
+    private void sendI18n(JsonObject i18nObject) {
+        JsonObject changes = i18nObject;
+        if (sentI18n != null) {
+            changes = Json.createObject();
+            for (String key : i18nObject.keys()) {
+                JsonValue value = i18nObject.get(key);
+                if (!sentI18n.hasKey(key)
+                        || !JsonUtils.jsonEquals(sentI18n.get(key), value)) {
+                    changes.put(key, value);
+                }
+            }
+        }
+        int executeJsCalls = 0;
+        if (changes.keys().length > 0) {
+            getElement().executeJs(
+                    "this.i18n = Object.assign({}, this.i18n, $0)", changes);
+            executeJsCalls++;
+        }
+        sentI18n = i18nObject;
+        metrics.i18nUpdated(executeJsCalls);
+    }
+
+    /**
+     * Gets the cache of internationalization properties set for this
+     * component.
+     *
+     * @return the i18n cache, or {@code null} if the cache of the application
+     *         is used
+     */
+    public RichTextEditorI18nCache getI18nCache() {
+        return i18nCache;
+    }
+
+    /**
+     * Sets the cache of internationalization properties for this component.
+     * The properties for the locale of the UI are applied whenever the
+     * locale changes, unless properties are set explicitly with
+     * {@link #setI18n(RichTextEditorI18n)}.
+     * <p>
+     * Without a cache of its own, the editor uses the cache of the
+     * application, see
+     * {@link RichTextEditorI18nCache#setApplicationCache(com.vaadin.flow.server.VaadinContext, RichTextEditorI18nCache)}.
+     *
+     * @param i18nCache
+     *            the i18n cache, or {@code null} to use the cache of the
+     *            application
+     */
+    public void setI18nCache(RichTextEditorI18nCache i18nCache) {
+        this.i18nCache = i18nCache;
+        getUI().ifPresent(
+                ui -> localeChange(new LocaleChangeEvent(ui, ui.getLocale())));
+    }
+
+    /**
+     * Applies the internationalization properties for the new locale from
+     * the {@link #setI18nCache(RichTextEditorI18nCache) i18n cache}, unless
+     * properties are set explicitly with {@link #setI18n(RichTextEditorI18n)}.
+     *
+     * @param event
+     *            the locale change event
+     */
+    @Override
+    public void localeChange(LocaleChangeEvent event) {
+        RichTextEditorI18nCache cache = getEffectiveI18nCache((UI) event.getSource());
+        JsonObject json = i18n != null || cache == null ? null
+                : cache.getJson(event.getLocale());
+        cachedI18n = json;
+        if (json != null) {
+            runBeforeClientResponse(ui -> {
+                if (json == cachedI18n && i18n == null) {
+                    sendI18n(json);
+                }
+            });
+        }
+    }
+
+    private RichTextEditorI18nCache getEffectiveI18nCache(UI ui) {
+        if (i18nCache != null) {
+            return i18nCache;
+        }
+        VaadinSession session = ui.getSession();
+        VaadinContext context = session == null || session.getService() == null
+                ? null
+                : session.getService().getContext();
+        return context == null ? null
+                : RichTextEditorI18nCache.getApplicationCache(context);
+    }
+
     void runBeforeClientResponse(SerializableConsumer<UI> command) {
-        getElement().getNode().runWhenAttached(ui -> ui
-                .beforeClientResponse(this, context -> command.accept(ui)));
+        int generation = clientCommandGeneration;
+        getElement().getNode().runWhenAttached(
+                ui -> ui.beforeClientResponse(this, context -> {
+                    if (generation == clientCommandGeneration) {
+                        command.accept(ui);
+                    }
+                }));
+    }
+
+    /*
+     * Executes JavaScript for the client element, keeping track of the
+     * invocations made while detached so that a reset can cancel them.
+     */
+    private void executeClientJs(String expression,
+            Serializable... parameters) {
+        PendingJavaScriptResult result = getElement().executeJs(expression,
+                parameters);
+        if (!getElement().getNode().isAttached()) {
+            detachedJavaScript.add(result);
+        }
+    }
+
+    /**
+     * Resets this editor for reuse by {@link RichTextEditorPool}: clears the
+     * value and the {@link #asHtml()} values without keeping a pending client
+     * value or notifying the value change listeners, restarts the revision
+     * and cancels the client commands not sent yet. Other configuration, such as the value change mode and
+     * the i18n properties, is kept.
+     */
+    void reset() {
+        if (collaboration != null) {
+            collaboration.leave();
+        }
+        if (valueCoalescer != null) {
+            valueCoalescer.discard();
+        }
+        resetting = true;
+        try {
+            setValue(getEmptyValue());
+        } finally {
+            resetting = false;
+        }
+        clientCommandGeneration++;
+        detachedJavaScript.forEach(PendingJavaScriptResult::cancelExecution);
+        detachedJavaScript.clear();
+        getElement().removeProperty("htmlValue");
+        sanitizedHtmlValue = null;
+        if (asHtml != null) {
+            // Its listener was not notified of the cleared value either
+            asHtml.discardValues();
+        }
+        valuePropertyStale = false;
+        resyncRequested = false;
+        revision = 0;
+        updateCost = 0;
     }
 
     /**
@@ -101,6 +342,52 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
     public RichTextEditor() {
         super("", "", false);
         setValueChangeMode(ValueChangeMode.ON_CHANGE);
+        // Registered first, so that other listeners see the new revision
+        addValueChangeListener(event -> revision++);
+        removeGeneratedHtmlValueSynchronization();
+        getElement().addPropertyChangeListener("htmlValue", event -> {
+            if (event.isUserOriginated() && !checkClientHtmlValue(
+                    (String) event.getValue(), (String) event.getOldValue())) {
+                return;
+            }
+            sanitizedHtmlValue = null;
+            if (event.isUserOriginated()
+                    && metrics != RichTextEditorMetrics.NO_OP) {
+                metrics.htmlValueSynchronized(
+                        ValueLimits.utf8Length((String) event.getValue()));
+            }
+        });
+        getElement().addPropertyChangeListener("value", event -> {
+            if (event.isUserOriginated()) {
+                valuePropertyStale = false;
+                if (metrics != RichTextEditorMetrics.NO_OP) {
+                    metrics.valueSynchronized(
+                            ValueLimits.utf8Length((String) event.getValue()));
+                }
+            }
+            if (htmlValueMode != HtmlValueMode.SYNCHRONIZED) {
+                sanitizedHtmlValue = null;
+            }
+        });
+        // A new client element is created when reattached
+        addDetachListener(event -> {
+            sentI18n = null;
+            if (valueCoalescer != null) {
+                valueCoalescer.flush(event.getUI());
+            }
+        });
+        addAttachListener(event -> {
+            detachedJavaScript.clear();
+            if (i18n != null && sentI18n == null) {
+                runBeforeClientResponse(ui -> sendI18n(i18n.toJson()));
+            }
+            offloadValueImages();
+            if (valueSyncMode == ValueSyncMode.INCREMENTAL) {
+                // A new client element gets the value from the property
+                updateValueProperty();
+                updateDeltaSync();
+            }
+        });
     }
 
     /**
@@ -149,6 +436,23 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
         addValueChangeListener(listener);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The listener is not notified when the value is cleared because the
+     * editor is released to a {@link RichTextEditorPool}.
+     */
+    @Override
+    public Registration addValueChangeListener(
+            ValueChangeListener<? super ComponentValueChangeEvent<RichTextEditor, String>> listener) {
+        Objects.requireNonNull(listener, "Listener should not be null");
+        return super.addValueChangeListener(event -> {
+            if (!resetting) {
+                listener.valueChanged(event);
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -159,11 +463,396 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
         return currentMode;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In the {@link HtmlValueMode#SYNCHRONIZED} HTML value mode, the
+     * {@code htmlValue} property is sent at the same moments as the value.
+     * Turns off the {@link #setAdaptiveValueChangeMode(AdaptiveValueChangeMode)
+     * adaptive value change mode}.
+     */
     @Override
     public void setValueChangeMode(ValueChangeMode valueChangeMode) {
+        adaptiveValueChangeMode = null;
+        applyValueChangeMode(valueChangeMode);
+    }
+
+    private void applyValueChangeMode(ValueChangeMode valueChangeMode) {
         currentMode = valueChangeMode;
-        setSynchronizedEvent(
-                ValueChangeMode.eventForMode(valueChangeMode, "value-changed"));
+        if (valueSyncMode == ValueSyncMode.INCREMENTAL) {
+            setSynchronizedEvent(null);
+            updateDeltaSync();
+        } else {
+            setSynchronizedEvent(ValueChangeMode.eventForMode(valueChangeMode,
+                    "value-changed"));
+            if (valueChangeMode != null
+                    && getSynchronizationRegistration() != null) {
+                ValueChangeMode.applyChangeTimeout(valueChangeMode,
+                        valueChangeTimeout, getSynchronizationRegistration());
+            }
+        }
+        synchronizeHtmlValue();
+    }
+
+    @Override
+    public int getValueChangeTimeout() {
+        return valueChangeTimeout;
+    }
+
+    @Override
+    public void setValueChangeTimeout(int valueChangeTimeout) {
+        if (valueChangeTimeout < 0) {
+            throw new IllegalArgumentException(
+                    "The timeout should not be negative");
+        }
+        this.valueChangeTimeout = valueChangeTimeout;
+        applyValueChangeMode(currentMode);
+    }
+
+    /**
+     * Gets the strategy choosing the value change mode.
+     *
+     * @return the adaptive value change mode, or {@code null} if the value
+     *         change mode is fixed
+     */
+    public AdaptiveValueChangeMode getAdaptiveValueChangeMode() {
+        return adaptiveValueChangeMode;
+    }
+
+    /**
+     * Sets a strategy choosing the value change mode from the size of the
+     * value and the measured cost of handling updates from the client. The
+     * mode moves between {@link ValueChangeMode#EAGER},
+     * {@link ValueChangeMode#TIMEOUT} and {@link ValueChangeMode#ON_CHANGE} as
+     * the document grows or shrinks, and
+     * {@link #getValueChangeMode()} returns the current choice. As the
+     * {@code htmlValue} property is sent at the same moments as the value, a
+     * less eager mode reduces the requests for both. Setting a
+     * value change mode with {@link #setValueChangeMode(ValueChangeMode)}
+     * turns the strategy off.
+     *
+     * @param adaptiveValueChangeMode
+     *            the strategy, or {@code null} to keep the current value
+     *            change mode
+     */
+    public void setAdaptiveValueChangeMode(
+            AdaptiveValueChangeMode adaptiveValueChangeMode) {
+        this.adaptiveValueChangeMode = adaptiveValueChangeMode;
+        updateCost = 0;
+        adaptValueChangeMode(true);
+    }
+
+    private void adaptValueChangeMode(boolean initial) {
+        if (adaptiveValueChangeMode == null) {
+            return;
+        }
+        ValueChangeMode mode = adaptiveValueChangeMode.select(
+                initial ? null : currentMode, getValue().length(), updateCost);
+        int timeout = adaptiveValueChangeMode.getTimeout();
+        if (mode != currentMode || timeout != valueChangeTimeout) {
+            valueChangeTimeout = timeout;
+            applyValueChangeMode(mode);
+        }
+    }
+
+    /**
+     * Gets how value changes are sent from the client to the server.
+     *
+     * @return the value sync mode, not {@code null}
+     */
+    public ValueSyncMode getValueSyncMode() {
+        return valueSyncMode;
+    }
+
+    /**
+     * Sets how value changes are sent from the client to the server. The
+     * default is {@link ValueSyncMode#FULL}.
+     * <p>
+     * With {@link ValueSyncMode#INCREMENTAL} only the change Delta of each
+     * edit is sent, at the moments defined by the
+     * {@link #setValueChangeMode(ValueChangeMode) value change mode}. The
+     * server applies it to its value and fires a value change event with the
+     * resulting document, so for long documents the data sent per keystroke
+     * stays small. The {@code htmlValue} property is still sent whole in the
+     * default {@link HtmlValueMode#SYNCHRONIZED} mode, so combine this with
+     * {@link #setHtmlValueMode(HtmlValueMode) HtmlValueMode.SERVER_RENDERED}
+     * or {@link HtmlValueMode#ON_DEMAND} for long documents.
+     *
+     * @param valueSyncMode
+     *            the value sync mode, not {@code null}
+     */
+    public void setValueSyncMode(ValueSyncMode valueSyncMode) {
+        Objects.requireNonNull(valueSyncMode,
+                "The value sync mode should not be null");
+        if (valueSyncMode == this.valueSyncMode) {
+            return;
+        }
+        this.valueSyncMode = valueSyncMode;
+        if (valueSyncMode == ValueSyncMode.FULL) {
+            // Sends the pending change before turning the sync off
+            updateDeltaSync();
+        }
+        applyValueChangeMode(currentMode);
+    }
+
+    private void updateDeltaSync() {
+        runBeforeClientResponse(ui -> getElement().executeJs(
+                DELTA_SYNC_SCRIPT,
+                valueSyncMode == ValueSyncMode.INCREMENTAL && currentMode != null
+                        ? currentMode.name()
+                        : null,
+                getValueChangeTimeout(), valueRevision));
+    }
+
+    /*
+     * The value property is not updated when the value changes through
+     * Deltas from the client, as that would send the whole document back.
+     */
+    private void updateValueProperty() {
+        if (valuePropertyStale) {
+            valuePropertyStale = false;
+            getElement().setProperty("value", getValue());
+        }
+    }
+
+    @Override
+    protected void setPresentationValue(String value) {
+        if (valuePropertyStale
+                && Objects.equals(getElement().getProperty("value"), value)) {
+            // The property would not change, so it would not be sent
+            executeClientJs("this.value = $0", value);
+        }
+        valuePropertyStale = false;
+        super.setPresentationValue(value);
+        valueRevision++;
+        if (valueSyncMode == ValueSyncMode.INCREMENTAL) {
+            executeClientJs("this.__deltaSync && this.__deltaSync.reset($0)",
+                    valueRevision);
+        }
+    }
+
+    /**
+     * Applies a change Delta sent from the client in
+     * {@link ValueSyncMode#INCREMENTAL} mode.
+     *
+     * @param revision
+     *            the revision of the value the change is based on
+     * @param change
+     *            the change in Delta format
+     */
+    @ClientCallable
+    void applyValueDelta(int revision, String change) {
+        if (metrics != RichTextEditorMetrics.NO_OP) {
+            metrics.valueSynchronized(ValueLimits.utf8Length(change));
+        }
+        ValueLimits.Limit exceeded = valueLimits.checkValue(change);
+        if (exceeded != null) {
+            // Rejected before parsing
+            rejectClientValue(exceeded);
+            return;
+        }
+        if (revision != valueRevision) {
+            requestResync();
+            return;
+        }
+        Delta document = getDelta();
+        Delta changeDelta;
+        Delta value;
+        try {
+            changeDelta = Delta.parse(change);
+            value = document.compose(changeDelta);
+        } catch (IllegalArgumentException e) {
+            changeDelta = null;
+            value = null;
+        }
+        if (value == null || !value.isDocument()) {
+            // The change does not apply to the document
+            requestResync();
+            return;
+        }
+        valueRevision++;
+        String newValue = value.toValue();
+        if (textStatistics != null && textStatisticsValue == getValue()) {
+            // Recounts only the words touched by the change
+            textStatistics = textStatistics.update(document, changeDelta,
+                    value);
+            textStatisticsValue = newValue;
+        }
+        setValueFromClient(newValue);
+    }
+
+    /**
+     * Replaces the value with the whole document sent from the client after
+     * the revisions have diverged.
+     *
+     * @param revision
+     *            the revision of the client
+     * @param value
+     *            the value in Delta format
+     */
+    @ClientCallable
+    void resyncValue(int revision, String value) {
+        if (metrics != RichTextEditorMetrics.NO_OP) {
+            metrics.valueSynchronized(ValueLimits.utf8Length(value));
+        }
+        resyncRequested = false;
+        valueRevision = revision;
+        setValueFromClient(value);
+    }
+
+    int getValueRevision() {
+        return valueRevision;
+    }
+
+    /**
+     * Handles a change Delta sent from the client while joined to a
+     * {@link CollaborationEngine} topic.
+     *
+     * @param epoch
+     *            the number of times the client has been reset
+     * @param sent
+     *            the number of changes the client had sent before this one
+     * @param received
+     *            the number of changes the client had received
+     * @param change
+     *            the change in Delta format
+     */
+    @ClientCallable
+    void applyCollaborativeDelta(int epoch, int sent, int received,
+            String change) {
+        if (metrics != RichTextEditorMetrics.NO_OP) {
+            metrics.valueSynchronized(ValueLimits.utf8Length(change));
+        }
+        if (collaboration == null) {
+            return;
+        }
+        ValueLimits.Limit exceeded = valueLimits.checkValue(change);
+        if (exceeded != null) {
+            // Resets the client to the shared document
+            collaboration.resync();
+            fireValueLimitExceeded(exceeded);
+            return;
+        }
+        Delta changeDelta;
+        try {
+            changeDelta = Delta.parse(change);
+        } catch (IllegalArgumentException e) {
+            collaboration.resync();
+            return;
+        }
+        collaboration.receive(epoch, sent, received, changeDelta);
+    }
+
+    CollaborationParticipant getCollaboration() {
+        return collaboration;
+    }
+
+    void setCollaboration(CollaborationParticipant collaboration) {
+        this.collaboration = collaboration;
+    }
+
+    /*
+     * Sets a value of the shared document without sending it to the client,
+     * which has the value or gets the change separately. Images are not
+     * offloaded, as the value would no longer be the shared document.
+     */
+    void setCollaborativeValue(String value) {
+        valuePropertyStale = true;
+        if (htmlValueMode != HtmlValueMode.SYNCHRONIZED
+                && !Objects.equals(value, getValue())) {
+            sanitizedHtmlValue = null;
+        }
+        super.setModelValue(value, true);
+    }
+
+    /*
+     * Sets a value of the shared document and sends it to the client,
+     * replacing the content there.
+     */
+    void resetCollaborativeValue(String value) {
+        if (valueCoalescer != null) {
+            valueCoalescer.discard();
+        }
+        if (!valueEquals(super.getValue(), value)) {
+            setCollaborativeValue(value);
+        }
+        setPresentationValue(value);
+    }
+
+    private void requestResync() {
+        if (valueSyncMode == ValueSyncMode.INCREMENTAL && !resyncRequested) {
+            resyncRequested = true;
+            getElement().executeJs(
+                    "this.__deltaSync && this.__deltaSync.resync()");
+        }
+    }
+
+    @Override
+    protected void setModelValue(String newModelValue, boolean fromClient) {
+        ValueLimits.Limit exceeded = fromClient
+                ? valueLimits.checkValue(newModelValue)
+                : null;
+        if (exceeded != null) {
+            rejectClientValue(exceeded);
+            return;
+        }
+        if (fromClient && valueCoalescer != null
+                && valueCoalescer.coalesce(newModelValue, getUI().orElse(null))) {
+            // The listeners are notified when the pending value is flushed
+            revision++;
+            return;
+        }
+        if (fromClient && adaptiveValueChangeMode != null) {
+            long start = System.nanoTime();
+            applyModelValue(newModelValue, true);
+            long cost = System.nanoTime() - start;
+            updateCost = updateCost == 0 ? cost
+                    : updateCost + (cost - updateCost) / 4;
+        } else {
+            applyModelValue(newModelValue, fromClient);
+        }
+        adaptValueChangeMode(false);
+    }
+
+    private void applyModelValue(String newModelValue, boolean fromClient) {
+        String value = fromClient ? offloadImages(newModelValue)
+                : newModelValue;
+        if (htmlValueMode != HtmlValueMode.SYNCHRONIZED
+                && !Objects.equals(value, getValue())) {
+            // Before the value change listeners, which may read the HTML
+            sanitizedHtmlValue = null;
+        }
+        super.setModelValue(value, fromClient);
+        if (value != newModelValue) {
+            // Replaces the inline images with the URLs on the client too
+            setPresentationValue(value);
+        }
+    }
+
+    private String offloadImages(String value) {
+        // Resource URLs can only be generated for the current UI
+        UI ui = UI.getCurrent();
+        if (imageOffloader == null || ui == null || ui.getSession() == null
+                || !getUI().isPresent()) {
+            return value;
+        }
+        return imageOffloader.offload(value, ui);
+    }
+
+    private void offloadValueImages() {
+        String value = getValue();
+        String offloaded = offloadImages(value);
+        if (offloaded != value) {
+            super.setValue(offloaded);
+        }
+    }
+
+    private void setValueFromClient(String value) {
+        valuePropertyStale = true;
+        if (htmlValueMode != HtmlValueMode.SYNCHRONIZED) {
+            sanitizedHtmlValue = null;
+        }
+        setModelValue(value, true);
     }
 
     /**
@@ -182,7 +871,20 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      */
     @Override
     public void setValue(String value) {
-        super.setValue(value);
+        if (value != null && valueEquals(getValue(), value)) {
+            // Skips offloading images and resetting the client
+            return;
+        }
+        if (valueCoalescer != null) {
+            // The value from the server replaces a pending client value
+            valueCoalescer.discard();
+        }
+        if (collaboration != null && value != null) {
+            // Replaces the shared document, also for the other editors
+            collaboration.replace(value);
+            return;
+        }
+        super.setValue(offloadImages(value));
     }
 
     /**
@@ -203,14 +905,42 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
         return getElement().callJsFunction("dangerouslySetHtmlValue", htmlValueString);
     }
 
+    /**
+     * Sets a value sent from the client. Like the value property, the value
+     * is checked against the {@link #setValueLimits(ValueLimits) limits}.
+     *
+     * @param value
+     *            the value in Delta format
+     */
     @ClientCallable
-    private void updateValue(String value) {
-        setValue(value);
+    void updateValue(String value) {
+        if (metrics != RichTextEditorMetrics.NO_OP) {
+            metrics.valueSynchronized(ValueLimits.utf8Length(value));
+        }
+        if (collaboration == null) {
+            setValueFromClient(value);
+            return;
+        }
+        ValueLimits.Limit exceeded = valueLimits.checkValue(value);
+        if (exceeded != null) {
+            collaboration.resync();
+            fireValueLimitExceeded(exceeded);
+            return;
+        }
+        try {
+            collaboration.replace(value);
+        } catch (IllegalArgumentException e) {
+            collaboration.resync();
+        }
     }
 
     /**
      * Returns the current value of the text editor in <a href="https://github.com/quilljs/delta">Delta</a> format. By default, the empty
      * editor will return an empty string.
+     * <p>
+     * With {@link #setValueCoalescing(ValueCoalescing) value coalescing}, this
+     * is the latest value from the client, also when the value change
+     * listeners have not been notified of it yet.
      *
      * @see #getHtmlValue()
      * @see #asHtml()
@@ -219,9 +949,159 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      */
     @Override
     public String getValue() {
-        return super.getValue();
+        String pending = valueCoalescer == null ? null
+                : valueCoalescer.getPendingValue();
+        return pending != null ? pending : super.getValue();
+    }
+
+    /**
+     * Gets the revision of the value. The revision is incremented whenever
+     * the value changes, from the client or on the server, so saving the
+     * revision and comparing it later with
+     * {@link #hasChangedSince(long)} tells whether the value has changed
+     * without comparing values, e.g. for an autosave. The revision is
+     * incremented before the value change listeners are notified.
+     * <p>
+     * The revision only grows, but it may grow by more than one per value
+     * change event.
+     *
+     * @return the revision of the value
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Checks whether the value has changed after the given revision.
+     *
+     * @param revision
+     *            a revision from {@link #getRevision()}
+     * @return {@code true} if the value has changed since the revision
+     */
+    public boolean hasChangedSince(long revision) {
+        return this.revision != revision;
+    }
+
+    /**
+     * Gets a 64-bit hash of the value. The hash is computed once per value,
+     * so it is a cheap way to compare the content of editors or to detect
+     * that a saved document is identical to the value. Equal values have
+     * equal hashes, but like with any hash, different values may have an
+     * equal hash too.
+     *
+     * @return the content hash of the value
+     */
+    public long getContentHash() {
+        String value = getValue();
+        if (value != contentHashValue) {
+            contentHash = hash(value);
+            contentHashValue = value;
+        }
+        return contentHash;
+    }
+
+    // FNV-1a over the UTF-16 code units
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Gets the current value of the editor as a {@link Delta} document.
+     * <p>
+     * An empty editor is a document with a single line break, like in the
+     * web component.
+     *
+     * @return the value as a Delta document, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not in Delta format
+     * @see #setDelta(Delta)
+     */
+    public Delta getDelta() {
+        String value = getValue();
+        return value.isEmpty() ? EMPTY_DOCUMENT : Delta.parse(value);
+    }
+
+    /**
+     * Gets the text of the editor without formatting: the text of the value
+     * with lines separated by line breaks, without embeds such as images and
+     * without the line break ending the document.
+     * <p>
+     * The text is read straight from the value and cached until the value
+     * changes, so unlike extracting the text from {@link #getHtmlValue()}, no
+     * HTML is sanitized or parsed.
+     *
+     * @return the plain text, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not in Delta format
+     */
+    public String getPlainText() {
+        String value = getValue();
+        if (plainTextValue != value) {
+            plainText = TextStatistics.getPlainText(value);
+            plainTextValue = value;
+        }
+        return plainText;
     }
 
+    /**
+     * Gets the number of words in the editor. Words are separated by white
+     * space, line breaks and embeds such as images.
+     * <p>
+     * The count is computed from the value when first needed after a value
+     * change and cached. In {@link ValueSyncMode#INCREMENTAL} mode, the count
+     * is updated for each change by recounting only the words the change
+     * touches.
+     *
+     * @return the word count
+     * @throws IllegalArgumentException
+     *             if the value is not in Delta format
+     */
+    public int getWordCount() {
+        return getTextStatistics().getWords();
+    }
+
+    /**
+     * Gets the number of characters in the editor, not counting line breaks
+     * and embeds such as images. Characters outside the Basic Multilingual
+     * Plane, such as emoji, count as one character.
+     * <p>
+     * The count is maintained like the {@link #getWordCount() word count}.
+     *
+     * @return the character count
+     * @throws IllegalArgumentException
+     *             if the value is not in Delta format
+     */
+    public int getCharacterCount() {
+        return getTextStatistics().getCharacters();
+    }
+
+    private TextStatistics getTextStatistics() {
+        String value = getValue();
+        if (textStatisticsValue != value) {
+            textStatistics = TextStatistics.of(value);
+            textStatisticsValue = value;
+        }
+        return textStatistics;
+    }
+
+    /**
+     * Sets the value of the editor from a {@link Delta} document.
+     *
+     * @param delta
+     *            the new value, not {@code null}
+     * @see #getDelta()
+     * @see Delta#toValue()
+     */
+    public void setDelta(Delta delta) {
+        Objects.requireNonNull(delta, "The Delta should not be null");
+        setValue(delta.toValue());
+    }
 
     /**
      * The value of the editor presented as an HTML string.
@@ -231,6 +1111,15 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      * {@link AsHtml#setValue(String)} then the value returned from this method
      * will not yet correspond to the newly set value until the next server
      * round trip.
+     * <p>
+     * The sanitized value is cached until a new {@code htmlValue} arrives from
+     * the client or the {@link #setSanitizerPolicy(SanitizerPolicy) sanitizer
+     * policy} changes, so calling this method repeatedly is cheap.
+     * <p>
+     * In {@link HtmlValueMode#SERVER_RENDERED} and
+     * {@link HtmlValueMode#ON_DEMAND} modes the HTML is rendered from
+     * the current Delta value instead, so it also reflects values set on the
+     * server side immediately.
      *
      * @see #getValue()
      * @see #asHtml()
@@ -239,22 +1128,618 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      * or {@code null} if it is not available.
      */
     public String getHtmlValue() {
-        String htmlValueString = getHtmlValueString();
+        if (sanitizedHtmlValue != null) {
+            htmlValueCacheHits++;
+            return ValueStorage.load(sanitizedHtmlValue);
+        }
+        String htmlValueString = htmlValueMode == HtmlValueMode.SYNCHRONIZED
+                ? getHtmlValueString()
+                : DELTA_HTML_RENDERER.render(getValue());
         if (htmlValueString == null) {
             return null;
         }
 
-        // Using basic whitelist and adding img tag with data protocol enabled.
-        return sanitize(htmlValueString);
+        htmlValueCacheMisses++;
+        String sanitized = sanitize(htmlValueString);
+        sanitizedHtmlValue = valueStorage.store(sanitized);
+        return sanitized;
+    }
+
+    /**
+     * Writes the value of the editor in
+     * <a href="https://github.com/quilljs/delta">Delta</a> format to the given
+     * writer, e.g. for persisting it without another copy of the value. The
+     * writer is not flushed or closed.
+     *
+     * @param writer
+     *            the writer to write the value to, not {@code null}
+     * @throws IOException
+     *             if writing fails
+     * @see #readValueFrom(Reader)
+     */
+    public void writeValueTo(Writer writer) throws IOException {
+        Objects.requireNonNull(writer, "The writer should not be null");
+        writer.write(getValue());
+    }
+
+    /**
+     * Writes the value of the editor in
+     * <a href="https://github.com/quilljs/delta">Delta</a> format to the given
+     * stream as UTF-8. The value is encoded in chunks, without a byte array
+     * of the whole value. The stream is not flushed or closed.
+     *
+     * @param out
+     *            the stream to write the value to, not {@code null}
+     * @throws IOException
+     *             if writing fails
+     */
+    public void writeValueTo(OutputStream out) throws IOException {
+        Objects.requireNonNull(out, "The stream should not be null");
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.wrap(getValue());
+        ByteBuffer bytes = ByteBuffer.allocate(8192);
+        // The final encode is needed before flushing, also for an empty value
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            writeBytes(bytes, out);
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(bytes);
+            writeBytes(bytes, out);
+        } while (result.isOverflow());
+    }
+
+    private static void writeBytes(ByteBuffer bytes, OutputStream out)
+            throws IOException {
+        out.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+    }
+
+    /**
+     * Writes the sanitized HTML value of the editor to the given target. If
+     * the sanitized HTML value is cached, the cached value is written,
+     * without decompressing it to a string with a
+     * {@link ValueStorage#compact(int) compact value storage}.
+     * <p>
+     * Otherwise the HTML is sanitized with the
+     * {@link SanitizerPolicy#sanitize(Reader, Appendable) streaming
+     * sanitizer} while it is written, so the sanitized HTML and its tree are
+     * not built in memory. The HTML to sanitize still is: the
+     * {@code htmlValue} property, or the HTML rendered from the Delta value in
+     * {@link HtmlValueMode#SERVER_RENDERED} and {@link HtmlValueMode#ON_DEMAND}
+     * modes. The result is not cached.
+     * <p>
+     * For well-formed HTML the result equals {@link #getHtmlValue()}, but for
+     * malformed markup it may differ, as {@link #getHtmlValue()} only uses
+     * the streaming sanitizer above the
+     * {@link SanitizerPolicy#withStreamingThreshold(int) streaming
+     * threshold}.
+     *
+     * @param target
+     *            the target to write the HTML to, not {@code null}
+     * @return {@code true} if the HTML was written, {@code false} if there is
+     *         no HTML value available
+     * @throws IOException
+     *             if writing fails
+     */
+    public boolean writeHtmlTo(Appendable target) throws IOException {
+        Objects.requireNonNull(target, "The target should not be null");
+        if (sanitizedHtmlValue != null) {
+            htmlValueCacheHits++;
+            ValueStorage.write(sanitizedHtmlValue, target);
+            return true;
+        }
+        String htmlValueString = htmlValueMode == HtmlValueMode.SYNCHRONIZED
+                ? getHtmlValueString()
+                : DELTA_HTML_RENDERER.render(getValue());
+        if (htmlValueString == null) {
+            return false;
+        }
+        if (metrics == RichTextEditorMetrics.NO_OP) {
+            effectiveSanitizerPolicy
+                    .sanitize(new StringReader(htmlValueString), target);
+            return true;
+        }
+        long start = System.nanoTime();
+        CountingAppendable counting = new CountingAppendable(target);
+        effectiveSanitizerPolicy.sanitize(new StringReader(htmlValueString),
+                counting);
+        metrics.sanitized(System.nanoTime() - start, htmlValueString.length(),
+                counting.length);
+        return true;
+    }
+
+    /*
+     * Counts the characters written through it, for the sanitization
+     * metrics of writeHtmlTo.
+     */
+    private static final class CountingAppendable
+            implements Appendable, Serializable {
+        private final Appendable target;
+        private int length;
+
+        private CountingAppendable(Appendable target) {
+            this.target = target;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            CharSequence text = csq == null ? "null" : csq;
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end)
+                throws IOException {
+            target.append(csq, start, end);
+            length += end - start;
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            target.append(c);
+            length++;
+            return this;
+        }
+    }
+
+    /**
+     * Sets the value of the editor from the given reader in
+     * <a href="https://github.com/quilljs/delta">Delta</a> format. The
+     * characters are read in chunks directly into the new value. The reader
+     * is not closed.
+     *
+     * @param reader
+     *            the reader to read the value from, not {@code null}
+     * @throws IOException
+     *             if reading fails
+     * @see #setValue(String)
+     * @see #writeValueTo(Writer)
+     */
+    public void readValueFrom(Reader reader) throws IOException {
+        Objects.requireNonNull(reader, "The reader should not be null");
+        StringBuilder value = new StringBuilder();
+        ValueStorage.copy(reader, value);
+        setValue(value.toString());
+    }
+
+    /**
+     * Fetches the HTML value produced by the web component and sanitizes it
+     * off the UI thread with {@link ForkJoinPool#commonPool()}.
+     *
+     * @return a future completed with the sanitized HTML value
+     * @see #fetchHtmlValue(Executor)
+     */
+    public CompletableFuture<String> fetchHtmlValue() {
+        return fetchHtmlValue(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Fetches the HTML value produced by the web component and sanitizes it
+     * with the given executor.
+     * <p>
+     * In {@link HtmlValueMode#ON_DEMAND} mode the HTML is requested from the
+     * client with a server round trip, and the future completes once the
+     * response has arrived and has been sanitized. The sanitizer policy in
+     * use when this method is called is applied. If the editor is not
+     * attached, the HTML is requested when it gets attached.
+     * <p>
+     * In the other modes the future is already completed with the result of
+     * {@link #getHtmlValue()}.
+     *
+     * @param executor
+     *            the executor to sanitize the HTML with, not {@code null}
+     * @return a future completed with the sanitized HTML value, or with
+     *         {@code null} if the HTML value is not available
+     */
+    public CompletableFuture<String> fetchHtmlValue(Executor executor) {
+        Objects.requireNonNull(executor, "The executor should not be null");
+        if (htmlValueMode != HtmlValueMode.ON_DEMAND) {
+            return CompletableFuture.completedFuture(getHtmlValue());
+        }
+        // Policies are immutable, so the policy can be used on any thread
+        SanitizerPolicy policy = effectiveSanitizerPolicy;
+        RichTextEditorMetrics currentMetrics = metrics;
+        return getElement().executeJs("return this.htmlValue")
+                .toCompletableFuture(String.class)
+                .thenApplyAsync(html -> html == null ? null
+                        : sanitize(policy, html, currentMetrics), executor);
+    }
+
+    /**
+     * Gets how the copies of the value held by this editor besides the
+     * element state are stored.
+     *
+     * @return the value storage, not {@code null}
+     */
+    public ValueStorage getValueStorage() {
+        return valueStorage;
+    }
+
+    /**
+     * Sets how the copies of the value held by this editor besides the
+     * element state are stored: the cached {@link #getHtmlValue() sanitized
+     * HTML value} and the current and previous values of {@link #asHtml()}.
+     * The default is {@link ValueStorage#STRING}.
+     * <p>
+     * With {@link ValueStorage#compact(int)} the copies take considerably
+     * less memory, especially when deflated, and are decoded when read. The
+     * Delta value itself is part of the element state, which is needed for
+     * synchronizing with the client and is not affected. Combine with
+     * {@link HtmlValueMode#SERVER_RENDERED} or {@link HtmlValueMode#ON_DEMAND}
+     * to also keep the {@code htmlValue} property out of the element state.
+     *
+     * @param valueStorage
+     *            the value storage, not {@code null}
+     */
+    public void setValueStorage(ValueStorage valueStorage) {
+        this.valueStorage = Objects.requireNonNull(valueStorage,
+                "The value storage should not be null");
+        sanitizedHtmlValue = valueStorage
+                .store(ValueStorage.load(sanitizedHtmlValue));
+        if (asHtml != null) {
+            asHtml.restore();
+        }
+    }
+
+    /**
+     * Gets the approximate number of bytes used by the copies of the value
+     * held by this editor besides the element state.
+     *
+     * @return the size of the stored copies in bytes
+     */
+    int getStoredValueSize() {
+        // The copies may share instances
+        Set<Object> copies = Collections
+                .newSetFromMap(new IdentityHashMap<>());
+        copies.add(sanitizedHtmlValue);
+        if (asHtml != null) {
+            copies.add(asHtml.value);
+            copies.add(asHtml.oldValue);
+        }
+        return copies.stream().mapToInt(ValueStorage::getDataSize).sum();
+    }
+
+    /**
+     * Gets the number of {@link #getHtmlValue()} calls that were served from
+     * the cached sanitized value.
+     *
+     * @return the number of cache hits
+     */
+    public long getHtmlValueCacheHits() {
+        return htmlValueCacheHits;
+    }
+
+    /**
+     * Gets the number of {@link #getHtmlValue()} calls that had to sanitize
+     * the {@code htmlValue} property because no cached value was available.
+     *
+     * @return the number of cache misses
+     */
+    public long getHtmlValueCacheMisses() {
+        return htmlValueCacheMisses;
     }
 
     String sanitize(String html) {
-        return org.jsoup.Jsoup.clean(html,
-                org.jsoup.safety.Whitelist.basic()
-                        .addTags("img", "h1", "h2", "h3", "s")
-                        .addAttributes("img", "align", "alt", "height", "src", "title", "width")
-                        .addAttributes(":all", "style")
-                        .addProtocols("img", "src", "data"));
+        return sanitize(effectiveSanitizerPolicy, html, metrics);
+    }
+
+    private static String sanitize(SanitizerPolicy policy, String html,
+            RichTextEditorMetrics metrics) {
+        if (metrics == RichTextEditorMetrics.NO_OP) {
+            return policy.sanitize(html);
+        }
+        long start = System.nanoTime();
+        String sanitized = policy.sanitize(html);
+        metrics.sanitized(System.nanoTime() - start, html.length(),
+                sanitized.length());
+        return sanitized;
+    }
+
+    /*
+     * Checks an HTML value from the client, restoring the previous one if
+     * the new one exceeds the limits.
+     */
+    private boolean checkClientHtmlValue(String html, String previous) {
+        ValueLimits.Limit exceeded = html == null ? null
+                : valueLimits.checkHtml(html);
+        if (exceeded == null) {
+            return true;
+        }
+        if (previous == null) {
+            getElement().removeProperty("htmlValue");
+        } else {
+            getElement().setProperty("htmlValue", previous);
+        }
+        fireValueLimitExceeded(exceeded);
+        return false;
+    }
+
+    private void rejectClientValue(ValueLimits.Limit limit) {
+        // Resets the client to the value kept on the server
+        setPresentationValue(getValue());
+        fireValueLimitExceeded(limit);
+    }
+
+    void fireValueLimitExceeded(ValueLimits.Limit limit) {
+        int maximum = valueLimits.getMaximum(limit);
+        getElement().executeJs("this.dispatchEvent(new CustomEvent("
+                + "'value-limit-exceeded', {detail: {limit: $0, maximum: $1}}))",
+                limit.name(), maximum);
+        fireEvent(new ValueLimitExceededEvent(this, limit, maximum));
+    }
+
+    /**
+     * Gets the limits for the values this editor accepts from the client.
+     *
+     * @return the value limits, not {@code null}
+     */
+    public ValueLimits getValueLimits() {
+        return valueLimits;
+    }
+
+    /**
+     * Sets the limits for the values this editor accepts from the client:
+     * the size of values, changes and HTML values, the number of images and
+     * the number of Delta operations. Updates exceeding a limit are rejected
+     * before they are parsed, sanitized or stored, the client is reset to the
+     * value of the server and a {@link ValueLimitExceededEvent} is fired. The
+     * default is {@link ValueLimits#unlimited()}.
+     * <p>
+     * As the HTML value contains markup, the size limit should leave room for
+     * it.
+     *
+     * @param valueLimits
+     *            the value limits, not {@code null}
+     * @see #addValueLimitExceededListener(ComponentEventListener)
+     */
+    public void setValueLimits(ValueLimits valueLimits) {
+        this.valueLimits = Objects.requireNonNull(valueLimits,
+                "The value limits should not be null");
+    }
+
+    /**
+     * Adds a listener for updates from the client rejected for exceeding the
+     * {@link #setValueLimits(ValueLimits) value limits}.
+     *
+     * @param listener
+     *            the listener, not {@code null}
+     * @return a registration for removing the listener
+     */
+    public Registration addValueLimitExceededListener(
+            ComponentEventListener<ValueLimitExceededEvent> listener) {
+        return addListener(ValueLimitExceededEvent.class, listener);
+    }
+
+    /**
+     * Gets how the value updates from the client are coalesced.
+     *
+     * @return the value coalescing, not {@code null}
+     */
+    public ValueCoalescing getValueCoalescing() {
+        return valueCoalescer == null ? ValueCoalescing.disabled()
+                : valueCoalescer.getCoalescing();
+    }
+
+    /**
+     * Sets how the value updates from the client are coalesced. With
+     * {@link ValueChangeMode#EAGER}, every keystroke is an update, and each
+     * one runs the value change listeners, {@link Binder} validation and the
+     * sanitization of {@link #asHtml()}. Updates arriving within the
+     * coalescing window, or over the session rate limit, are merged and the
+     * listeners are notified once with the latest value. The default is
+     * {@link ValueCoalescing#disabled()}.
+     * <p>
+     * Pending values are flushed when the window ends, from a background
+     * thread with {@link UI#access(com.vaadin.flow.server.Command)}: without
+     * server push, the changes made by the listeners reach the browser with
+     * the next roundtrip. Pending values are also flushed on the next update
+     * after the window, on {@code change} events and on detach.
+     *
+     * @param valueCoalescing
+     *            the value coalescing, not {@code null}
+     */
+    public void setValueCoalescing(ValueCoalescing valueCoalescing) {
+        Objects.requireNonNull(valueCoalescing,
+                "The value coalescing should not be null");
+        if (valueCoalescer != null) {
+            valueCoalescer.flush(getUI().orElse(null));
+            valueCoalescer = null;
+        }
+        if (valueCoalescing.isEnabled()) {
+            valueCoalescer = new ValueUpdateCoalescer(valueCoalescing,
+                    value -> applyModelValue(value, true));
+            if (coalescingChangeRegistration == null) {
+                coalescingChangeRegistration = addChangeListener(
+                        event -> valueCoalescer.flush(getUI().orElse(null)));
+            }
+        } else if (coalescingChangeRegistration != null) {
+            coalescingChangeRegistration.remove();
+            coalescingChangeRegistration = null;
+        }
+    }
+
+    ValueUpdateCoalescer getValueCoalescer() {
+        return valueCoalescer;
+    }
+
+    /**
+     * Gets the metrics the hot paths of this editor report to.
+     *
+     * @return the metrics, not {@code null}
+     */
+    public RichTextEditorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics the hot paths of this editor report to: sanitization,
+     * value and HTML value synchronization, i18n updates and
+     * {@link #asHtml()} event dispatch. The default is
+     * {@link RichTextEditorMetrics#NO_OP}, which skips measuring altogether.
+     * <p>
+     * A single thread-safe metrics instance, such as
+     * {@link InMemoryRichTextEditorMetrics}, can be shared by all editors.
+     *
+     * @param metrics
+     *            the metrics, not {@code null}
+     */
+    public void setMetrics(RichTextEditorMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics,
+                "The metrics should not be null");
+    }
+
+    /**
+     * Gets the policy used to sanitize the HTML value of this editor.
+     *
+     * @return the sanitizer policy, not {@code null}
+     */
+    public SanitizerPolicy getSanitizerPolicy() {
+        return sanitizerPolicy;
+    }
+
+    /**
+     * Sets the policy used to sanitize the HTML value of this editor, both
+     * when reading it with {@link #getHtmlValue()} and when setting it with
+     * {@link AsHtml#setValue(String)}. The default is
+     * {@link SanitizerPolicy#defaultPolicy()}.
+     * <p>
+     * Policies are immutable and can be shared between editor instances.
+     *
+     * @param sanitizerPolicy
+     *            the sanitizer policy, not {@code null}
+     */
+    public void setSanitizerPolicy(SanitizerPolicy sanitizerPolicy) {
+        this.sanitizerPolicy = Objects.requireNonNull(sanitizerPolicy,
+                "The sanitizer policy should not be null");
+        updateEffectiveSanitizerPolicy();
+    }
+
+    private void updateEffectiveSanitizerPolicy() {
+        // The offloaded images are served by the application itself
+        effectiveSanitizerPolicy = imageOffloader == null ? sanitizerPolicy
+                : sanitizerPolicy.withImageResources();
+        sanitizedHtmlValue = null;
+    }
+
+    /**
+     * Gets the store the embedded images of this editor are moved to.
+     *
+     * @return the image store, or {@code null} if images are kept inline in
+     *         the value
+     */
+    public ImageStore getImageStore() {
+        return imageOffloader == null ? null : imageOffloader.getStore();
+    }
+
+    /**
+     * Sets the store the embedded images of this editor are moved to. By
+     * default no store is set and pasted or inserted images are kept in the
+     * value as inline {@code data:} URLs, which for screenshots can make the
+     * value several megabytes large.
+     * <p>
+     * With a store set, inline images in values set on the server or
+     * received from the client are saved in the store and replaced with URLs
+     * of resources served from it, so the value and the HTML value only
+     * contain references to the images. The resources are registered in the
+     * session of the editor, so images are only offloaded while the editor is
+     * attached. URLs of images in the same store are registered again when a
+     * saved value is set in another session.
+     * <p>
+     * The {@link #setSanitizerPolicy(SanitizerPolicy) sanitizer policy} is
+     * extended to allow the image URLs in the HTML value.
+     *
+     * @param imageStore
+     *            the image store, or {@code null} to keep images inline
+     * @see InMemoryImageStore
+     * @see FileSystemImageStore
+     */
+    public void setImageStore(ImageStore imageStore) {
+        imageOffloader = imageStore == null ? null
+                : new ImageOffloader(imageStore);
+        updateEffectiveSanitizerPolicy();
+        offloadValueImages();
+    }
+
+    /**
+     * Gets how the HTML value of this editor is obtained.
+     *
+     * @return the HTML value mode, not {@code null}
+     */
+    public HtmlValueMode getHtmlValueMode() {
+        return htmlValueMode;
+    }
+
+    /**
+     * Sets how the HTML value of this editor is obtained. The default is
+     * {@link HtmlValueMode#SYNCHRONIZED}.
+     * <p>
+     * With {@link HtmlValueMode#SERVER_RENDERED} the client no longer sends
+     * the {@code htmlValue} property, and {@link #getHtmlValue()} renders the
+     * HTML from the Delta value when needed. This reduces the data sent from
+     * the client on every value synchronization, which matters especially
+     * with {@link ValueChangeMode#EAGER}.
+     * <p>
+     * With {@link HtmlValueMode#ON_DEMAND} the {@code htmlValue} property is
+     * not sent either, and the HTML produced by the web component is fetched
+     * only when requested with {@link #fetchHtmlValue()}.
+     *
+     * @param htmlValueMode
+     *            the HTML value mode, not {@code null}
+     */
+    public void setHtmlValueMode(HtmlValueMode htmlValueMode) {
+        Objects.requireNonNull(htmlValueMode,
+                "The HTML value mode should not be null");
+        if (htmlValueMode == this.htmlValueMode) {
+            return;
+        }
+        this.htmlValueMode = htmlValueMode;
+        synchronizeHtmlValue();
+        sanitizedHtmlValue = null;
+    }
+
+    /*
+     * The generated getHtmlValueString() always synchronizes htmlValue, which
+     * cannot be undone through the Element API without deprecated methods.
+     * This editor synchronizes it as configured by the HTML value mode.
+     */
+    private void removeGeneratedHtmlValueSynchronization() {
+        StateNode node = getElement().getNode();
+        node.getFeature(SynchronizedPropertiesList.class)
+                .getSynchronizedProperties().remove("htmlValue");
+        node.getFeature(SynchronizedPropertyEventsList.class)
+                .getSynchronizedPropertyEvents().remove("html-value-changed");
+    }
+
+    /*
+     * The htmlValue property is sent like the value, as defined by the value
+     * change mode, so that e.g. ON_CHANGE does not send the HTML of the
+     * document on every edit.
+     */
+    private void synchronizeHtmlValue() {
+        if (htmlValueSynchronization != null) {
+            htmlValueSynchronization.remove();
+            htmlValueSynchronization = null;
+        }
+        if (htmlValueMode != HtmlValueMode.SYNCHRONIZED
+                || currentMode == null) {
+            return;
+        }
+        htmlValueSynchronization = getElement()
+                .addEventListener(ValueChangeMode.eventForMode(currentMode,
+                        "html-value-changed"), event -> {
+                        })
+                .synchronizeProperty("htmlValue");
+        ValueChangeMode.applyChangeTimeout(currentMode, valueChangeTimeout,
+                htmlValueSynchronization);
+    }
+
+    DomListenerRegistration getHtmlValueSynchronization() {
+        return htmlValueSynchronization;
     }
 
     /**
@@ -283,6 +1768,9 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
         private String codeBlock;
         private String clean;
 
+        // Shared by all editors using this instance
+        private transient volatile JsonObject json;
+
         /**
          * Gets the translated word for {@code undo}
          *
@@ -301,6 +1789,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setUndo(String undo) {
             this.undo = undo;
+            json = null;
             return this;
         }
 
@@ -322,6 +1811,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setRedo(String redo) {
             this.redo = redo;
+            json = null;
             return this;
         }
 
@@ -343,6 +1833,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setBold(String bold) {
             this.bold = bold;
+            json = null;
             return this;
         }
 
@@ -364,6 +1855,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setItalic(String italic) {
             this.italic = italic;
+            json = null;
             return this;
         }
 
@@ -385,6 +1877,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setUnderline(String underline) {
             this.underline = underline;
+            json = null;
             return this;
         }
 
@@ -406,6 +1899,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setStrike(String strike) {
             this.strike = strike;
+            json = null;
             return this;
         }
 
@@ -427,6 +1921,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setH1(String h1) {
             this.h1 = h1;
+            json = null;
             return this;
         }
 
@@ -448,6 +1943,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setH2(String h2) {
             this.h2 = h2;
+            json = null;
             return this;
         }
 
@@ -469,6 +1965,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setH3(String h3) {
             this.h3 = h3;
+            json = null;
             return this;
         }
 
@@ -490,6 +1987,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setSubscript(String subscript) {
             this.subscript = subscript;
+            json = null;
             return this;
         }
 
@@ -511,6 +2009,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setSuperscript(String superscript) {
             this.superscript = superscript;
+            json = null;
             return this;
         }
 
@@ -532,6 +2031,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setListOrdered(String listOrdered) {
             this.listOrdered = listOrdered;
+            json = null;
             return this;
         }
 
@@ -553,6 +2053,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setListBullet(String listBullet) {
             this.listBullet = listBullet;
+            json = null;
             return this;
         }
 
@@ -574,6 +2075,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setAlignLeft(String alignLeft) {
             this.alignLeft = alignLeft;
+            json = null;
             return this;
         }
 
@@ -595,6 +2097,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setAlignCenter(String alignCenter) {
             this.alignCenter = alignCenter;
+            json = null;
             return this;
         }
 
@@ -616,6 +2119,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setAlignRight(String alignRight) {
             this.alignRight = alignRight;
+            json = null;
             return this;
         }
 
@@ -637,6 +2141,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setImage(String image) {
             this.image = image;
+            json = null;
             return this;
         }
 
@@ -658,6 +2163,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setLink(String link) {
             this.link = link;
+            json = null;
             return this;
         }
 
@@ -679,6 +2185,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setBlockquote(String blockquote) {
             this.blockquote = blockquote;
+            json = null;
             return this;
         }
 
@@ -700,6 +2207,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setCodeBlock(String codeBlock) {
             this.codeBlock = codeBlock;
+            json = null;
             return this;
         }
 
@@ -721,9 +2229,56 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         public RichTextEditorI18n setClean(String clean) {
             this.clean = clean;
+            json = null;
             return this;
         }
 
+        /**
+         * Gets the JSON representation of these properties. The result is
+         * cached until a property changes and must not be modified.
+         *
+         * @return the properties as JSON
+         */
+        JsonObject toJson() {
+            JsonObject result = json;
+            if (result == null) {
+                // Racing threads may build equal instances, which is harmless
+                result = (JsonObject) JsonSerializer.toJson(this);
+                json = result;
+            }
+            return result;
+        }
+
+        /**
+         * Creates properties from their JSON representation.
+         *
+         * @param json
+         *            the properties as JSON, not {@code null}
+         * @return the new properties instance
+         */
+        static RichTextEditorI18n fromJson(JsonObject json) {
+            // The fluent setters are not bean setters, so the fields are set
+            RichTextEditorI18n i18n = new RichTextEditorI18n();
+            for (String key : json.keys()) {
+                JsonValue value = json.get(key);
+                try {
+                    Field field = RichTextEditorI18n.class
+                            .getDeclaredField(key);
+                    if (field.getType() == String.class) {
+                        field.setAccessible(true);
+                        field.set(i18n, value.getType() == JsonType.NULL
+                                ? null
+                                : value.asString());
+                    }
+                } catch (NoSuchFieldException e) {
+                    // Not a property
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return i18n;
+        }
+
         /**
          * Gets the stringified values of the tooltips.
          *
@@ -774,18 +2329,39 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
      */
     private class AsHtml implements HasValue<ValueChangeEvent<String>, String> {
 
-        private String oldValue;
-        private String value;
+        // The values in the form of the value storage
+        private Object oldValue;
+        private Object value;
         private RichTextEditor rte;
+        // Subscribers are notified through a single editor listener, which
+        // sanitizes the HTML and creates the event only once per change
+        private final List<ValueChangeListener<? super ValueChangeEvent<String>>> listeners = new ArrayList<>(
+                1);
 
         AsHtml(RichTextEditor rte) {
             this.rte = rte;
-            this.value = getHtmlValue();
-            rte.addValueChangeListener(event -> {
-                if (event.isFromClient()) {
-                   setValue(getHtmlValue(), false);
-                }
-            });
+            this.value = valueStorage.store(getHtmlValue());
+            rte.addValueChangeListener(this::onEditorValueChange);
+        }
+
+        private void onEditorValueChange(
+                ComponentValueChangeEvent<RichTextEditor, String> originalEvent) {
+            if (originalEvent.isFromClient()) {
+                setValue(getHtmlValue(), false);
+            }
+            if (listeners.isEmpty()) {
+                return;
+            }
+            HtmlValueChangeEvent event = new HtmlValueChangeEvent(
+                    originalEvent.isFromClient(), ValueStorage.load(oldValue),
+                    getValue());
+            // Listeners may be removed while notifying
+            List<ValueChangeListener<? super ValueChangeEvent<String>>> notified = new ArrayList<>(
+                    listeners);
+            for (ValueChangeListener<? super ValueChangeEvent<String>> listener : notified) {
+                listener.valueChanged(event);
+            }
+            metrics.asHtmlEventDispatched(notified.size());
         }
 
         /**
@@ -805,11 +2381,12 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         @Override
         public void setValue(String value) {
-            this.oldValue = getValue();
-            this.value = value;
+            this.oldValue = this.value;
+            this.value = valueStorage.store(value);
             setHtmlValueAsynchronously(value).then(result -> {
-                if (oldValue != null && !oldValue.equals(value)) {
-                    fireEvent(createValueChange(oldValue, false));
+                String previous = ValueStorage.load(oldValue);
+                if (previous != null && !previous.equals(value)) {
+                    fireEvent(createValueChange(previous, false));
                 }
             });
         }
@@ -818,11 +2395,21 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
             if (fireEvent) {
                 setValue(value);
             } else {
-                this.oldValue = getValue();
-                this.value = value;
+                this.oldValue = this.value;
+                this.value = valueStorage.store(value);
             }
         }
 
+        private void discardValues() {
+            oldValue = null;
+            value = valueStorage.store(getHtmlValue());
+        }
+
+        private void restore() {
+            oldValue = valueStorage.store(ValueStorage.load(oldValue));
+            value = valueStorage.store(ValueStorage.load(value));
+        }
+
         private ComponentValueChangeEvent<RichTextEditor, String> createValueChange(String oldValue,
                                                                   boolean fromClient) {
             return new ComponentValueChangeEvent<>(rte, this, oldValue,
@@ -848,7 +2435,7 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          */
         @Override
         public String getValue() {
-            return value;
+            return ValueStorage.load(value);
         }
 
         /**
@@ -860,32 +2447,44 @@ public class RichTextEditor extends GeneratedVaadinRichTextEditor<RichTextEditor
          * @return a registration for the listener
          */
         @Override
-        public Registration addValueChangeListener(ValueChangeListener listener) {
-            return
-                    rte.addValueChangeListener(originalEvent -> {
-                        ValueChangeEvent event = new ValueChangeEvent<String>() {
-                            @Override
-                            public HasValue<ValueChangeEvent<String>, String> getHasValue() {
-                                return AsHtml.this;
-                            }
-
-                            @Override
-                            public boolean isFromClient() {
-                                return originalEvent.isFromClient();
-                            }
-
-                            @Override
-                            public String getOldValue() {
-                                return oldValue;
-                            }
-
-                            @Override
-                            public String getValue() {
-                                return AsHtml.this.getValue();
-                            }
-                        };
-                        listener.valueChanged(event);
-                    });
+        public Registration addValueChangeListener(
+                ValueChangeListener<? super ValueChangeEvent<String>> listener) {
+            Objects.requireNonNull(listener, "Listener should not be null");
+            listeners.add(listener);
+            return () -> listeners.remove(listener);
+        }
+
+        private class HtmlValueChangeEvent implements ValueChangeEvent<String> {
+            private final boolean fromClient;
+            private final String oldValue;
+            private final String value;
+
+            private HtmlValueChangeEvent(boolean fromClient, String oldValue,
+                    String value) {
+                this.fromClient = fromClient;
+                this.oldValue = oldValue;
+                this.value = value;
+            }
+
+            @Override
+            public HasValue<ValueChangeEvent<String>, String> getHasValue() {
+                return AsHtml.this;
+            }
+
+            @Override
+            public boolean isFromClient() {
+                return fromClient;
+            }
+
+            @Override
+            public String getOldValue() {
+                return oldValue;
+            }
+
+            @Override
+            public String getValue() {
+                return value;
+            }
         }
 
         /**
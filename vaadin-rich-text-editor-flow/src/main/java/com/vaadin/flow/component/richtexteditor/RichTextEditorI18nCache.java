@@ -0,0 +1,269 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import com.vaadin.flow.component.richtexteditor.RichTextEditor.RichTextEditorI18n;
+import com.vaadin.flow.internal.JsonSerializer;
+import com.vaadin.flow.server.VaadinContext;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * An immutable cache of {@link RichTextEditorI18n internationalization
+ * properties} by locale, applied automatically by {@link RichTextEditor}
+ * according to the locale of its UI.
+ * <p>
+ * The JSON sent to the client is built once per locale when the cache is
+ * created, so applying the properties costs no serialization per editor. A
+ * cache is thread-safe and meant to be shared by the whole application,
+ * either by registering it with
+ * {@link #setApplicationCache(VaadinContext, RichTextEditorI18nCache)} or by
+ * setting it on individual editors with
+ * {@link RichTextEditor#setI18nCache(RichTextEditorI18nCache)}:
+ *
+ * <pre>
+ * RichTextEditorI18nCache.setApplicationCache(service.getContext(),
+ *         RichTextEditorI18nCache.fromResourceBundle("rte", Locale.ENGLISH,
+ *                 new Locale("fi")));
+ * </pre>
+ *
+ * The {@code with} methods never modify the cache they are called on, but
+ * return a new cache with the given additions instead.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#localeChange(com.vaadin.flow.i18n.LocaleChangeEvent)
+ */
+public final class RichTextEditorI18nCache implements Serializable {
+
+    private static final RichTextEditorI18nCache EMPTY = new RichTextEditorI18nCache(
+            Collections.emptyMap());
+
+    private final Map<Locale, Entry> entries;
+
+    private RichTextEditorI18nCache(Map<Locale, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Gets a cache without any locales.
+     *
+     * @return the empty cache, not {@code null}
+     */
+    public static RichTextEditorI18nCache empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a cache with the properties of the given locales loaded from
+     * resource bundles. The bundle keys are the property names of
+     * {@link RichTextEditorI18n}, e.g. {@code undo} or {@code alignLeft}.
+     * Other keys are ignored.
+     * <p>
+     * The bundles are looked up without falling back to the default locale
+     * of the JVM, so a locale without a bundle of its own gets the base
+     * bundle.
+     *
+     * @param baseName
+     *            the base name of the resource bundle, not {@code null}
+     * @param locales
+     *            the locales to load, not {@code null}
+     * @return a new cache instance, not {@code null}
+     * @throws MissingResourceException
+     *             if no bundle is found for a locale
+     */
+    public static RichTextEditorI18nCache fromResourceBundle(String baseName,
+            Locale... locales) {
+        Objects.requireNonNull(baseName, "The base name should not be null");
+        Objects.requireNonNull(locales, "Locales should not be null");
+        RichTextEditorI18nCache cache = EMPTY;
+        ResourceBundle.Control control = ResourceBundle.Control
+                .getNoFallbackControl(
+                        ResourceBundle.Control.FORMAT_DEFAULT);
+        for (Locale locale : locales) {
+            cache = cache.with(locale,
+                    ResourceBundle.getBundle(baseName, locale, control));
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a new cache which additionally contains the given properties
+     * for the given locale. The properties are copied, so later changes to
+     * the given object do not affect the cache.
+     *
+     * @param locale
+     *            the locale, not {@code null}
+     * @param i18n
+     *            the properties, not {@code null}
+     * @return a new cache instance, not {@code null}
+     */
+    public RichTextEditorI18nCache with(Locale locale,
+            RichTextEditorI18n i18n) {
+        Objects.requireNonNull(i18n,
+                "The I18N properties object should not be null");
+        return with(locale, (JsonObject) JsonSerializer.toJson(i18n));
+    }
+
+    /**
+     * Returns a new cache which additionally contains the properties read
+     * from the given resource bundle for the given locale.
+     *
+     * @param locale
+     *            the locale, not {@code null}
+     * @param bundle
+     *            the resource bundle with property names as keys, not
+     *            {@code null}
+     * @return a new cache instance, not {@code null}
+     * @see #fromResourceBundle(String, Locale...)
+     */
+    public RichTextEditorI18nCache with(Locale locale, ResourceBundle bundle) {
+        Objects.requireNonNull(bundle, "The bundle should not be null");
+        JsonObject json = (JsonObject) JsonSerializer
+                .toJson(new RichTextEditorI18n());
+        for (String key : json.keys()) {
+            if (bundle.containsKey(key)) {
+                json.put(key, bundle.getString(key));
+            }
+        }
+        return with(locale, json);
+    }
+
+    private RichTextEditorI18nCache with(Locale locale, JsonObject json) {
+        Objects.requireNonNull(locale, "The locale should not be null");
+        Map<Locale, Entry> newEntries = new LinkedHashMap<>(entries);
+        newEntries.put(locale, new Entry(json));
+        return new RichTextEditorI18nCache(
+                Collections.unmodifiableMap(newEntries));
+    }
+
+    /**
+     * Gets the locales in this cache.
+     *
+     * @return an unmodifiable set of the locales, not {@code null}
+     */
+    public Set<Locale> getLocales() {
+        return entries.keySet();
+    }
+
+    /**
+     * Gets a copy of the properties for the given locale. If there are no
+     * properties for the exact locale, the properties of the locale without
+     * variant, without country and finally of {@link Locale#ROOT} are used.
+     *
+     * @param locale
+     *            the locale, not {@code null}
+     * @return a copy of the properties, or {@code null} if there are none for
+     *         the locale
+     */
+    public RichTextEditorI18n get(Locale locale) {
+        JsonObject json = getJson(locale);
+        return json == null ? null : RichTextEditorI18n.fromJson(json);
+    }
+
+    /**
+     * Gets the shared JSON representation of the properties for the given
+     * locale, with the same fallback as {@link #get(Locale)}. The result
+     * must not be modified.
+     *
+     * @param locale
+     *            the locale, not {@code null}
+     * @return the properties as JSON, or {@code null} if there are none for
+     *         the locale
+     */
+    JsonObject getJson(Locale locale) {
+        Objects.requireNonNull(locale, "The locale should not be null");
+        Entry entry = entries.get(locale);
+        if (entry == null && !locale.getVariant().isEmpty()) {
+            entry = entries.get(
+                    new Locale(locale.getLanguage(), locale.getCountry()));
+        }
+        if (entry == null && !locale.getCountry().isEmpty()) {
+            entry = entries.get(new Locale(locale.getLanguage()));
+        }
+        if (entry == null) {
+            entry = entries.get(Locale.ROOT);
+        }
+        return entry == null ? null : entry.getJson();
+    }
+
+    /**
+     * Sets the cache used by all editors of the application that have no
+     * cache of their own.
+     *
+     * @param context
+     *            the context of the application, not {@code null}
+     * @param cache
+     *            the cache, or {@code null} to remove it
+     */
+    public static void setApplicationCache(VaadinContext context,
+            RichTextEditorI18nCache cache) {
+        Objects.requireNonNull(context, "The context should not be null");
+        if (cache == null) {
+            context.removeAttribute(RichTextEditorI18nCache.class);
+        } else {
+            context.setAttribute(cache);
+        }
+    }
+
+    /**
+     * Gets the cache used by all editors of the application that have no
+     * cache of their own.
+     *
+     * @param context
+     *            the context of the application, not {@code null}
+     * @return the cache, or {@code null} if none is set
+     */
+    public static RichTextEditorI18nCache getApplicationCache(
+            VaadinContext context) {
+        Objects.requireNonNull(context, "The context should not be null");
+        return context.getAttribute(RichTextEditorI18nCache.class);
+    }
+
+    private static final class Entry implements Serializable {
+        // The JSON is kept as a string for serialization
+        private final String value;
+
+        private transient volatile JsonObject json;
+
+        private Entry(JsonObject json) {
+            this.value = json.toJson();
+            this.json = json;
+        }
+
+        private JsonObject getJson() {
+            JsonObject result = json;
+            if (result == null) {
+                // Racing threads may parse equal instances, which is harmless
+                result = Json.parse(value);
+                json = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Receives measurements from the hot paths of a {@link RichTextEditor}, e.g.
+ * for exporting them to a monitoring system.
+ * <p>
+ * All methods do nothing by default, so implementations only override the
+ * ones they are interested in. Methods are called on the thread doing the
+ * work, which may be a request thread holding the session lock or, for
+ * {@link RichTextEditor#fetchHtmlValue()}, a background thread. A metrics
+ * instance is typically shared by all editors, so implementations must be
+ * thread-safe and fast.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setMetrics(RichTextEditorMetrics)
+ * @see InMemoryRichTextEditorMetrics
+ */
+public interface RichTextEditorMetrics extends Serializable {
+
+    /**
+     * Metrics ignoring all measurements. This is the default.
+     */
+    RichTextEditorMetrics NO_OP = new RichTextEditorMetrics() {
+    };
+
+    /**
+     * Called when HTML has been sanitized.
+     *
+     * @param nanos
+     *            the duration of the sanitization in nanoseconds
+     * @param inputLength
+     *            the length of the HTML before sanitization
+     * @param outputLength
+     *            the length of the sanitized HTML
+     */
+    default void sanitized(long nanos, int inputLength, int outputLength) {
+    }
+
+    /**
+     * Called when the value has been synchronized from the client, either as
+     * the whole document or as a change Delta.
+     *
+     * @param bytes
+     *            the UTF-8 encoded size of the synchronized value
+     */
+    default void valueSynchronized(int bytes) {
+    }
+
+    /**
+     * Called when the {@code htmlValue} property has been synchronized from
+     * the client.
+     *
+     * @param bytes
+     *            the UTF-8 encoded size of the synchronized HTML
+     */
+    default void htmlValueSynchronized(int bytes) {
+    }
+
+    /**
+     * Called when internationalization properties have been applied to the
+     * client.
+     *
+     * @param executeJsCalls
+     *            the number of JavaScript calls issued
+     */
+    default void i18nUpdated(int executeJsCalls) {
+    }
+
+    /**
+     * Called when a value change event of {@link RichTextEditor#asHtml()} has
+     * been delivered.
+     *
+     * @param listeners
+     *            the number of listeners the event was delivered to
+     */
+    default void asHtmlEventDispatched(int listeners) {
+    }
+}
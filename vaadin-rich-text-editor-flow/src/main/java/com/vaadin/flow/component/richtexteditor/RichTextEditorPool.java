@@ -0,0 +1,226 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.vaadin.flow.component.AbstractField.ComponentValueChangeEvent;
+import com.vaadin.flow.component.HasValue.ValueChangeListener;
+import com.vaadin.flow.function.SerializableSupplier;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * A bounded pool of {@link RichTextEditor} instances for views that create
+ * and remove editors constantly, such as lists and grids with inline
+ * editing.
+ * <p>
+ * Released editors are reset and kept for the next {@link #acquire()}, so
+ * their listeners, value change mode, i18n properties and other
+ * configuration made when they were created are reused instead of being
+ * built again. A reset clears the value without notifying the value change
+ * listeners, restarts the {@link
+ * RichTextEditor#getRevision() revision}, removes the listeners registered
+ * through the pool and cancels the client commands not sent yet.
+ * Configuration made after acquiring an editor, e.g. read-only state, is
+ * kept, so it should be set again on each acquire, or the listeners
+ * registered for it through the pool.
+ *
+ * <pre>
+ * RichTextEditorPool pool = new RichTextEditorPool(50, () -&gt; {
+ *     RichTextEditor rte = new RichTextEditor();
+ *     rte.setValueChangeMode(ValueChangeMode.EAGER);
+ *     return rte;
+ * });
+ * RichTextEditor rte = pool.acquire();
+ * pool.addValueChangeListener(rte, event -&gt; save(event.getValue()));
+ * ...
+ * pool.release(rte);
+ * </pre>
+ *
+ * A pool is meant for a single UI and is not thread-safe.
+ *
+ * @author Vaadin Ltd
+ */
+public class RichTextEditorPool implements Serializable {
+
+    private final int maxSize;
+    private final SerializableSupplier<RichTextEditor> factory;
+    private final Deque<RichTextEditor> idle = new ArrayDeque<>();
+    private final Map<RichTextEditor, List<Registration>> registrations = new IdentityHashMap<>();
+    private long hits;
+    private long misses;
+    private long discarded;
+
+    /**
+     * Creates a pool creating editors with the default constructor.
+     *
+     * @param maxSize
+     *            the maximum number of idle editors kept
+     */
+    public RichTextEditorPool(int maxSize) {
+        this(maxSize, RichTextEditor::new);
+    }
+
+    /**
+     * Creates a pool creating editors with the given factory.
+     *
+     * @param maxSize
+     *            the maximum number of idle editors kept
+     * @param factory
+     *            creates and configures a new editor, not {@code null}
+     */
+    public RichTextEditorPool(int maxSize,
+            SerializableSupplier<RichTextEditor> factory) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum size should not be negative");
+        }
+        this.maxSize = maxSize;
+        this.factory = Objects.requireNonNull(factory,
+                "The factory should not be null");
+    }
+
+    /**
+     * Gets an idle editor from the pool, or creates a new one if the pool is
+     * empty.
+     *
+     * @return an empty, detached editor, not {@code null}
+     */
+    public RichTextEditor acquire() {
+        RichTextEditor editor = idle.poll();
+        if (editor != null) {
+            hits++;
+            return editor;
+        }
+        misses++;
+        return Objects.requireNonNull(factory.get(),
+                "The factory should not return null");
+    }
+
+    /**
+     * Adds a value change listener to an acquired editor, removed when the
+     * editor is released.
+     *
+     * @param editor
+     *            the editor, not {@code null}
+     * @param listener
+     *            the listener, not {@code null}
+     * @return a registration for removing the listener earlier
+     */
+    public Registration addValueChangeListener(RichTextEditor editor,
+            ValueChangeListener<? super ComponentValueChangeEvent<RichTextEditor, String>> listener) {
+        Objects.requireNonNull(editor, "The editor should not be null");
+        return register(editor, editor.addValueChangeListener(listener));
+    }
+
+    /**
+     * Registers any listener added to an acquired editor to be removed when
+     * the editor is released, e.g.
+     * {@code pool.register(rte, rte.addBlurListener(...))}.
+     *
+     * @param editor
+     *            the editor, not {@code null}
+     * @param registration
+     *            the registration of the listener, not {@code null}
+     * @return the given registration
+     */
+    public Registration register(RichTextEditor editor,
+            Registration registration) {
+        Objects.requireNonNull(editor, "The editor should not be null");
+        Objects.requireNonNull(registration,
+                "The registration should not be null");
+        registrations.computeIfAbsent(editor, key -> new ArrayList<>())
+                .add(registration);
+        return registration;
+    }
+
+    /**
+     * Returns an editor to the pool. The editor is detached if it is still
+     * attached, its pool listeners are removed and it is reset. If the pool
+     * is full, the editor is left for garbage collection.
+     *
+     * @param editor
+     *            the editor to release, not {@code null}
+     */
+    public void release(RichTextEditor editor) {
+        Objects.requireNonNull(editor, "The editor should not be null");
+        editor.getElement().removeFromParent();
+        List<Registration> editorRegistrations = registrations.remove(editor);
+        if (editorRegistrations != null) {
+            editorRegistrations.forEach(Registration::remove);
+        }
+        editor.reset();
+        if (idle.size() < maxSize && !idle.contains(editor)) {
+            idle.push(editor);
+        } else {
+            discarded++;
+        }
+    }
+
+    /**
+     * Gets the maximum number of idle editors kept.
+     *
+     * @return the maximum size of the pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the number of idle editors in the pool.
+     *
+     * @return the number of idle editors
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of acquires served with an idle editor.
+     *
+     * @return the number of pool hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of acquires that created a new editor.
+     *
+     * @return the number of pool misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of released editors not kept, as the pool was full.
+     *
+     * @return the number of discarded editors
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+}
@@ -0,0 +1,350 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.HasSize;
+import com.vaadin.flow.component.HasStyle;
+import com.vaadin.flow.component.Tag;
+
+/**
+ * A read-only component displaying rich text content rendered as sanitized
+ * HTML on the server.
+ * <p>
+ * Unlike a read-only {@link RichTextEditor}, the viewer is a plain
+ * {@code <div>} element: it loads no web component, builds no toolbar and
+ * synchronizes no properties from the client, so it is suitable for pages
+ * showing many entries, such as comment threads or audit logs. The content
+ * is either a <a href="https://github.com/quilljs/delta">Delta</a> value,
+ * rendered with {@link DeltaHtmlRenderer}, or an HTML value. Both are
+ * sanitized with the {@link #setSanitizerPolicy(SanitizerPolicy) sanitizer
+ * policy}.
+ * <p>
+ * The rendered HTML is cached for the whole application by the content and
+ * the sanitizer policy, so displaying the same content again does not render
+ * or sanitize it again. The cache holds at most
+ * {@link #setRenderCacheSize(int) a given number of characters} of content
+ * and HTML, by default {@value #DEFAULT_RENDER_CACHE_SIZE}.
+ *
+ * @author Vaadin Ltd
+ */
+@Tag(Tag.DIV)
+public class RichTextViewer extends Component implements HasSize, HasStyle {
+
+    private static final DeltaHtmlRenderer DELTA_HTML_RENDERER = new DeltaHtmlRenderer();
+    /**
+     * The default maximum number of characters in the render cache.
+     */
+    public static final int DEFAULT_RENDER_CACHE_SIZE = 4 * 1024 * 1024;
+
+    private static final RenderCache RENDER_CACHE = new RenderCache(
+            DEFAULT_RENDER_CACHE_SIZE);
+
+    private SanitizerPolicy sanitizerPolicy = SanitizerPolicy.defaultPolicy();
+    private String value = "";
+    private boolean htmlContent;
+    private String renderedHtml = "";
+
+    /**
+     * Constructs an empty viewer.
+     */
+    public RichTextViewer() {
+        getElement().getClassList().add("rich-text-viewer");
+    }
+
+    /**
+     * Constructs a viewer displaying the given value.
+     *
+     * @param value
+     *            the value in Delta format, not {@code null}
+     * @see #setValue(String)
+     */
+    public RichTextViewer(String value) {
+        this();
+        setValue(value);
+    }
+
+    /**
+     * Sets the displayed content from a value in
+     * <a href="https://github.com/quilljs/delta">Delta</a> format, e.g. the
+     * value of a {@link RichTextEditor}.
+     *
+     * @param value
+     *            the value in Delta format, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not in Delta format
+     */
+    public void setValue(String value) {
+        Objects.requireNonNull(value, "The value should not be null");
+        setContent(value, false);
+    }
+
+    /**
+     * Sets the displayed content from a {@link Delta} document.
+     *
+     * @param delta
+     *            the document, not {@code null}
+     */
+    public void setDelta(Delta delta) {
+        Objects.requireNonNull(delta, "The Delta should not be null");
+        setValue(delta.toValue());
+    }
+
+    /**
+     * Sets the displayed content from HTML, e.g. the HTML value of a
+     * {@link RichTextEditor}. The HTML is sanitized before it is displayed.
+     *
+     * @param htmlValue
+     *            the HTML, not {@code null}
+     */
+    public void setHtmlValue(String htmlValue) {
+        Objects.requireNonNull(htmlValue, "The HTML value should not be null");
+        setContent(htmlValue, true);
+    }
+
+    /**
+     * Gets the value set with {@link #setValue(String)}.
+     *
+     * @return the value in Delta format, or {@code null} if the content was
+     *         set as HTML
+     */
+    public String getValue() {
+        return htmlContent ? null : value;
+    }
+
+    /**
+     * Gets the displayed HTML.
+     *
+     * @return the rendered and sanitized HTML, not {@code null}
+     */
+    public String getHtmlValue() {
+        return renderedHtml;
+    }
+
+    /**
+     * Gets the policy the displayed HTML is sanitized with.
+     *
+     * @return the sanitizer policy, not {@code null}
+     */
+    public SanitizerPolicy getSanitizerPolicy() {
+        return sanitizerPolicy;
+    }
+
+    /**
+     * Sets the policy the displayed HTML is sanitized with. The default is
+     * {@link SanitizerPolicy#defaultPolicy()}, like with
+     * {@link RichTextEditor}.
+     *
+     * @param sanitizerPolicy
+     *            the sanitizer policy, not {@code null}
+     */
+    public void setSanitizerPolicy(SanitizerPolicy sanitizerPolicy) {
+        this.sanitizerPolicy = Objects.requireNonNull(sanitizerPolicy,
+                "The sanitizer policy should not be null");
+        setContent(value, htmlContent);
+    }
+
+    private void setContent(String content, boolean html) {
+        String rendered = RENDER_CACHE.get(sanitizerPolicy, content, html);
+        value = content;
+        htmlContent = html;
+        if (!rendered.equals(renderedHtml)) {
+            renderedHtml = rendered;
+            getElement().setProperty("innerHTML", rendered);
+        }
+    }
+
+    /**
+     * Sets the maximum total number of characters of the content and the
+     * rendered HTML kept in the render cache shared by all viewers of the
+     * application. Least recently used entries are removed first, and content
+     * taking more than a quarter of the size is not cached. Zero turns the
+     * cache off.
+     *
+     * @param maxCharacters
+     *            the maximum number of characters, not negative
+     */
+    public static void setRenderCacheSize(int maxCharacters) {
+        if (maxCharacters < 0) {
+            throw new IllegalArgumentException(
+                    "The render cache size should not be negative");
+        }
+        RENDER_CACHE.setMaxCharacters(maxCharacters);
+    }
+
+    /**
+     * Gets the maximum total number of characters in the render cache.
+     *
+     * @return the maximum number of characters
+     */
+    public static int getRenderCacheSize() {
+        return RENDER_CACHE.getMaxCharacters();
+    }
+
+    /**
+     * Removes all entries from the render cache, e.g. when the memory is
+     * needed elsewhere.
+     */
+    public static void clearRenderCache() {
+        RENDER_CACHE.clear();
+    }
+
+    static RenderCache getRenderCache() {
+        return RENDER_CACHE;
+    }
+
+    /*
+     * A least recently used cache of rendered HTML. The entries are found by
+     * the content hash, and the content is compared before an entry is used,
+     * so that crafted hash collisions cannot show the HTML of other content.
+     */
+    static final class RenderCache implements Serializable {
+        private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f,
+                true);
+        private int maxCharacters;
+        private long characters;
+        private long hits;
+        private long misses;
+
+        private RenderCache(int maxCharacters) {
+            this.maxCharacters = maxCharacters;
+        }
+
+        synchronized int getMaxCharacters() {
+            return maxCharacters;
+        }
+
+        synchronized void setMaxCharacters(int maxCharacters) {
+            this.maxCharacters = maxCharacters;
+            evict();
+        }
+
+        synchronized long getCharacters() {
+            return characters;
+        }
+
+        String get(SanitizerPolicy policy, String content, boolean html) {
+            if (content.length() > getMaxCharacters() / 4) {
+                return render(policy, content, html);
+            }
+            Key key = new Key(policy, RichTextEditor.hash(content),
+                    content.length(), html);
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.content.equals(content)) {
+                    hits++;
+                    return entry.rendered;
+                }
+                misses++;
+            }
+            // Rendered outside the lock, as the same content is rarely
+            // rendered concurrently
+            String rendered = render(policy, content, html);
+            Entry entry = new Entry(content, rendered);
+            synchronized (this) {
+                Entry replaced = entries.put(key, entry);
+                characters += entry.size()
+                        - (replaced == null ? 0 : replaced.size());
+                evict();
+            }
+            return rendered;
+        }
+
+        private void evict() {
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (characters > maxCharacters && eldest.hasNext()) {
+                characters -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+
+        private static String render(SanitizerPolicy policy, String content,
+                boolean html) {
+            if (content.isEmpty()) {
+                return "";
+            }
+            return policy.sanitize(
+                    html ? content : DELTA_HTML_RENDERER.render(content));
+        }
+
+        synchronized long getHits() {
+            return hits;
+        }
+
+        synchronized long getMisses() {
+            return misses;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            characters = 0;
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    private static final class Key implements Serializable {
+        private final SanitizerPolicy policy;
+        private final long hash;
+        private final int length;
+        private final boolean html;
+
+        private Key(SanitizerPolicy policy, long hash, int length,
+                boolean html) {
+            this.policy = policy;
+            this.hash = hash;
+            this.length = length;
+            this.html = html;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && length == other.length
+                    && html == other.html && policy.equals(other.policy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+    }
+
+    private static final class Entry implements Serializable {
+        private final String content;
+        private final String rendered;
+
+        private Entry(String content, String rendered) {
+            this.content = content;
+            this.rendered = rendered;
+        }
+
+        private long size() {
+            return (long) content.length() + rendered.length();
+        }
+    }
+}
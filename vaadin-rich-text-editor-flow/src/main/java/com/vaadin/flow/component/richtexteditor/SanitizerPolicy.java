@@ -0,0 +1,590 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.safety.Whitelist;
+
+/**
+ * An immutable allowlist describing which HTML tags, attributes and URL
+ * protocols survive sanitization of the {@link RichTextEditor} HTML value.
+ * <p>
+ * A policy is thread-safe and can be shared freely between editor instances,
+ * sessions and threads. The underlying jsoup {@link Whitelist} is built only
+ * once per policy instance, so sanitizing with a shared policy does not pay
+ * the cost of rebuilding the allowlist on every call.
+ * <p>
+ * The {@code allow*} and {@link #enforceAttribute(String, String, String)
+ * enforceAttribute} methods never modify the policy they are called on, but
+ * return a new policy with the given additions instead:
+ *
+ * <pre>
+ * SanitizerPolicy policy = SanitizerPolicy.defaultPolicy()
+ *         .allowTags("h4", "h5")
+ *         .allowAttributes("span", "class");
+ * richTextEditor.setSanitizerPolicy(policy);
+ * </pre>
+ *
+ * Create custom policies once, for example in a {@code static final} field,
+ * and reuse them to benefit from the shared allowlist.
+ * <p>
+ * Very large documents can be sanitized in a streaming mode which processes
+ * the HTML token by token instead of building DOM trees of the whole
+ * document, see {@link #withStreamingThreshold(int)} and
+ * {@link #sanitize(Reader, Appendable)}.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setSanitizerPolicy(SanitizerPolicy)
+ */
+public final class SanitizerPolicy implements Serializable {
+
+    /**
+     * Pseudo tag name for attributes that are allowed on all tags.
+     */
+    public static final String ALL_TAGS = ":all";
+
+    private static final SanitizerPolicy NONE = new SanitizerPolicy(
+            Collections.emptySet(), Collections.emptyMap(),
+            Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyMap(), Integer.MAX_VALUE);
+
+    private static final SanitizerPolicy BASIC = NONE
+            .allowTags("a", "b", "blockquote", "br", "cite", "code", "dd",
+                    "dl", "dt", "em", "i", "li", "ol", "p", "pre", "q",
+                    "small", "span", "strike", "strong", "sub", "sup", "u",
+                    "ul")
+            .allowAttributes("a", "href")
+            .allowAttributes("blockquote", "cite")
+            .allowAttributes("q", "cite")
+            .allowProtocols("a", "href", "ftp", "http", "https", "mailto")
+            .allowProtocols("blockquote", "cite", "http", "https")
+            .allowProtocols("cite", "cite", "http", "https")
+            .enforceAttribute("a", "rel", "nofollow");
+
+    // Using basic whitelist and adding img tag with data protocol enabled.
+    private static final SanitizerPolicy DEFAULT = BASIC
+            .allowTags("img", "h1", "h2", "h3", "s")
+            .allowAttributes("img", "align", "alt", "height", "src", "title",
+                    "width")
+            .allowAttributes(ALL_TAGS, "style")
+            .allowProtocols("img", "src", "data");
+
+    private final Set<String> tags;
+    private final Map<String, Set<String>> attributes;
+    private final Map<String, Map<String, Set<String>>> protocols;
+    private final Map<String, Map<String, Set<String>>> urlPrefixes;
+    private final Map<String, Map<String, String>> enforcedAttributes;
+    private final int streamingThreshold;
+
+    private transient volatile Whitelist whitelist;
+    private transient volatile SanitizerPolicy imageResourcePolicy;
+
+    private SanitizerPolicy(Set<String> tags,
+            Map<String, Set<String>> attributes,
+            Map<String, Map<String, Set<String>>> protocols,
+            Map<String, Map<String, Set<String>>> urlPrefixes,
+            Map<String, Map<String, String>> enforcedAttributes,
+            int streamingThreshold) {
+        this.tags = tags;
+        this.attributes = attributes;
+        this.protocols = protocols;
+        this.urlPrefixes = urlPrefixes;
+        this.enforcedAttributes = enforcedAttributes;
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Gets a policy that allows only text. All HTML tags are removed.
+     *
+     * @return the policy allowing no tags, not {@code null}
+     */
+    public static SanitizerPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Gets a policy equivalent to jsoup's {@link Whitelist#basic()}: simple
+     * text formatting, lists, quotes and links with {@code rel="nofollow"}.
+     *
+     * @return the basic policy, not {@code null}
+     */
+    public static SanitizerPolicy basic() {
+        return BASIC;
+    }
+
+    /**
+     * Gets the policy used by {@link RichTextEditor} unless another policy is
+     * set. It extends {@link #basic()} with the tags produced by the editor:
+     * headers, strike-through and images with inline {@code data:} sources,
+     * and allows the {@code style} attribute on all tags for text alignment.
+     *
+     * @return the default policy, not {@code null}
+     */
+    public static SanitizerPolicy defaultPolicy() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a new policy which additionally allows the given tags.
+     *
+     * @param tags
+     *            the names of the tags to allow, not {@code null}
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy allowTags(String... tags) {
+        Objects.requireNonNull(tags, "Tags should not be null");
+        Set<String> newTags = new LinkedHashSet<>(this.tags);
+        for (String tag : tags) {
+            newTags.add(normalize(tag));
+        }
+        return new SanitizerPolicy(Collections.unmodifiableSet(newTags),
+                attributes, protocols, urlPrefixes, enforcedAttributes,
+                streamingThreshold);
+    }
+
+    /**
+     * Returns a new policy which additionally allows the given attributes on
+     * the given tag. Use {@link #ALL_TAGS} as the tag name to allow the
+     * attributes on all tags.
+     * <p>
+     * The tag itself must be allowed separately with
+     * {@link #allowTags(String...)}.
+     *
+     * @param tag
+     *            the name of the tag, not {@code null}
+     * @param attributes
+     *            the names of the attributes to allow, not {@code null}
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy allowAttributes(String tag, String... attributes) {
+        Objects.requireNonNull(attributes, "Attributes should not be null");
+        String tagName = normalize(tag);
+        Map<String, Set<String>> newAttributes = new LinkedHashMap<>(
+                this.attributes);
+        Set<String> tagAttributes = new LinkedHashSet<>(
+                newAttributes.getOrDefault(tagName, Collections.emptySet()));
+        for (String attribute : attributes) {
+            tagAttributes.add(normalize(attribute));
+        }
+        newAttributes.put(tagName,
+                Collections.unmodifiableSet(tagAttributes));
+        return new SanitizerPolicy(tags,
+                Collections.unmodifiableMap(newAttributes), protocols,
+                urlPrefixes, enforcedAttributes, streamingThreshold);
+    }
+
+    /**
+     * Returns a new policy which restricts the URL protocols allowed in the
+     * given attribute of the given tag. Once protocols are defined for an
+     * attribute, values which do not start with one of them are removed.
+     * <p>
+     * The attribute itself must be allowed separately with
+     * {@link #allowAttributes(String, String...)}.
+     *
+     * @param tag
+     *            the name of the tag, not {@code null}
+     * @param attribute
+     *            the name of the URL attribute, not {@code null}
+     * @param protocols
+     *            the protocols to allow without the trailing colon, e.g.
+     *            {@code "https"}, not {@code null}
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy allowProtocols(String tag, String attribute,
+            String... protocols) {
+        Objects.requireNonNull(protocols, "Protocols should not be null");
+        String tagName = normalize(tag);
+        String attributeName = normalize(attribute);
+        return new SanitizerPolicy(tags, attributes,
+                addValues(this.protocols, tagName, attributeName, protocols,
+                        "Protocol should not be null"),
+                urlPrefixes, enforcedAttributes, streamingThreshold);
+    }
+
+    /**
+     * Returns a new policy which allows URLs starting with one of the given
+     * prefixes in the given attribute of the given tag, regardless of the
+     * {@link #allowProtocols(String, String, String...) allowed protocols}.
+     * This allows e.g. relative URLs of resources served by the application
+     * itself, which would otherwise be removed from attributes with
+     * restricted protocols. The URLs are kept as is.
+     * <p>
+     * The attribute itself must be allowed separately with
+     * {@link #allowAttributes(String, String...)}.
+     *
+     * @param tag
+     *            the name of the tag, not {@code null}
+     * @param attribute
+     *            the name of the URL attribute, not {@code null}
+     * @param prefixes
+     *            the URL prefixes to allow, e.g.
+     *            {@code "VAADIN/dynamic/resource/"}, not {@code null}
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy allowUrlPrefixes(String tag, String attribute,
+            String... prefixes) {
+        Objects.requireNonNull(prefixes, "Prefixes should not be null");
+        return new SanitizerPolicy(tags, attributes, protocols,
+                addValues(urlPrefixes, normalize(tag), normalize(attribute),
+                        prefixes, "Prefix should not be null"),
+                enforcedAttributes, streamingThreshold);
+    }
+
+    private static Map<String, Map<String, Set<String>>> addValues(
+            Map<String, Map<String, Set<String>>> valuesByTag, String tag,
+            String attribute, String[] values, String nullMessage) {
+        Map<String, Map<String, Set<String>>> newValuesByTag = new LinkedHashMap<>(
+                valuesByTag);
+        Map<String, Set<String>> tagValues = new LinkedHashMap<>(
+                newValuesByTag.getOrDefault(tag, Collections.emptyMap()));
+        Set<String> attributeValues = new LinkedHashSet<>(
+                tagValues.getOrDefault(attribute, Collections.emptySet()));
+        for (String value : values) {
+            attributeValues.add(Objects.requireNonNull(value, nullMessage));
+        }
+        tagValues.put(attribute, Collections.unmodifiableSet(attributeValues));
+        newValuesByTag.put(tag, Collections.unmodifiableMap(tagValues));
+        return Collections.unmodifiableMap(newValuesByTag);
+    }
+
+    /**
+     * Returns a new policy which always sets the given attribute to the given
+     * value on the given tag, e.g. {@code rel="nofollow"} on links.
+     *
+     * @param tag
+     *            the name of the tag, not {@code null}
+     * @param attribute
+     *            the name of the attribute, not {@code null}
+     * @param value
+     *            the value of the attribute, not {@code null}
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy enforceAttribute(String tag, String attribute,
+            String value) {
+        Objects.requireNonNull(value, "Value should not be null");
+        String tagName = normalize(tag);
+        Map<String, Map<String, String>> newEnforced = new LinkedHashMap<>(
+                enforcedAttributes);
+        Map<String, String> tagEnforced = new LinkedHashMap<>(
+                newEnforced.getOrDefault(tagName, Collections.emptyMap()));
+        tagEnforced.put(normalize(attribute), value);
+        newEnforced.put(tagName, Collections.unmodifiableMap(tagEnforced));
+        return new SanitizerPolicy(tags, attributes, protocols, urlPrefixes,
+                Collections.unmodifiableMap(newEnforced), streamingThreshold);
+    }
+
+    /**
+     * Returns a new policy which sanitizes documents of at least the given
+     * length in streaming mode. By default streaming mode is not used by
+     * {@link #sanitize(String)}.
+     * <p>
+     * In streaming mode the HTML is processed token by token, so memory use
+     * stays flat regardless of the document size. The same tags, attributes
+     * and protocols are allowed and the output is formatted the same way,
+     * but malformed markup, e.g. misnested formatting tags, may be repaired
+     * differently.
+     *
+     * @param length
+     *            the minimum length of a document to sanitize in streaming
+     *            mode, {@code 0} to always use streaming mode or
+     *            {@link Integer#MAX_VALUE} to never use it
+     * @return a new policy instance, not {@code null}
+     */
+    public SanitizerPolicy withStreamingThreshold(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "Streaming threshold should not be negative");
+        }
+        return new SanitizerPolicy(tags, attributes, protocols, urlPrefixes,
+                enforcedAttributes, length);
+    }
+
+    /**
+     * Gets the minimum length of a document sanitized in streaming mode by
+     * {@link #sanitize(String)}.
+     *
+     * @return the streaming threshold, {@link Integer#MAX_VALUE} if
+     *         streaming mode is not used
+     */
+    public int getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+     * Sanitizes the given HTML snippet by removing all tags, attributes and
+     * URL protocols not allowed by this policy.
+     *
+     * @param html
+     *            the HTML snippet to sanitize, not {@code null}
+     * @return the sanitized HTML, not {@code null}
+     */
+    public String sanitize(String html) {
+        if (html.length() < streamingThreshold) {
+            return Jsoup.clean(html, getWhitelist());
+        }
+        StringBuilder sanitized = new StringBuilder(html.length());
+        try {
+            sanitize(new StringReader(html), sanitized);
+        } catch (IOException e) {
+            // Not thrown by in-memory readers and builders
+            throw new UncheckedIOException(e);
+        }
+        return sanitized.toString();
+    }
+
+    /**
+     * Sanitizes the HTML read from the given reader in streaming mode and
+     * writes the result to the given appendable, regardless of the
+     * {@link #withStreamingThreshold(int) streaming threshold}.
+     * <p>
+     * Neither the input nor the output document is kept in memory. The reader
+     * is not closed.
+     *
+     * @param html
+     *            the reader to read the HTML from, not {@code null}
+     * @param sanitized
+     *            the appendable to write the sanitized HTML to, not
+     *            {@code null}
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    public void sanitize(Reader html, Appendable sanitized)
+            throws IOException {
+        Objects.requireNonNull(html, "The HTML reader should not be null");
+        Objects.requireNonNull(sanitized, "The target should not be null");
+        new StreamingHtmlSanitizer(this, html, sanitized).sanitize();
+    }
+
+    /**
+     * Checks whether the given tag is allowed.
+     *
+     * @param tag
+     *            the lower case tag name
+     * @return {@code true} if the tag is allowed
+     */
+    boolean isAllowedTag(String tag) {
+        return tags.contains(tag);
+    }
+
+    /**
+     * Checks whether the given attribute is allowed on the given tag, with the
+     * same rules as jsoup's whitelist.
+     *
+     * @param tag
+     *            the lower case tag name
+     * @param attribute
+     *            the lower case attribute name
+     * @param value
+     *            the attribute value
+     * @return the value to keep, or {@code null} if the attribute must be
+     *         removed
+     */
+    String sanitizeAttribute(String tag, String attribute, String value) {
+        Set<String> allowed = attributes.get(tag);
+        if (allowed != null && allowed.contains(attribute)) {
+            if (hasAllowedUrlPrefix(tag, attribute, value)) {
+                return value;
+            }
+            Set<String> allowedProtocols = protocols
+                    .getOrDefault(tag, Collections.emptyMap())
+                    .get(attribute);
+            return allowedProtocols == null ? value
+                    : sanitizeUrl(value, allowedProtocols);
+        }
+        Map<String, String> enforced = enforcedAttributes.get(tag);
+        if (enforced != null) {
+            for (Map.Entry<String, String> entry : enforced.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(attribute)) {
+                    return entry.getValue().equals(value) ? value : null;
+                }
+            }
+        }
+        return ALL_TAGS.equals(tag) ? null
+                : sanitizeAttribute(ALL_TAGS, attribute, value);
+    }
+
+    private boolean isAllowedAttribute(String tag, String attribute) {
+        return attributes.getOrDefault(tag, Collections.emptySet())
+                .contains(attribute)
+                || attributes.getOrDefault(ALL_TAGS, Collections.emptySet())
+                        .contains(attribute);
+    }
+
+    private boolean hasAllowedUrlPrefix(String tag, String attribute,
+            String value) {
+        Set<String> prefixes = urlPrefixes
+                .getOrDefault(tag, Collections.emptyMap()).get(attribute);
+        if (prefixes != null) {
+            for (String prefix : prefixes) {
+                if (value.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String sanitizeUrl(String value, Set<String> protocols) {
+        // Like jsoup, make the URL absolute if possible and keep it as is
+        // otherwise, e.g. for unknown protocols
+        String url;
+        try {
+            url = new URL(value).toExternalForm();
+        } catch (MalformedURLException e) {
+            url = value;
+        }
+        String lowerCaseUrl = url.toLowerCase(Locale.ENGLISH);
+        for (String protocol : protocols) {
+            if ("#".equals(protocol)) {
+                if (url.startsWith("#") && !url.matches(".*\\s.*")) {
+                    return url;
+                }
+            } else if (lowerCaseUrl.startsWith(protocol + ":")) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the attributes always added to the given tag.
+     *
+     * @param tag
+     *            the lower case tag name
+     * @return the enforced attributes by name, not {@code null}
+     */
+    Map<String, String> getEnforcedAttributes(String tag) {
+        return enforcedAttributes.getOrDefault(tag, Collections.emptyMap());
+    }
+
+    /**
+     * Gets this policy extended to allow the URLs of the images offloaded to
+     * an {@link ImageStore}. The derived policy is created on first use and
+     * shared by all subsequent calls, so editors with the same policy and an
+     * image store also share the whitelist of the derived policy.
+     *
+     * @return the shared derived policy
+     */
+    SanitizerPolicy withImageResources() {
+        SanitizerPolicy result = imageResourcePolicy;
+        if (result == null) {
+            // Racing threads may derive equal instances, which is harmless
+            result = allowUrlPrefixes("img", "src",
+                    ImageOffloader.RESOURCE_PATH);
+            imageResourcePolicy = result;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the jsoup whitelist corresponding to this policy. The whitelist is
+     * built on first use and shared by all subsequent calls. It must not be
+     * modified.
+     *
+     * @return the shared whitelist
+     */
+    Whitelist getWhitelist() {
+        Whitelist result = whitelist;
+        if (result == null) {
+            // Racing threads may build equal instances, which is harmless
+            result = buildWhitelist();
+            whitelist = result;
+        }
+        return result;
+    }
+
+    private Whitelist buildWhitelist() {
+        Whitelist result = urlPrefixes.isEmpty() ? new Whitelist()
+                : new UrlPrefixWhitelist();
+        if (!tags.isEmpty()) {
+            result.addTags(tags.toArray(new String[0]));
+        }
+        attributes.forEach((tag, names) -> result.addAttributes(tag,
+                names.toArray(new String[0])));
+        protocols.forEach((tag, byAttribute) -> byAttribute
+                .forEach((attribute, names) -> result.addProtocols(tag,
+                        attribute, names.toArray(new String[0]))));
+        enforcedAttributes.forEach((tag, byAttribute) -> byAttribute.forEach(
+                (attribute, value) -> result.addEnforcedAttribute(tag,
+                        attribute, value)));
+        return result;
+    }
+
+    private static String normalize(String name) {
+        Objects.requireNonNull(name, "Name should not be null");
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Name should not be empty");
+        }
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /*
+     * Keeps the URLs with allowed prefixes as is instead of making them
+     * absolute. Serializable only to satisfy the component conventions, the
+     * whitelist itself is never serialized.
+     */
+    private class UrlPrefixWhitelist extends Whitelist implements Serializable {
+        @Override
+        protected boolean isSafeAttribute(String tagName, Element element,
+                Attribute attribute) {
+            return isAllowedAttribute(tagName, attribute.getKey())
+                    && hasAllowedUrlPrefix(tagName, attribute.getKey(),
+                            attribute.getValue())
+                    || super.isSafeAttribute(tagName, element, attribute);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SanitizerPolicy)) {
+            return false;
+        }
+        SanitizerPolicy other = (SanitizerPolicy) obj;
+        return tags.equals(other.tags) && attributes.equals(other.attributes)
+                && protocols.equals(other.protocols)
+                && urlPrefixes.equals(other.urlPrefixes)
+                && enforcedAttributes.equals(other.enforcedAttributes)
+                && streamingThreshold == other.streamingThreshold;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tags, attributes, protocols, urlPrefixes,
+                enforcedAttributes, streamingThreshold);
+    }
+}
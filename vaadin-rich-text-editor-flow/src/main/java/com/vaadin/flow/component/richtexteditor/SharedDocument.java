@@ -0,0 +1,175 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A document edited collaboratively through a {@link CollaborationEngine}:
+ * the current content as a {@link Delta} document and a log of the changes
+ * that led to it, one per revision.
+ * <p>
+ * Changes are submitted with the revision they are based on, and are
+ * transformed against the changes logged after that revision. The log only
+ * keeps a bounded number of recent changes; participants further behind
+ * start over from the whole document. The methods are thread-safe.
+ *
+ * @author Vaadin Ltd
+ */
+final class SharedDocument implements Serializable {
+
+    private static final Delta EMPTY_DOCUMENT = Delta.builder().insert("\n")
+            .build();
+
+    private final int maxLogSize;
+    private final List<CollaborationParticipant> participants = new CopyOnWriteArrayList<>();
+    // The changes from firstRevision to revision
+    private final List<Delta> log = new ArrayList<>();
+    private Delta document = EMPTY_DOCUMENT;
+    private int revision;
+    private int firstRevision;
+
+    SharedDocument(int maxLogSize) {
+        this.maxLogSize = maxLogSize;
+    }
+
+    List<CollaborationParticipant> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * Sets the content of a document that has not been changed yet.
+     *
+     * @param value
+     *            the initial content
+     * @return {@code true} if the content was set
+     */
+    synchronized boolean initialize(Delta value) {
+        if (revision != 0 || !value.isDocument()) {
+            return false;
+        }
+        document = value;
+        return true;
+    }
+
+    /**
+     * Gets the current content and revision.
+     *
+     * @return the current state, not {@code null}
+     */
+    synchronized Update getSnapshot() {
+        return new Update(document, revision);
+    }
+
+    /**
+     * Gets the changes made after the given revision as a single change.
+     *
+     * @param baseRevision
+     *            the revision known by the caller
+     * @return the composed change and the current revision, or {@code null}
+     *         if the changes are no longer logged
+     */
+    synchronized Update getChangesSince(int baseRevision) {
+        if (baseRevision < firstRevision || baseRevision > revision) {
+            return null;
+        }
+        return new Update(composeSince(baseRevision), revision);
+    }
+
+    /**
+     * Applies a change made on the given revision.
+     *
+     * @param baseRevision
+     *            the revision the change is based on
+     * @param change
+     *            the change
+     * @return the change to apply after the submitted one to get to the new
+     *         revision, i.e. the changes the caller had not seen transformed
+     *         against the submitted change, and the new revision, or
+     *         {@code null} if the base revision is no longer logged or the
+     *         change does not apply to the document
+     */
+    synchronized Update submit(int baseRevision, Delta change) {
+        if (baseRevision < firstRevision || baseRevision > revision) {
+            return null;
+        }
+        Delta missed = composeSince(baseRevision);
+        // The logged changes happened first
+        Delta transformed = missed.transform(change, true);
+        Delta changed = document.compose(transformed);
+        if (!changed.isDocument()) {
+            return null;
+        }
+        apply(changed, transformed);
+        return new Update(change.transform(missed, false), revision);
+    }
+
+    /**
+     * Replaces the whole content, regardless of the concurrent changes.
+     *
+     * @param value
+     *            the new content, a document
+     */
+    synchronized void replace(Delta value) {
+        apply(value, value.concat(
+                Delta.builder().delete(document.length()).build()));
+    }
+
+    private void apply(Delta changed, Delta change) {
+        document = changed;
+        log.add(change);
+        revision++;
+        if (log.size() >= 2 * maxLogSize) {
+            // Trimmed in batches to keep adding constant time
+            log.subList(0, log.size() - maxLogSize).clear();
+            firstRevision = revision - maxLogSize;
+        }
+    }
+
+    private Delta composeSince(int baseRevision) {
+        Delta changes = Delta.empty();
+        for (int i = baseRevision - firstRevision; i < log.size(); i++) {
+            changes = changes.compose(log.get(i));
+        }
+        return changes;
+    }
+
+    /**
+     * A change or a document with the revision it leads to.
+     */
+    static final class Update implements Serializable {
+        private final Delta delta;
+        private final int revision;
+
+        private Update(Delta delta, int revision) {
+            this.delta = delta;
+            this.revision = revision;
+        }
+
+        Delta getDelta() {
+            return delta;
+        }
+
+        int getRevision() {
+            return revision;
+        }
+    }
+}
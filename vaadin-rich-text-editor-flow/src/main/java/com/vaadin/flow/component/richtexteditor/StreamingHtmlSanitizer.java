@@ -0,0 +1,1275 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jsoup.nodes.Entities;
+
+/**
+ * Sanitizes HTML token by token, without building a DOM tree of the input
+ * or the output.
+ * <p>
+ * The allowlist semantics are the same as with {@link SanitizerPolicy#sanitize(String)}:
+ * disallowed elements are dropped while their text content is kept,
+ * disallowed attributes are removed, URL attributes are checked against the
+ * allowed protocols and enforced attributes are added. The output is
+ * formatted the same way as jsoup formats the cleaned document.
+ * <p>
+ * Only the open elements and the tag currently being read are kept in
+ * memory, so memory use does not grow with the size of the document. The
+ * tree construction is a subset of the HTML5 algorithm used by jsoup, which
+ * is enough for well-formed markup such as the one produced by the editor.
+ * Malformed markup, e.g. misnested formatting elements, may be repaired
+ * differently than with the DOM based sanitizer, but nothing outside the
+ * allowlist is ever emitted.
+ * <p>
+ * An instance is not thread-safe and sanitizes a single document.
+ *
+ * @author Vaadin Ltd
+ */
+final class StreamingHtmlSanitizer implements Serializable {
+
+    private static final int EOF = -1;
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+    private static final int MAX_ENTITY_LENGTH = 40;
+
+    // Tag categories, as defined by jsoup's org.jsoup.parser.Tag
+    private static final Set<String> INLINE_TAGS = setOf("object", "base",
+            "font", "tt", "i", "b", "u", "big", "small", "em", "strong", "dfn",
+            "code", "samp", "kbd", "var", "cite", "abbr", "time", "acronym",
+            "mark", "ruby", "rt", "rp", "a", "img", "br", "wbr", "map", "q",
+            "sub", "sup", "bdo", "iframe", "embed", "span", "input", "select",
+            "textarea", "label", "button", "optgroup", "option", "legend",
+            "datalist", "keygen", "output", "progress", "meter", "area",
+            "param", "source", "track", "summary", "command", "device",
+            "basefont", "bgsound", "menuitem", "data", "bdi", "s");
+    private static final Set<String> FORMAT_AS_INLINE_TAGS = setOf("title",
+            "a", "p", "h1", "h2", "h3", "h4", "h5", "h6", "pre", "address",
+            "li", "th", "td", "script", "style", "ins", "del", "s");
+    private static final Set<String> EMPTY_TAGS = setOf("meta", "link",
+            "base", "frame", "img", "br", "wbr", "embed", "hr", "input",
+            "keygen", "col", "command", "device", "area", "basefont",
+            "bgsound", "menuitem", "param", "source", "track");
+    private static final Set<String> PRESERVE_WHITESPACE_TAGS = setOf("pre",
+            "plaintext", "title", "textarea");
+    private static final Set<String> BOOLEAN_ATTRIBUTES = setOf(
+            "allowfullscreen", "async", "autofocus", "checked", "compact",
+            "declare", "default", "defer", "disabled", "formnovalidate",
+            "hidden", "inert", "ismap", "itemscope", "multiple", "muted",
+            "nohref", "noresize", "noshade", "novalidate", "nowrap", "open",
+            "readonly", "required", "reversed", "seamless", "selected",
+            "sortable", "truespeed", "typemustmatch");
+
+    // Tree construction, as in jsoup's org.jsoup.parser.HtmlTreeBuilderState
+    private static final Set<String> VOID_TAGS = setOf("area", "br", "embed",
+            "img", "keygen", "wbr", "input", "param", "source", "track", "hr",
+            "base", "basefont", "bgsound", "command", "link", "meta");
+    private static final Set<String> DATA_TAGS = setOf("script", "style");
+    private static final Set<String> RAW_TEXT_TAGS = setOf("xmp", "iframe",
+            "noembed", "noframes", "textarea", "title", "plaintext");
+    private static final Set<String> IGNORED_TAGS = setOf("html", "head",
+            "body", "frameset");
+    private static final Set<String> TABLE_ONLY_TAGS = setOf("caption", "col",
+            "colgroup", "frame", "tbody", "td", "tfoot", "th", "thead", "tr");
+    private static final Set<String> P_CLOSERS = setOf("address", "article",
+            "aside", "blockquote", "center", "details", "dir", "div", "dl",
+            "fieldset", "figcaption", "figure", "footer", "header", "hgroup",
+            "menu", "nav", "ol", "p", "section", "summary", "ul", "pre",
+            "listing", "form", "hr", "xmp", "table", "plaintext", "h1", "h2",
+            "h3", "h4", "h5", "h6");
+    private static final Set<String> HEADINGS = setOf("h1", "h2", "h3", "h4",
+            "h5", "h6");
+    private static final Set<String> SCOPED_END_TAGS = setOf("address",
+            "article", "aside", "blockquote", "button", "center", "details",
+            "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer",
+            "header", "hgroup", "listing", "menu", "nav", "ol", "pre",
+            "section", "summary", "ul", "dd", "dt");
+    private static final Set<String> FORMATTING_TAGS = setOf("a", "b", "big",
+            "code", "em", "font", "i", "nobr", "s", "small", "strike",
+            "strong", "tt", "u");
+    private static final Set<String> MARKER_TAGS = setOf("applet",
+            "marquee", "object");
+    // Start tags before which closed formatting elements are not reopened
+    private static final Set<String> NOT_RECONSTRUCTING_TAGS = setOf(
+            "address", "article", "aside", "blockquote", "center", "details",
+            "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer",
+            "header", "hgroup", "menu", "nav", "ol", "p", "section",
+            "summary", "ul", "h1", "h2", "h3", "h4", "h5", "h6", "pre",
+            "listing", "form", "li", "dd", "dt", "plaintext", "table", "hr",
+            "param", "source", "track", "textarea", "iframe", "noembed",
+            "base", "basefont", "bgsound", "command", "link", "meta",
+            "noframes", "script", "style", "title", "rp", "rt");
+    private static final Set<String> IMPLIED_END_TAGS = setOf("dd", "dt",
+            "li", "option", "optgroup", "p", "rb", "rp", "rt", "rtc");
+    private static final Set<String> SCOPE_BOUNDARIES = setOf("applet",
+            "caption", "html", "marquee", "object", "table", "td", "th");
+    private static final Set<String> SPECIAL_TAGS = setOf("address", "applet",
+            "area", "article", "aside", "base", "basefont", "bgsound",
+            "blockquote", "body", "br", "button", "caption", "center", "col",
+            "colgroup", "command", "dd", "details", "dir", "div", "dl", "dt",
+            "embed", "fieldset", "figcaption", "figure", "footer", "form",
+            "frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head",
+            "header", "hgroup", "hr", "html", "iframe", "img", "input",
+            "isindex", "li", "link", "listing", "marquee", "menu", "meta",
+            "nav", "noembed", "noframes", "noscript", "object", "ol", "p",
+            "param", "plaintext", "pre", "script", "section", "select",
+            "style", "summary", "table", "tbody", "td", "textarea", "tfoot",
+            "th", "thead", "title", "tr", "ul", "wbr", "xmp");
+
+    private static final int WIN1252_EXTENSIONS_START = 0x80;
+    private static final int[] WIN1252_EXTENSIONS = { 0x20AC, 0x0081, 0x201A,
+            0x0192, 0x201E, 0x2026, 0x2020, 0x2021, 0x02C6, 0x2030, 0x0160,
+            0x2039, 0x0152, 0x008D, 0x017D, 0x008F, 0x0090, 0x2018, 0x2019,
+            0x201C, 0x201D, 0x2022, 0x2013, 0x2014, 0x02DC, 0x2122, 0x0161,
+            0x203A, 0x0153, 0x009D, 0x017E, 0x0178 };
+
+    private final SanitizerPolicy policy;
+    private final Input in;
+    private final Output out;
+    private final List<OpenElement> openElements = new ArrayList<>();
+    // Active formatting elements, null entries are markers
+    private final List<OpenElement> formattingElements = new ArrayList<>();
+    private OpenElement formElement;
+    private boolean inTextRun;
+    private boolean pendingNul;
+
+    /**
+     * Creates a sanitizer reading from the given reader and writing the
+     * sanitized HTML to the given appendable.
+     *
+     * @param policy
+     *            the allowlist to apply
+     * @param html
+     *            the HTML to sanitize
+     * @param sanitized
+     *            the target for the sanitized HTML
+     */
+    StreamingHtmlSanitizer(SanitizerPolicy policy, Reader html,
+            Appendable sanitized) {
+        this.policy = policy;
+        this.in = new Input(html);
+        this.out = new Output(sanitized);
+    }
+
+    /**
+     * Reads the whole input and writes the sanitized HTML.
+     *
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    void sanitize() throws IOException {
+        int c;
+        while ((c = in.read()) != EOF) {
+            if (c == '<') {
+                readMarkup();
+            } else if (c == '&') {
+                String reference = readCharacterReference(EOF, false);
+                if (reference == null) {
+                    character('&');
+                } else {
+                    text(reference);
+                }
+            } else {
+                character((char) c);
+            }
+        }
+        endText();
+        while (!openElements.isEmpty()) {
+            pop();
+        }
+        out.finish();
+    }
+
+    private void readMarkup() throws IOException {
+        int c = in.peek(0);
+        if (c == '!') {
+            in.skip(1);
+            readMarkupDeclaration();
+        } else if (c == '/') {
+            in.skip(1);
+            int next = in.peek(0);
+            if (next == EOF) {
+                text("</");
+            } else if (isLetter(next)) {
+                Tag tag = readTag();
+                if (tag != null) {
+                    endText();
+                    endTag(tag.getName());
+                }
+            } else if (next == '>') {
+                in.skip(1);
+            } else {
+                skipBogusComment();
+            }
+        } else if (c == '?') {
+            skipBogusComment();
+        } else if (isLetter(c)) {
+            Tag tag = readTag();
+            if (tag != null) {
+                endText();
+                startTag(tag);
+            }
+        } else {
+            character('<');
+        }
+    }
+
+    private void readMarkupDeclaration() throws IOException {
+        if (in.matches("--")) {
+            in.skip(2);
+            endText();
+            skipComment();
+        } else if (in.matches("[CDATA[")) {
+            in.skip(7);
+            endText();
+            int c;
+            while ((c = in.peek(0)) != EOF && !in.matches("]]>")) {
+                in.skip(1);
+                out.text((char) c);
+            }
+            in.skip(in.matches("]]>") ? 3 : 0);
+            endText();
+        } else {
+            skipBogusComment();
+        }
+    }
+
+    private void skipComment() throws IOException {
+        if (in.matches(">") || in.matches("->")) {
+            in.skip(in.peek(0) == '>' ? 1 : 2);
+            return;
+        }
+        while (in.peek(0) != EOF) {
+            if (in.matches("-->")) {
+                in.skip(3);
+                return;
+            } else if (in.matches("--!>")) {
+                in.skip(4);
+                return;
+            }
+            in.skip(1);
+        }
+    }
+
+    private void skipBogusComment() throws IOException {
+        endText();
+        int c;
+        while ((c = in.read()) != EOF && c != '>') {
+            // skip
+        }
+    }
+
+    /*
+     * Reads a start or an end tag whose name begins at the current position,
+     * following the tag states of jsoup's tokeniser. Returns null if the input
+     * ends before the tag is complete.
+     */
+    private Tag readTag() throws IOException {
+        Tag tag = new Tag();
+        TagState state = TagState.NAME;
+        int quote = EOF;
+        while (true) {
+            int c = in.read();
+            if (c == EOF) {
+                return null;
+            }
+            char replaced = c == 0 ? REPLACEMENT_CHAR : (char) c;
+            switch (state) {
+            case NAME:
+                if (isWhitespace(c)) {
+                    state = TagState.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '/') {
+                    state = TagState.SELF_CLOSING;
+                } else if (c == '<' || c == '>') {
+                    return tag.finish(c == '<' ? in : null);
+                } else {
+                    tag.name.append(replaced);
+                }
+                break;
+            case BEFORE_ATTRIBUTE_NAME:
+            case AFTER_ATTRIBUTE_NAME:
+                if (isWhitespace(c)) {
+                    break;
+                } else if (c == '/') {
+                    state = TagState.SELF_CLOSING;
+                } else if (c == '=' && state == TagState.AFTER_ATTRIBUTE_NAME) {
+                    state = TagState.BEFORE_ATTRIBUTE_VALUE;
+                } else if (c == '>' || (c == '<'
+                        && state == TagState.BEFORE_ATTRIBUTE_NAME)) {
+                    return tag.finish(c == '<' ? in : null);
+                } else {
+                    if (c != 0 || state == TagState.BEFORE_ATTRIBUTE_NAME) {
+                        tag.newAttribute();
+                    }
+                    tag.attributeName.append(replaced);
+                    state = TagState.ATTRIBUTE_NAME;
+                }
+                break;
+            case ATTRIBUTE_NAME:
+                if (isWhitespace(c)) {
+                    state = TagState.AFTER_ATTRIBUTE_NAME;
+                } else if (c == '/') {
+                    state = TagState.SELF_CLOSING;
+                } else if (c == '=') {
+                    state = TagState.BEFORE_ATTRIBUTE_VALUE;
+                } else if (c == '>') {
+                    return tag.finish(null);
+                } else {
+                    tag.attributeName.append(replaced);
+                }
+                break;
+            case BEFORE_ATTRIBUTE_VALUE:
+                if (isWhitespace(c)) {
+                    break;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                    tag.attributeValue = new StringBuilder();
+                    state = TagState.QUOTED_ATTRIBUTE_VALUE;
+                } else if (c == '>') {
+                    return tag.finish(null);
+                } else {
+                    tag.attributeValue = new StringBuilder();
+                    in.unread();
+                    state = TagState.UNQUOTED_ATTRIBUTE_VALUE;
+                }
+                break;
+            case QUOTED_ATTRIBUTE_VALUE:
+            case UNQUOTED_ATTRIBUTE_VALUE:
+                boolean quoted = state == TagState.QUOTED_ATTRIBUTE_VALUE;
+                if (quoted ? c == quote : isWhitespace(c)) {
+                    state = quoted ? TagState.AFTER_QUOTED_ATTRIBUTE_VALUE
+                            : TagState.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '>' && !quoted) {
+                    return tag.finish(null);
+                } else if (c == '&') {
+                    String reference = readCharacterReference(
+                            quoted ? quote : '>', true);
+                    tag.attributeValue
+                            .append(reference == null ? "&" : reference);
+                } else {
+                    tag.attributeValue.append(replaced);
+                }
+                break;
+            case AFTER_QUOTED_ATTRIBUTE_VALUE:
+                if (isWhitespace(c)) {
+                    state = TagState.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '/') {
+                    state = TagState.SELF_CLOSING;
+                } else if (c == '>') {
+                    return tag.finish(null);
+                } else {
+                    in.unread();
+                    state = TagState.BEFORE_ATTRIBUTE_NAME;
+                }
+                break;
+            case SELF_CLOSING:
+                if (c == '>') {
+                    tag.selfClosing = true;
+                    return tag.finish(null);
+                }
+                in.unread();
+                state = TagState.BEFORE_ATTRIBUTE_NAME;
+                break;
+            default:
+                throw new IllegalStateException(state.toString());
+            }
+        }
+    }
+
+    /*
+     * Reads a character reference following an ampersand. Returns null and
+     * consumes nothing if there is no valid reference at the current position.
+     */
+    private String readCharacterReference(int additionalAllowed,
+            boolean inAttribute) throws IOException {
+        int c = in.peek(0);
+        if (c == EOF || c == additionalAllowed || isWhitespace(c) || c == '<'
+                || c == '&') {
+            return null;
+        }
+        if (c == '#') {
+            boolean hex = in.peek(1) == 'x' || in.peek(1) == 'X';
+            int start = hex ? 2 : 1;
+            int end = start;
+            while (end < MAX_ENTITY_LENGTH && isDigit(in.peek(end), hex)) {
+                end++;
+            }
+            if (end == start) {
+                return null;
+            }
+            int codePoint = parseCodePoint(in.substring(start, end), hex);
+            in.skip(end);
+            if (in.peek(0) == ';') {
+                in.skip(1);
+            }
+            return new String(Character.toChars(codePoint));
+        }
+        int end = 0;
+        while (end < MAX_ENTITY_LENGTH && isLetter(in.peek(end))) {
+            end++;
+        }
+        while (end < MAX_ENTITY_LENGTH && isDigit(in.peek(end), false)) {
+            end++;
+        }
+        String name = in.substring(0, end);
+        int next = in.peek(end);
+        boolean found = Entities.isBaseNamedEntity(name)
+                || (Entities.isNamedEntity(name) && next == ';');
+        if (!found || (inAttribute && (isLetter(next) || isDigit(next, false)
+                || next == '=' || next == '-' || next == '_'))) {
+            return null;
+        }
+        in.skip(end);
+        if (next == ';') {
+            in.skip(1);
+        }
+        return Entities.getByName(name);
+    }
+
+    private static int parseCodePoint(String number, boolean hex) {
+        int codePoint;
+        try {
+            codePoint = Integer.parseInt(number, hex ? 16 : 10);
+        } catch (NumberFormatException e) {
+            return REPLACEMENT_CHAR;
+        }
+        if ((codePoint >= 0xD800 && codePoint <= 0xDFFF)
+                || codePoint > 0x10FFFF) {
+            return REPLACEMENT_CHAR;
+        }
+        if (codePoint >= WIN1252_EXTENSIONS_START && codePoint
+                < WIN1252_EXTENSIONS_START + WIN1252_EXTENSIONS.length) {
+            return WIN1252_EXTENSIONS[codePoint - WIN1252_EXTENSIONS_START];
+        }
+        return codePoint;
+    }
+
+    private void startTag(Tag tag) throws IOException {
+        String name = tag.getName();
+        if ("image".equals(name)) {
+            name = "img";
+        }
+        if (IGNORED_TAGS.contains(name)
+                || (TABLE_ONLY_TAGS.contains(name) && !isOpen("table"))) {
+            return;
+        }
+        if (P_CLOSERS.contains(name) && inScope("p", "button")) {
+            popUntil("p");
+        }
+        if (HEADINGS.contains(name) && !openElements.isEmpty()
+                && HEADINGS.contains(current().name)) {
+            pop();
+        } else if ("li".equals(name)) {
+            closeListItem(Collections.singleton("li"));
+        } else if ("dd".equals(name) || "dt".equals(name)) {
+            closeListItem(setOf("dd", "dt"));
+        } else if ("a".equals(name) && getFormattingElement(name) != null) {
+            endTag(name);
+            OpenElement remaining = getFormattingElement(name);
+            if (remaining != null) {
+                formattingElements.remove(remaining);
+                if (openElements.contains(remaining)) {
+                    popUntil(remaining);
+                }
+            }
+        } else if ("nobr".equals(name)) {
+            reconstructFormattingElements();
+            if (inScope(name)) {
+                endTag(name);
+            }
+        } else if ("button".equals(name) && inScope(name)) {
+            popUntil(name);
+        } else if ("form".equals(name)) {
+            if (formElement != null) {
+                return;
+            }
+            push(name, tag.attributes, true);
+            formElement = current();
+            return;
+        }
+
+        if (!NOT_RECONSTRUCTING_TAGS.contains(name)) {
+            reconstructFormattingElements();
+        }
+        push(name, tag.attributes,
+                VOID_TAGS.contains(name) || tag.selfClosing);
+        if (FORMATTING_TAGS.contains(name)) {
+            pushFormattingElement(current());
+        } else if (MARKER_TAGS.contains(name)) {
+            formattingElements.add(null);
+        }
+        if (("pre".equals(name) || "listing".equals(name))
+                && in.peek(0) == '\n') {
+            // A newline right after the start tag is not part of the content
+            in.skip(1);
+        }
+        if (VOID_TAGS.contains(name)) {
+            pop();
+        } else if (DATA_TAGS.contains(name) || RAW_TEXT_TAGS.contains(name)) {
+            readRawText(name);
+        } else if (tag.selfClosing) {
+            endTag(name);
+        }
+    }
+
+    private void closeListItem(Set<String> names) throws IOException {
+        for (int i = openElements.size() - 1; i >= 0; i--) {
+            String open = openElements.get(i).name;
+            if (names.contains(open)) {
+                popUntil(open);
+                break;
+            } else if (SPECIAL_TAGS.contains(open) && !"address".equals(open)
+                    && !"div".equals(open) && !"p".equals(open)) {
+                break;
+            }
+        }
+        if (inScope("p", "button")) {
+            popUntil("p");
+        }
+    }
+
+    private void endTag(String name) throws IOException {
+        if ("p".equals(name)) {
+            if (!inScope("p", "button")) {
+                push("p", Collections.emptyMap(), false);
+            }
+            popUntil("p");
+        } else if ("br".equals(name)) {
+            reconstructFormattingElements();
+            push(name, Collections.emptyMap(), true);
+            pop();
+        } else if ("li".equals(name)) {
+            if (inScope(name, "ol", "ul")) {
+                popUntil(name);
+            }
+        } else if (HEADINGS.contains(name)) {
+            for (int i = openElements.size() - 1; i >= 0; i--) {
+                String open = openElements.get(i).name;
+                if (HEADINGS.contains(open)) {
+                    popUntil(open);
+                    break;
+                } else if (SCOPE_BOUNDARIES.contains(open)) {
+                    break;
+                }
+            }
+        } else if ("form".equals(name)) {
+            OpenElement form = formElement;
+            formElement = null;
+            if (form != null && inScope(name)) {
+                while (IMPLIED_END_TAGS.contains(current().name)) {
+                    pop();
+                }
+                if (form.emitted) {
+                    // Elements already written inside the form cannot be
+                    // moved out of it
+                    popUntil(name);
+                } else {
+                    openElements.remove(form);
+                }
+            }
+        } else if (FORMATTING_TAGS.contains(name)) {
+            closeFormattingElement(name);
+        } else if (MARKER_TAGS.contains(name)) {
+            if (inScope(name)) {
+                popUntil(name);
+                clearFormattingElementsToLastMarker();
+            }
+        } else if (SCOPED_END_TAGS.contains(name)) {
+            if (inScope(name)) {
+                popUntil(name);
+            }
+        } else if (!IGNORED_TAGS.contains(name)) {
+            closeAnyElement(name);
+        }
+    }
+
+    private void closeAnyElement(String name) throws IOException {
+        for (int i = openElements.size() - 1; i >= 0; i--) {
+            String open = openElements.get(i).name;
+            if (open.equals(name)) {
+                popUntil(name);
+                return;
+            } else if (SPECIAL_TAGS.contains(open)) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * The simple case of the adoption agency algorithm: a formatting element
+     * is closed together with the elements opened after it, which are
+     * reopened later if they are formatting elements. If there is a block
+     * element inside the formatting element, its content would have to be
+     * moved, so the end tag only stops the formatting element from being
+     * reopened.
+     */
+    private void closeFormattingElement(String name) throws IOException {
+        OpenElement element = getFormattingElement(name);
+        if (element == null) {
+            closeAnyElement(name);
+            return;
+        } else if (!openElements.contains(element)) {
+            formattingElements.remove(element);
+            return;
+        } else if (!inScope(name)) {
+            return;
+        }
+        formattingElements.remove(element);
+        int index = openElements.indexOf(element);
+        for (int i = index + 1; i < openElements.size(); i++) {
+            if (SPECIAL_TAGS.contains(openElements.get(i).name)) {
+                return;
+            }
+        }
+        popUntil(name);
+    }
+
+    private OpenElement getFormattingElement(String name) {
+        for (int i = formattingElements.size() - 1; i >= 0; i--) {
+            OpenElement element = formattingElements.get(i);
+            if (element == null) {
+                return null;
+            } else if (element.name.equals(name)) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private void pushFormattingElement(OpenElement element) {
+        // At most three identical elements after the last marker
+        int seen = 0;
+        for (int i = formattingElements.size() - 1; i >= 0; i--) {
+            OpenElement other = formattingElements.get(i);
+            if (other == null) {
+                break;
+            } else if (other.name.equals(element.name)
+                    && other.attributes.equals(element.attributes)
+                    && ++seen == 3) {
+                formattingElements.remove(i);
+                break;
+            }
+        }
+        formattingElements.add(element);
+    }
+
+    /*
+     * Reopens the formatting elements that were closed implicitly, e.g. by
+     * the end of a paragraph, before more content is added.
+     */
+    private void reconstructFormattingElements() throws IOException {
+        int size = formattingElements.size();
+        if (size == 0) {
+            return;
+        }
+        OpenElement last = formattingElements.get(size - 1);
+        if (last == null || openElements.contains(last)) {
+            return;
+        }
+        int position = size - 1;
+        while (position > 0) {
+            OpenElement entry = formattingElements.get(position - 1);
+            if (entry == null || openElements.contains(entry)) {
+                break;
+            }
+            position--;
+        }
+        for (; position < size; position++) {
+            OpenElement entry = formattingElements.get(position);
+            push(entry.name, entry.attributes, false);
+            formattingElements.set(position, current());
+        }
+    }
+
+    private void clearFormattingElementsToLastMarker() {
+        while (!formattingElements.isEmpty()) {
+            if (formattingElements.remove(formattingElements.size() - 1)
+                    == null) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Reads the content of a raw text element up to its end tag. The content
+     * of script and style elements is data, which is only kept if the element
+     * itself is allowed.
+     */
+    private void readRawText(String name) throws IOException {
+        boolean data = DATA_TAGS.contains(name);
+        boolean entities = "textarea".equals(name) || "title".equals(name);
+        boolean keep = !data || current().emitted;
+        // Plain text continues until the end of the document
+        boolean endable = !"plaintext".equals(name);
+        int c;
+        while ((c = in.peek(0)) != EOF) {
+            if (endable && c == '<' && in.peek(1) == '/' && isEndTagOf(name)) {
+                break;
+            } else if (entities && c == '<' && isLetter(in.peek(1))
+                    && !in.containsIgnoreCase("</" + name)) {
+                // Like jsoup, end the element at a start tag if there is no
+                // end tag ahead within the read buffer
+                endText();
+                endTag(name);
+                return;
+            }
+            in.skip(1);
+            if (!keep) {
+                continue;
+            }
+            if (entities && c == '&') {
+                String reference = readCharacterReference(EOF, false);
+                if (reference != null) {
+                    for (int i = 0; i < reference.length(); i++) {
+                        out.text(reference.charAt(i));
+                    }
+                    continue;
+                }
+            }
+            if (data) {
+                out.data((char) c);
+            } else {
+                out.text(c == 0 ? REPLACEMENT_CHAR : (char) c);
+            }
+        }
+        endText();
+    }
+
+    private boolean isEndTagOf(String name) throws IOException {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            int c = in.peek(2 + i);
+            if (c == EOF || Character.toLowerCase((char) c) != name.charAt(i)) {
+                return false;
+            }
+        }
+        int next = in.peek(2 + length);
+        return isWhitespace(next) || next == '/' || next == '>';
+    }
+
+    private void text(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            character(text.charAt(i));
+        }
+    }
+
+    /*
+     * Adds a character of a text run. Like jsoup, a text run consisting of a
+     * single NUL character is dropped, other NUL characters are kept.
+     */
+    private void character(char c) throws IOException {
+        if (c == 0 && !inTextRun) {
+            pendingNul = true;
+        } else {
+            if (!inTextRun || pendingNul) {
+                reconstructFormattingElements();
+            }
+            if (pendingNul) {
+                out.text((char) 0);
+                pendingNul = false;
+            }
+            out.text(c);
+        }
+        inTextRun = true;
+    }
+
+    private void endText() throws IOException {
+        inTextRun = false;
+        pendingNul = false;
+        out.endText();
+    }
+
+    private void push(String name, Map<String, String> attributes,
+            boolean empty) throws IOException {
+        Map<String, String> elementAttributes = attributes;
+        if (!empty) {
+            // Like jsoup, keep the case of attribute names on empty elements
+            elementAttributes = new LinkedHashMap<>();
+            for (Map.Entry<String, String> attribute : attributes
+                    .entrySet()) {
+                elementAttributes.put(normalize(attribute.getKey()),
+                        attribute.getValue());
+            }
+        }
+        boolean emitted = policy.isAllowedTag(name);
+        if (emitted) {
+            out.startElement(name,
+                    sanitizeAttributes(name, elementAttributes));
+        }
+        openElements.add(new OpenElement(name,
+                FORMATTING_TAGS.contains(name) ? elementAttributes
+                        : Collections.emptyMap(),
+                emitted));
+    }
+
+    private Map<String, String> sanitizeAttributes(String tag,
+            Map<String, String> attributes) {
+        Map<String, String> result = new LinkedHashMap<>();
+        attributes.forEach((key, value) -> {
+            String safeValue = policy.sanitizeAttribute(tag, key,
+                    value == null ? "" : value);
+            if (safeValue != null) {
+                // Attributes without a value are written without one
+                result.put(key, value == null ? null : safeValue);
+            }
+        });
+        result.putAll(policy.getEnforcedAttributes(tag));
+        return result;
+    }
+
+    private void pop() throws IOException {
+        OpenElement element = openElements.remove(openElements.size() - 1);
+        if (element.emitted) {
+            out.endElement();
+        }
+    }
+
+    private void popUntil(OpenElement element) throws IOException {
+        while (openElements.contains(element)) {
+            pop();
+        }
+    }
+
+    private void popUntil(String name) throws IOException {
+        while (!openElements.isEmpty()) {
+            boolean found = current().name.equals(name);
+            pop();
+            if (found) {
+                return;
+            }
+        }
+    }
+
+    private OpenElement current() {
+        return openElements.get(openElements.size() - 1);
+    }
+
+    private boolean isOpen(String name) {
+        for (OpenElement element : openElements) {
+            if (element.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inScope(String name, String... extraBoundaries) {
+        List<String> extra = Arrays.asList(extraBoundaries);
+        for (int i = openElements.size() - 1; i >= 0; i--) {
+            String open = openElements.get(i).name;
+            if (open.equals(name)) {
+                return true;
+            } else if (SCOPE_BOUNDARIES.contains(open)
+                    || extra.contains(open)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(CharSequence name) {
+        return name.toString().trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLetter(int c) {
+        return c != EOF && ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+                || Character.isLetter(c));
+    }
+
+    private static boolean isDigit(int c, boolean hex) {
+        return (c >= '0' && c <= '9') || (hex && ((c >= 'a' && c <= 'f')
+                || (c >= 'A' && c <= 'F')));
+    }
+
+    private static Set<String> setOf(String... names) {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+    }
+
+    private enum TagState {
+        NAME, BEFORE_ATTRIBUTE_NAME, ATTRIBUTE_NAME, AFTER_ATTRIBUTE_NAME,
+        BEFORE_ATTRIBUTE_VALUE, QUOTED_ATTRIBUTE_VALUE,
+        UNQUOTED_ATTRIBUTE_VALUE, AFTER_QUOTED_ATTRIBUTE_VALUE, SELF_CLOSING
+    }
+
+    private static final class Tag implements Serializable {
+        private final StringBuilder name = new StringBuilder();
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private boolean selfClosing;
+        private StringBuilder attributeName;
+        // Null for an attribute without a value
+        private StringBuilder attributeValue;
+
+        private void newAttribute() {
+            if (attributeName != null) {
+                // Names keep their case until the element is created
+                String key = attributeName.toString().trim();
+                if (!key.isEmpty()) {
+                    attributes.put(key, attributeValue == null ? null
+                            : attributeValue.toString());
+                }
+            }
+            attributeName = new StringBuilder();
+            attributeValue = null;
+        }
+
+        /*
+         * Completes the tag. The character that ended the tag is given back
+         * to the given input if it is not null.
+         */
+        private Tag finish(Input input) {
+            newAttribute();
+            if (input != null) {
+                input.unread();
+            }
+            return this;
+        }
+
+        private String getName() {
+            return normalize(name);
+        }
+    }
+
+    private static final class OpenElement implements Serializable {
+        private final String name;
+        // Only kept for formatting elements, which may be reopened
+        private final Map<String, String> attributes;
+        private final boolean emitted;
+
+        private OpenElement(String name, Map<String, String> attributes,
+                boolean emitted) {
+            this.name = name;
+            this.attributes = attributes;
+            this.emitted = emitted;
+        }
+    }
+
+    /**
+     * Buffered input with a small lookahead window.
+     */
+    private static final class Input implements Serializable {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final transient Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private boolean endReached;
+
+        private Input(Reader reader) {
+            this.reader = reader;
+        }
+
+        private int read() throws IOException {
+            int c = peek(0);
+            if (c != EOF) {
+                position++;
+            }
+            return c;
+        }
+
+        private int peek(int offset) throws IOException {
+            if (position + offset >= limit) {
+                fill(offset + 1);
+            }
+            return position + offset < limit ? buffer[position + offset] : EOF;
+        }
+
+        private void skip(int count) {
+            position += count;
+        }
+
+        private void unread() {
+            position--;
+        }
+
+        private boolean matches(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                if (peek(i) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean containsIgnoreCase(String text) throws IOException {
+            peek(buffer.length - 1);
+            String window = new String(buffer, position, limit - position);
+            return window.contains(text.toLowerCase(Locale.ENGLISH))
+                    || window.contains(text.toUpperCase(Locale.ENGLISH));
+        }
+
+        private String substring(int start, int end) {
+            return new String(buffer, position + start, end - start);
+        }
+
+        private void fill(int required) throws IOException {
+            if (endReached) {
+                return;
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            while (limit < required && !endReached) {
+                int count = reader.read(buffer, limit, buffer.length - limit);
+                if (count < 0) {
+                    endReached = true;
+                } else {
+                    limit += count;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the sanitized document, formatted the same way as jsoup's
+     * pretty printer formats the body of a cleaned document.
+     */
+    private static final class Output implements Serializable {
+        private final transient Appendable target;
+        private final List<Element> elements = new ArrayList<>();
+        // Whitespace is held back so that the output can be trimmed
+        private final StringBuilder pendingWhitespace = new StringBuilder();
+        private boolean started;
+
+        // State of the text node being written
+        private boolean inText;
+        private boolean textIsFirstChild;
+        private boolean textNormalizesWhitespace;
+        private boolean textLeadingBlank;
+        private boolean lastWasWhitespace;
+        private final StringBuilder leadingBlank = new StringBuilder();
+
+        private Output(Appendable target) {
+            this.target = target;
+            elements.add(new Element("body"));
+        }
+
+        private void startElement(String name, Map<String, String> attributes)
+                throws IOException {
+            Element parent = elements.get(elements.size() - 1);
+            if (formatAsBlock(name) || parent.formatAsBlock) {
+                indent(elements.size() - 1);
+            }
+            write('<');
+            write(name);
+            for (Map.Entry<String, String> attribute : attributes
+                    .entrySet()) {
+                String key = attribute.getKey();
+                String value = attribute.getValue();
+                write(' ');
+                write(key);
+                if (value != null && (!BOOLEAN_ATTRIBUTES.contains(key)
+                        || !(value.isEmpty() || value.equalsIgnoreCase(key)))) {
+                    write("=\"");
+                    for (int i = 0; i < value.length(); i++) {
+                        escape(value.charAt(i), true);
+                    }
+                    write('"');
+                }
+            }
+            write('>');
+            parent.children++;
+            elements.add(new Element(name));
+        }
+
+        private void endElement() throws IOException {
+            Element element = elements.remove(elements.size() - 1);
+            if (element.children == 0 && EMPTY_TAGS.contains(element.name)) {
+                return;
+            }
+            if (element.children > 0 && element.formatAsBlock) {
+                indent(elements.size() - 1);
+            }
+            write("</");
+            write(element.name);
+            write('>');
+        }
+
+        private void text(char c) throws IOException {
+            if (!inText) {
+                startText();
+            }
+            boolean whitespace = isWhitespace(c);
+            if (textLeadingBlank) {
+                if (whitespace) {
+                    if (!textNormalizesWhitespace) {
+                        leadingBlank.append(c);
+                    } else if (!lastWasWhitespace) {
+                        leadingBlank.append(' ');
+                        lastWasWhitespace = true;
+                    }
+                    return;
+                }
+                textLeadingBlank = false;
+                Element parent = elements.get(elements.size() - 1);
+                if (textIsFirstChild && parent.formatAsBlock) {
+                    indent(elements.size() - 1);
+                }
+                write(leadingBlank);
+                leadingBlank.setLength(0);
+            }
+            if (textNormalizesWhitespace) {
+                if (whitespace) {
+                    if (!lastWasWhitespace) {
+                        write(' ');
+                        lastWasWhitespace = true;
+                    }
+                    return;
+                }
+                lastWasWhitespace = false;
+            }
+            escape(c, false);
+        }
+
+        private void data(char c) throws IOException {
+            if (!inText) {
+                startText();
+                textLeadingBlank = false;
+            }
+            write(c);
+        }
+
+        private void startText() {
+            Element parent = elements.get(elements.size() - 1);
+            inText = true;
+            textIsFirstChild = parent.children == 0;
+            textNormalizesWhitespace = !preservesWhitespace();
+            textLeadingBlank = true;
+            lastWasWhitespace = false;
+        }
+
+        private void endText() throws IOException {
+            if (!inText) {
+                return;
+            }
+            if (textLeadingBlank) {
+                write(leadingBlank);
+                leadingBlank.setLength(0);
+            }
+            inText = false;
+            elements.get(elements.size() - 1).children++;
+        }
+
+        private boolean preservesWhitespace() {
+            // Like jsoup, look at the parent and at most five ancestors
+            int last = elements.size() - 1;
+            for (int i = last; i > 0 && i > last - 6; i--) {
+                if (PRESERVE_WHITESPACE_TAGS.contains(elements.get(i).name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void escape(char c, boolean inAttribute) throws IOException {
+            switch (c) {
+            case '&':
+                write("&amp;");
+                break;
+            case '\u00A0':
+                write("&nbsp;");
+                break;
+            case '<':
+                if (inAttribute) {
+                    write(c);
+                } else {
+                    write("&lt;");
+                }
+                break;
+            case '>':
+                if (inAttribute) {
+                    write(c);
+                } else {
+                    write("&gt;");
+                }
+                break;
+            case '"':
+                if (inAttribute) {
+                    write("&quot;");
+                } else {
+                    write(c);
+                }
+                break;
+            default:
+                write(c);
+            }
+        }
+
+        private void indent(int depth) throws IOException {
+            write('\n');
+            for (int i = 0; i < depth; i++) {
+                write(' ');
+            }
+        }
+
+        private void write(CharSequence text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                write(text.charAt(i));
+            }
+        }
+
+        private void write(char c) throws IOException {
+            if (c <= ' ') {
+                pendingWhitespace.append(c);
+                return;
+            }
+            if (started) {
+                target.append(pendingWhitespace);
+            }
+            pendingWhitespace.setLength(0);
+            started = true;
+            target.append(c);
+        }
+
+        private void finish() {
+            pendingWhitespace.setLength(0);
+        }
+
+        private static boolean formatAsBlock(String name) {
+            return !INLINE_TAGS.contains(name)
+                    && !FORMAT_AS_INLINE_TAGS.contains(name);
+        }
+    }
+
+    private static final class Element implements Serializable {
+        private final String name;
+        private final boolean formatAsBlock;
+        private int children;
+
+        private Element(String name) {
+            this.name = name;
+            this.formatAsBlock = Output.formatAsBlock(name);
+        }
+    }
+}
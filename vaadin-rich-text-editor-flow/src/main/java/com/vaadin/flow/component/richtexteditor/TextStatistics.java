@@ -0,0 +1,210 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * The character and word counts of the text in a Delta document, see
+ * {@link RichTextEditor#getCharacterCount()} and
+ * {@link RichTextEditor#getWordCount()}.
+ * <p>
+ * Counts are computed with a single pass over the value, or updated from a
+ * change by recounting only the words the change touches.
+ *
+ * @author Vaadin Ltd
+ */
+final class TextStatistics implements Serializable {
+
+    // Embeds separate words like white space
+    private static final char EMBED = '\uFFFC';
+
+    private final int characters;
+    private final int words;
+
+    private TextStatistics(int characters, int words) {
+        this.characters = characters;
+        this.words = words;
+    }
+
+    /**
+     * Counts the text in the given value.
+     *
+     * @param value
+     *            the value in Delta format
+     * @return the statistics, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     */
+    static TextStatistics of(CharSequence value) {
+        Counter counter = new Counter();
+        DeltaReader reader = new DeltaReader(value);
+        while (reader.next()) {
+            if (reader.getType() == DeltaReader.Type.INSERT) {
+                counter.text(reader.getText());
+            } else {
+                counter.inWord = false;
+            }
+        }
+        return counter.toStatistics();
+    }
+
+    /**
+     * Gets the plain text of the given value: the inserted text without
+     * embeds and without the line break ending the document.
+     *
+     * @param value
+     *            the value in Delta format
+     * @return the plain text, not {@code null}
+     * @throws IllegalArgumentException
+     *             if the value is not a Delta
+     */
+    static String getPlainText(CharSequence value) {
+        StringBuilder text = new StringBuilder();
+        DeltaReader reader = new DeltaReader(value);
+        while (reader.next()) {
+            if (reader.getType() == DeltaReader.Type.INSERT) {
+                text.append(reader.getText());
+            }
+        }
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == '\n') {
+            text.setLength(length - 1);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Updates these statistics of a document for a change.
+     *
+     * @param document
+     *            the document these statistics are for
+     * @param change
+     *            the change applied to the document
+     * @param changed
+     *            the document with the change applied
+     * @return the statistics of the changed document, not {@code null}
+     */
+    TextStatistics update(Delta document, Delta change, Delta changed) {
+        // The range of the document replaced by the change; retains only
+        // change formatting
+        int start = -1;
+        int end = 0;
+        int offset = 0;
+        for (Delta.Op op : change.getOps()) {
+            if (op instanceof Delta.Retain) {
+                offset += op.length();
+                continue;
+            }
+            if (start < 0) {
+                start = offset;
+            }
+            if (op instanceof Delta.Delete) {
+                offset += op.length();
+            }
+            end = offset;
+        }
+        if (start < 0) {
+            return this;
+        }
+        // Extended to whole words, so the counts of the ranges before and
+        // after the change can be subtracted and added
+        while (start > 0 && !isSeparator(document.charAt(start - 1))) {
+            start--;
+        }
+        end = Math.min(end, document.length());
+        while (end < document.length()
+                && !isSeparator(document.charAt(end))) {
+            end++;
+        }
+        TextStatistics removed = of(document.slice(start, end));
+        TextStatistics added = of(changed.slice(start,
+                end + changed.length() - document.length()));
+        return new TextStatistics(
+                characters - removed.characters + added.characters,
+                words - removed.words + added.words);
+    }
+
+    private static TextStatistics of(Delta delta) {
+        Counter counter = new Counter();
+        for (Delta.Op op : delta.getOps()) {
+            String text = op instanceof Delta.Insert
+                    ? ((Delta.Insert) op).getText()
+                    : null;
+            if (text != null) {
+                counter.text(text);
+            } else {
+                counter.inWord = false;
+            }
+        }
+        return counter.toStatistics();
+    }
+
+    /**
+     * Gets the number of characters, not counting line breaks and embeds.
+     * Characters outside the Basic Multilingual Plane, such as emoji, count
+     * as one.
+     *
+     * @return the character count
+     */
+    int getCharacters() {
+        return characters;
+    }
+
+    /**
+     * Gets the number of words separated by white space, line breaks or
+     * embeds.
+     *
+     * @return the word count
+     */
+    int getWords() {
+        return words;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c)
+                || c == EMBED;
+    }
+
+    private static final class Counter implements Serializable {
+        private int characters;
+        private int words;
+        private boolean inWord;
+
+        private void text(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    inWord = false;
+                } else if (!Character.isLowSurrogate(c)) {
+                    characters++;
+                    if (isSeparator(c)) {
+                        inWord = false;
+                    } else if (!inWord) {
+                        inWord = true;
+                        words++;
+                    }
+                }
+            }
+        }
+
+        private TextStatistics toStatistics() {
+            return new TextStatistics(characters, words);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Configures how a {@link RichTextEditor} coalesces value updates from the
+ * client before notifying value change listeners.
+ * <p>
+ * With a coalescing window, the first update from the client notifies the
+ * listeners right away, and updates arriving within the window after it are
+ * merged: the listeners are notified once when the window ends, with the
+ * latest value. {@link RichTextEditor#getValue()} always returns the latest
+ * value, also while a notification is pending.
+ * <p>
+ * With a session rate limit, the notifications of all editors in a session
+ * using the same limit are capped to the given rate, so that a few fast
+ * typists cannot occupy the session lock with listeners, validation and
+ * sanitization. Updates over the rate are merged like within a window.
+ * <p>
+ * Configurations are immutable and can be shared between editor instances.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setValueCoalescing(ValueCoalescing)
+ */
+public final class ValueCoalescing implements Serializable {
+
+    private static final ValueCoalescing DISABLED = new ValueCoalescing(0,
+            Integer.MAX_VALUE);
+
+    private final int window;
+    private final int sessionRateLimit;
+
+    private ValueCoalescing(int window, int sessionRateLimit) {
+        this.window = window;
+        this.sessionRateLimit = sessionRateLimit;
+    }
+
+    /**
+     * Gets a configuration notifying listeners of every update. This is the
+     * default.
+     *
+     * @return the configuration without coalescing, not {@code null}
+     */
+    public static ValueCoalescing disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Creates a copy of this configuration with the given coalescing window.
+     *
+     * @param milliseconds
+     *            the window in milliseconds, or {@code 0} for no window
+     * @return a new configuration, not {@code null}
+     */
+    public ValueCoalescing withWindow(int milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException(
+                    "The window should not be negative");
+        }
+        return new ValueCoalescing(milliseconds, sessionRateLimit);
+    }
+
+    /**
+     * Creates a copy of this configuration with the given maximum rate of
+     * value change notifications per session.
+     *
+     * @param updatesPerSecond
+     *            the maximum number of notifications per second, at least one
+     * @return a new configuration, not {@code null}
+     */
+    public ValueCoalescing withSessionRateLimit(int updatesPerSecond) {
+        if (updatesPerSecond < 1) {
+            throw new IllegalArgumentException(
+                    "The rate limit should be at least one");
+        }
+        return new ValueCoalescing(window, updatesPerSecond);
+    }
+
+    /**
+     * Gets the coalescing window.
+     *
+     * @return the window in milliseconds, {@code 0} for no window
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Gets the maximum rate of value change notifications per session.
+     *
+     * @return the maximum number of notifications per second,
+     *         {@link Integer#MAX_VALUE} if not limited
+     */
+    public int getSessionRateLimit() {
+        return sessionRateLimit;
+    }
+
+    /**
+     * Checks whether updates are coalesced at all.
+     *
+     * @return {@code true} if a window or a session rate limit is set
+     */
+    public boolean isEnabled() {
+        return window > 0 || sessionRateLimit != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ValueCoalescing)) {
+            return false;
+        }
+        ValueCoalescing other = (ValueCoalescing) obj;
+        return window == other.window
+                && sessionRateLimit == other.sessionRateLimit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(window, sessionRateLimit);
+    }
+}
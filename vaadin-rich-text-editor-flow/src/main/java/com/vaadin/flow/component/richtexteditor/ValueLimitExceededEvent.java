@@ -0,0 +1,72 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import com.vaadin.flow.component.ComponentEvent;
+
+/**
+ * Event fired when a {@link RichTextEditor} rejects a value from the client
+ * for exceeding its {@link RichTextEditor#setValueLimits(ValueLimits) value
+ * limits}. The editor keeps its previous value and resets the client to it.
+ * <p>
+ * A {@code value-limit-exceeded} DOM event with the limit and its maximum
+ * as {@code detail} is dispatched on the client element as well, for
+ * showing an error to the user.
+ *
+ * @author Vaadin Ltd
+ */
+public class ValueLimitExceededEvent extends ComponentEvent<RichTextEditor> {
+
+    private final ValueLimits.Limit limit;
+    private final int maximum;
+
+    /**
+     * Creates a new event.
+     *
+     * @param source
+     *            the editor that rejected the value
+     * @param limit
+     *            the exceeded limit
+     * @param maximum
+     *            the maximum of the exceeded limit
+     */
+    public ValueLimitExceededEvent(RichTextEditor source,
+            ValueLimits.Limit limit, int maximum) {
+        super(source, true);
+        this.limit = limit;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Gets the exceeded limit.
+     *
+     * @return the limit, not {@code null}
+     */
+    public ValueLimits.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the maximum of the exceeded limit.
+     *
+     * @return the maximum
+     */
+    public int getMaximum() {
+        return maximum;
+    }
+}
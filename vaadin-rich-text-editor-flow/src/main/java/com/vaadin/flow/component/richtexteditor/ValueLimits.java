@@ -0,0 +1,306 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Limits for the values a {@link RichTextEditor} accepts from the client.
+ * <p>
+ * Values, change Deltas and HTML values sent from the client are checked
+ * against the limits before they are parsed, sanitized or stored. An update
+ * exceeding a limit is rejected: the server keeps its value, the client is
+ * reset to it and a {@link ValueLimitExceededEvent} is fired. Values set on
+ * the server are not checked.
+ * <p>
+ * Limits are immutable and can be shared between editor instances. The
+ * size is checked first, with a single pass over the payload at most, and
+ * the other limits with a single {@link DeltaReader} pass that stops as soon
+ * as a limit is exceeded. With an image or operation limit, values that the
+ * reader cannot parse are rejected as well, see {@link Limit#FORMAT}.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setValueLimits(ValueLimits)
+ */
+public final class ValueLimits implements Serializable {
+
+    /**
+     * A limit for the values sent from the client.
+     */
+    public enum Limit {
+        /**
+         * The UTF-8 encoded size of a value, change or HTML value in bytes.
+         */
+        SIZE,
+
+        /**
+         * The number of images in a value or HTML value.
+         */
+        IMAGES,
+
+        /**
+         * The number of operations in a value or change.
+         */
+        OPERATIONS,
+
+        /**
+         * The format of a value or change, which should be a Delta for the
+         * images and operations to be counted. Values and changes that are
+         * not Deltas are rejected when the number of images or operations is
+         * limited. The maximum is 0.
+         */
+        FORMAT
+    }
+
+    private static final ValueLimits UNLIMITED = new ValueLimits(
+            Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int maxSize;
+    private final int maxImages;
+    private final int maxOperations;
+
+    private ValueLimits(int maxSize, int maxImages, int maxOperations) {
+        this.maxSize = maxSize;
+        this.maxImages = maxImages;
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Gets limits that accept any value. This is the default.
+     *
+     * @return the unlimited limits, not {@code null}
+     */
+    public static ValueLimits unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Creates a copy of these limits with the given maximum size of values,
+     * changes and HTML values from the client.
+     *
+     * @param bytes
+     *            the maximum UTF-8 encoded size in bytes, not negative
+     * @return new limits, not {@code null}
+     */
+    public ValueLimits withMaxSize(int bytes) {
+        return new ValueLimits(checkMaximum(bytes), maxImages, maxOperations);
+    }
+
+    /**
+     * Creates a copy of these limits with the given maximum number of
+     * images in a value from the client.
+     *
+     * @param images
+     *            the maximum number of images, not negative
+     * @return new limits, not {@code null}
+     */
+    public ValueLimits withMaxImages(int images) {
+        return new ValueLimits(maxSize, checkMaximum(images), maxOperations);
+    }
+
+    /**
+     * Creates a copy of these limits with the given maximum number of Delta
+     * operations in a value or change from the client.
+     *
+     * @param operations
+     *            the maximum number of operations, not negative
+     * @return new limits, not {@code null}
+     */
+    public ValueLimits withMaxOperations(int operations) {
+        return new ValueLimits(maxSize, maxImages, checkMaximum(operations));
+    }
+
+    private static int checkMaximum(int maximum) {
+        if (maximum < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum should not be negative");
+        }
+        return maximum;
+    }
+
+    /**
+     * Gets the maximum size of values, changes and HTML values from the
+     * client.
+     *
+     * @return the maximum UTF-8 encoded size in bytes,
+     *         {@link Integer#MAX_VALUE} if not limited
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the maximum number of images in a value from the client.
+     *
+     * @return the maximum number of images, {@link Integer#MAX_VALUE} if not
+     *         limited
+     */
+    public int getMaxImages() {
+        return maxImages;
+    }
+
+    /**
+     * Gets the maximum number of Delta operations in a value or change from
+     * the client.
+     *
+     * @return the maximum number of operations, {@link Integer#MAX_VALUE} if
+     *         not limited
+     */
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * Gets the maximum of the given limit.
+     *
+     * @param limit
+     *            the limit, not {@code null}
+     * @return the maximum
+     */
+    public int getMaximum(Limit limit) {
+        switch (Objects.requireNonNull(limit, "The limit should not be null")) {
+        case SIZE:
+            return maxSize;
+        case IMAGES:
+            return maxImages;
+        case OPERATIONS:
+            return maxOperations;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Checks a value or change in Delta format.
+     *
+     * @param value
+     *            the value or change, not {@code null}
+     * @return the exceeded limit, or {@code null} if the value is within the
+     *         limits
+     */
+    Limit checkValue(CharSequence value) {
+        if (exceedsSize(value)) {
+            return Limit.SIZE;
+        }
+        if (maxImages == Integer.MAX_VALUE
+                && maxOperations == Integer.MAX_VALUE
+                || value.length() == 0) {
+            return null;
+        }
+        int images = 0;
+        try {
+            DeltaReader reader = new DeltaReader(value);
+            while (reader.next()) {
+                if (reader.getIndex() >= maxOperations) {
+                    return Limit.OPERATIONS;
+                }
+                if (reader.getType() == DeltaReader.Type.EMBED
+                        && "image".contentEquals(reader.getEmbedType())
+                        && ++images > maxImages) {
+                    return Limit.IMAGES;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // The images and operations after the error would not be counted
+            return Limit.FORMAT;
+        }
+        return null;
+    }
+
+    /**
+     * Checks an HTML value.
+     *
+     * @param html
+     *            the HTML value, not {@code null}
+     * @return the exceeded limit, or {@code null} if the HTML is within the
+     *         limits
+     */
+    Limit checkHtml(String html) {
+        if (exceedsSize(html)) {
+            return Limit.SIZE;
+        }
+        if (maxImages != Integer.MAX_VALUE) {
+            int images = 0;
+            int index = html.indexOf('<');
+            while (index >= 0) {
+                // Tag names are case-insensitive, and the sanitizer keeps
+                // <IMG> as an image
+                if (html.regionMatches(true, index + 1, "img", 0, 3)
+                        && ++images > maxImages) {
+                    return Limit.IMAGES;
+                }
+                index = html.indexOf('<', index + 1);
+            }
+        }
+        return null;
+    }
+
+    private boolean exceedsSize(CharSequence value) {
+        int length = value.length();
+        // A char takes one to three bytes, or four for a surrogate pair
+        if (length > maxSize) {
+            return true;
+        } else if ((long) length * 3 <= maxSize) {
+            return false;
+        }
+        return utf8Length(value) > maxSize;
+    }
+
+    /**
+     * Gets the UTF-8 encoded length of the given text.
+     *
+     * @param text
+     *            the text, or {@code null}
+     * @return the length in bytes
+     */
+    static int utf8Length(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // Surrogate pairs take four bytes, two per char
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ValueLimits)) {
+            return false;
+        }
+        ValueLimits other = (ValueLimits) obj;
+        return maxSize == other.maxSize && maxImages == other.maxImages
+                && maxOperations == other.maxOperations;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxSize, maxImages, maxOperations);
+    }
+}
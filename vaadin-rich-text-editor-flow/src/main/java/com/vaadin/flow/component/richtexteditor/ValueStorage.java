@@ -0,0 +1,282 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Defines how a {@link RichTextEditor} keeps the copies of its value that it
+ * holds in memory besides the element state, such as the cached sanitized
+ * HTML value and the value of {@link RichTextEditor#asHtml()}.
+ * <p>
+ * By default the values are kept as strings. With {@link #compact(int)}
+ * they are kept as UTF-8 encoded bytes, deflated when larger than the given
+ * threshold, and decoded when read. This trades some CPU time on every read
+ * for a smaller session, which pays off with many editors holding large
+ * documents that are read rarely.
+ * <p>
+ * Instances are immutable and can be shared freely.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setValueStorage(ValueStorage)
+ */
+public final class ValueStorage implements Serializable {
+
+    /**
+     * Keeps the values as strings. This is the default.
+     */
+    public static final ValueStorage STRING = new ValueStorage(false,
+            Integer.MAX_VALUE);
+
+    private final boolean compact;
+    private final int deflateThreshold;
+
+    private ValueStorage(boolean compact, int deflateThreshold) {
+        this.compact = compact;
+        this.deflateThreshold = deflateThreshold;
+    }
+
+    /**
+     * Gets a storage keeping the values as UTF-8 encoded bytes, deflated when
+     * their encoded size is at least the given threshold.
+     *
+     * @param deflateThreshold
+     *            the minimum size in bytes of values to deflate, or
+     *            {@link Integer#MAX_VALUE} to never deflate
+     * @return a compact storage, not {@code null}
+     */
+    public static ValueStorage compact(int deflateThreshold) {
+        if (deflateThreshold < 0) {
+            throw new IllegalArgumentException(
+                    "Deflate threshold should not be negative");
+        }
+        return new ValueStorage(true, deflateThreshold);
+    }
+
+    /**
+     * Checks whether this storage keeps the values in compact form.
+     *
+     * @return {@code true} if values are stored as bytes
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Gets the minimum size in bytes of values that are deflated.
+     *
+     * @return the deflate threshold, {@link Integer#MAX_VALUE} if values are
+     *         never deflated
+     */
+    public int getDeflateThreshold() {
+        return deflateThreshold;
+    }
+
+    /**
+     * Converts the given value to its stored form.
+     *
+     * @param value
+     *            the value, may be {@code null}
+     * @return the stored form, to be read with {@link #load(Object)}
+     */
+    Object store(String value) {
+        return compact && value != null
+                ? new CompactText(value, deflateThreshold)
+                : value;
+    }
+
+    /**
+     * Converts a value stored by any storage back to a string.
+     *
+     * @param stored
+     *            the stored form of a value, may be {@code null}
+     * @return the value
+     */
+    static String load(Object stored) {
+        return stored instanceof CompactText ? stored.toString()
+                : (String) stored;
+    }
+
+    /**
+     * Writes a value stored by any storage to the given target, without
+     * converting a compact value to a string first.
+     *
+     * @param stored
+     *            the stored form of a value, may be {@code null}
+     * @param target
+     *            the target to write the value to
+     * @throws IOException
+     *             if writing fails
+     */
+    static void write(Object stored, Appendable target) throws IOException {
+        if (stored instanceof CompactText) {
+            ((CompactText) stored).writeTo(target);
+        } else if (stored != null) {
+            target.append((String) stored);
+        }
+    }
+
+    /**
+     * Copies the characters of the given reader to the given target in
+     * chunks.
+     *
+     * @param reader
+     *            the reader to copy, not closed
+     * @param target
+     *            the target to copy to
+     * @throws IOException
+     *             if reading or writing fails
+     */
+    static void copy(Reader reader, Appendable target) throws IOException {
+        char[] buffer = new char[8192];
+        CharBuffer chars = CharBuffer.wrap(buffer);
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            if (target instanceof Writer) {
+                ((Writer) target).write(buffer, 0, read);
+            } else if (target instanceof StringBuilder) {
+                ((StringBuilder) target).append(buffer, 0, read);
+            } else {
+                target.append(chars, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Gets the approximate number of bytes used by the value data of the
+     * given stored form, excluding object headers.
+     *
+     * @param stored
+     *            the stored form of a value, may be {@code null}
+     * @return the size in bytes
+     */
+    static int getDataSize(Object stored) {
+        if (stored instanceof CompactText) {
+            return ((CompactText) stored).data.length;
+        }
+        // Strings use one byte per character when possible and two otherwise
+        String value = (String) stored;
+        if (value == null) {
+            return 0;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xff) {
+                return value.length() * 2;
+            }
+        }
+        return value.length();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ValueStorage)) {
+            return false;
+        }
+        ValueStorage other = (ValueStorage) obj;
+        return compact == other.compact
+                && deflateThreshold == other.deflateThreshold;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Boolean.hashCode(compact) + deflateThreshold;
+    }
+
+    private static final class CompactText implements Serializable {
+        private final byte[] data;
+        // The length of the UTF-8 bytes, or -1 if not deflated
+        private final int inflatedLength;
+
+        private CompactText(String value, int deflateThreshold) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            byte[] deflated = bytes.length >= deflateThreshold
+                    ? deflate(bytes)
+                    : null;
+            if (deflated != null && deflated.length < bytes.length) {
+                data = deflated;
+                inflatedLength = bytes.length;
+            } else {
+                data = bytes;
+                inflatedLength = -1;
+            }
+        }
+
+        private static byte[] deflate(byte[] bytes) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(bytes);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                        bytes.length / 4 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void writeTo(Appendable target) throws IOException {
+            InputStream bytes = new ByteArrayInputStream(data);
+            try (Reader reader = new InputStreamReader(inflatedLength < 0
+                    ? bytes
+                    : new InflaterInputStream(bytes),
+                    StandardCharsets.UTF_8)) {
+                copy(reader, target);
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (inflatedLength < 0) {
+                return new String(data, StandardCharsets.UTF_8);
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data);
+                byte[] bytes = new byte[inflatedLength];
+                int offset = 0;
+                while (offset < bytes.length && !inflater.finished()) {
+                    offset += inflater.inflate(bytes, offset,
+                            bytes.length - offset);
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            } catch (DataFormatException e) {
+                // Only data deflated by this class is inflated
+                throw new IllegalStateException(e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+/**
+ * Defines how value changes of a {@link RichTextEditor} are sent from the
+ * client to the server.
+ *
+ * @author Vaadin Ltd
+ * @see RichTextEditor#setValueSyncMode(ValueSyncMode)
+ */
+public enum ValueSyncMode {
+
+    /**
+     * The whole Delta value of the document is sent on every value change.
+     * This is the default.
+     */
+    FULL,
+
+    /**
+     * Only the change Delta since the last synchronized revision is sent on a
+     * value change, and the server applies it to the value it holds. The
+     * amount of value data sent depends on the size of the edit instead of
+     * the size of the document. If the revisions of the client and the server
+     * diverge, the whole value is sent once to resynchronize them.
+     * <p>
+     * This covers only the value. With the default
+     * {@link HtmlValueMode#SYNCHRONIZED} HTML value mode, the client still
+     * sends the whole HTML of the document with the changes. The data sent per
+     * change only stays proportional to the edit together with
+     * {@link HtmlValueMode#SERVER_RENDERED} or {@link HtmlValueMode#ON_DEMAND}.
+     */
+    INCREMENTAL
+}
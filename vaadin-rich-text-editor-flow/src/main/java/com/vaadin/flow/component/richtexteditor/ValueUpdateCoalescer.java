@@ -0,0 +1,277 @@
+package com.vaadin.flow.component.richtexteditor;
+
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.function.SerializableConsumer;
+import com.vaadin.flow.function.SerializableSupplier;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * Coalesces the value updates of one editor from the client according to a
+ * {@link ValueCoalescing} configuration.
+ * <p>
+ * An update is either let through, or kept as the pending value and flushed
+ * when the window ends or the session rate limit allows. Pending values are
+ * flushed with {@link UI#access(com.vaadin.flow.server.Command)} from a
+ * scheduler thread of the {@link VaadinService}, and with the next update,
+ * change event or detach of the editor. The scheduler is shut down when the
+ * service is destroyed, so that its thread does not outlive the
+ * application.
+ *
+ * @author Vaadin Ltd
+ */
+final class ValueUpdateCoalescer implements Serializable {
+
+    private static final SerializableSupplier<Long> SYSTEM_CLOCK = System::nanoTime;
+    private final ValueCoalescing coalescing;
+    private final SerializableConsumer<String> flushTarget;
+    private SerializableSupplier<Long> clock = SYSTEM_CLOCK;
+    private String pendingValue;
+    private long lastNotification;
+    private boolean notified;
+    private transient ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Creates a coalescer.
+     *
+     * @param coalescing
+     *            the configuration
+     * @param flushTarget
+     *            applies a pending value to the editor, called with the
+     *            session lock held
+     */
+    ValueUpdateCoalescer(ValueCoalescing coalescing,
+            SerializableConsumer<String> flushTarget) {
+        this.coalescing = coalescing;
+        this.flushTarget = flushTarget;
+    }
+
+    ValueCoalescing getCoalescing() {
+        return coalescing;
+    }
+
+    void setClock(SerializableSupplier<Long> clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the value kept until the listeners are notified.
+     *
+     * @return the pending value, or {@code null} if there is none
+     */
+    String getPendingValue() {
+        return pendingValue;
+    }
+
+    /**
+     * Handles an update from the client.
+     *
+     * @param value
+     *            the new value
+     * @param ui
+     *            the UI of the editor, or {@code null} if not attached
+     * @return {@code true} if the value was kept as the pending value,
+     *         {@code false} if the listeners should be notified now
+     */
+    boolean coalesce(String value, UI ui) {
+        long now = clock.get();
+        long delay = getDelay(now, ui);
+        if (delay > 0) {
+            pendingValue = value;
+            scheduleFlush(delay, ui);
+            return true;
+        }
+        // The new value replaces a pending one
+        discard();
+        markNotified(now, ui);
+        return false;
+    }
+
+    /**
+     * Notifies the listeners of the pending value, if any.
+     *
+     * @param ui
+     *            the UI of the editor, or {@code null} if not attached
+     */
+    void flush(UI ui) {
+        if (pendingValue == null) {
+            return;
+        }
+        String value = pendingValue;
+        discard();
+        markNotified(clock.get(), ui);
+        flushTarget.accept(value);
+    }
+
+    /**
+     * Discards the pending value, e.g. when a value is set on the server.
+     */
+    void discard() {
+        pendingValue = null;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private long getDelay(long now, UI ui) {
+        long delay = 0;
+        if (notified && coalescing.getWindow() > 0) {
+            delay = lastNotification
+                    + TimeUnit.MILLISECONDS.toNanos(coalescing.getWindow())
+                    - now;
+        }
+        SessionRateLimiter limiter = getRateLimiter(ui);
+        if (limiter != null) {
+            delay = Math.max(delay, limiter.getDelay(now,
+                    coalescing.getSessionRateLimit()));
+        }
+        return delay;
+    }
+
+    private void markNotified(long now, UI ui) {
+        notified = true;
+        lastNotification = now;
+        SessionRateLimiter limiter = getRateLimiter(ui);
+        if (limiter != null) {
+            limiter.acquire(now, coalescing.getSessionRateLimit());
+        }
+    }
+
+    private SessionRateLimiter getRateLimiter(UI ui) {
+        VaadinSession session = ui == null ? null : ui.getSession();
+        if (session == null
+                || coalescing.getSessionRateLimit() == Integer.MAX_VALUE) {
+            return null;
+        }
+        SessionRateLimiter limiter = session
+                .getAttribute(SessionRateLimiter.class);
+        if (limiter == null) {
+            limiter = new SessionRateLimiter();
+            session.setAttribute(SessionRateLimiter.class, limiter);
+        }
+        return limiter;
+    }
+
+    private void scheduleFlush(long delay, UI ui) {
+        if (ui == null || scheduledFlush != null) {
+            // Flushed with the next update, change event or attach
+            return;
+        }
+        VaadinSession session = ui.getSession();
+        VaadinService service = session == null ? null : session.getService();
+        if (service == null) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Scheduler.get(service);
+        try {
+            if (scheduler != null) {
+                scheduledFlush = scheduler.schedule(
+                        () -> ui.access(() -> flush(ui)), delay,
+                        TimeUnit.NANOSECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // The service is being destroyed
+        }
+    }
+
+    /*
+     * The scheduler thread of a service, started when first needed and shut
+     * down when the service is destroyed.
+     */
+    static final class Scheduler implements Serializable {
+        private transient ScheduledExecutorService executor;
+        private boolean destroyed;
+
+        /**
+         * Gets the scheduler of a service.
+         *
+         * @param service
+         *            the service, not {@code null}
+         * @return the scheduler, or {@code null} if the service has been
+         *         destroyed
+         */
+        static synchronized ScheduledExecutorService get(
+                VaadinService service) {
+            Scheduler scheduler = service.getContext()
+                    .getAttribute(Scheduler.class, Scheduler::new);
+            if (scheduler.executor == null && !scheduler.destroyed) {
+                scheduler.executor = Executors
+                        .newSingleThreadScheduledExecutor(task -> {
+                            Thread thread = new Thread(task,
+                                    "vaadin-rich-text-editor-value-coalescer");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                service.addServiceDestroyListener(
+                        event -> scheduler.destroy());
+            }
+            return scheduler.executor;
+        }
+
+        private void destroy() {
+            synchronized (Scheduler.class) {
+                destroyed = true;
+                if (executor != null) {
+                    executor.shutdownNow();
+                    executor = null;
+                }
+            }
+        }
+    }
+
+    /*
+     * A token bucket shared by the editors of a session, refilled at the
+     * rate limit and holding at most one second worth of tokens.
+     */
+    private static final class SessionRateLimiter implements Serializable {
+        private double tokens = -1;
+        private long lastRefill;
+
+        private synchronized long getDelay(long now, int rate) {
+            refill(now, rate);
+            return tokens >= 1 ? 0
+                    : (long) ((1 - tokens) * TimeUnit.SECONDS.toNanos(1)
+                            / rate);
+        }
+
+        private synchronized void acquire(long now, int rate) {
+            refill(now, rate);
+            tokens--;
+        }
+
+        private void refill(long now, int rate) {
+            if (tokens < 0 && lastRefill == 0) {
+                tokens = rate;
+            } else {
+                tokens = Math.min(rate, tokens + (now - lastRefill) * rate
+                        / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+            lastRefill = now;
+        }
+    }
+}
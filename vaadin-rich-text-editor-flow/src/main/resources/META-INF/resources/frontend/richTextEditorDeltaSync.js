@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * Vaadin Rich Text Editor for Vaadin 10
+ * %%
+ * Copyright (C) 2017 - 2018 Vaadin Ltd
+ * %%
+ * This program is available under Commercial Vaadin Add-On License 3.0
+ * (CVALv3).
+ *
+ * See the file license.html distributed with this software for more
+ * information about licensing.
+ *
+ * You should have received a copy of the CVALv3 along with this program.
+ * If not, see <http://vaadin.com/license/cval-3>.
+ * #L%
+ */
+
+/*
+ * Client side of the incremental value sync and the collaborative editing of
+ * RichTextEditor. Both use the Quill instance of the web component, which is
+ * only available as its private _editor field.
+ */
+(function() {
+  // How long to wait for the Quill instance after the element is defined
+  const EDITOR_TIMEOUT = 5000;
+  const EDITOR_POLL_INTERVAL = 50;
+
+  // Resolves with the Quill instance of the element. Rejects, logging the
+  // error once, if the web component does not create one, e.g. because its
+  // version does not have the _editor field.
+  const whenEditorReady = rte => {
+    if (!rte.__editorReady) {
+      rte.__editorReady = customElements.whenDefined(rte.localName)
+        .then(() => new Promise((resolve, reject) => {
+          let waited = 0;
+          const check = () => {
+            if (rte._editor) {
+              resolve(rte._editor);
+            } else if (waited >= EDITOR_TIMEOUT) {
+              reject(new Error(rte.localName + ' has no Quill editor in its'
+                + ' _editor field, the value changes are not sent to the'
+                + ' server. The version of the web component is not'
+                + ' supported by ValueSyncMode.INCREMENTAL.'));
+            } else {
+              waited += EDITOR_POLL_INTERVAL;
+              setTimeout(check, EDITOR_POLL_INTERVAL);
+            }
+          };
+          check();
+        }));
+      rte.__editorReady.catch(error => console.error(error));
+    }
+    return rte.__editorReady;
+  };
+
+  // Runs the callback with the Quill instance when it is ready, in the order
+  // of the calls. Does nothing if there is no Quill instance, which has been
+  // logged already.
+  const withEditor = (rte, callback) =>
+    whenEditorReady(rte).then(callback, () => {});
+
+  window.Vaadin = window.Vaadin || {};
+  window.Vaadin.Flow = window.Vaadin.Flow || {};
+
+  window.Vaadin.Flow.richTextEditorDeltaSync = {
+    /**
+     * Collects the Quill change Deltas and sends them to the server as
+     * configured by the value change mode, or turns the sending off.
+     *
+     * @param rte the editor element
+     * @param mode the value change mode, or null when not syncing
+     *   incrementally
+     * @param timeout the value change timeout
+     * @param revision the initial revision
+     */
+    install(rte, mode, timeout, revision) {
+      const sync = rte.__deltaSync = rte.__deltaSync || {};
+      if (sync.installed && !mode) {
+        sync.flush();
+      }
+      sync.mode = mode;
+      sync.timeout = timeout;
+      if (sync.installed) {
+        return;
+      }
+      sync.installed = true;
+      sync.revision = revision;
+      sync.pending = null;
+      sync.reset = revision => {
+        clearTimeout(sync.timer);
+        sync.timer = null;
+        sync.pending = null;
+        sync.revision = revision;
+      };
+      sync.flush = () => {
+        clearTimeout(sync.timer);
+        sync.timer = null;
+        if (sync.mode && sync.pending) {
+          const pending = sync.pending;
+          sync.pending = null;
+          if (sync.send) {
+            sync.send(pending);
+            return;
+          }
+          rte.$server.applyValueDelta(sync.revision++,
+            JSON.stringify(pending.ops));
+        }
+      };
+      sync.resync = () => withEditor(rte, editor => {
+        sync.reset(sync.revision);
+        rte.$server.resyncValue(sync.revision,
+          JSON.stringify(editor.getContents().ops));
+      });
+      withEditor(rte, editor => {
+        editor.on('text-change', delta => {
+          if (!sync.mode) {
+            return;
+          }
+          sync.pending = sync.pending ? sync.pending.compose(delta) : delta;
+          if (sync.mode === 'LAZY') {
+            clearTimeout(sync.timer);
+            sync.timer = setTimeout(sync.flush, sync.timeout);
+          } else if (!sync.timer
+              && (sync.mode === 'EAGER' || sync.mode === 'TIMEOUT')) {
+            sync.timer = setTimeout(sync.flush,
+              sync.mode === 'EAGER' ? 0 : sync.timeout);
+          }
+        });
+        rte.addEventListener('change', sync.flush);
+        rte.addEventListener('focusout', sync.flush);
+      });
+    },
+
+    /**
+     * Installs the client end of the collaboration protocol on the delta
+     * sync of the editor. Remote changes are transformed against the changes
+     * not acknowledged by the server and the changes not sent yet.
+     *
+     * @param rte the editor element
+     * @param epoch the epoch, which changes on every reset, so that the
+     *   messages of an earlier epoch are ignored
+     */
+    collaborate(rte, epoch) {
+      const sync = rte.__deltaSync = rte.__deltaSync || {};
+      const state = { epoch: epoch, sent: 0, received: 0, outgoing: [] };
+      sync.pending = null;
+      sync.send = delta => {
+        state.outgoing.push({ n: state.sent, delta: delta });
+        rte.$server.applyCollaborativeDelta(state.epoch, state.sent++,
+          state.received, JSON.stringify(delta.ops));
+      };
+      // Remote changes are applied in order once the editor is ready
+      sync.remote = (epoch, sent, received, ops) =>
+        withEditor(rte, editor => {
+          if (epoch !== state.epoch || sent !== state.received) {
+            return;
+          }
+          const Delta = editor.constructor.import('delta');
+          let delta = new Delta(JSON.parse(ops));
+          state.outgoing = state.outgoing.filter(o => o.n >= received);
+          state.outgoing.forEach(o => {
+            const transformed = o.delta.transform(delta, false);
+            o.delta = delta.transform(o.delta, true);
+            delta = transformed;
+          });
+          if (sync.pending) {
+            const transformed = sync.pending.transform(delta, false);
+            sync.pending = delta.transform(sync.pending, true);
+            delta = transformed;
+          }
+          state.received++;
+          editor.updateContents(delta, 'silent');
+        });
+      sync.leave = () => {
+        delete sync.send;
+        delete sync.remote;
+      };
+    }
+  };
+})();
@@ -0,0 +1,52 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.flow.data.value.ValueChangeMode;
+
+/**
+ * Tests for the {@link AdaptiveValueChangeMode}.
+ */
+public class AdaptiveValueChangeModeTest {
+
+    private static final AdaptiveValueChangeMode ADAPTIVE = AdaptiveValueChangeMode
+            .defaults().withEagerLimits(100, 5).withTimeoutLimits(1000, 50);
+
+    @Test
+    public void select_bySize() {
+        Assert.assertEquals(ValueChangeMode.EAGER,
+                ADAPTIVE.select(null, 100, 0));
+        Assert.assertEquals(ValueChangeMode.TIMEOUT,
+                ADAPTIVE.select(null, 101, 0));
+        Assert.assertEquals(ValueChangeMode.ON_CHANGE,
+                ADAPTIVE.select(null, 1001, 0));
+    }
+
+    @Test
+    public void select_byCost() {
+        Assert.assertEquals(ValueChangeMode.TIMEOUT, ADAPTIVE.select(null, 0,
+                TimeUnit.MILLISECONDS.toNanos(6)));
+        Assert.assertEquals(ValueChangeMode.ON_CHANGE, ADAPTIVE.select(
+                ValueChangeMode.EAGER, 0, TimeUnit.MILLISECONDS.toNanos(51)));
+    }
+
+    @Test
+    public void select_moreEagerOnlyWithMargin() {
+        Assert.assertEquals(ValueChangeMode.ON_CHANGE,
+                ADAPTIVE.select(ValueChangeMode.ON_CHANGE, 900, 0));
+        Assert.assertEquals(ValueChangeMode.TIMEOUT,
+                ADAPTIVE.select(ValueChangeMode.ON_CHANGE, 700, 0));
+        Assert.assertEquals(ValueChangeMode.TIMEOUT,
+                ADAPTIVE.select(ValueChangeMode.TIMEOUT, 90, 0));
+        Assert.assertEquals(ValueChangeMode.EAGER,
+                ADAPTIVE.select(ValueChangeMode.ON_CHANGE, 70, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLimit_throws() {
+        AdaptiveValueChangeMode.defaults().withEagerLimits(-1, 5);
+    }
+}
@@ -0,0 +1,250 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import com.vaadin.flow.server.Command;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * Tests for the {@link CollaborationEngine}.
+ */
+public class CollaborationEngineTest {
+
+    private static final String TOPIC = "topic";
+    private static final String VALUE = "[{\"insert\":\"Foo\\n\"}]";
+
+    private final CollaborationEngine engine = new CollaborationEngine();
+
+    @After
+    public void clearCurrentUI() {
+        UI.setCurrent(null);
+    }
+
+    @Test
+    public void join_firstValueSharedWithLaterEditors() {
+        RichTextEditor first = new RichTextEditor(VALUE);
+        RichTextEditor second = new RichTextEditor();
+        engine.join(TOPIC, first);
+        engine.join(TOPIC, second);
+
+        Assert.assertEquals(VALUE, second.getValue());
+        Assert.assertEquals(VALUE, engine.getValue(TOPIC));
+        Assert.assertEquals(ValueSyncMode.INCREMENTAL,
+                second.getValueSyncMode());
+        Assert.assertEquals(2, engine.getParticipantCount(TOPIC));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void joinTwice_throws() {
+        RichTextEditor editor = new RichTextEditor();
+        engine.join(TOPIC, editor);
+        engine.join("other", editor);
+    }
+
+    @Test
+    public void concurrentChanges_converge() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = joinAttached("");
+
+        // Both changes are made on the initial document
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"retain\":1},"
+                + "{\"insert\":\"A\"}]");
+        second.applyCollaborativeDelta(1, 0, 0, "[{\"retain\":1},"
+                + "{\"insert\":\"B\"},{\"delete\":1}]");
+
+        Assert.assertEquals("[{\"insert\":\"FABo\\n\"}]",
+                engine.getValue(TOPIC));
+        Assert.assertEquals(engine.getValue(TOPIC), first.getValue());
+        Assert.assertEquals(engine.getValue(TOPIC), second.getValue());
+        Assert.assertEquals(2, engine.getRevision(TOPIC));
+    }
+
+    @Test
+    public void change_onlyChangeSentToOtherEditors() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = joinAttached("");
+        RichTextEditor third = joinAttached("");
+        pendingJavaScript(second);
+
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"retain\":1},"
+                + "{\"insert\":\"A\"}]");
+
+        List<PendingJavaScriptInvocation> invocations = pendingJavaScript(
+                second).stream()
+                .filter(invocation -> invocation.getInvocation()
+                        .getExpression().contains("__deltaSync.remote("))
+                .collect(Collectors.toList());
+        Assert.assertEquals(1, invocations.size());
+        Assert.assertEquals("[{\"retain\":1},{\"insert\":\"A\"}]",
+                invocations.get(0).getInvocation().getParameters().get(3));
+        Assert.assertEquals("[{\"insert\":\"FAoo\\n\"}]", third.getValue());
+    }
+
+    @Test
+    public void setValue_sharedDocumentReplaced() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = joinAttached("");
+        String value = "[{\"insert\":\"Bar\\n\"}]";
+        first.setValue(value);
+
+        Assert.assertEquals(value, engine.getValue(TOPIC));
+        Assert.assertEquals(value, second.getValue());
+    }
+
+    @Test
+    public void changeExceedingValueLimits_rejectedAndEditorReset() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = joinAttached("");
+        first.setValueLimits(ValueLimits.unlimited().withMaxSize(22));
+        List<ValueLimitExceededEvent> rejections = new ArrayList<>();
+        first.addValueLimitExceededListener(rejections::add);
+        pendingJavaScript(first);
+
+        // The change is small, the changed document is not
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"insert\":\"ABC\"}]");
+
+        Assert.assertEquals(1, rejections.size());
+        Assert.assertEquals(ValueLimits.Limit.SIZE,
+                rejections.get(0).getLimit());
+        Assert.assertEquals(VALUE, engine.getValue(TOPIC));
+        Assert.assertEquals(0, engine.getRevision(TOPIC));
+        Assert.assertEquals(VALUE, first.getValue());
+        Assert.assertEquals(VALUE, second.getValue());
+        // The client starts over from the shared document
+        Assert.assertTrue(pendingJavaScript(first).stream()
+                .anyMatch(invocation -> invocation.getInvocation()
+                        .getExpression()
+                        .contains("richTextEditorDeltaSync.collaborate(")
+                        && invocation.getInvocation().getParameters()
+                                .contains(2)));
+    }
+
+    @Test
+    public void changeBeforeTrimmedLog_editorReset() {
+        CollaborationEngine engine = new CollaborationEngine(1);
+        RichTextEditor first = new RichTextEditor(VALUE);
+        RichTextEditor second = new RichTextEditor();
+        engine.join(TOPIC, first);
+        engine.join(TOPIC, second);
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"insert\":\"A\"}]");
+        first.applyCollaborativeDelta(1, 1, 0, "[{\"insert\":\"B\"}]");
+
+        // The detached editor has not caught up with the changes
+        Assert.assertEquals(VALUE, second.getValue());
+        second.applyCollaborativeDelta(1, 0, 0, "[{\"insert\":\"C\"}]");
+        Assert.assertEquals("[{\"insert\":\"BAFoo\\n\"}]", second.getValue());
+        Assert.assertEquals(2, engine.getRevision(TOPIC));
+    }
+
+    @Test
+    public void leave_editorAndDocumentRemoved() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = new RichTextEditor();
+        Registration registration = engine.join(TOPIC, second);
+        registration.remove();
+        registration.remove();
+        Assert.assertEquals(1, engine.getParticipantCount(TOPIC));
+
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"insert\":\"A\"}]");
+        Assert.assertEquals(VALUE, second.getValue());
+
+        first.getCollaboration().leave();
+        Assert.assertNull(engine.getValue(TOPIC));
+        Assert.assertNull(first.getCollaboration());
+    }
+
+    @Test
+    public void detach_documentLeftAndJoinedAgainOnAttach() {
+        RichTextEditor first = joinAttached(VALUE);
+        RichTextEditor second = joinAttached("");
+        UI secondUI = second.getUI().get();
+        secondUI.remove(second);
+        Assert.assertEquals(1, engine.getParticipantCount(TOPIC));
+
+        first.applyCollaborativeDelta(1, 0, 0, "[{\"insert\":\"A\"}]");
+        Assert.assertEquals(VALUE, second.getValue());
+
+        secondUI.add(second);
+        Assert.assertEquals(2, engine.getParticipantCount(TOPIC));
+        Assert.assertEquals(engine.getValue(TOPIC), second.getValue());
+        Assert.assertSame(second, second.getCollaboration().getEditor());
+    }
+
+    @Test
+    public void detachLastEditor_documentDiscarded() {
+        RichTextEditor editor = joinAttached(VALUE);
+        editor.getUI().get().remove(editor);
+
+        Assert.assertNull(engine.getValue(TOPIC));
+        Assert.assertNotNull(editor.getCollaboration());
+    }
+
+    @Test
+    public void serialize_otherEditorsNotSerialized() throws Exception {
+        RichTextEditor editor = new RichTextEditor(VALUE);
+        engine.join(TOPIC, editor);
+        // The UI of the other editor has a session that is not serializable
+        joinAttached("");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(editor);
+        }
+        RichTextEditor deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (RichTextEditor) in.readObject();
+        }
+
+        // The deserialized editor has left the topic
+        deserialized.applyCollaborativeDelta(1, 0, 0,
+                "[{\"insert\":\"A\"}]");
+        Assert.assertNull(deserialized.getCollaboration());
+        Assert.assertEquals(VALUE, deserialized.getValue());
+        Assert.assertEquals(VALUE, engine.getValue(TOPIC));
+        Assert.assertEquals(2, engine.getParticipantCount(TOPIC));
+    }
+
+    private RichTextEditor joinAttached(String value) {
+        RichTextEditor editor = new RichTextEditor(value);
+        createUI().add(editor);
+        engine.join(TOPIC, editor);
+        return editor;
+    }
+
+    private static List<PendingJavaScriptInvocation> pendingJavaScript(
+            RichTextEditor editor) {
+        UI ui = editor.getUI().get();
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        return ui.getInternals().dumpPendingJavaScriptInvocations();
+    }
+
+    private static UI createUI() {
+        VaadinSession session = Mockito.mock(VaadinSession.class);
+        Mockito.when(session.hasLock()).thenReturn(true);
+        // Runs the changes of other editors immediately
+        Mockito.when(session.access(Mockito.any(Command.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgumentAt(0, Command.class).execute();
+                    return null;
+                });
+        UI ui = new UI();
+        ui.getInternals().setSession(session);
+        UI.setCurrent(ui);
+        return ui;
+    }
+}
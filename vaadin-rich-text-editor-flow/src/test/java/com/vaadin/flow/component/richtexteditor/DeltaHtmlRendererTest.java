@@ -0,0 +1,153 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+
+/**
+ * Tests for the {@link DeltaHtmlRenderer}.
+ */
+public class DeltaHtmlRendererTest {
+
+    private final DeltaHtmlRenderer renderer = new DeltaHtmlRenderer();
+
+    @Test
+    public void renderEmptyDocument() {
+        Assert.assertEquals("<p><br></p>", renderer.render(""));
+        Assert.assertEquals("<p><br></p>", renderer.render((String) null));
+        Assert.assertEquals("<p><br></p>", renderer.render("[]"));
+        Assert.assertEquals("<p><br></p>",
+                renderer.render("{\"ops\":[{\"insert\":\"\\n\"}]}"));
+    }
+
+    @Test
+    public void renderInlineFormats() {
+        assertRendered("<p><strong>Foo</strong></p>", "bold", "true");
+        assertRendered("<p><em>Foo</em></p>", "italic", "true");
+        assertRendered("<p><u>Foo</u></p>", "underline", "true");
+        assertRendered("<p><s>Foo</s></p>", "strike", "true");
+        assertRendered("<p><sub>Foo</sub></p>", "script", "\"sub\"");
+        assertRendered("<p><sup>Foo</sup></p>", "script", "\"super\"");
+        assertRendered("<p><code>Foo</code></p>", "code", "true");
+    }
+
+    @Test
+    public void renderNestedInlineFormats_mergedLikeInEditor() {
+        Assert.assertEquals(
+                "<p><strong>Foo <em>bar</em></strong> baz</p>",
+                renderer.render("[{\"insert\":\"Foo \","
+                        + "\"attributes\":{\"bold\":true}},"
+                        + "{\"insert\":\"bar\",\"attributes\":"
+                        + "{\"italic\":true,\"bold\":true}},"
+                        + "{\"insert\":\" baz\\n\"}]"));
+    }
+
+    @Test
+    public void renderBlocks() {
+        Assert.assertEquals(
+                "<h1>Title</h1><h2>Sub</h2><blockquote>Quote</blockquote>"
+                        + "<p><br></p><p>Text</p>",
+                renderer.render("[{\"insert\":\"Title\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":{\"header\":1}},"
+                        + "{\"insert\":\"Sub\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":{\"header\":2}},"
+                        + "{\"insert\":\"Quote\"},{\"insert\":\"\\n\","
+                        + "\"attributes\":{\"blockquote\":true}},"
+                        + "{\"insert\":\"\\nText\\n\"}]"));
+    }
+
+    @Test
+    public void renderLists_consecutiveItemsMerged() {
+        Assert.assertEquals(
+                "<ol><li>One</li><li>Two</li></ol><ul><li>Three</li></ul>",
+                renderer.render("[{\"insert\":\"One\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"list\":\"ordered\"}},{\"insert\":\"Two\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"list\":\"ordered\"}},{\"insert\":\"Three\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"list\":\"bullet\"}}]"));
+    }
+
+    @Test
+    public void renderCodeBlock_linesMerged() {
+        Assert.assertEquals(
+                "<pre spellcheck=\"false\">a &lt; b\n  c\n</pre>",
+                renderer.render("[{\"insert\":\"a < b\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"code-block\":true}},{\"insert\":\"  c\"},"
+                        + "{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"code-block\":true}}]"));
+    }
+
+    @Test
+    public void renderAlignment() {
+        Assert.assertEquals("<p style=\"text-align: center\">Foo</p>",
+                renderer.render("[{\"insert\":\"Foo\"},{\"insert\":\"\\n\","
+                        + "\"attributes\":{\"align\":\"center\"}}]"));
+    }
+
+    @Test
+    public void renderLink_unsafeProtocolReplaced() {
+        Assert.assertEquals("<p><a href=\"https://vaadin.com?a=1&amp;b=2\" "
+                + "rel=\"noopener noreferrer\" target=\"_blank\">Foo</a></p>",
+                renderer.render("[{\"insert\":\"Foo\",\"attributes\":"
+                        + "{\"link\":\"https://vaadin.com?a=1&b=2\"}},"
+                        + "{\"insert\":\"\\n\"}]"));
+        Assert.assertEquals("<p><a href=\"about:blank\" "
+                + "rel=\"noopener noreferrer\" target=\"_blank\">Foo</a></p>",
+                renderer.render("[{\"insert\":\"Foo\",\"attributes\":"
+                        + "{\"link\":\"javascript:alert(1)\"}},"
+                        + "{\"insert\":\"\\n\"}]"));
+    }
+
+    @Test
+    public void renderImage_unsafeProtocolReplaced() {
+        Assert.assertEquals("<p><img src=\"data:image/png;base64,AA==\"></p>",
+                renderer.render("[{\"insert\":{\"image\":"
+                        + "\"data:image/png;base64,AA==\"}},"
+                        + "{\"insert\":\"\\n\"}]"));
+        Assert.assertEquals("<p><img src=\"//:0\"></p>",
+                renderer.render("[{\"insert\":{\"image\":"
+                        + "\"javascript:alert(1)\"}},{\"insert\":\"\\n\"}]"));
+    }
+
+    @Test
+    public void renderText_escaped() {
+        Assert.assertEquals("<p>&lt;b&gt; &amp; \"&nbsp;</p>",
+                renderer.render("[{\"insert\":\"<b> & \\\"\\u00a0\\n\"}]"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void renderInvalidValue_throws() {
+        renderer.render("{\"foo\":1}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void renderDeeplyNestedValue_throws() {
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            nested.append('[');
+        }
+        renderer.render("[{\"insert\":\"Foo\\n\",\"attributes\":{\"x\":"
+                + nested + "}}]");
+    }
+
+    @Test
+    public void renderJsonArray_sameAsValue() {
+        String value = "[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                + "{\"retain\":1},{\"insert\":\"\\n\",\"attributes\":"
+                + "{\"header\":2}}]";
+        Assert.assertEquals("<h2><strong>Foo</strong></h2>",
+                renderer.render(Json.instance().<JsonArray> parse(value)));
+    }
+
+    private void assertRendered(String expected, String format,
+            String value) {
+        Assert.assertEquals(expected,
+                renderer.render("[{\"insert\":\"Foo\",\"attributes\":{\""
+                        + format + "\":" + value + "}},{\"insert\":\"\\n\"}]"));
+    }
+}
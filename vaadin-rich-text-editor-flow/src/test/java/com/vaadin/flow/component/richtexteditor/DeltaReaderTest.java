@@ -0,0 +1,159 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import elemental.json.JsonType;
+
+/**
+ * Tests for the {@link DeltaReader}.
+ */
+public class DeltaReaderTest {
+
+    @Test
+    public void next_allOperationTypes() {
+        DeltaReader reader = new DeltaReader("[{\"attributes\":{\"bold\":true,"
+                + "\"link\":\"https://vaadin.com\"},\"insert\":\"Foo\"},"
+                + " {\"insert\":{\"image\":\"data:image/png;base64,AA==\"}},"
+                + "{\"retain\":2,\"attributes\":{\"header\":1,\"bold\":null}},"
+                + "{\"delete\":3}]");
+
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(DeltaReader.Type.INSERT, reader.getType());
+        Assert.assertEquals("Foo", reader.getText().toString());
+        Assert.assertEquals(3, reader.getLength());
+        Assert.assertEquals(2, reader.getAttributeCount());
+        Assert.assertEquals("bold", reader.getAttributeName(0).toString());
+        Assert.assertEquals(JsonType.BOOLEAN, reader.getAttributeType(0));
+        Assert.assertEquals("true", reader.getAttributeValue(0).toString());
+        Assert.assertTrue("https://vaadin.com"
+                .contentEquals(reader.getAttribute("link")));
+        Assert.assertFalse(reader.hasAttribute("italic"));
+
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(DeltaReader.Type.EMBED, reader.getType());
+        Assert.assertEquals("image", reader.getEmbedType().toString());
+        Assert.assertEquals("data:image/png;base64,AA==",
+                reader.getEmbedValue().toString());
+        Assert.assertEquals(1, reader.getLength());
+        Assert.assertNull(reader.getText());
+
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(DeltaReader.Type.RETAIN, reader.getType());
+        Assert.assertEquals(2, reader.getLength());
+        Assert.assertEquals("1", reader.getAttribute("header").toString());
+        Assert.assertTrue(reader.hasAttribute("bold"));
+        Assert.assertNull(reader.getAttribute("bold"));
+        Assert.assertEquals(JsonType.NULL, reader.getAttributeType(1));
+
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(DeltaReader.Type.DELETE, reader.getType());
+        Assert.assertEquals(3, reader.getLength());
+        Assert.assertEquals(0, reader.getAttributeCount());
+        Assert.assertEquals(3, reader.getIndex());
+
+        Assert.assertFalse(reader.next());
+        Assert.assertNull(reader.getType());
+    }
+
+    @Test
+    public void escapedText_unescaped() {
+        DeltaReader reader = new DeltaReader(
+                "[{\"insert\":\"Foo \\\"bar\\\"\\n\\u00e4\\\\\"}]");
+        reader.next();
+        Assert.assertEquals("Foo \"bar\"\nä\\",
+                reader.getText().toString());
+        Assert.assertEquals(12, reader.getLength());
+        Assert.assertEquals('ä', reader.getText().charAt(10));
+    }
+
+    @Test
+    public void opsObject_otherMembersSkipped() {
+        List<String> read = new ArrayList<>();
+        new DeltaReader(" {\"meta\":{\"a\":[1,\"]\"]},\"ops\":[{\"retain\":1.0},"
+                + "{\"insert\":\"x\",\"foo\":[{}]}],\"bar\":null} ")
+                        .accept(new DeltaVisitor() {
+                            @Override
+                            public void insert(CharSequence text,
+                                    DeltaReader op) {
+                                read.add("insert " + text);
+                            }
+
+                            @Override
+                            public void retain(int length, DeltaReader op) {
+                                read.add("retain " + length);
+                            }
+                        });
+        Assert.assertEquals("[retain 1, insert x]", read.toString());
+    }
+
+    @Test
+    public void blankValue_noOperations() {
+        Assert.assertFalse(new DeltaReader(" ").next());
+        Assert.assertFalse(new DeltaReader("[]").next());
+    }
+
+    @Test
+    public void invalidValues_throw() {
+        String[] invalidValues = { "[{\"insert\":\"a\"} {\"delete\":1}]",
+                "[{\"insert\":\"a\"}]x", "[{\"insert\":\"a\\x\"}]",
+                "[{\"insert\":\"a\"", "[1]", "[{\"insert\":1}]",
+                "[{\"retain\":-1}]", "[{\"retain\":1.5}]", "[{}]",
+                "{\"foo\":[]}", "[{\"insert\":\"a\",}]",
+                "[{\"insert\":\"a\",\"attributes\":{\"bold\":tru}}]" };
+        for (String value : invalidValues) {
+            try {
+                DeltaReader reader = new DeltaReader(value);
+                while (reader.next()) {
+                    // Read all
+                }
+                Assert.fail("Should not be a Delta: " + value);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("The value is not a Delta"));
+            }
+        }
+    }
+
+    @Test
+    public void nestedValues_skippedUpToMaximumDepth() {
+        int depth = DeltaReader.MAX_NESTING_DEPTH - 1;
+        String nested = repeat("[", depth) + "{\"a\":1}" + repeat("]", depth);
+        DeltaReader reader = new DeltaReader("[{\"insert\":\"a\","
+                + "\"attributes\":{\"custom\":" + nested + "}}]");
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(nested, reader.getAttribute("custom").toString());
+    }
+
+    @Test
+    public void deeplyNestedValues_throw() {
+        String nested = repeat("[", 100000);
+        String[] values = { "[{\"insert\":\"a\",\"x\":" + nested + "}]",
+                "[{\"insert\":\"a\",\"attributes\":{\"x\":" + nested
+                        + "}}]",
+                "{\"meta\":" + repeat("{\"a\":", 100000) + "1}" };
+        for (String value : values) {
+            try {
+                Delta.parse(value);
+                Assert.fail("Should not be a Delta");
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("The value is not a Delta"));
+            }
+        }
+        // Checking the limits does not overflow the stack either
+        Assert.assertEquals(ValueLimits.Limit.FORMAT, ValueLimits.unlimited()
+                .withMaxImages(1).checkValue(values[0]));
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
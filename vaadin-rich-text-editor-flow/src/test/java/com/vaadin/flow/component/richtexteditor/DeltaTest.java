@@ -0,0 +1,217 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link Delta}.
+ */
+public class DeltaTest {
+
+    private static final Map<String, Object> BOLD = Collections
+            .singletonMap("bold", true);
+    private static final Map<String, Object> ITALIC = Collections
+            .singletonMap("italic", true);
+
+    @Test
+    public void parseAndToValue_sameValue() {
+        String value = "[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                + "{\"insert\":{\"image\":\"data:image/png;base64,AA==\"}},"
+                + "{\"insert\":\"\\n\",\"attributes\":{\"header\":1}}]";
+        Delta delta = Delta.parse(value);
+        Assert.assertEquals(value, delta.toValue());
+        Assert.assertEquals(5, delta.length());
+        Assert.assertTrue(delta.isDocument());
+        Assert.assertEquals(1, delta.getOps().get(2).getAttributes()
+                .get("header"));
+    }
+
+    @Test
+    public void parseEscapedAndNestedValues() {
+        Delta delta = Delta.parse("[{\"insert\":\"\\\"Foo\\\"\\u00e4\","
+                + "\"attributes\":{\"size\":1.5,\"custom\":{\"a\":[1,true]}}},"
+                + "{\"insert\":{\"formula\":{\"tex\":\"x\"}}},"
+                + "{\"insert\":\"\\n\"}]");
+        Delta.Insert insert = (Delta.Insert) delta.getOps().get(0);
+        Assert.assertEquals("\"Foo\"\u00e4", insert.getText());
+        Assert.assertEquals(1.5, insert.getAttributes().get("size"));
+        Assert.assertEquals(
+                Collections.singletonMap("a", Arrays.asList(1, true)),
+                insert.getAttributes().get("custom"));
+        Assert.assertEquals(
+                Collections.singletonMap("formula",
+                        Collections.singletonMap("tex", "x")),
+                ((Delta.Insert) delta.getOps().get(1)).getEmbed());
+    }
+
+    @Test
+    public void parseEmptyValue_emptyDelta() {
+        Assert.assertEquals(Delta.empty(), Delta.parse(""));
+        Assert.assertEquals("[]", Delta.empty().toValue());
+    }
+
+    @Test
+    public void parseOpsObject() {
+        Assert.assertEquals(Delta.builder().retain(1).delete(2).build(),
+                Delta.parse("{\"ops\":[{\"retain\":1},{\"delete\":2}]}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseInvalidValue_throws() {
+        Delta.parse("[{\"foo\":1}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseNegativeLength_throws() {
+        Delta.parse("[{\"retain\":-1}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseOverflowingRetains_throws() {
+        Delta.parse("[{\"retain\":2147483647},{\"retain\":2147483647},"
+                + "{\"insert\":\"x\"}]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderOverflowingLength_throws() {
+        Delta.builder().retain(Integer.MAX_VALUE).retain(1, BOLD).build();
+    }
+
+    @Test
+    public void builder_adjacentOperationsMerged() {
+        Delta delta = Delta.builder().insert("Foo").insert("Bar").delete(1)
+                .delete(2).insert("Baz", BOLD).retain(0).build();
+        Assert.assertEquals("[{\"insert\":\"FooBar\"},{\"insert\":\"Baz\","
+                + "\"attributes\":{\"bold\":true}},{\"delete\":3}]",
+                delta.toValue());
+    }
+
+    @Test
+    public void composeInsert_mergedWithText() {
+        assertComposed("[{\"insert\":\"Foo bar\\n\"}]",
+                "[{\"insert\":\"Foo\\n\"}]",
+                "[{\"retain\":3},{\"insert\":\" bar\"}]");
+    }
+
+    @Test
+    public void composeDelete() {
+        assertComposed("[{\"insert\":\"Fo\\n\"}]",
+                "[{\"insert\":\"Foo\\n\"}]", "[{\"retain\":1},{\"delete\":1}]");
+    }
+
+    @Test
+    public void composeFormat_attributesAddedAndRemoved() {
+        assertComposed("[{\"insert\":\"F\",\"attributes\":{\"bold\":true}},"
+                + "{\"insert\":\"oo\",\"attributes\":{\"italic\":true}},"
+                + "{\"insert\":\"\\n\"}]",
+                "[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                        + "{\"insert\":\"\\n\"}]",
+                "[{\"retain\":1},{\"retain\":2,\"attributes\":"
+                        + "{\"bold\":null,\"italic\":true}}]");
+    }
+
+    @Test
+    public void composeEmbed_notMerged() {
+        assertComposed("[{\"insert\":\"a\"},{\"insert\":{\"image\":\"x\"}},"
+                + "{\"insert\":\"b\\n\"}]", "[{\"insert\":\"ab\\n\"}]",
+                "[{\"retain\":1},{\"insert\":{\"image\":\"x\"}}]");
+    }
+
+    @Test
+    public void composeBeyondDocument_notDocument() {
+        Delta document = Delta.parse("[{\"insert\":\"Foo\\n\"}]");
+        Assert.assertFalse(document.compose(Delta.parse("[{\"delete\":5}]"))
+                .isDocument());
+    }
+
+    @Test
+    public void composeLargeDocument_unchangedOpsKept() {
+        Delta.Builder builder = Delta.builder();
+        for (int i = 0; i < 10000; i++) {
+            builder.insert("Line " + i, i % 2 == 0 ? BOLD : ITALIC)
+                    .insert("\n");
+        }
+        Delta document = builder.build();
+        int offset = document.length() / 2;
+        Delta change = Delta.builder().retain(offset).insert("x").build();
+        Delta composed = document.compose(change);
+
+        Assert.assertEquals(document.length() + 1, composed.length());
+        Assert.assertSame(document.getOps().get(0),
+                composed.getOps().get(0));
+        Assert.assertEquals(document.slice(0, offset),
+                composed.slice(0, offset));
+        Assert.assertEquals(document.slice(offset),
+                composed.slice(offset + 1));
+    }
+
+    @Test
+    public void transform_concurrentChangesConverge() {
+        Delta document = Delta.parse("[{\"insert\":\"Foo\\n\"}]");
+        Delta a = Delta.builder().retain(1).insert("A").build();
+        Delta b = Delta.builder().retain(1).insert("B").delete(1).build();
+
+        Delta aThenB = document.compose(a).compose(a.transform(b, true));
+        Delta bThenA = document.compose(b).compose(b.transform(a, false));
+        Assert.assertEquals(aThenB, bThenA);
+        Assert.assertEquals("[{\"insert\":\"FABo\\n\"}]", aThenB.toValue());
+    }
+
+    @Test
+    public void transformPosition() {
+        Delta change = Delta.builder().retain(2).insert("xx").delete(1)
+                .build();
+        Assert.assertEquals(1, change.transformPosition(1, false));
+        Assert.assertEquals(2, change.transformPosition(2, true));
+        Assert.assertEquals(4, change.transformPosition(2, false));
+        Assert.assertEquals(4, change.transformPosition(3, false));
+        Assert.assertEquals(6, change.transformPosition(5, false));
+    }
+
+    @Test
+    public void invert_undoesChange() {
+        Delta document = Delta.parse("[{\"insert\":\"Foo\","
+                + "\"attributes\":{\"bold\":true}},{\"insert\":\" bar\\n\"}]");
+        Map<String, Object> format = new HashMap<>();
+        format.put("bold", null);
+        format.put("italic", true);
+        Delta change = Delta.builder().retain(2, format).insert("baz")
+                .delete(3).build();
+
+        Delta changed = document.compose(change);
+        Assert.assertEquals(document, changed.compose(change.invert(document)));
+    }
+
+    @Test
+    public void slice() {
+        Delta document = Delta.builder().insert("Foo", BOLD)
+                .insertEmbed("image", "x", null).insert("Bar\n").build();
+        Assert.assertEquals(Delta.builder().insert("oo", BOLD)
+                .insertEmbed("image", "x", null).insert("B").build(),
+                document.slice(1, 5));
+        Assert.assertEquals(Delta.builder().insert("ar\n").build(),
+                document.slice(5));
+        Assert.assertEquals(Delta.empty(), document.slice(3, 3));
+        Assert.assertSame(document, document.slice(0, 100));
+    }
+
+    @Test
+    public void equalNumbers_equalAttributes() {
+        Assert.assertEquals(
+                Delta.builder().insert("\n", Collections.singletonMap("header",
+                        2L)).build(),
+                Delta.parse("[{\"insert\":\"\\n\",\"attributes\":"
+                        + "{\"header\":2}}]"));
+    }
+
+    private static void assertComposed(String expected, String document,
+            String change) {
+        Assert.assertEquals(expected,
+                Delta.parse(document).compose(Delta.parse(change)).toValue());
+    }
+}
@@ -0,0 +1,53 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link FileSystemImageStore}.
+ */
+public class FileSystemImageStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void store_fileCreated_sameDataRead() throws IOException {
+        Path directory = folder.getRoot().toPath().resolve("images");
+        FileSystemImageStore store = new FileSystemImageStore(directory);
+        String id = store.store("image/jpeg", new byte[] { 4, 2 });
+
+        Assert.assertEquals(id, store.store("image/jpeg", new byte[] { 4, 2 }));
+        Assert.assertArrayEquals(new byte[] { 4, 2 },
+                Files.readAllBytes(directory.resolve(id)));
+        Assert.assertEquals(1, directory.toFile().list().length);
+        Assert.assertEquals("image/jpeg", store.getMimeType(id));
+        try (InputStream in = store.open(id)) {
+            Assert.assertEquals(4, in.read());
+        }
+    }
+
+    @Test
+    public void unknownId_noMimeType() {
+        FileSystemImageStore store = new FileSystemImageStore(
+                folder.getRoot().toPath());
+        Assert.assertNull(store.getMimeType(
+                "0000000000000000000000000000000000000000000000000000000000000000.png"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void openPathOutsideDirectory_throws() throws IOException {
+        Path directory = folder.newFolder("images").toPath();
+        Files.write(folder.getRoot().toPath().resolve("secret.png"),
+                new byte[] { 1 });
+        new FileSystemImageStore(directory).open("../secret.png");
+    }
+}
@@ -0,0 +1,77 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link InMemoryImageStore}.
+ */
+public class InMemoryImageStoreTest {
+
+    private final InMemoryImageStore store = new InMemoryImageStore();
+
+    @Test
+    public void store_open_sameData() throws IOException {
+        byte[] data = { 1, 2, 3 };
+        String id = store.store("image/png", data);
+
+        Assert.assertTrue(id.matches("[0-9a-f]{64}\\.png"));
+        Assert.assertEquals("image/png", store.getMimeType(id));
+        try (InputStream in = store.open(id)) {
+            Assert.assertEquals(1, in.read());
+            Assert.assertEquals(2, in.read());
+            Assert.assertEquals(3, in.read());
+            Assert.assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void storeSameImageTwice_storedOnce() {
+        String id = store.store("image/png", new byte[] { 1 });
+        Assert.assertEquals(id, store.store("IMAGE/PNG", new byte[] { 1 }));
+        Assert.assertNotEquals(id, store.store("image/gif", new byte[] { 1 }));
+        Assert.assertEquals(2, store.size());
+    }
+
+    @Test
+    public void unknownId_noMimeType() {
+        Assert.assertNull(store.getMimeType("foo.png"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void openUnknownId_throws() throws IOException {
+        store.open("foo.png");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void storeSvg_throws() {
+        store.store("image/svg+xml", new byte[] { 1 });
+    }
+
+    @Test
+    public void serializeAndDeserialize_sameStore_imagesNotCopied()
+            throws IOException, ClassNotFoundException {
+        store.store("image/png", new byte[100_000]);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(store);
+        }
+        Object deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = in.readObject();
+        }
+
+        Assert.assertTrue(String.valueOf(bytes.size()), bytes.size() < 1000);
+        Assert.assertSame(store, deserialized);
+    }
+}
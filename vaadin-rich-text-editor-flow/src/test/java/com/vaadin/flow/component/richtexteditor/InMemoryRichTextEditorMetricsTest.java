@@ -0,0 +1,61 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.flow.component.richtexteditor.InMemoryRichTextEditorMetrics.Statistics;
+
+/**
+ * Tests for the {@link InMemoryRichTextEditorMetrics}.
+ */
+public class InMemoryRichTextEditorMetricsTest {
+
+    @Test
+    public void noMeasurements_zeroStatistics() {
+        Statistics statistics = new InMemoryRichTextEditorMetrics()
+                .getSanitizeNanos();
+        Assert.assertEquals(0, statistics.getCount());
+        Assert.assertEquals(0, statistics.getMean(), 0);
+        Assert.assertEquals(0, statistics.getPercentile(99));
+    }
+
+    @Test
+    public void measurements_aggregated() {
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        for (int i = 100; i > 0; i--) {
+            metrics.sanitized(i, i * 10, i * 5);
+        }
+        Statistics statistics = metrics.getSanitizeNanos();
+        Assert.assertEquals(100, statistics.getCount());
+        Assert.assertEquals(5050, statistics.getSum());
+        Assert.assertEquals(1, statistics.getMin());
+        Assert.assertEquals(100, statistics.getMax());
+        Assert.assertEquals(50.5, statistics.getMean(), 0);
+        Assert.assertEquals(1, statistics.getPercentile(0));
+        Assert.assertEquals(50, statistics.getPercentile(50));
+        Assert.assertEquals(99, statistics.getPercentile(99));
+        Assert.assertEquals(100, statistics.getPercentile(100));
+        Assert.assertEquals(1000, metrics.getSanitizeInputLength().getMax());
+        Assert.assertEquals(500, metrics.getSanitizeOutputLength().getMax());
+    }
+
+    @Test
+    public void windowFull_percentilesOfRecentMeasurements() {
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics(
+                10);
+        for (int i = 1; i <= 100; i++) {
+            metrics.valueSynchronized(i);
+        }
+        Statistics statistics = metrics.getValueSyncBytes();
+        Assert.assertEquals(100, statistics.getCount());
+        Assert.assertEquals(1, statistics.getMin());
+        Assert.assertEquals(91, statistics.getPercentile(0));
+        Assert.assertEquals(95, statistics.getPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile_throws() {
+        new InMemoryRichTextEditorMetrics().getAsHtmlListeners()
+                .getPercentile(101);
+    }
+}
@@ -0,0 +1,96 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.flow.component.HasValue.ValueChangeEvent;
+import com.vaadin.flow.dom.DomEvent;
+import com.vaadin.flow.dom.Element;
+import com.vaadin.flow.internal.nodefeature.ElementListenerMap;
+
+import elemental.json.Json;
+
+/**
+ * Tests for the {@link LazyRichTextEditor}.
+ */
+public class LazyRichTextEditorTest {
+
+    private static final String VALUE = "[{\"insert\":\"Foo\","
+            + "\"attributes\":{\"bold\":true}},{\"insert\":\"\\n\"}]";
+
+    @Test
+    public void notActivated_placeholderShowsHtml() {
+        LazyRichTextEditor field = new LazyRichTextEditor(VALUE);
+        Assert.assertFalse(field.isActivated());
+        Assert.assertFalse(field.getEditor().isPresent());
+        Assert.assertEquals("<p><strong>Foo</strong></p>",
+                getPlaceholder(field).getProperty("innerHTML"));
+    }
+
+    @Test
+    public void click_editorCreatedWithValue() {
+        LazyRichTextEditor field = new LazyRichTextEditor(VALUE);
+        Element placeholder = getPlaceholder(field);
+        fireEvent(placeholder, "click");
+
+        RichTextEditor editor = field.getEditor().get();
+        Assert.assertEquals(VALUE, editor.getValue());
+        Assert.assertEquals(editor.getElement(),
+                field.getContent().getElement().getChild(0));
+        Assert.assertEquals(1,
+                field.getContent().getElement().getChildCount());
+        Assert.assertSame(editor, field.activate());
+    }
+
+    @Test
+    public void activated_valuesHandedOver() {
+        LazyRichTextEditor field = new LazyRichTextEditor();
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        field.addValueChangeListener(events::add);
+        RichTextEditor editor = field.activate();
+
+        editor.setModelValue(VALUE, true);
+        Assert.assertEquals(VALUE, field.getValue());
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).isFromClient());
+
+        field.setValue("[{\"insert\":\"Bar\\n\"}]");
+        Assert.assertEquals("[{\"insert\":\"Bar\\n\"}]", editor.getValue());
+        Assert.assertEquals(2, events.size());
+        Assert.assertFalse(events.get(1).isFromClient());
+    }
+
+    @Test
+    public void readOnly_notActivatedOnClick() {
+        LazyRichTextEditor field = new LazyRichTextEditor(VALUE);
+        field.setReadOnly(true);
+        fireEvent(getPlaceholder(field), "focus");
+        Assert.assertFalse(field.isActivated());
+
+        Assert.assertTrue(field.activate().isReadOnly());
+    }
+
+    @Test
+    public void editorFactory_usedOnActivation() {
+        LazyRichTextEditor field = new LazyRichTextEditor(VALUE);
+        field.setEditorFactory(() -> {
+            RichTextEditor editor = new RichTextEditor();
+            editor.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+            return editor;
+        });
+        Assert.assertEquals(ValueSyncMode.INCREMENTAL,
+                field.activate().getValueSyncMode());
+    }
+
+    private static Element getPlaceholder(LazyRichTextEditor field) {
+        return field.getContent().getElement().getChild(0);
+    }
+
+    private static void fireEvent(Element element, String type) {
+        element.getNode().getFeature(ElementListenerMap.class)
+                .fireEvent(new DomEvent(element, type, Json.createObject()));
+    }
+}
@@ -0,0 +1,63 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.PropertyResourceBundle;
+
+import com.vaadin.flow.component.richtexteditor.RichTextEditor.RichTextEditorI18n;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link RichTextEditorI18nCache}.
+ */
+public class RichTextEditorI18nCacheTest {
+
+    private static final Locale FINNISH = new Locale("fi");
+
+    @Test
+    public void withResourceBundle_knownKeysRead() throws IOException {
+        RichTextEditorI18nCache cache = RichTextEditorI18nCache.empty().with(
+                FINNISH, new PropertyResourceBundle(
+                        new StringReader("undo=Kumoa\nfoo=bar")));
+
+        RichTextEditorI18n i18n = cache.get(FINNISH);
+        Assert.assertEquals("Kumoa", i18n.getUndo());
+        Assert.assertNull(i18n.getRedo());
+        Assert.assertFalse(cache.getJson(FINNISH).hasKey("foo"));
+    }
+
+    @Test
+    public void with_copied_immutable() {
+        RichTextEditorI18n i18n = new RichTextEditorI18n().setUndo("Undo");
+        RichTextEditorI18nCache cache = RichTextEditorI18nCache.empty()
+                .with(Locale.ENGLISH, i18n);
+        i18n.setUndo("Changed");
+        cache.get(Locale.ENGLISH).setUndo("Changed");
+
+        Assert.assertEquals("Undo", cache.get(Locale.ENGLISH).getUndo());
+        Assert.assertTrue(RichTextEditorI18nCache.empty().getLocales()
+                .isEmpty());
+    }
+
+    @Test
+    public void get_fallsBackToLanguageAndRoot() {
+        RichTextEditorI18nCache cache = RichTextEditorI18nCache.empty()
+                .with(Locale.ROOT, new RichTextEditorI18n().setUndo("Root"))
+                .with(FINNISH, new RichTextEditorI18n().setUndo("Kumoa"));
+
+        Assert.assertEquals("Kumoa",
+                cache.get(new Locale("fi", "FI")).getUndo());
+        Assert.assertEquals("Root", cache.get(Locale.GERMANY).getUndo());
+        Assert.assertNull(RichTextEditorI18nCache.empty().get(FINNISH));
+    }
+
+    @Test
+    public void getJson_sharedInstance() {
+        RichTextEditorI18nCache cache = RichTextEditorI18nCache.empty()
+                .with(FINNISH, new RichTextEditorI18n().setUndo("Kumoa"));
+        Assert.assertSame(cache.getJson(FINNISH),
+                cache.getJson(new Locale("fi", "FI")));
+    }
+}
@@ -0,0 +1,150 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.vaadin.flow.component.HasValue.ValueChangeEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import com.vaadin.flow.server.VaadinSession;
+
+/**
+ * Tests for the {@link RichTextEditorPool}.
+ */
+public class RichTextEditorPoolTest {
+
+    private static final String VALUE = "[{\"insert\":\"Foo\\n\"}]";
+
+    @After
+    public void clearCurrentUI() {
+        UI.setCurrent(null);
+    }
+
+    @Test
+    public void releasedEditor_reused() {
+        RichTextEditorPool pool = new RichTextEditorPool(2);
+        RichTextEditor editor = pool.acquire();
+        pool.release(editor);
+
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertSame(editor, pool.acquire());
+        Assert.assertNotSame(editor, pool.acquire());
+        Assert.assertEquals(1, pool.getHits());
+        Assert.assertEquals(2, pool.getMisses());
+    }
+
+    @Test
+    public void release_valueRevisionAndPoolListenersReset() {
+        RichTextEditorPool pool = new RichTextEditorPool(1);
+        RichTextEditor editor = pool.acquire();
+        List<ValueChangeEvent<String>> poolEvents = new ArrayList<>();
+        List<ValueChangeEvent<String>> otherEvents = new ArrayList<>();
+        pool.addValueChangeListener(editor, poolEvents::add);
+        editor.addValueChangeListener(otherEvents::add);
+        editor.setValue(VALUE);
+        pool.release(editor);
+
+        Assert.assertEquals("", editor.getValue());
+        Assert.assertEquals(0, editor.getRevision());
+        editor = pool.acquire();
+        editor.setValue(VALUE);
+        Assert.assertEquals(1, poolEvents.size());
+        Assert.assertEquals(2, otherEvents.size());
+    }
+
+    @Test
+    public void release_factoryListenersNotNotified() {
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        RichTextEditorPool pool = new RichTextEditorPool(1, () -> {
+            RichTextEditor created = new RichTextEditor();
+            created.addValueChangeListener(events::add);
+            return created;
+        });
+        RichTextEditor editor = pool.acquire();
+        editor.setValue(VALUE);
+        pool.release(editor);
+
+        Assert.assertEquals("", editor.getValue());
+        Assert.assertEquals(1, events.size());
+        Assert.assertSame(editor, pool.acquire());
+        editor.setValue(VALUE);
+        Assert.assertEquals(2, events.size());
+    }
+
+    @Test
+    public void release_asHtmlValueCleared() {
+        RichTextEditorPool pool = new RichTextEditorPool(1);
+        RichTextEditor editor = pool.acquire();
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        editor.asHtml().addValueChangeListener(events::add);
+        editor.getElement().setProperty("htmlValue", "<p>secret</p>");
+        editor.updateValue("[{\"insert\":\"secret\\n\"}]");
+        Assert.assertEquals("<p>secret</p>", editor.asHtml().getValue());
+        pool.release(editor);
+
+        Assert.assertSame(editor, pool.acquire());
+        Assert.assertEquals("", editor.getValue());
+        Assert.assertEquals(new RichTextEditor().asHtml().getValue(),
+                editor.asHtml().getValue());
+        Assert.assertEquals(1, events.size());
+        editor.setValue(VALUE);
+        Assert.assertNull(events.get(1).getOldValue());
+    }
+
+    @Test
+    public void release_attachedEditorDetachedAndPendingJavaScriptCancelled() {
+        UI ui = createUI();
+        RichTextEditorPool pool = new RichTextEditorPool(1);
+        RichTextEditor editor = pool.acquire();
+        editor.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        ui.add(editor);
+        pool.release(editor);
+        Assert.assertFalse(editor.getParent().isPresent());
+
+        editor = pool.acquire();
+        editor.setValue(VALUE);
+        pool.release(editor);
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        ui.getInternals().dumpPendingJavaScriptInvocations();
+
+        ui.add(pool.acquire());
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        for (PendingJavaScriptInvocation invocation : ui.getInternals()
+                .dumpPendingJavaScriptInvocations()) {
+            Assert.assertFalse(invocation.getInvocation().getExpression()
+                    .contains("__deltaSync.reset"));
+        }
+    }
+
+    @Test
+    public void fullPool_editorDiscarded() {
+        RichTextEditorPool pool = new RichTextEditorPool(1);
+        RichTextEditor editor = pool.acquire();
+        RichTextEditor other = pool.acquire();
+        pool.release(editor);
+        pool.release(other);
+
+        Assert.assertEquals(1, pool.getIdleCount());
+        Assert.assertEquals(1, pool.getDiscarded());
+        Assert.assertSame(editor, pool.acquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaxSize_throws() {
+        new RichTextEditorPool(-1);
+    }
+
+    private static UI createUI() {
+        VaadinSession session = Mockito.mock(VaadinSession.class);
+        Mockito.when(session.hasLock()).thenReturn(true);
+        UI ui = new UI();
+        ui.getInternals().setSession(session);
+        UI.setCurrent(ui);
+        return ui;
+    }
+}
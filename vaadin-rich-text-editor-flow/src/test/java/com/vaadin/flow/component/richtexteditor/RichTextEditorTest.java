@@ -2,12 +2,40 @@ package com.vaadin.flow.component.richtexteditor;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import com.vaadin.flow.component.HasValue;
 import com.vaadin.flow.component.HasValue.ValueChangeEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.internal.PendingJavaScriptInvocation;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.internal.nodefeature.ElementListenerMap;
+import com.vaadin.flow.internal.nodefeature.SynchronizedPropertiesList;
+import com.vaadin.flow.internal.nodefeature.ElementPropertyMap;
+import com.vaadin.flow.server.StreamResourceRegistry;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.shared.Registration;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
 
 /**
  * Tests for the {@link RichTextEditor}.
@@ -43,6 +71,229 @@ public class RichTextEditorTest {
                 rte.getHtmlValue());
     }
 
+    // htmlValue cache
+
+    @Test
+    public void getHtmlValue_calledTwice_sanitizedOnce() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.getElement().setProperty("htmlValue", "<p>Foo</p><script>x</script>");
+
+        String first = rte.getHtmlValue();
+        Assert.assertEquals("<p>Foo</p>", first);
+        Assert.assertSame(first, rte.getHtmlValue());
+        Assert.assertEquals(1, rte.getHtmlValueCacheMisses());
+        Assert.assertEquals(1, rte.getHtmlValueCacheHits());
+    }
+
+    @Test
+    public void getHtmlValue_newHtmlValue_cacheInvalidated() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.getElement().setProperty("htmlValue", "<p>Foo</p>");
+        rte.getHtmlValue();
+
+        rte.getElement().setProperty("htmlValue", "<p>Bar</p>");
+        Assert.assertEquals("<p>Bar</p>", rte.getHtmlValue());
+        Assert.assertEquals(2, rte.getHtmlValueCacheMisses());
+        Assert.assertEquals(0, rte.getHtmlValueCacheHits());
+    }
+
+    @Test
+    public void getHtmlValue_sanitizerPolicyChanged_cacheInvalidated() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.getElement().setProperty("htmlValue", "<strong>Foo</strong>");
+        Assert.assertEquals("<strong>Foo</strong>", rte.getHtmlValue());
+
+        rte.setSanitizerPolicy(SanitizerPolicy.none());
+        Assert.assertEquals("Foo", rte.getHtmlValue());
+    }
+
+    // htmlValue mode
+
+    @Test
+    public void defaultHtmlValueMode_htmlValueSynchronized() {
+        RichTextEditor rte = new RichTextEditor();
+        Assert.assertEquals(HtmlValueMode.SYNCHRONIZED, rte.getHtmlValueMode());
+        Assert.assertTrue(isHtmlValueSynchronized(rte));
+    }
+
+    @Test
+    public void serverRenderedHtmlValueMode_htmlValueNotSynchronized() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        Assert.assertFalse(isHtmlValueSynchronized(rte));
+
+        rte.setHtmlValueMode(HtmlValueMode.SYNCHRONIZED);
+        Assert.assertTrue(isHtmlValueSynchronized(rte));
+    }
+
+    @Test
+    public void serverRenderedHtmlValueMode_htmlValueRenderedFromValue() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        rte.getElement().setProperty("htmlValue", "<p>Ignored</p>");
+        rte.setValue("[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                + "{\"insert\":\"\\n\"}]");
+        Assert.assertEquals("<p><strong>Foo</strong></p>", rte.getHtmlValue());
+
+        rte.setValue("[{\"insert\":\"Bar\\n\"}]");
+        Assert.assertEquals("<p>Bar</p>", rte.getHtmlValue());
+    }
+
+    @Test
+    public void onDemandHtmlValueMode_fetchedFromClientAndSanitized()
+            throws Exception {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        rte.setHtmlValueMode(HtmlValueMode.ON_DEMAND);
+        Assert.assertFalse(isHtmlValueSynchronized(rte));
+
+        CompletableFuture<String> html = rte.fetchHtmlValue(Runnable::run);
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        List<PendingJavaScriptInvocation> invocations = ui.getInternals()
+                .dumpPendingJavaScriptInvocations();
+        PendingJavaScriptInvocation fetch = invocations
+                .get(invocations.size() - 1);
+        Assert.assertFalse(html.isDone());
+
+        fetch.complete(Json.create("<p>Foo</p><script>x</script>"));
+        Assert.assertEquals("<p>Foo</p>", html.get());
+    }
+
+    @Test
+    public void synchronizedHtmlValueMode_fetchHtmlValue_completed()
+            throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        rte.getElement().setProperty("htmlValue", "<p>Foo</p>");
+        CompletableFuture<String> html = rte.fetchHtmlValue();
+        Assert.assertTrue(html.isDone());
+        Assert.assertEquals("<p>Foo</p>", html.get());
+    }
+
+    @Test
+    public void setHtmlValueModeNull() {
+        RichTextEditor rte = new RichTextEditor();
+        thrown.expect(NullPointerException.class);
+        rte.setHtmlValueMode(null);
+    }
+
+    // Incremental value sync
+
+    @Test
+    public void defaultValueSyncMode_valueSynchronized() {
+        RichTextEditor rte = new RichTextEditor();
+        Assert.assertEquals(ValueSyncMode.FULL, rte.getValueSyncMode());
+        Assert.assertTrue(isValueSynchronized(rte));
+    }
+
+    @Test
+    public void incrementalValueSyncMode_valueNotSynchronized() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        Assert.assertFalse(isValueSynchronized(rte));
+
+        rte.setValueSyncMode(ValueSyncMode.FULL);
+        Assert.assertTrue(isValueSynchronized(rte));
+    }
+
+    @Test
+    public void incrementalWithServerRenderedHtml_onlyChangesSynchronized() {
+        RichTextEditor rte = createAttachedEditor();
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        Assert.assertFalse(isValueSynchronized(rte));
+        Assert.assertFalse(isHtmlValueSynchronized(rte));
+        UI ui = rte.getUI().get();
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        Assert.assertTrue(ui.getInternals().dumpPendingJavaScriptInvocations()
+                .stream()
+                .anyMatch(invocation -> invocation.getInvocation()
+                        .getExpression()
+                        .contains("richTextEditorDeltaSync.install(this")));
+
+        rte.applyValueDelta(rte.getValueRevision(), "[{\"insert\":\"Foo\"}]");
+        Assert.assertEquals("<p>Foo</p>", rte.getHtmlValue());
+    }
+
+    @Test
+    public void applyValueDelta_changeComposedAndEventFired() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        rte.addValueChangeListener(events::add);
+
+        rte.applyValueDelta(rte.getValueRevision(),
+                "[{\"retain\":3,\"attributes\":{\"bold\":true}},"
+                        + "{\"insert\":\" bar\"}]");
+
+        String expected = "[{\"insert\":\"Foo\",\"attributes\":"
+                + "{\"bold\":true}},{\"insert\":\" bar\\n\"}]";
+        Assert.assertEquals(expected, rte.getValue());
+        Assert.assertEquals(1, events.size());
+        Assert.assertTrue(events.get(0).isFromClient());
+        Assert.assertEquals(expected, events.get(0).getValue());
+    }
+
+    @Test
+    public void applyValueDelta_emptyValue_appliedToEmptyDocument() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        rte.applyValueDelta(rte.getValueRevision(), "[{\"insert\":\"Foo\"}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+    }
+
+    @Test
+    public void applyValueDelta_oldRevision_ignored() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        int revision = rte.getValueRevision();
+        rte.setValue("[{\"insert\":\"Bar\\n\"}]");
+
+        rte.applyValueDelta(revision, "[{\"delete\":3}]");
+        Assert.assertEquals("[{\"insert\":\"Bar\\n\"}]", rte.getValue());
+    }
+
+    @Test
+    public void applyValueDelta_changeDoesNotApply_ignored() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        int revision = rte.getValueRevision();
+        rte.applyValueDelta(revision, "[{\"delete\":10}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(revision, rte.getValueRevision());
+    }
+
+    @Test
+    public void resyncValue_valueAndRevisionReplaced() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        rte.resyncValue(42, "[{\"insert\":\"Foo\\n\"}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(42, rte.getValueRevision());
+    }
+
+    @Test
+    public void setDelta_getDelta() {
+        RichTextEditor rte = new RichTextEditor();
+        Assert.assertEquals("[{\"insert\":\"\\n\"}]", rte.getDelta().toValue());
+
+        Delta delta = Delta.builder().insert("Foo\n").build();
+        rte.setDelta(delta);
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(delta, rte.getDelta());
+    }
+
+    @Test
+    public void setValueSyncModeNull() {
+        RichTextEditor rte = new RichTextEditor();
+        thrown.expect(NullPointerException.class);
+        rte.setValueSyncMode(null);
+    }
+
+    private static boolean isValueSynchronized(RichTextEditor rte) {
+        return rte.getElement().getNode().getFeature(ElementListenerMap.class)
+                .getPropertySynchronizationMode("value") != null;
+    }
+
     // Decoration group sanitization
 
     @Test
@@ -182,6 +433,857 @@ public class RichTextEditorTest {
         Assert.assertEquals("<pre>Foo</pre>", rte.sanitize("<pre>Foo</pre>"));
     }
 
+    // Sanitizer policy
+
+    @Test
+    public void defaultSanitizerPolicy() {
+        RichTextEditor rte = new RichTextEditor();
+        Assert.assertSame(SanitizerPolicy.defaultPolicy(),
+                rte.getSanitizerPolicy());
+    }
+
+    @Test
+    public void setSanitizerPolicy_usedForSanitize() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setSanitizerPolicy(SanitizerPolicy.none());
+        Assert.assertEquals("Foo", rte.sanitize("<strong>Foo</strong>"));
+    }
+
+    @Test
+    public void setSanitizerPolicyNull() {
+        RichTextEditor rte = new RichTextEditor();
+        thrown.expect(NullPointerException.class);
+        rte.setSanitizerPolicy(null);
+    }
+
+    // i18n
+
+    @Test
+    public void setI18n_sentAsSingleUpdate() {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        getI18nUpdates(ui);
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo")
+                .setRedo("Redo"));
+
+        List<JsonObject> updates = getI18nUpdates(ui);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals(21, updates.get(0).keys().length);
+        Assert.assertEquals("Undo", updates.get(0).getString("undo"));
+    }
+
+    @Test
+    public void setI18n_onlyChangedPropertiesSent() {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo")
+                .setRedo("Redo"));
+        getI18nUpdates(ui);
+
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo")
+                .setRedo("Again"));
+        List<JsonObject> updates = getI18nUpdates(ui);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals("{\"redo\":\"Again\"}",
+                updates.get(0).toJson());
+
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo")
+                .setRedo("Again"));
+        Assert.assertTrue(getI18nUpdates(ui).isEmpty());
+    }
+
+    @Test
+    public void setI18n_reattached_allPropertiesSentAgain() {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo"));
+        getI18nUpdates(ui);
+
+        ui.remove(rte);
+        ui.add(rte);
+        List<JsonObject> updates = getI18nUpdates(ui);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals(21, updates.get(0).keys().length);
+    }
+
+    @Test
+    public void setI18n_sameInstance_jsonShared() {
+        RichTextEditor.RichTextEditorI18n i18n = new RichTextEditor.RichTextEditorI18n()
+                .setBold("Bold");
+        JsonObject json = i18n.toJson();
+        Assert.assertSame(json, i18n.toJson());
+
+        i18n.setBold("Fett");
+        Assert.assertNotSame(json, i18n.toJson());
+        Assert.assertEquals("Fett", i18n.toJson().getString("bold"));
+    }
+
+    @Test
+    public void setI18nCache_appliedOnLocaleChange() {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        rte.setI18nCache(RichTextEditorI18nCache.empty()
+                .with(Locale.ENGLISH,
+                        new RichTextEditor.RichTextEditorI18n()
+                                .setUndo("Undo"))
+                .with(Locale.GERMAN, new RichTextEditor.RichTextEditorI18n()
+                        .setUndo("Rückgängig")));
+        ui.setLocale(Locale.ENGLISH);
+        Assert.assertEquals("Undo",
+                getI18nUpdates(ui).get(0).getString("undo"));
+
+        ui.setLocale(Locale.GERMAN);
+        List<JsonObject> updates = getI18nUpdates(ui);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals("{\"undo\":\"Rückgängig\"}",
+                updates.get(0).toJson());
+    }
+
+    @Test
+    public void setI18nCache_explicitI18nTakesPrecedence() {
+        RichTextEditor rte = createAttachedEditor();
+        UI ui = rte.getUI().get();
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Mine"));
+        rte.setI18nCache(RichTextEditorI18nCache.empty().with(Locale.GERMAN,
+                new RichTextEditor.RichTextEditorI18n().setUndo("Cached")));
+        ui.setLocale(Locale.GERMAN);
+
+        List<JsonObject> updates = getI18nUpdates(ui);
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals("Mine", updates.get(0).getString("undo"));
+    }
+
+    private static List<JsonObject> getI18nUpdates(UI ui) {
+        ui.getInternals().getStateTree().runExecutionsBeforeClientResponse();
+        List<JsonObject> updates = new ArrayList<>();
+        for (PendingJavaScriptInvocation invocation : ui.getInternals()
+                .dumpPendingJavaScriptInvocations()) {
+            if (invocation.getInvocation().getExpression()
+                    .contains("this.i18n")) {
+                updates.add((JsonObject) invocation.getInvocation()
+                        .getParameters().get(0));
+            }
+        }
+        return updates;
+    }
+
+    // plain text
+
+    @Test
+    public void getPlainText_wordAndCharacterCount() {
+        RichTextEditor rte = new RichTextEditor();
+        Assert.assertEquals("", rte.getPlainText());
+        Assert.assertEquals(0, rte.getWordCount());
+
+        rte.setValue("[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                + "{\"insert\":\" bar\\nBaz\\n\"}]");
+        Assert.assertEquals("Foo bar\nBaz", rte.getPlainText());
+        Assert.assertSame(rte.getPlainText(), rte.getPlainText());
+        Assert.assertEquals(3, rte.getWordCount());
+        Assert.assertEquals(10, rte.getCharacterCount());
+    }
+
+    @Test
+    public void getWordCount_incrementalSync_updatedFromChange() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo bar\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        Assert.assertEquals(2, rte.getWordCount());
+
+        rte.applyValueDelta(rte.getValueRevision(),
+                "[{\"retain\":3},{\"insert\":\"d baz qux\"}]");
+        Assert.assertEquals("Food baz qux bar", rte.getPlainText());
+        Assert.assertEquals(4, rte.getWordCount());
+        Assert.assertEquals(16, rte.getCharacterCount());
+    }
+
+    // value limits
+
+    @Test
+    public void setValueLimits_oversizedClientValueRejected() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueLimits(ValueLimits.unlimited().withMaxSize(100));
+        List<ValueChangeEvent<String>> changes = new ArrayList<>();
+        rte.addValueChangeListener(changes::add);
+        List<ValueLimitExceededEvent> rejections = new ArrayList<>();
+        rte.addValueLimitExceededListener(rejections::add);
+
+        rte.getElement().getNode().getFeature(ElementPropertyMap.class)
+                .deferredUpdateFromClient("value", "[{\"insert\":\""
+                        + String.join("", Collections.nCopies(100, "x"))
+                        + "\\n\"}]")
+                .run();
+
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(rte.getValue(),
+                rte.getElement().getProperty("value"));
+        Assert.assertTrue(changes.isEmpty());
+        Assert.assertEquals(1, rejections.size());
+        Assert.assertEquals(ValueLimits.Limit.SIZE,
+                rejections.get(0).getLimit());
+        Assert.assertEquals(100, rejections.get(0).getMaximum());
+        Assert.assertTrue(rejections.get(0).isFromClient());
+    }
+
+    @Test
+    public void setValueLimits_oversizedUpdateValueRejected() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueLimits(ValueLimits.unlimited().withMaxSize(20));
+        List<ValueLimitExceededEvent> rejections = new ArrayList<>();
+        rte.addValueLimitExceededListener(rejections::add);
+
+        rte.updateValue("[{\"insert\":\"Foo bar baz qux\\n\"}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(1, rejections.size());
+
+        rte.updateValue("[{\"insert\":\"Bar\\n\"}]");
+        Assert.assertEquals("[{\"insert\":\"Bar\\n\"}]", rte.getValue());
+    }
+
+    @Test
+    public void setValueLimits_malformedClientValueRejected() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueLimits(ValueLimits.unlimited().withMaxImages(1));
+        List<ValueLimitExceededEvent> rejections = new ArrayList<>();
+        rte.addValueLimitExceededListener(rejections::add);
+
+        rte.updateValue("[1,{\"insert\":{\"image\":\"a.png\"}},"
+                + "{\"insert\":{\"image\":\"b.png\"}}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(1, rejections.size());
+        Assert.assertEquals(ValueLimits.Limit.FORMAT,
+                rejections.get(0).getLimit());
+    }
+
+    @Test
+    public void setValueLimits_clientValueWithinLimitsAccepted() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueLimits(ValueLimits.unlimited().withMaxSize(100)
+                .withMaxImages(1));
+        rte.setModelValue("[{\"insert\":{\"image\":\"a.png\"}}]", true);
+        Assert.assertEquals("[{\"insert\":{\"image\":\"a.png\"}}]",
+                rte.getValue());
+    }
+
+    @Test
+    public void setValueLimits_serverValueNotChecked() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueLimits(ValueLimits.unlimited().withMaxSize(0));
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+    }
+
+    @Test
+    public void setValueLimits_changeWithTooManyImagesRejected() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        rte.setValueLimits(ValueLimits.unlimited().withMaxImages(1));
+        List<ValueLimitExceededEvent> rejections = new ArrayList<>();
+        rte.addValueLimitExceededListener(rejections::add);
+        int revision = rte.getValueRevision();
+
+        rte.applyValueDelta(revision, "[{\"insert\":{\"image\":\"a.png\"}}]");
+        rte.applyValueDelta(revision + 1,
+                "[{\"insert\":{\"image\":\"b.png\"}}]");
+
+        Assert.assertEquals("[{\"insert\":{\"image\":\"a.png\"}},"
+                + "{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(1, rejections.size());
+        Assert.assertEquals(ValueLimits.Limit.IMAGES,
+                rejections.get(0).getLimit());
+    }
+
+    @Test
+    public void setValueLimits_oversizedHtmlValueRestored() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueLimits(ValueLimits.unlimited().withMaxSize(20));
+        ElementPropertyMap properties = rte.getElement().getNode()
+                .getFeature(ElementPropertyMap.class);
+        properties.deferredUpdateFromClient("htmlValue", "<p>Foo</p>").run();
+        properties.deferredUpdateFromClient("htmlValue",
+                "<p>Foo bar baz qux</p>").run();
+        Assert.assertEquals("<p>Foo</p>", rte.getHtmlValue());
+    }
+
+    // value coalescing
+
+    @Test
+    public void setValueCoalescing_updatesWithinWindowMerged() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueCoalescing(ValueCoalescing.disabled().withWindow(100));
+        long[] now = { 0 };
+        rte.getValueCoalescer().setClock(() -> now[0]);
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        rte.addValueChangeListener(events::add);
+
+        rte.setModelValue("[{\"insert\":\"a\\n\"}]", true);
+        now[0] = TimeUnit.MILLISECONDS.toNanos(10);
+        rte.setModelValue("[{\"insert\":\"ab\\n\"}]", true);
+        rte.setModelValue("[{\"insert\":\"abc\\n\"}]", true);
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("[{\"insert\":\"abc\\n\"}]", rte.getValue());
+        Assert.assertEquals(3, rte.getCharacterCount());
+
+        now[0] = TimeUnit.MILLISECONDS.toNanos(150);
+        rte.setModelValue("[{\"insert\":\"abcd\\n\"}]", true);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("[{\"insert\":\"a\\n\"}]",
+                events.get(1).getOldValue());
+        Assert.assertEquals("[{\"insert\":\"abcd\\n\"}]",
+                events.get(1).getValue());
+    }
+
+    @Test
+    public void setValueCoalescing_pendingValueFlushedOnDetach() {
+        RichTextEditor rte = createAttachedEditor();
+        rte.setValueCoalescing(ValueCoalescing.disabled().withWindow(60000));
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        rte.addValueChangeListener(events::add);
+
+        rte.setModelValue("[{\"insert\":\"a\\n\"}]", true);
+        rte.setModelValue("[{\"insert\":\"ab\\n\"}]", true);
+        Assert.assertEquals(1, events.size());
+
+        rte.getUI().get().remove(rte);
+        Assert.assertEquals(2, events.size());
+        Assert.assertTrue(events.get(1).isFromClient());
+        Assert.assertEquals("[{\"insert\":\"ab\\n\"}]",
+                events.get(1).getValue());
+    }
+
+    @Test
+    public void setValueCoalescing_serverValueDiscardsPendingValue() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueCoalescing(ValueCoalescing.disabled().withWindow(60000));
+        rte.setModelValue("[{\"insert\":\"a\\n\"}]", true);
+        rte.setModelValue("[{\"insert\":\"ab\\n\"}]", true);
+
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+        Assert.assertNull(rte.getValueCoalescer().getPendingValue());
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+    }
+
+    @Test
+    public void setValueCoalescing_sessionRateLimitSharedByEditors() {
+        UI ui = createUI();
+        Map<Object, Object> attributes = new HashMap<>();
+        VaadinSession session = ui.getSession();
+        Mockito.doAnswer(invocation -> attributes.put(
+                invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(session)
+                .setAttribute(Mockito.any(Class.class), Mockito.any());
+        Mockito.when(session.getAttribute(Mockito.any(Class.class)))
+                .thenAnswer(invocation -> attributes
+                        .get(invocation.getArguments()[0]));
+        ValueCoalescing coalescing = ValueCoalescing.disabled()
+                .withSessionRateLimit(2);
+        long[] now = { 1 };
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        List<RichTextEditor> editors = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RichTextEditor rte = new RichTextEditor();
+            ui.add(rte);
+            rte.setValueCoalescing(coalescing);
+            rte.getValueCoalescer().setClock(() -> now[0]);
+            rte.addValueChangeListener(events::add);
+            editors.add(rte);
+        }
+
+        editors.get(0).setModelValue("[{\"insert\":\"a\\n\"}]", true);
+        editors.get(1).setModelValue("[{\"insert\":\"b\\n\"}]", true);
+        editors.get(0).setModelValue("[{\"insert\":\"aa\\n\"}]", true);
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("[{\"insert\":\"aa\\n\"}]",
+                editors.get(0).getValue());
+
+        now[0] += TimeUnit.MILLISECONDS.toNanos(500);
+        editors.get(0).setModelValue("[{\"insert\":\"aaa\\n\"}]", true);
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals("[{\"insert\":\"aaa\\n\"}]",
+                events.get(2).getValue());
+    }
+
+    // adaptive value change mode
+
+    @Test
+    public void setAdaptiveValueChangeMode_modeFollowsValueSize() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setAdaptiveValueChangeMode(AdaptiveValueChangeMode.defaults()
+                .withEagerLimits(50, 1000).withTimeoutLimits(500, 1000)
+                .withTimeout(250));
+        Assert.assertEquals(ValueChangeMode.EAGER, rte.getValueChangeMode());
+
+        rte.setValue(createValue(100));
+        Assert.assertEquals(ValueChangeMode.TIMEOUT, rte.getValueChangeMode());
+        Assert.assertEquals(250, rte.getValueChangeTimeout());
+
+        rte.setModelValue(createValue(1000), true);
+        Assert.assertEquals(ValueChangeMode.ON_CHANGE,
+                rte.getValueChangeMode());
+
+        rte.setModelValue(createValue(20), true);
+        Assert.assertEquals(ValueChangeMode.EAGER, rte.getValueChangeMode());
+    }
+
+    @Test
+    public void setAdaptiveValueChangeMode_htmlValueSentWithValue() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setAdaptiveValueChangeMode(AdaptiveValueChangeMode.defaults()
+                .withEagerLimits(50, 1000).withTimeoutLimits(500, 1000)
+                .withTimeout(250));
+        Assert.assertEquals("html-value-changed",
+                rte.getHtmlValueSynchronization().getEventType());
+        Assert.assertEquals(0,
+                rte.getHtmlValueSynchronization().getDebounceTimeout());
+
+        rte.setValue(createValue(100));
+        Assert.assertEquals(250,
+                rte.getHtmlValueSynchronization().getDebounceTimeout());
+
+        rte.setModelValue(createValue(1000), true);
+        Assert.assertEquals("change",
+                rte.getHtmlValueSynchronization().getEventType());
+        Assert.assertTrue(isHtmlValueSynchronized(rte));
+    }
+
+    @Test
+    public void setValueChangeModeNull_htmlValueNotSynchronized() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueChangeMode(null);
+        Assert.assertFalse(isHtmlValueSynchronized(rte));
+
+        rte.setValueChangeMode(ValueChangeMode.LAZY);
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        Assert.assertFalse(isHtmlValueSynchronized(rte));
+        rte.setHtmlValueMode(HtmlValueMode.SYNCHRONIZED);
+        Assert.assertEquals(RichTextEditor.DEFAULT_CHANGE_TIMEOUT,
+                rte.getHtmlValueSynchronization().getDebounceTimeout());
+    }
+
+    @Test
+    public void setAdaptiveValueChangeMode_expensiveUpdatesLessEager()
+            throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setAdaptiveValueChangeMode(
+                AdaptiveValueChangeMode.defaults().withEagerLimits(1000, 1));
+        rte.addValueChangeListener(event -> {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        rte.setModelValue(createValue(10), true);
+        Assert.assertEquals(ValueChangeMode.TIMEOUT, rte.getValueChangeMode());
+    }
+
+    @Test
+    public void setValueChangeMode_adaptiveModeTurnedOff() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setAdaptiveValueChangeMode(AdaptiveValueChangeMode.defaults());
+        rte.setValueChangeMode(ValueChangeMode.LAZY);
+        Assert.assertNull(rte.getAdaptiveValueChangeMode());
+
+        rte.setValue(createValue(1000000));
+        Assert.assertEquals(ValueChangeMode.LAZY, rte.getValueChangeMode());
+    }
+
+    private static String createValue(int length) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append("x");
+        }
+        return "[{\"insert\":\"" + text + "\\n\"}]";
+    }
+
+    // revision and content hash
+
+    @Test
+    public void getRevision_incrementedOnValueChange() {
+        RichTextEditor rte = new RichTextEditor();
+        List<Long> revisions = new ArrayList<>();
+        rte.addValueChangeListener(event -> revisions.add(rte.getRevision()));
+        long saved = rte.getRevision();
+
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValue(new String("[{\"insert\":\"Foo\\n\"}]"));
+        Assert.assertTrue(rte.hasChangedSince(saved));
+        saved = rte.getRevision();
+
+        rte.setModelValue("[{\"insert\":\"Bar\\n\"}]", true);
+        Assert.assertTrue(rte.hasChangedSince(saved));
+        Assert.assertFalse(rte.hasChangedSince(rte.getRevision()));
+        Assert.assertEquals(2, revisions.size());
+        Assert.assertTrue(revisions.get(0) < revisions.get(1));
+        Assert.assertEquals(revisions.get(1).longValue(), rte.getRevision());
+    }
+
+    @Test
+    public void getRevision_pendingCoalescedValueCounted() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueCoalescing(ValueCoalescing.disabled().withWindow(60000));
+        rte.setModelValue("[{\"insert\":\"a\\n\"}]", true);
+        long saved = rte.getRevision();
+
+        rte.setModelValue("[{\"insert\":\"ab\\n\"}]", true);
+        Assert.assertTrue(rte.hasChangedSince(saved));
+    }
+
+    @Test
+    public void getContentHash_equalForEqualValues() {
+        RichTextEditor rte = new RichTextEditor();
+        RichTextEditor other = new RichTextEditor();
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+        other.setValue(new String("[{\"insert\":\"Foo\\n\"}]"));
+        Assert.assertEquals(rte.getContentHash(), other.getContentHash());
+
+        other.setValue("[{\"insert\":\"Fop\\n\"}]");
+        Assert.assertNotEquals(rte.getContentHash(), other.getContentHash());
+        Assert.assertNotEquals(new RichTextEditor().getContentHash(),
+                other.getContentHash());
+    }
+
+    // streaming value I/O
+
+    @Test
+    public void writeValueTo_valueWrittenAsUtf8() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        String value = "[{\"insert\":\"Äö € 🙂\\n\"}]";
+        rte.setValue(value);
+
+        StringWriter writer = new StringWriter();
+        rte.writeValueTo(writer);
+        Assert.assertEquals(value, writer.toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rte.writeValueTo(out);
+        Assert.assertArrayEquals(value.getBytes(StandardCharsets.UTF_8),
+                out.toByteArray());
+    }
+
+    @Test
+    public void writeValueTo_largeValueWrittenInChunks() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        String value = "[{\"insert\":\""
+                + ValueStorageTest.createLargeValue().replace('<', '€')
+                + "\\n\"}]";
+        rte.setValue(value);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rte.writeValueTo(out);
+        Assert.assertEquals(value,
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeValueTo_emptyValueWritten() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rte.writeValueTo(out);
+        Assert.assertEquals(0, out.size());
+    }
+
+    @Test
+    public void readValueFrom_valueSet() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        rte.addValueChangeListener(events::add);
+        rte.readValueFrom(new StringReader("[{\"insert\":\"Foo\\n\"}]"));
+
+        Assert.assertEquals("[{\"insert\":\"Foo\\n\"}]", rte.getValue());
+        Assert.assertEquals(1, events.size());
+    }
+
+    @Test
+    public void writeHtmlTo_sanitizedWhileWritten() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        StringBuilder html = new StringBuilder();
+        Assert.assertFalse(rte.writeHtmlTo(html));
+
+        rte.getElement().setProperty("htmlValue",
+                "<p>Foo<script>alert(1)</script> <strong>bar</strong></p>");
+        Assert.assertTrue(rte.writeHtmlTo(html));
+        Assert.assertEquals(rte.getHtmlValue(), html.toString());
+        Assert.assertEquals(0, rte.getHtmlValueCacheHits());
+    }
+
+    @Test
+    public void writeHtmlTo_sanitizeMeasured() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        rte.setMetrics(metrics);
+        rte.getElement().setProperty("htmlValue",
+                "<p>Foo</p><script>x</script>");
+        rte.writeHtmlTo(new StringBuilder());
+
+        Assert.assertEquals(1, metrics.getSanitizeNanos().getCount());
+        Assert.assertEquals(28, metrics.getSanitizeInputLength().getMax());
+        Assert.assertEquals(10, metrics.getSanitizeOutputLength().getMax());
+    }
+
+    @Test
+    public void writeHtmlTo_cachedCompactHtmlWritten() throws Exception {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setValueStorage(ValueStorage.compact(0));
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        rte.setValue("[{\"insert\":\"Foo\",\"attributes\":{\"bold\":true}},"
+                + "{\"insert\":\"\\n\"}]");
+        String expected = rte.getHtmlValue();
+
+        StringWriter writer = new StringWriter();
+        rte.writeHtmlTo(writer);
+        Assert.assertEquals("<p><strong>Foo</strong></p>", writer.toString());
+        Assert.assertEquals(expected, writer.toString());
+        Assert.assertEquals(1, rte.getHtmlValueCacheHits());
+    }
+
+    // metrics
+
+    @Test
+    public void metrics_noOpByDefault() {
+        Assert.assertSame(RichTextEditorMetrics.NO_OP,
+                new RichTextEditor().getMetrics());
+    }
+
+    @Test
+    public void setMetrics_sanitizeMeasured() {
+        RichTextEditor rte = new RichTextEditor();
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        rte.setMetrics(metrics);
+        rte.sanitize("<p>Foo</p><script>x</script>");
+
+        Assert.assertEquals(1, metrics.getSanitizeNanos().getCount());
+        Assert.assertEquals(28, metrics.getSanitizeInputLength().getMax());
+        Assert.assertEquals(10, metrics.getSanitizeOutputLength().getMax());
+    }
+
+    @Test
+    public void setMetrics_clientSyncSizesMeasured() {
+        RichTextEditor rte = new RichTextEditor();
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        rte.setMetrics(metrics);
+        ElementPropertyMap properties = rte.getElement().getNode()
+                .getFeature(ElementPropertyMap.class);
+        properties.deferredUpdateFromClient("htmlValue", "<p>Fü</p>").run();
+        properties.deferredUpdateFromClient("value", "[{\"insert\":\"€\\n\"}]")
+                .run();
+        rte.setValue("[{\"insert\":\"Server\\n\"}]");
+
+        Assert.assertEquals(1, metrics.getHtmlValueSyncBytes().getCount());
+        Assert.assertEquals(10, metrics.getHtmlValueSyncBytes().getMax());
+        Assert.assertEquals(1, metrics.getValueSyncBytes().getCount());
+        Assert.assertEquals(20, metrics.getValueSyncBytes().getMax());
+    }
+
+    @Test
+    public void setMetrics_valueDeltaMeasured() {
+        RichTextEditor rte = new RichTextEditor("[{\"insert\":\"Foo\\n\"}]");
+        rte.setValueSyncMode(ValueSyncMode.INCREMENTAL);
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        rte.setMetrics(metrics);
+        rte.applyValueDelta(rte.getValueRevision(), "[{\"retain\":3}]");
+
+        Assert.assertEquals(14, metrics.getValueSyncBytes().getSum());
+    }
+
+    @Test
+    public void setMetrics_i18nAndAsHtmlMeasured() {
+        RichTextEditor rte = createAttachedEditor();
+        InMemoryRichTextEditorMetrics metrics = new InMemoryRichTextEditorMetrics();
+        rte.setMetrics(metrics);
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo"));
+        getI18nUpdates(rte.getUI().get());
+        rte.setI18n(new RichTextEditor.RichTextEditorI18n().setUndo("Undo"));
+        getI18nUpdates(rte.getUI().get());
+        rte.asHtml().addValueChangeListener(event -> {
+        });
+        rte.asHtml().addValueChangeListener(event -> {
+        });
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+
+        Assert.assertEquals(2, metrics.getI18nExecuteJsCalls().getCount());
+        Assert.assertEquals(1, metrics.getI18nExecuteJsCalls().getSum());
+        Assert.assertEquals(1, metrics.getAsHtmlListeners().getCount());
+        Assert.assertEquals(2, metrics.getAsHtmlListeners().getMax());
+    }
+
+    @Test
+    public void setMetricsNull() {
+        thrown.expect(NullPointerException.class);
+        new RichTextEditor().setMetrics(null);
+    }
+
+    // image store
+
+    private static final String IMAGE_VALUE = "[{\"insert\":{\"image\":"
+            + "\"data:image/png;base64,AQID\"}},{\"insert\":\"\\n\"}]";
+
+    @Test
+    public void setImageStore_attached_imagesOffloaded() {
+        InMemoryImageStore store = new InMemoryImageStore();
+        RichTextEditor rte = createAttachedEditor();
+        rte.setImageStore(store);
+        rte.setValue(IMAGE_VALUE);
+
+        String url = getImageUrl(rte);
+        Assert.assertTrue(url, url.startsWith("VAADIN/dynamic/resource/"));
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(rte.getValue(),
+                rte.getElement().getProperty("value"));
+    }
+
+    @Test
+    public void setImageStore_serialized_imagesNotCopied() throws IOException {
+        InMemoryImageStore store = new InMemoryImageStore();
+        RichTextEditor rte = new RichTextEditor();
+        rte.setImageStore(store);
+        int size = serializedSize(rte);
+        store.store("image/png", new byte[100_000]);
+
+        Assert.assertEquals(size, serializedSize(rte));
+    }
+
+    @Test
+    public void setImageStore_valueFromClient_imagesOffloadedOnClient() {
+        RichTextEditor rte = createAttachedEditor();
+        rte.setImageStore(new InMemoryImageStore());
+        List<String> values = new ArrayList<>();
+        rte.addValueChangeListener(event -> values.add(event.getValue()));
+        rte.setModelValue(IMAGE_VALUE, true);
+
+        Assert.assertFalse(rte.getValue().contains("base64"));
+        Assert.assertEquals(rte.getValue(),
+                rte.getElement().getProperty("value"));
+        Assert.assertEquals(1, values.size());
+        Assert.assertEquals(rte.getValue(), values.get(0));
+    }
+
+    @Test
+    public void setImageStore_notAttached_offloadedOnAttach() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setImageStore(new InMemoryImageStore());
+        rte.setValue(IMAGE_VALUE);
+        Assert.assertEquals(IMAGE_VALUE, rte.getValue());
+
+        createUI().add(rte);
+        Assert.assertFalse(rte.getValue().contains("base64"));
+    }
+
+    @Test
+    public void noImageStore_imagesKeptInline() {
+        RichTextEditor rte = createAttachedEditor();
+        rte.setValue(IMAGE_VALUE);
+        Assert.assertNull(rte.getImageStore());
+        Assert.assertEquals(IMAGE_VALUE, rte.getValue());
+    }
+
+    @Test
+    public void setImageStore_urlFromOtherSession_registeredAgain() {
+        InMemoryImageStore store = new InMemoryImageStore();
+        RichTextEditor rte = createAttachedEditor();
+        rte.setImageStore(store);
+        rte.setValue(IMAGE_VALUE);
+        String value = rte.getValue();
+
+        RichTextEditor other = createAttachedEditor();
+        other.setImageStore(store);
+        other.setValue(value);
+        Assert.assertNotEquals(getImageUrl(rte), getImageUrl(other));
+        Assert.assertTrue(getImageUrl(other)
+                .endsWith(getImageUrl(rte).substring(
+                        getImageUrl(rte).lastIndexOf('/'))));
+    }
+
+    @Test
+    public void setImageStore_htmlValueKeepsImageUrls() {
+        RichTextEditor rte = createAttachedEditor();
+        rte.setImageStore(new InMemoryImageStore());
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        rte.setValue(IMAGE_VALUE);
+
+        Assert.assertEquals("<p><img src=\"" + getImageUrl(rte) + "\"></p>",
+                rte.getHtmlValue());
+    }
+
+    private static String getImageUrl(RichTextEditor rte) {
+        Delta.Insert insert = (Delta.Insert) rte.getDelta().getOps().get(0);
+        return (String) insert.getEmbed().get("image");
+    }
+
+    private static boolean isHtmlValueSynchronized(RichTextEditor rte) {
+        // Also checks the synchronization of the generated @Synchronize
+        return rte.getElement().getNode().getFeature(ElementListenerMap.class)
+                .getPropertySynchronizationMode("htmlValue") != null
+                || rte.getElement().getNode()
+                        .getFeature(SynchronizedPropertiesList.class)
+                        .getSynchronizedProperties().contains("htmlValue");
+    }
+
+    private static RichTextEditor createAttachedEditor() {
+        RichTextEditor rte = new RichTextEditor();
+        createUI().add(rte);
+        return rte;
+    }
+
+    private static UI createUI() {
+        VaadinSession session = Mockito.mock(VaadinSession.class);
+        Mockito.when(session.hasLock()).thenReturn(true);
+        Mockito.when(session.getResourceRegistry())
+                .thenReturn(new StreamResourceRegistry(session));
+        UI ui = new UI();
+        ui.getInternals().setSession(session);
+        UI.setCurrent(ui);
+        return ui;
+    }
+
+    @After
+    public void clearCurrentUI() {
+        UI.setCurrent(null);
+    }
+
+    // value storage
+
+    @Test
+    public void compactValueStorage_retainedSizeReduced() throws Exception {
+        RichTextEditor stringEditor = createEditorWithLargeHtmlValue();
+        RichTextEditor compactEditor = createEditorWithLargeHtmlValue();
+        compactEditor.setValueStorage(ValueStorage.compact(1024));
+        String html = stringEditor.getHtmlValue();
+
+        Assert.assertEquals(html, compactEditor.getHtmlValue());
+        Assert.assertEquals(html, compactEditor.asHtml().getValue());
+        // The AsHtml value and old value, the cached HTML is shared
+        int stringSize = stringEditor.getStoredValueSize();
+        int compactSize = compactEditor.getStoredValueSize();
+        Assert.assertTrue(stringSize >= 2 * html.length());
+        Assert.assertTrue(stringSize + " -> " + compactSize,
+                compactSize * 5 < stringSize);
+        Assert.assertTrue(
+                serializedSize(compactEditor) < serializedSize(stringEditor)
+                        - html.length());
+    }
+
+    private static RichTextEditor createEditorWithLargeHtmlValue() {
+        RichTextEditor rte = new RichTextEditor();
+        rte.setHtmlValueMode(HtmlValueMode.SERVER_RENDERED);
+        Delta.Builder delta = Delta.builder();
+        for (int i = 0; i < 2000; i++) {
+            delta.insert("Line " + i + " of the document\n");
+        }
+        rte.setDelta(delta.build());
+        rte.asHtml();
+        rte.setModelValue(rte.getValue().replace("Line 0 ", "Line X "),
+                true);
+        rte.getHtmlValue();
+        return rte;
+    }
+
+    private static int serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.size();
+    }
+
     // asHtml
 
     @Test
@@ -193,6 +1295,39 @@ public class RichTextEditorTest {
                 htmlValue, rteAsHtml.getValue());
     }
 
+    @Test
+    public void asHtml_severalListeners_oneEventSanitizedOnce() {
+        RichTextEditor rte = new RichTextEditor();
+        HasValue<ValueChangeEvent<String>, String> rteAsHtml = rte.asHtml();
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rteAsHtml.addValueChangeListener(events::add);
+        }
+        rte.getElement().setProperty("htmlValue", "<p>Foo</p><script>x</script>");
+        rte.setModelValue("[{\"insert\":\"Foo\\n\"}]", true);
+
+        Assert.assertEquals(5, events.size());
+        Assert.assertSame(events.get(0), events.get(4));
+        Assert.assertEquals("<p>Foo</p>", events.get(0).getValue());
+        Assert.assertTrue(events.get(0).isFromClient());
+        Assert.assertSame(rteAsHtml, events.get(0).getHasValue());
+        Assert.assertEquals(1, rte.getHtmlValueCacheMisses());
+    }
+
+    @Test
+    public void asHtml_removeListener_notNotified() {
+        RichTextEditor rte = new RichTextEditor();
+        List<ValueChangeEvent<String>> events = new ArrayList<>();
+        Registration registration = rte.asHtml()
+                .addValueChangeListener(events::add);
+        rte.setValue("[{\"insert\":\"Foo\\n\"}]");
+        registration.remove();
+        rte.setValue("[{\"insert\":\"Bar\\n\"}]");
+
+        Assert.assertEquals(1, events.size());
+        Assert.assertFalse(events.get(0).isFromClient());
+    }
+
     @Test
     public void asHtml_setReadOnly_rteIsReadonly() {
         RichTextEditor rte = new RichTextEditor();
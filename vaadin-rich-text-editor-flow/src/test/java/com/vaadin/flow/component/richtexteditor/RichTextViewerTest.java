@@ -0,0 +1,92 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.flow.component.dependency.JsModule;
+
+/**
+ * Tests for the {@link RichTextViewer}.
+ */
+public class RichTextViewerTest {
+
+    private static final String VALUE = "[{\"insert\":\"Foo\","
+            + "\"attributes\":{\"bold\":true}},{\"insert\":\"\\n\"}]";
+
+    @Before
+    public void clearRenderCache() {
+        RichTextViewer.getRenderCache().clear();
+    }
+
+    @After
+    public void resetRenderCacheSize() {
+        RichTextViewer
+                .setRenderCacheSize(RichTextViewer.DEFAULT_RENDER_CACHE_SIZE);
+    }
+
+    @Test
+    public void plainElementWithoutWebComponent() {
+        RichTextViewer viewer = new RichTextViewer();
+        Assert.assertEquals("div", viewer.getElement().getTag());
+        Assert.assertNull(RichTextViewer.class.getAnnotation(JsModule.class));
+        Assert.assertEquals(0,
+                viewer.getElement().getSynchronizedProperties().count());
+        Assert.assertEquals("", viewer.getHtmlValue());
+    }
+
+    @Test
+    public void setValue_deltaRenderedAsHtml() {
+        RichTextViewer viewer = new RichTextViewer(VALUE);
+        Assert.assertEquals(VALUE, viewer.getValue());
+        Assert.assertEquals("<p><strong>Foo</strong></p>",
+                viewer.getHtmlValue());
+        Assert.assertEquals("<p><strong>Foo</strong></p>",
+                viewer.getElement().getProperty("innerHTML"));
+    }
+
+    @Test
+    public void setHtmlValue_sanitized() {
+        RichTextViewer viewer = new RichTextViewer();
+        viewer.setHtmlValue("<p onclick=\"alert(1)\">Foo<script>alert(2)"
+                + "</script></p>");
+        Assert.assertNull(viewer.getValue());
+        Assert.assertEquals("<p>Foo</p>",
+                viewer.getElement().getProperty("innerHTML"));
+
+        viewer.setSanitizerPolicy(SanitizerPolicy.none());
+        Assert.assertEquals("Foo", viewer.getHtmlValue());
+    }
+
+    @Test
+    public void equalContent_renderedOnce() {
+        RichTextViewer.RenderCache cache = RichTextViewer.getRenderCache();
+        RichTextViewer viewer = new RichTextViewer(VALUE);
+        RichTextViewer other = new RichTextViewer(new String(VALUE));
+        other.setHtmlValue(VALUE);
+
+        Assert.assertSame(viewer.getHtmlValue(),
+                new RichTextViewer(VALUE).getHtmlValue());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void renderCache_boundedByCharacters() {
+        RichTextViewer.RenderCache cache = RichTextViewer.getRenderCache();
+        // Each entry is 18 characters of content and 8 of HTML
+        RichTextViewer.setRenderCacheSize(80);
+        for (String text : new String[] { "A", "B", "C", "A", "D", "B" }) {
+            new RichTextViewer("[{\"insert\":\"" + text + "\\n\"}]");
+        }
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(5, cache.getMisses());
+        Assert.assertEquals(78, cache.getCharacters());
+
+        RichTextViewer.setRenderCacheSize(30);
+        Assert.assertEquals(26, cache.getCharacters());
+        RichTextViewer.clearRenderCache();
+        Assert.assertEquals(0, cache.getCharacters());
+    }
+}
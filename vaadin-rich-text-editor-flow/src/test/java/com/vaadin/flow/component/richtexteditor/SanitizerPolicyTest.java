@@ -0,0 +1,184 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Whitelist;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link SanitizerPolicy}.
+ */
+public class SanitizerPolicyTest {
+
+    @Test
+    public void defaultPolicy_sameAsWhitelistBuiltPerCall() {
+        Whitelist whitelist = Whitelist.basic()
+                .addTags("img", "h1", "h2", "h3", "s")
+                .addAttributes("img", "align", "alt", "height", "src", "title",
+                        "width")
+                .addAttributes(":all", "style")
+                .addProtocols("img", "src", "data");
+        String html = "<h1 style=\"text-align: center\">Foo</h1>"
+                + "<p><a href=\"https://vaadin.com\" onclick=\"x()\">Bar</a>"
+                + "<img src=\"data:image/gif;base64,R0lGOD\" alt=\"a\">"
+                + "<img src=\"http://vaadin.com\"><script>x()</script></p>";
+
+        Assert.assertEquals(Jsoup.clean(html, whitelist),
+                SanitizerPolicy.defaultPolicy().sanitize(html));
+    }
+
+    @Test
+    public void sanitize_whitelistIsBuiltOnce() {
+        SanitizerPolicy policy = SanitizerPolicy.basic().allowTags("h4");
+        Whitelist whitelist = policy.getWhitelist();
+        policy.sanitize("<h4>Foo</h4>");
+        policy.sanitize("<h4>Bar</h4>");
+        Assert.assertSame(whitelist, policy.getWhitelist());
+    }
+
+    @Test
+    public void allowTags_returnsNewPolicy_originalUnchanged() {
+        SanitizerPolicy basic = SanitizerPolicy.basic();
+        SanitizerPolicy extended = basic.allowTags("H4");
+
+        Assert.assertNotSame(basic, extended);
+        Assert.assertEquals("Foo", basic.sanitize("<h4>Foo</h4>"));
+        Assert.assertEquals("<h4>Foo</h4>", extended.sanitize("<h4>Foo</h4>"));
+    }
+
+    @Test
+    public void allowAttributes_allTags_attributeKeptOnAllowedTags() {
+        SanitizerPolicy policy = SanitizerPolicy.none().allowTags("p", "span")
+                .allowAttributes(SanitizerPolicy.ALL_TAGS, "title");
+        Assert.assertEquals("<p title=\"a\"><span title=\"b\">Foo</span></p>",
+                policy.sanitize(
+                        "<p title=\"a\" id=\"x\"><span title=\"b\">Foo</span></p>"));
+    }
+
+    @Test
+    public void allowProtocols_otherProtocolsRemoved() {
+        SanitizerPolicy policy = SanitizerPolicy.none().allowTags("a")
+                .allowAttributes("a", "href").allowProtocols("a", "href", "https");
+        Assert.assertEquals("<a href=\"https://vaadin.com\">Foo</a>",
+                policy.sanitize("<a href=\"https://vaadin.com\">Foo</a>"));
+        Assert.assertEquals("<a>Foo</a>",
+                policy.sanitize("<a href=\"javascript:alert(1)\">Foo</a>"));
+    }
+
+    @Test
+    public void enforceAttribute_attributeAdded() {
+        SanitizerPolicy policy = SanitizerPolicy.none().allowTags("a")
+                .enforceAttribute("a", "target", "_blank");
+        Assert.assertEquals("<a target=\"_blank\">Foo</a>",
+                policy.sanitize("<a>Foo</a>"));
+    }
+
+    @Test
+    public void none_onlyTextKept() {
+        Assert.assertEquals("Foo",
+                SanitizerPolicy.none().sanitize("<strong>Foo</strong>"));
+    }
+
+    @Test
+    public void equalPolicies_equalAndSameHashCode() {
+        SanitizerPolicy first = SanitizerPolicy.basic().allowTags("h4");
+        SanitizerPolicy second = SanitizerPolicy.basic().allowTags("h4");
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+        Assert.assertNotEquals(first, SanitizerPolicy.basic());
+    }
+
+    @Test
+    public void serializeAndDeserialize_policyStillSanitizes()
+            throws IOException, ClassNotFoundException {
+        SanitizerPolicy policy = SanitizerPolicy.defaultPolicy();
+        policy.sanitize("<p>Foo</p>");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(policy);
+        }
+        SanitizerPolicy deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (SanitizerPolicy) in.readObject();
+        }
+
+        Assert.assertEquals(policy, deserialized);
+        Assert.assertEquals("<strong>Foo</strong>",
+                deserialized.sanitize("<strong>Foo</strong><script>x</script>"));
+    }
+
+    @Test
+    public void withStreamingThreshold_largeDocumentsStreamed_sameResult() {
+        SanitizerPolicy policy = SanitizerPolicy.defaultPolicy();
+        SanitizerPolicy streaming = policy.withStreamingThreshold(10);
+        String html = "<p>Foo <strong>bar</strong></p><script>x</script>";
+
+        Assert.assertEquals(Integer.MAX_VALUE,
+                policy.getStreamingThreshold());
+        Assert.assertEquals(10, streaming.getStreamingThreshold());
+        Assert.assertEquals(policy.sanitize(html), streaming.sanitize(html));
+        Assert.assertNotEquals(policy, streaming);
+    }
+
+    @Test
+    public void sanitizeReader_writesToAppendable() throws IOException {
+        StringBuilder sanitized = new StringBuilder();
+        SanitizerPolicy.basic().sanitize(
+                new StringReader("<h1>Foo</h1><b>bar</b>"), sanitized);
+        Assert.assertEquals("Foo\n<b>bar</b>", sanitized.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withStreamingThreshold_negative_throws() {
+        SanitizerPolicy.basic().withStreamingThreshold(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void allowTags_emptyName_throws() {
+        SanitizerPolicy.basic().allowTags("");
+    }
+
+    @Test
+    public void allowUrlPrefixes_relativeUrlKept() {
+        SanitizerPolicy policy = SanitizerPolicy.defaultPolicy()
+                .allowUrlPrefixes("img", "src", "VAADIN/dynamic/resource/");
+        String html = "<p><img src=\"VAADIN/dynamic/resource/0/x/a.png\">"
+                + "<img src=\"other/a.png\"></p>";
+        String expected = "<p><img src=\"VAADIN/dynamic/resource/0/x/a.png\">"
+                + "<img></p>";
+
+        Assert.assertEquals(expected, policy.sanitize(html));
+        Assert.assertEquals(expected,
+                policy.withStreamingThreshold(0).sanitize(html));
+        Assert.assertEquals("<p><img><img></p>",
+                SanitizerPolicy.defaultPolicy().sanitize(html));
+        Assert.assertNotEquals(SanitizerPolicy.defaultPolicy(), policy);
+    }
+
+    @Test
+    public void allowUrlPrefixes_attributeNotAllowed_removed() {
+        SanitizerPolicy policy = SanitizerPolicy.basic().allowTags("img")
+                .allowUrlPrefixes("img", "src", "VAADIN/");
+        Assert.assertEquals("<img>",
+                policy.sanitize("<img src=\"VAADIN/a.png\">"));
+    }
+
+    @Test
+    public void withImageResources_derivedOnce() {
+        SanitizerPolicy policy = SanitizerPolicy.defaultPolicy();
+        SanitizerPolicy derived = policy.withImageResources();
+
+        Assert.assertSame(derived, policy.withImageResources());
+        Assert.assertEquals(policy.allowUrlPrefixes("img", "src",
+                ImageOffloader.RESOURCE_PATH), derived);
+    }
+}
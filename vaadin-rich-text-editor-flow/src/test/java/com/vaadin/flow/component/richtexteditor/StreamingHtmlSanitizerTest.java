@@ -0,0 +1,134 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link StreamingHtmlSanitizer}.
+ */
+public class StreamingHtmlSanitizerTest {
+
+    private static final SanitizerPolicy POLICY = SanitizerPolicy
+            .defaultPolicy();
+
+    @Test
+    public void sanitizeEditorFormats_sameAsDomSanitizer() {
+        assertSameAsDomSanitizer("<strong>Foo</strong>");
+        assertSameAsDomSanitizer("<em>Foo</em>");
+        assertSameAsDomSanitizer("<u>Foo</u>");
+        assertSameAsDomSanitizer("<s>Foo</s>");
+        assertSameAsDomSanitizer(
+                "<strong><em><s><u>123123</u></s></em></strong>");
+        assertSameAsDomSanitizer("<h1>Foo</h1>");
+        assertSameAsDomSanitizer("<h2>Foo</h2>");
+        assertSameAsDomSanitizer("<h3>Foo</h3>");
+        assertSameAsDomSanitizer("<sup>Foo</sup>");
+        assertSameAsDomSanitizer("<sub>Foo</sub>");
+        assertSameAsDomSanitizer("<ol>Foo</ol>");
+        assertSameAsDomSanitizer("<ul>Foo</ul>");
+        assertSameAsDomSanitizer("<li>Foo</li>");
+        assertSameAsDomSanitizer(
+                "<p style=\"text-align: center\">Foo</p>");
+        assertSameAsDomSanitizer("<script>alert('Foo')</script>");
+        assertSameAsDomSanitizer("<img src='http://vaadin.com'>");
+        assertSameAsDomSanitizer("<img src='https://vaadin.com'>");
+        assertSameAsDomSanitizer(
+                "<img src=\"data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///ywAAAAAAQABAAACAUwAOw==\">");
+        assertSameAsDomSanitizer("<blockquote>Foo</blockquote>");
+        assertSameAsDomSanitizer("<pre>Foo</pre>");
+    }
+
+    @Test
+    public void sanitizeEditorDocument_sameAsDomSanitizer() {
+        assertSameAsDomSanitizer("<h1 style=\"text-align: center\">Title</h1>"
+                + "<p>Some <strong>bold</strong> and <em>italic</em>\n"
+                + "text &amp; a <a href=\"https://vaadin.com\" "
+                + "onclick=\"x()\">link</a>&nbsp;</p>\n"
+                + "<ul><li>One</li><li>Two <s>three</s></li></ul>"
+                + "<ol><li><sub>x</sub><sup>2</sup></li></ol>"
+                + "<pre spellcheck=\"false\">code\n  block</pre>"
+                + "<blockquote>Quote</blockquote><p><br></p>"
+                + "<p><a href=\"javascript:alert(1)\">bad</a>"
+                + "<img src=\"data:image/png;base64,iVBORw0KGgo=\" "
+                + "onerror=\"x()\"></p><style>p { }</style>");
+    }
+
+    @Test
+    public void sanitizeMalformedMarkup_sameAsDomSanitizer() {
+        assertSameAsDomSanitizer("<p>Foo<p>Bar");
+        assertSameAsDomSanitizer("<p><b>Foo</p><p>Bar</b></p>");
+        assertSameAsDomSanitizer("<li>One<li>Two");
+        assertSameAsDomSanitizer("<h1>Foo<h2>Bar</h1>");
+        assertSameAsDomSanitizer("</p>Foo</br>");
+        assertSameAsDomSanitizer("<a href=http://a.com>x<a href=http://b.com>y");
+        assertSameAsDomSanitizer("Foo <!-- comment --> <![CDATA[<b>]]>");
+        assertSameAsDomSanitizer("<B CLASS=x STYLE='a'>Foo</B><BR STYLE=a>");
+        assertSameAsDomSanitizer("&lt;&gt;&amp;&quot;&copy;&#x41;&#128;&bogus;");
+        assertSameAsDomSanitizer("<strong");
+    }
+
+    @Test
+    public void sanitizeDisallowedDataTags_contentRemoved() {
+        Assert.assertEquals("Foo",
+                sanitize("<script><b>x</b></script>Foo<style>p{}</style>"));
+    }
+
+    @Test
+    public void sanitizeLargeDocument_sameAsDomSanitizer() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            html.append("<p>Paragraph ").append(i)
+                    .append(" with <strong>bold &amp; ")
+                    .append("<em>italic</em></strong> text</p>\n");
+        }
+        html.append("<p><img src=\"data:image/gif;base64,");
+        for (int i = 0; i < 50000; i++) {
+            html.append('A');
+        }
+        html.append("\" alt=\"image\"></p>");
+        assertSameAsDomSanitizer(html.toString());
+    }
+
+    @Test
+    public void sanitizeFromSlowReader_sameAsDomSanitizer()
+            throws IOException {
+        String html = "<p>Foo &amp; <a href=\"https://vaadin.com\">bar</a>"
+                + "</p><ul><li>&nbsp;Baz</li></ul>";
+        Reader slowReader = new Reader() {
+            private final Reader delegate = new StringReader(html);
+
+            @Override
+            public int read(char[] buffer, int offset, int length)
+                    throws IOException {
+                return delegate.read(buffer, offset, Math.min(length, 1));
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+        StringBuilder sanitized = new StringBuilder();
+        POLICY.sanitize(slowReader, sanitized);
+        Assert.assertEquals(POLICY.sanitize(html), sanitized.toString());
+    }
+
+    private static void assertSameAsDomSanitizer(String html) {
+        Assert.assertEquals(POLICY.sanitize(html), sanitize(html));
+    }
+
+    private static String sanitize(String html) {
+        StringBuilder sanitized = new StringBuilder();
+        try {
+            new StreamingHtmlSanitizer(POLICY, new StringReader(html),
+                    sanitized).sanitize();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sanitized.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link TextStatistics}.
+ */
+public class TextStatisticsTest {
+
+    private static final String VALUE = "[{\"insert\":\"Foo \",\"attributes\":"
+            + "{\"bold\":true}},{\"insert\":\"bar\\u00a0baz\\n  Line\"},"
+            + "{\"insert\":{\"image\":\"x\"}},{\"insert\":\"two \\ud83d\\ude00\\n\"}]";
+
+    @Test
+    public void of_charactersAndWordsCounted() {
+        TextStatistics statistics = TextStatistics.of(VALUE);
+        Assert.assertEquals(22, statistics.getCharacters());
+        Assert.assertEquals(6, statistics.getWords());
+    }
+
+    @Test
+    public void emptyValue_zero() {
+        Assert.assertEquals(0, TextStatistics.of("").getWords());
+        Assert.assertEquals(0,
+                TextStatistics.of("[{\"insert\":\"\\n\"}]").getCharacters());
+    }
+
+    @Test
+    public void getPlainText_embedsAndLastLineBreakRemoved() {
+        Assert.assertEquals("Foo bar\u00a0baz\n  Linetwo \ud83d\ude00",
+                TextStatistics.getPlainText(VALUE));
+        Assert.assertEquals("", TextStatistics.getPlainText(""));
+    }
+
+    @Test
+    public void update_sameAsCountingChangedDocument() {
+        Random random = new Random(42);
+        String[] texts = { "a", "b c", " ", "\n", "word ", "x\ny", "\u00e4" };
+        Delta document = Delta.parse("[{\"insert\":\"Foo bar\\n\"}]");
+        TextStatistics statistics = TextStatistics.of(document.toValue());
+        for (int i = 0; i < 2000; i++) {
+            int offset = random.nextInt(document.length());
+            Delta.Builder change = Delta.builder().retain(offset);
+            switch (random.nextInt(4)) {
+            case 0:
+                change.delete(Math.min(1 + random.nextInt(3),
+                        document.length() - 1 - offset));
+                break;
+            case 1:
+                change.insertEmbed("image", "x", null);
+                break;
+            case 2:
+                change.retain(1, Collections.singletonMap("bold", true));
+                break;
+            default:
+                change.delete(random.nextInt(2))
+                        .insert(texts[random.nextInt(texts.length)]);
+            }
+            Delta changed = document.compose(change.build());
+            statistics = statistics.update(document, change.build(),
+                    changed);
+            document = changed;
+
+            TextStatistics expected = TextStatistics.of(document.toValue());
+            Assert.assertEquals(document.toValue(),
+                    expected.getCharacters(), statistics.getCharacters());
+            Assert.assertEquals(document.toValue(), expected.getWords(),
+                    statistics.getWords());
+        }
+    }
+}
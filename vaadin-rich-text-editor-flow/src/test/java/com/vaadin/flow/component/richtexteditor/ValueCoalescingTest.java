@@ -0,0 +1,36 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ValueCoalescing}.
+ */
+public class ValueCoalescingTest {
+
+    @Test
+    public void disabled_notEnabled() {
+        Assert.assertFalse(ValueCoalescing.disabled().isEnabled());
+        Assert.assertEquals(0, ValueCoalescing.disabled().getWindow());
+        Assert.assertEquals(Integer.MAX_VALUE,
+                ValueCoalescing.disabled().getSessionRateLimit());
+    }
+
+    @Test
+    public void withWindowAndRateLimit_enabled() {
+        ValueCoalescing coalescing = ValueCoalescing.disabled().withWindow(200)
+                .withSessionRateLimit(20);
+        Assert.assertTrue(coalescing.isEnabled());
+        Assert.assertEquals(200, coalescing.getWindow());
+        Assert.assertEquals(20, coalescing.getSessionRateLimit());
+        Assert.assertEquals(coalescing, ValueCoalescing.disabled()
+                .withSessionRateLimit(20).withWindow(200));
+        Assert.assertTrue(
+                ValueCoalescing.disabled().withSessionRateLimit(1).isEnabled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroRateLimit_throws() {
+        ValueCoalescing.disabled().withSessionRateLimit(0);
+    }
+}
@@ -0,0 +1,68 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.flow.component.richtexteditor.ValueLimits.Limit;
+
+/**
+ * Tests for the {@link ValueLimits}.
+ */
+public class ValueLimitsTest {
+
+    private static final String VALUE = "[{\"insert\":\"Fü\"},"
+            + "{\"insert\":{\"image\":\"a.png\"}},"
+            + "{\"insert\":{\"image\":\"b.png\"}},{\"insert\":\"\\n\"}]";
+
+    @Test
+    public void unlimited_everythingAccepted() {
+        Assert.assertNull(ValueLimits.unlimited().checkValue(VALUE));
+        Assert.assertNull(ValueLimits.unlimited().checkHtml("<p>x</p>"));
+        Assert.assertEquals(Integer.MAX_VALUE,
+                ValueLimits.unlimited().getMaxSize());
+    }
+
+    @Test
+    public void maxSize_utf8BytesCounted() {
+        int bytes = VALUE.length() + 1;
+        Assert.assertNull(
+                ValueLimits.unlimited().withMaxSize(bytes).checkValue(VALUE));
+        Assert.assertEquals(Limit.SIZE, ValueLimits.unlimited()
+                .withMaxSize(bytes - 1).checkValue(VALUE));
+        Assert.assertEquals(4, ValueLimits.utf8Length("\ud83d\ude00"));
+    }
+
+    @Test
+    public void maxImagesAndOperations() {
+        ValueLimits limits = ValueLimits.unlimited().withMaxImages(2)
+                .withMaxOperations(4);
+        Assert.assertNull(limits.checkValue(VALUE));
+        Assert.assertEquals(Limit.IMAGES,
+                limits.withMaxImages(1).checkValue(VALUE));
+        Assert.assertEquals(Limit.OPERATIONS,
+                limits.withMaxOperations(3).checkValue(VALUE));
+        Assert.assertEquals(Limit.IMAGES, limits.withMaxImages(1)
+                .checkHtml("<p><img src=\"a\"><img src=\"b\"></p>"));
+        Assert.assertEquals(Limit.IMAGES, limits.withMaxImages(1)
+                .checkHtml("<p><IMG src=\"a\"><iMg src=\"b\"></p>"));
+    }
+
+    @Test
+    public void invalidDelta_rejectedWithImageOrOperationLimit() {
+        String invalid = "[1," + VALUE.substring(1);
+        Assert.assertNull(ValueLimits.unlimited().checkValue(invalid));
+        Assert.assertEquals(Limit.FORMAT, ValueLimits.unlimited()
+                .withMaxImages(1).checkValue(invalid));
+        Assert.assertEquals(Limit.FORMAT, ValueLimits.unlimited()
+                .withMaxOperations(100).checkValue(invalid));
+        Assert.assertNull(
+                ValueLimits.unlimited().withMaxImages(1).checkValue(""));
+        Assert.assertEquals(0,
+                ValueLimits.unlimited().getMaximum(Limit.FORMAT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaximum_throws() {
+        ValueLimits.unlimited().withMaxSize(-1);
+    }
+}
@@ -0,0 +1,72 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ValueStorage}.
+ */
+public class ValueStorageTest {
+
+    private static final String LARGE_VALUE = createLargeValue();
+
+    @Test
+    public void stringStorage_sameInstance() {
+        Assert.assertSame(LARGE_VALUE, ValueStorage.STRING.store(LARGE_VALUE));
+        Assert.assertSame(LARGE_VALUE, ValueStorage.load(LARGE_VALUE));
+        Assert.assertNull(ValueStorage.load(ValueStorage.STRING.store(null)));
+    }
+
+    @Test
+    public void compactStorage_roundTrip() {
+        ValueStorage storage = ValueStorage.compact(1024);
+        for (String value : new String[] { "", "Foo", "Äöü € 🙂",
+                LARGE_VALUE }) {
+            Assert.assertEquals(value,
+                    ValueStorage.load(storage.store(value)));
+        }
+        Assert.assertNull(ValueStorage.load(storage.store(null)));
+    }
+
+    @Test
+    public void compactStorage_writtenWithoutLoading() throws Exception {
+        ValueStorage storage = ValueStorage.compact(1024);
+        for (String value : new String[] { "Äöü € 🙂", LARGE_VALUE }) {
+            StringBuilder written = new StringBuilder();
+            ValueStorage.write(storage.store(value), written);
+            Assert.assertEquals(value, written.toString());
+        }
+    }
+
+    @Test
+    public void compactStorage_largeValueDeflated() {
+        Object stored = ValueStorage.compact(1024).store(LARGE_VALUE);
+        Object undeflated = ValueStorage.compact(Integer.MAX_VALUE)
+                .store(LARGE_VALUE);
+
+        Assert.assertEquals(LARGE_VALUE.length(),
+                ValueStorage.getDataSize(undeflated));
+        Assert.assertTrue(ValueStorage.getDataSize(stored) < LARGE_VALUE
+                .length() / 10);
+    }
+
+    @Test
+    public void compactStorage_smallValueNotDeflated() {
+        Assert.assertEquals(3,
+                ValueStorage.getDataSize(ValueStorage.compact(0).store("Foo")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compactStorage_negativeThreshold_throws() {
+        ValueStorage.compact(-1);
+    }
+
+    static String createLargeValue() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            value.append("<p>Line <strong>").append(i)
+                    .append("</strong> of the document</p>");
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.vaadin.flow.component.richtexteditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.vaadin.flow.server.ServiceDestroyEvent;
+import com.vaadin.flow.server.ServiceDestroyListener;
+import com.vaadin.flow.server.VaadinContext;
+import com.vaadin.flow.server.VaadinService;
+
+/**
+ * Tests for the {@link ValueUpdateCoalescer}.
+ */
+public class ValueUpdateCoalescerTest {
+
+    @Test
+    public void scheduler_shutDownWithService() {
+        Map<Class<?>, Object> attributes = new HashMap<>();
+        VaadinContext context = Mockito.mock(VaadinContext.class);
+        Mockito.when(context.getAttribute(Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> attributes.computeIfAbsent(
+                        invocation.getArgumentAt(0, Class.class),
+                        type -> invocation.getArgumentAt(1, Supplier.class)
+                                .get()));
+        VaadinService service = Mockito.mock(VaadinService.class);
+        Mockito.when(service.getContext()).thenReturn(context);
+        List<ServiceDestroyListener> listeners = new ArrayList<>();
+        Mockito.when(service.addServiceDestroyListener(Mockito.any()))
+                .thenAnswer(invocation -> {
+                    listeners.add(invocation.getArgumentAt(0,
+                            ServiceDestroyListener.class));
+                    return null;
+                });
+
+        ScheduledExecutorService scheduler = ValueUpdateCoalescer.Scheduler
+                .get(service);
+        Assert.assertSame(scheduler,
+                ValueUpdateCoalescer.Scheduler.get(service));
+        Assert.assertEquals(1, listeners.size());
+
+        listeners.get(0).serviceDestroy(new ServiceDestroyEvent(service));
+        Assert.assertTrue(scheduler.isShutdown());
+        Assert.assertNull(ValueUpdateCoalescer.Scheduler.get(service));
+    }
+}